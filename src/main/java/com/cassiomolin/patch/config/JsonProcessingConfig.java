@@ -0,0 +1,41 @@
+package com.cassiomolin.patch.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonWriterFactory;
+import javax.json.spi.JsonProvider;
+import javax.json.stream.JsonParserFactory;
+
+import static java.util.Collections.emptyMap;
+
+/**
+ * JSON Processing (JSR-353) factories shared by the whole application.
+ * <p>
+ * The static methods of {@link javax.json.Json} look the provider up with a {@link java.util.ServiceLoader} on every
+ * call, so the provider and the factories are created once here instead.
+ */
+@Configuration
+public class JsonProcessingConfig {
+
+    @Bean
+    public JsonProvider jsonProvider() {
+        return JsonProvider.provider();
+    }
+
+    @Bean
+    public JsonParserFactory jsonParserFactory(JsonProvider provider) {
+        return provider.createParserFactory(emptyMap());
+    }
+
+    @Bean
+    public JsonBuilderFactory jsonBuilderFactory(JsonProvider provider) {
+        return provider.createBuilderFactory(emptyMap());
+    }
+
+    @Bean
+    public JsonWriterFactory jsonWriterFactory(JsonProvider provider) {
+        return provider.createWriterFactory(emptyMap());
+    }
+}
@@ -37,4 +37,6 @@ public class Contact {
     private OffsetDateTime createdDateTime;
 
     private OffsetDateTime lastModifiedDateTime;
+
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,258 @@
+package com.cassiomolin.patch.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a {@code PatchApplier} for each class annotated with {@code @Patchable}.
+ * <p>
+ * The generated applier declares one property per field, bound to the field's getter and setter with method
+ * references, so JSON Pointer paths are resolved to plain method calls and no reflection happens at runtime.
+ * Accessor names follow the JavaBeans conventions used by Lombok.
+ * <p>
+ * Classes with fields of unsupported types, or whose JSON mapping is customized with Jackson annotations, get no
+ * applier and a warning is reported: they're still patched through the generic path.
+ */
+@SupportedAnnotationTypes(PatchApplierProcessor.PATCHABLE)
+public class PatchApplierProcessor extends AbstractProcessor {
+
+    static final String PATCHABLE = "com.cassiomolin.patch.web.patch.Patchable";
+
+    private static final String APPLIER_SUFFIX = "PatchApplier";
+
+    private static final String RUNTIME_PACKAGE = "com.cassiomolin.patch.web.patch";
+
+    private static final String JACKSON_ANNOTATIONS_PACKAGE = "com.fasterxml.jackson.annotation.";
+
+    private static final Map<String, String> CODECS = new HashMap<>();
+
+    static {
+        CODECS.put("java.lang.String", "STRING");
+        CODECS.put("java.lang.Boolean", "BOOLEAN");
+        CODECS.put("java.lang.Integer", "INTEGER");
+        CODECS.put("java.lang.Long", "LONG");
+        CODECS.put("java.lang.Double", "DOUBLE");
+        CODECS.put("java.math.BigDecimal", "BIG_DECIMAL");
+        CODECS.put("java.time.LocalDate", "LOCAL_DATE");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS
+                        || ((TypeElement) element).getNestingKind() != NestingKind.TOP_LEVEL) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "@Patchable is only supported on top-level classes", element);
+                    continue;
+                }
+                TypeElement type = (TypeElement) element;
+                List<String> properties = properties(type);
+                if (properties != null) {
+                    write(type, properties);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the property declarations of the generated applier or {@code null} if the class is not supported.
+     */
+    private List<String> properties(TypeElement type) {
+        String beanName = type.getSimpleName().toString();
+        List<String> properties = new ArrayList<>();
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.FIELD || member.getModifiers().contains(Modifier.STATIC)
+                    || member.getModifiers().contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            VariableElement field = (VariableElement) member;
+            String declaration = property(beanName, field);
+            if (declaration == null) {
+                return null;
+            }
+            properties.add(declaration);
+        }
+        return properties;
+    }
+
+    private String property(String beanName, VariableElement field) {
+
+        for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+            if (annotation.getAnnotationType().toString().startsWith(JACKSON_ANNOTATIONS_PACKAGE)) {
+                return unsupported(field, "its JSON mapping is customized with " + annotation.getAnnotationType());
+            }
+        }
+
+        String name = field.getSimpleName().toString();
+        TypeMirror type = field.asType();
+        String getter = beanName + "::" + (type.getKind() == TypeKind.BOOLEAN ? "is" : "get") + capitalize(name);
+        String setter = beanName + "::set" + capitalize(name);
+
+        String codec = codec(type);
+        if (codec != null) {
+            return String.format("PatchProperty.<%s, %s>scalar(\"%s\", %s, %s, ValueCodec.%s)",
+                    beanName, boxedName(type), name, getter, setter, codec);
+        }
+
+        if (isPatchable(type)) {
+            return String.format("PatchProperty.<%s, %s>object(\"%s\", %s, %s, () -> %s.INSTANCE)",
+                    beanName, qualifiedName(type), name, getter, setter, applierName(type));
+        }
+
+        if (isList(type)) {
+            List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+            TypeMirror element = arguments.size() == 1 ? arguments.get(0) : null;
+            if (element != null && element.getKind() == TypeKind.DECLARED) {
+                String elementCodec = codec(element);
+                if (elementCodec != null) {
+                    return String.format("PatchProperty.<%s, %s>scalarList(\"%s\", %s, %s, ValueCodec.%s)",
+                            beanName, qualifiedName(element), name, getter, setter, elementCodec);
+                }
+                if (isPatchable(element)) {
+                    return String.format("PatchProperty.<%s, %s>objectList(\"%s\", %s, %s, () -> %s.INSTANCE)",
+                            beanName, qualifiedName(element), name, getter, setter, applierName(element));
+                }
+            }
+        }
+
+        return unsupported(field, "the type " + type + " is not supported");
+    }
+
+    private String unsupported(VariableElement field, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "No patch applier generated for " + field.getEnclosingElement() + ": field " + field.getSimpleName()
+                        + " can't be patched directly because " + reason, field);
+        return null;
+    }
+
+    private static String codec(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "PRIMITIVE_BOOLEAN";
+            case INT:
+                return "PRIMITIVE_INTEGER";
+            case LONG:
+                return "PRIMITIVE_LONG";
+            case DOUBLE:
+                return "PRIMITIVE_DOUBLE";
+            case DECLARED:
+                return CODECS.get(qualifiedName(type));
+            default:
+                return null;
+        }
+    }
+
+    private static String boxedName(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "Boolean";
+            case INT:
+                return "Integer";
+            case LONG:
+                return "Long";
+            case DOUBLE:
+                return "Double";
+            default:
+                return qualifiedName(type);
+        }
+    }
+
+    private static boolean isPatchable(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        for (AnnotationMirror annotation : ((DeclaredType) type).asElement().getAnnotationMirrors()) {
+            if (annotation.getAnnotationType().toString().equals(PATCHABLE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isList(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED && qualifiedName(type).equals("java.util.List");
+    }
+
+    private static String qualifiedName(TypeMirror type) {
+        return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+    }
+
+    private static String applierName(TypeMirror type) {
+        return qualifiedName(type) + APPLIER_SUFFIX;
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private void write(TypeElement type, List<String> properties) {
+
+        String packageName = ((PackageElement) type.getEnclosingElement()).getQualifiedName().toString();
+        String beanName = type.getSimpleName().toString();
+        String applierName = beanName + APPLIER_SUFFIX;
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import ").append(RUNTIME_PACKAGE).append(".AbstractPatchApplier;\n")
+                .append("import ").append(RUNTIME_PACKAGE).append(".PatchProperty;\n")
+                .append("import ").append(RUNTIME_PACKAGE).append(".ValueCodec;\n\n")
+                .append("import javax.annotation.processing.Generated;\n")
+                .append("import java.util.Arrays;\n\n")
+                .append("@Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("public final class ").append(applierName)
+                .append(" extends AbstractPatchApplier<").append(beanName).append("> {\n\n")
+                .append("    public static final ").append(applierName).append(" INSTANCE = new ")
+                .append(applierName).append("();\n\n")
+                .append("    private ").append(applierName).append("() {\n")
+                .append("        super(").append(beanName).append("::new, Arrays.<PatchProperty<").append(beanName)
+                .append(">>asList(");
+        for (int i = 0; i < properties.size(); i++) {
+            source.append(i == 0 ? "\n" : ",\n").append("                ").append(properties.get(i));
+        }
+        source.append("\n        ));\n")
+                .append("    }\n")
+                .append("}\n");
+
+        try {
+            JavaFileObject file = processingEnv.getFiler()
+                    .createSourceFile(packageName.isEmpty() ? applierName : packageName + "." + applierName, type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source.toString());
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write patch applier for " + type + ": " + e.getMessage(), type);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.cassiomolin.patch.service;
+
+import com.cassiomolin.patch.domain.Contact;
+
+import java.util.List;
+
+/**
+ * Listener notified of the changes made to contacts by a {@link ContactService}.
+ * <p>
+ * Listeners are called by the thread that made the change, once the change is visible in the service, and the change
+ * is acknowledged to the caller only after every listener has returned. Changes to the same contact made by
+ * different threads may be notified out of order: listeners should rely on the contact version to order them.
+ * <p>
+ * A listener that throws doesn't keep the others from being notified. The change stays visible, but the first failure
+ * is rethrown to the caller once every listener has been notified.
+ */
+public interface ContactChangeListener {
+
+    /**
+     * Called after a contact has been created, updated or deleted.
+     *
+     * @param previous state of the contact before the change or {@code null} if the contact has been created
+     * @param current  state of the contact after the change or {@code null} if the contact has been deleted
+     */
+    void contactChanged(Contact previous, Contact current);
+
+    /**
+     * Called after contacts have been created in bulk. By default, each contact is notified on its own.
+     *
+     * @param contacts created contacts
+     */
+    default void contactsCreated(List<Contact> contacts) {
+        for (Contact contact : contacts) {
+            contactChanged(null, contact);
+        }
+    }
+
+    /**
+     * Called after all contacts have been replaced with contacts restored from persistent storage, which are not
+     * notified one by one.
+     */
+    default void contactsRestored() {
+    }
+}
@@ -0,0 +1,66 @@
+package com.cassiomolin.patch.service;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.filter.ContactFilter;
+import com.cassiomolin.patch.service.index.ContactAttributeIndex;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Criteria contacts must all meet to be found by a {@link ContactQueryService}. Criteria left {@code null} match
+ * every contact.
+ */
+@Value
+@Builder
+public class ContactQuery {
+
+    /**
+     * Group the contact belongs to.
+     */
+    private final String group;
+
+    /**
+     * Whether the contact is a favorite. Contacts with no favorite flag are not favorites.
+     */
+    private final Boolean favorite;
+
+    /**
+     * Email address of the contact, compared regardless of case and surrounding spaces.
+     */
+    private final String email;
+
+    /**
+     * Phone number of the contact, compared by digits only.
+     */
+    private final String phone;
+
+    /**
+     * Filter over any property of the contact.
+     */
+    private final ContactFilter filter;
+
+    /**
+     * Returns whether the query has no criteria.
+     *
+     * @return {@code true} if every contact matches the query
+     */
+    public boolean isEmpty() {
+        return group == null && favorite == null && email == null && phone == null && filter == null;
+    }
+
+    /**
+     * Returns whether a contact meets the criteria of the query.
+     *
+     * @param contact contact
+     * @return {@code true} if the contact matches the query
+     */
+    public boolean matches(Contact contact) {
+        return (group == null || ContactAttributeIndex.groupsOf(contact).contains(group))
+                && (favorite == null || ContactAttributeIndex.isFavorite(contact) == favorite)
+                && (email == null || ContactAttributeIndex.emailsOf(contact)
+                        .contains(ContactAttributeIndex.normalizeEmail(email)))
+                && (phone == null || ContactAttributeIndex.phonesOf(contact)
+                        .contains(ContactAttributeIndex.normalizePhone(phone)))
+                && (filter == null || filter.matches(contact));
+    }
+}
@@ -0,0 +1,71 @@
+package com.cassiomolin.patch.service;
+
+import com.cassiomolin.patch.domain.Contact;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ContactQueryService {
+
+    /**
+     * Finds a page of the contacts matching a query, ordered by id.
+     * <p>
+     * Pages are delimited by key, as in {@link ContactService#findContacts(Long, int)}.
+     *
+     * @param query   criteria the contacts must meet
+     * @param afterId id of the last contact of the previous page or {@code null} for the first page
+     * @param limit   maximum number of contacts in the page
+     * @return matching contacts with ids greater than {@code afterId}
+     */
+    Page<Contact> findContacts(ContactQuery query, Long afterId, int limit);
+
+    /**
+     * Finds a page of the contacts matching a query, in the order of a sort.
+     * <p>
+     * Pages are delimited by the sort key of their last contact, so the next page starts right after it even if
+     * contacts were inserted, deleted or moved by a change of their sort key in the meantime. Contacts whose key
+     * changes while they are paged through may be skipped or found twice, as they move from one page to another, but a
+     * page holds each contact once, at the position of its key when read.
+     *
+     * @param query criteria the contacts must meet
+     * @param sort  order of the contacts
+     * @param after sort key of the last contact of the previous page or {@code null} for the first page
+     * @param limit maximum number of contacts in the page
+     * @return matching contacts with sort keys following {@code after}
+     */
+    Page<Contact> findContacts(ContactQuery query, ContactSort sort, SortKey after, int limit);
+
+    /**
+     * Finds a page of the contacts celebrating their birthday within a number of days, ordered by the date of their
+     * next birthday, then by id. Contacts born on February 29 celebrate on February 28 in common years.
+     * <p>
+     * The next page starts on the birthday of the last contact of the page, after its id.
+     *
+     * @param from    first day
+     * @param days    number of days, up to a year of 365 days, so that each contact celebrates at most once
+     * @param afterId id of the last contact of the previous page, celebrating on {@code from}, or {@code null} for
+     *                the first page
+     * @param limit   maximum number of contacts in the page
+     * @return contacts celebrating their birthday from {@code from} on
+     */
+    Page<Contact> findBirthdays(LocalDate from, int days, Long afterId, int limit);
+
+    /**
+     * Searches the contacts whose name or notes contain every word of a text, regardless of case and diacritics.
+     *
+     * @param text  words to search for
+     * @param limit maximum number of contacts
+     * @return best matching contacts, most relevant first
+     */
+    List<Contact> searchContacts(String text, int limit);
+
+    /**
+     * Suggests the contacts with a name, a word of the name, an email address or a phone number starting with a
+     * prefix. Names are compared regardless of case and diacritics, phone numbers by digits only.
+     *
+     * @param prefix prefix typed so far
+     * @param limit  maximum number of contacts
+     * @return suggested contacts, favorites first
+     */
+    List<Contact> suggestContacts(String prefix, int limit);
+}
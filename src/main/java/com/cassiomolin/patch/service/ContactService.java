@@ -2,18 +2,128 @@ package com.cassiomolin.patch.service;
 
 import com.cassiomolin.patch.domain.Contact;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 public interface ContactService {
 
     Contact createContact(Contact contact);
 
+    /**
+     * Creates contacts in bulk. Ids are assigned in the order of the list.
+     *
+     * @param contacts contacts to be created
+     * @return created contacts
+     */
+    List<Contact> createContacts(List<Contact> contacts);
+
     List<Contact> findContacts();
 
+    /**
+     * Finds a page of contacts ordered by id.
+     * <p>
+     * Pages are delimited by key rather than by offset, so walking through the pages neither skips nor repeats
+     * contacts when other contacts are created or deleted concurrently.
+     *
+     * @param afterId id of the last contact of the previous page or {@code null} for the first page
+     * @param limit   maximum number of contacts in the page
+     * @return contacts with ids greater than {@code afterId}
+     */
+    Page<Contact> findContacts(Long afterId, int limit);
+
+    /**
+     * Finds the contacts with ids in a range, ordered by id.
+     * <p>
+     * Unlike pages, ranges don't depend on each other, so a scan of all contacts can read several ranges
+     * concurrently.
+     *
+     * @param fromId lowest id of the range, inclusive
+     * @param toId   highest id of the range, exclusive
+     * @return contacts with ids in the range, the page being the last if there are no contacts after the range
+     */
+    Page<Contact> findContactsInRange(long fromId, long toId);
+
+    /**
+     * Streams all contacts ordered by id.
+     * <p>
+     * Contacts are read lazily from the store as the stream is consumed. The stream is weakly consistent: contacts
+     * created, updated or deleted while it's consumed may or may not be reflected.
+     *
+     * @return contacts ordered by id
+     */
+    Stream<Contact> streamContacts();
+
     Optional<Contact> findContact(Long id);
 
     void updateContact(Contact contact);
 
+    /**
+     * Atomically updates a contact.
+     * <p>
+     * The update function receives a private copy of the current state of the contact and returns its new state, which
+     * replaces the stored contact as a whole, with the next version: readers never see a partially applied update. If the contact is updated
+     * concurrently, the function is applied again to the newer state, so it must be free of side effects. Any
+     * exception thrown by the function aborts the update.
+     *
+     * @param id     contact id
+     * @param update function that computes the new state of the contact
+     * @return updated contact or empty if there's no contact with the given id
+     */
+    Optional<Contact> updateContact(Long id, UnaryOperator<Contact> update);
+
     void deleteContact(Contact contact);
+
+    /**
+     * Atomically deletes a contact, once the precondition has accepted its current state.
+     * <p>
+     * The precondition throws an exception to abort the deletion. If the contact is updated concurrently, the
+     * precondition is checked again against the newer state.
+     *
+     * @param id           contact id
+     * @param precondition check performed on the current state of the contact
+     * @return deleted contact or empty if there's no contact with the given id
+     */
+    Optional<Contact> deleteContact(Long id, Consumer<Contact> precondition);
+
+    /**
+     * Registers a listener to be notified of every change made to contacts from now on.
+     *
+     * @param listener listener to be registered
+     */
+    void addChangeListener(ContactChangeListener listener);
+
+    /**
+     * Replaces all contacts with contacts restored from persistent storage. Listeners are only notified through
+     * {@link ContactChangeListener#contactsRestored()}.
+     * <p>
+     * Meant to be called on startup, before the service is in use: contacts are stored as they are, with their ids
+     * and versions, and ids of new contacts are generated after {@code lastId}.
+     *
+     * @param contacts contacts to be restored
+     * @param lastId   highest id ever assigned to a contact, including deleted contacts
+     */
+    default void restoreContacts(Collection<Contact> contacts, long lastId) {
+        restoreContacts(ContactSource.EMPTY, contacts, Collections.emptySet(), lastId);
+    }
+
+    /**
+     * Replaces all contacts with contacts restored from a snapshot and the changes made since. Listeners are only
+     * notified through {@link ContactChangeListener#contactsRestored()}.
+     * <p>
+     * Contacts of the snapshot are only decoded when first accessed, so the service is usable right away even for
+     * large snapshots. The snapshot must stay readable as long as the service is in use.
+     *
+     * @param snapshot   contacts of the snapshot
+     * @param changes    contacts created or updated since the snapshot, which replace the snapshot contacts with the
+     *                   same ids
+     * @param deletedIds ids of the contacts deleted since the snapshot
+     * @param lastId     highest id ever assigned to a contact, including deleted contacts
+     */
+    void restoreContacts(ContactSource snapshot, Collection<Contact> changes, Set<Long> deletedIds, long lastId);
 }
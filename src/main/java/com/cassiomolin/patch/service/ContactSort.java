@@ -0,0 +1,68 @@
+package com.cassiomolin.patch.service;
+
+import com.cassiomolin.patch.domain.Contact;
+import lombok.Value;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Order of the contacts found by a {@link ContactQueryService}: a {@link SortProperty}, ascending or descending, then
+ * the id in the same direction. Descending is the exact reverse of ascending, so contacts with no value for the
+ * property come last in ascending order and first in descending order.
+ */
+@Value
+public class ContactSort {
+
+    private final SortProperty property;
+
+    private final boolean descending;
+
+    /**
+     * Parses a sort such as {@code name} or {@code lastModifiedDateTime,desc}: a property, optionally followed by
+     * {@code asc} or {@code desc}.
+     *
+     * @param sort sort
+     * @return sort
+     * @throws IllegalArgumentException if the property or the direction is unknown
+     */
+    public static ContactSort parse(String sort) {
+        String[] parts = sort.split(",", -1);
+        if (parts.length > 2) {
+            throw new IllegalArgumentException("Expected a property and a direction");
+        }
+        SortProperty property = SortProperty.of(parts[0].trim());
+        if (property == null) {
+            throw new IllegalArgumentException("Unknown property '" + parts[0].trim() + "'");
+        }
+        String direction = parts.length == 1 ? "asc" : parts[1].trim().toLowerCase(Locale.ROOT);
+        if (!direction.equals("asc") && !direction.equals("desc")) {
+            throw new IllegalArgumentException("Unknown direction '" + parts[1].trim() + "'");
+        }
+        return new ContactSort(property, direction.equals("desc"));
+    }
+
+    /**
+     * Returns the sort key of a contact.
+     *
+     * @param contact contact
+     * @return sort key
+     */
+    public SortKey keyOf(Contact contact) {
+        return property.keyOf(contact);
+    }
+
+    /**
+     * Returns the comparator of the sort keys, in the order of the sort.
+     *
+     * @return comparator
+     */
+    public Comparator<SortKey> comparator() {
+        return descending ? Comparator.reverseOrder() : Comparator.naturalOrder();
+    }
+
+    @Override
+    public String toString() {
+        return property + (descending ? ",desc" : ",asc");
+    }
+}
@@ -0,0 +1,65 @@
+package com.cassiomolin.patch.service;
+
+import com.cassiomolin.patch.domain.Contact;
+
+/**
+ * Read-only contacts sorted by id, which are decoded on demand, such as the contacts of a persistent snapshot.
+ * <p>
+ * Contacts are addressed by their index in id order. Each call to {@link #contact(int)} returns a new instance.
+ */
+public interface ContactSource {
+
+    ContactSource EMPTY = new ContactSource() {
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public long id(int index) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+
+        @Override
+        public Contact contact(int index) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+    };
+
+    /**
+     * Returns the number of contacts.
+     */
+    int size();
+
+    /**
+     * Returns the id of the contact at the given index.
+     */
+    long id(int index);
+
+    /**
+     * Decodes the contact at the given index.
+     */
+    Contact contact(int index);
+
+    /**
+     * Returns the index of the contact with the given id or, if there's no such contact, {@code -(insertion point) - 1}
+     * like {@link java.util.Arrays#binarySearch(long[], long)}.
+     */
+    default int indexOf(long id) {
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = id(middle);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+}
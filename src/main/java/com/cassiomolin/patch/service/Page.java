@@ -0,0 +1,24 @@
+package com.cassiomolin.patch.service;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Slice of an ordered result set.
+ *
+ * @param <T> type of the items
+ */
+@Value
+public class Page<T> {
+
+    /**
+     * Items of the page, in order.
+     */
+    private final List<T> items;
+
+    /**
+     * Whether there are no items after the last item of the page.
+     */
+    private final boolean last;
+}
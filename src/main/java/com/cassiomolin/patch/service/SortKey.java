@@ -0,0 +1,39 @@
+package com.cassiomolin.patch.service;
+
+import lombok.Value;
+
+/**
+ * Position of a contact in the order of a {@link SortProperty}: the value of the property, then the id to break
+ * ties. Contacts with no value come after every other contact, as the greatest keys.
+ */
+@Value
+public class SortKey implements Comparable<SortKey> {
+
+    /**
+     * Value of the property or {@code null} if the contact has none.
+     */
+    private final Comparable<?> value;
+
+    /**
+     * Id of the contact.
+     */
+    private final long id;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int compareTo(SortKey other) {
+        if (value != other.value) {
+            if (value == null) {
+                return 1;
+            }
+            if (other.value == null) {
+                return -1;
+            }
+            int c = ((Comparable<Object>) value).compareTo(other.value);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Long.compare(id, other.id);
+    }
+}
@@ -0,0 +1,109 @@
+package com.cassiomolin.patch.service;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.index.Tokenizer;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Properties contacts can be sorted by.
+ * <p>
+ * Names are sorted regardless of case and diacritics and date-times by instant, whatever their offset. The
+ * properties kept in order by the {@link com.cassiomolin.patch.service.index.ContactSortIndex} are indexed; the
+ * others are sorted on demand.
+ */
+public enum SortProperty {
+
+    NAME("name", true, contact -> contact.getName() == null ? null : Tokenizer.fold(contact.getName()),
+            key -> key),
+
+    BIRTHDAY("birthday", false, Contact::getBirthday, LocalDate::parse),
+
+    WORK_COMPANY("work.company", false,
+            contact -> contact.getWork() == null ? null : contact.getWork().getCompany(), key -> key),
+
+    CREATED_DATE_TIME("createdDateTime", true, contact -> instant(contact.getCreatedDateTime()), Instant::parse),
+
+    LAST_MODIFIED_DATE_TIME("lastModifiedDateTime", true, contact -> instant(contact.getLastModifiedDateTime()),
+            Instant::parse);
+
+    private final String name;
+
+    private final boolean indexed;
+
+    private final Function<Contact, Comparable<?>> key;
+
+    private final Function<String, Comparable<?>> parser;
+
+    SortProperty(String name, boolean indexed, Function<Contact, Comparable<?>> key,
+                 Function<String, Comparable<?>> parser) {
+        this.name = name;
+        this.indexed = indexed;
+        this.key = key;
+        this.parser = parser;
+    }
+
+    /**
+     * Returns the property with the given name.
+     *
+     * @param name name of the property, as in the resources
+     * @return property or {@code null} if contacts can't be sorted by it
+     */
+    public static SortProperty of(String name) {
+        return Arrays.stream(values()).filter(property -> property.name.equals(name)).findFirst().orElse(null);
+    }
+
+    /**
+     * Returns whether the {@link com.cassiomolin.patch.service.index.ContactSortIndex} keeps contacts in the order
+     * of the property.
+     *
+     * @return {@code true} if the property is indexed
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Returns the sort key of a contact for the property.
+     *
+     * @param contact contact
+     * @return sort key
+     */
+    public SortKey keyOf(Contact contact) {
+        return new SortKey(key.apply(contact), contact.getId());
+    }
+
+    /**
+     * Formats a value of the property, as parsed by {@link #parse(String)}.
+     *
+     * @param value value of a sort key
+     * @return formatted value
+     */
+    public String format(Comparable<?> value) {
+        return value.toString();
+    }
+
+    /**
+     * Parses a value of the property.
+     *
+     * @param value formatted value
+     * @return value of a sort key
+     * @throws java.time.DateTimeException if the value isn't a valid date or date-time
+     */
+    public Comparable<?> parse(String value) {
+        return parser.apply(value);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static Instant instant(OffsetDateTime dateTime) {
+        return dateTime == null ? null : dateTime.toInstant();
+    }
+}
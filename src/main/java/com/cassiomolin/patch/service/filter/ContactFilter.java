@@ -0,0 +1,219 @@
+package com.cassiomolin.patch.service.filter;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.index.ContactAttributeIndex;
+import com.cassiomolin.patch.service.index.Postings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Filter over the properties of contacts, compiled from an expression in a subset of
+ * <a href="https://github.com/jirutka/rsql-parser">RSQL</a>, such as
+ * {@code birthday=lt=1990-01-01;work.company==*Acme*;phones.count=gt=2}.
+ * <p>
+ * An expression combines comparisons with {@code ;} (and) and {@code ,} (or), and takes precedence over or, and
+ * parentheses group comparisons. A comparison is a property, an operator and an argument: {@code ==}, {@code !=},
+ * {@code =lt=} or {@code <}, {@code =le=} or {@code <=}, {@code =gt=} or {@code >}, {@code =ge=} or {@code >=}, and
+ * {@code =in=} and {@code =out=}, which take a list of arguments such as {@code (friends,work)}. Arguments holding
+ * reserved characters or spaces are quoted with {@code '} or {@code "}. In {@code ==}, {@code !=}, {@code =in=} and
+ * {@code =out=}, {@code *} in a string argument matches any sequence of characters.
+ * <p>
+ * The properties are {@code id}, {@code version}, {@code name}, {@code birthday}, {@code work.title},
+ * {@code work.company}, {@code favorite}, {@code notes}, {@code createdDateTime}, {@code lastModifiedDateTime},
+ * {@code groups}, {@code emails}, {@code emails.type}, {@code phones}, {@code phones.type} and the number of groups,
+ * emails and phones as {@code groups.count}, {@code emails.count} and {@code phones.count}. Dates are ISO dates and
+ * date-times ISO date-times with an offset. Strings are compared as they are, except emails, compared regardless of
+ * case, and phone numbers, compared by digits only. A property with several values matches when any of its values
+ * does; a contact with no value matches {@code !=} and {@code =out=} only.
+ * <p>
+ * Filters are immutable and can be evaluated concurrently. The parts of a filter that secondary indexes can answer
+ * are exposed as {@link Postings}, so the contacts to evaluate can be narrowed down before reading them.
+ */
+public abstract class ContactFilter {
+
+    ContactFilter() {
+    }
+
+    /**
+     * Compiles a filter expression.
+     *
+     * @param expression filter expression
+     * @return filter
+     * @throws InvalidFilterException if the expression is invalid
+     */
+    public static ContactFilter parse(String expression) {
+        return new FilterParser(expression).parse();
+    }
+
+    /**
+     * Returns whether a contact matches the filter.
+     *
+     * @param contact contact
+     * @return {@code true} if the contact matches
+     */
+    public abstract boolean matches(Contact contact);
+
+    /**
+     * Returns the contacts that may match the filter according to the secondary indexes.
+     *
+     * @param index secondary indexes
+     * @return postings holding at least every matching contact or {@code null} if the indexes can't narrow the
+     * contacts down
+     */
+    public abstract Postings postings(ContactAttributeIndex index);
+
+    static ContactFilter and(List<ContactFilter> filters) {
+        return filters.size() == 1 ? filters.get(0) : new And(filters);
+    }
+
+    static ContactFilter or(List<ContactFilter> filters) {
+        return filters.size() == 1 ? filters.get(0) : new Or(filters);
+    }
+
+    static ContactFilter comparison(FilterSelector selector, FilterOperator operator, List<Object> arguments) {
+        return new Comparison(selector, operator, arguments);
+    }
+
+    private static final class And extends ContactFilter {
+
+        private final ContactFilter[] filters;
+
+        And(List<ContactFilter> filters) {
+            this.filters = filters.toArray(new ContactFilter[0]);
+        }
+
+        @Override
+        public boolean matches(Contact contact) {
+            for (ContactFilter filter : filters) {
+                if (!filter.matches(contact)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Postings postings(ContactAttributeIndex index) {
+            List<Postings> postings = new ArrayList<>();
+            for (ContactFilter filter : filters) {
+                Postings p = filter.postings(index);
+                if (p != null) {
+                    postings.add(p);
+                }
+            }
+            return postings.isEmpty() ? null : Postings.and(postings);
+        }
+
+        @Override
+        public String toString() {
+            return join(filters, ";");
+        }
+    }
+
+    private static final class Or extends ContactFilter {
+
+        private final ContactFilter[] filters;
+
+        Or(List<ContactFilter> filters) {
+            this.filters = filters.toArray(new ContactFilter[0]);
+        }
+
+        @Override
+        public boolean matches(Contact contact) {
+            for (ContactFilter filter : filters) {
+                if (filter.matches(contact)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Postings postings(ContactAttributeIndex index) {
+            List<Postings> postings = new ArrayList<>();
+            for (ContactFilter filter : filters) {
+                Postings p = filter.postings(index);
+                if (p == null) {
+                    return null;
+                }
+                postings.add(p);
+            }
+            return Postings.or(postings);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + join(filters, ",") + ")";
+        }
+    }
+
+    private static final class Comparison extends ContactFilter {
+
+        private final FilterSelector selector;
+
+        private final FilterOperator operator;
+
+        private final Object[] arguments;
+
+        private final boolean wildcards;
+
+        private final Predicate<Object> test = this::test;
+
+        Comparison(FilterSelector selector, FilterOperator operator, List<Object> arguments) {
+            this.selector = selector;
+            this.operator = operator;
+            this.arguments = arguments.toArray();
+            this.wildcards = arguments.stream().anyMatch(Wildcard.class::isInstance);
+        }
+
+        @Override
+        public boolean matches(Contact contact) {
+            return operator.isNegated() != selector.anyMatch(contact, test);
+        }
+
+        @Override
+        public Postings postings(ContactAttributeIndex index) {
+            if ((operator != FilterOperator.EQUAL && operator != FilterOperator.IN) || wildcards) {
+                return null;
+            }
+            List<Postings> postings = new ArrayList<>(arguments.length);
+            for (Object argument : arguments) {
+                Postings p = selector.postings(index, argument);
+                if (p == null) {
+                    return null;
+                }
+                postings.add(p);
+            }
+            return Postings.or(postings);
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean test(Object value) {
+            if (operator.isOrdering()) {
+                return operator.accepts(((Comparable<Object>) value).compareTo(arguments[0]));
+            }
+            for (Object argument : arguments) {
+                if (wildcards && argument instanceof Wildcard
+                        ? ((Wildcard) argument).matches((String) value) : argument.equals(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            String argument = operator.isMultiArgument()
+                    ? "(" + join(arguments, ",") + ")" : String.valueOf(arguments[0]);
+            return selector.getName() + operator + argument;
+        }
+    }
+
+    private static String join(Object[] elements, String separator) {
+        return Arrays.stream(elements).map(String::valueOf).collect(Collectors.joining(separator));
+    }
+}
@@ -0,0 +1,87 @@
+package com.cassiomolin.patch.service.filter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Comparison operators of filter expressions, in their FIQL form and, for the ordering operators, their shorter RSQL
+ * form.
+ */
+enum FilterOperator {
+
+    EQUAL("=="),
+    NOT_EQUAL("!="),
+    LESS_THAN("=lt=", "<"),
+    LESS_THAN_OR_EQUAL("=le=", "<="),
+    GREATER_THAN("=gt=", ">"),
+    GREATER_THAN_OR_EQUAL("=ge=", ">="),
+    IN("=in="),
+    NOT_IN("=out=");
+
+    private final List<String> symbols;
+
+    FilterOperator(String... symbols) {
+        this.symbols = Arrays.asList(symbols);
+    }
+
+    /**
+     * Returns the operator with the given symbol.
+     *
+     * @param symbol symbol, such as {@code ==} or {@code =lt=}
+     * @return operator or {@code null} if there's none with the symbol
+     */
+    static FilterOperator of(String symbol) {
+        for (FilterOperator operator : values()) {
+            if (operator.symbols.contains(symbol)) {
+                return operator;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the operator is the negation of {@link #EQUAL} or {@link #IN}, which matches contacts with no
+     * value at all.
+     */
+    boolean isNegated() {
+        return this == NOT_EQUAL || this == NOT_IN;
+    }
+
+    /**
+     * Returns whether the operator takes a list of arguments.
+     */
+    boolean isMultiArgument() {
+        return this == IN || this == NOT_IN;
+    }
+
+    /**
+     * Returns whether the operator compares values by their order rather than by equality.
+     */
+    boolean isOrdering() {
+        return this == LESS_THAN || this == LESS_THAN_OR_EQUAL || this == GREATER_THAN
+                || this == GREATER_THAN_OR_EQUAL;
+    }
+
+    /**
+     * Returns whether the result of comparing a value to an argument satisfies an ordering operator.
+     */
+    boolean accepts(int comparison) {
+        switch (this) {
+            case LESS_THAN:
+                return comparison < 0;
+            case LESS_THAN_OR_EQUAL:
+                return comparison <= 0;
+            case GREATER_THAN:
+                return comparison > 0;
+            case GREATER_THAN_OR_EQUAL:
+                return comparison >= 0;
+            default:
+                return comparison == 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return symbols.get(0);
+    }
+}
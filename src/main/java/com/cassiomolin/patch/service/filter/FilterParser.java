@@ -0,0 +1,196 @@
+package com.cassiomolin.patch.service.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive descent parser of filter expressions, as described in {@link ContactFilter}.
+ */
+final class FilterParser {
+
+    private static final String RESERVED = "\"'();,=!<>";
+
+    private final String expression;
+
+    private int position;
+
+    FilterParser(String expression) {
+        this.expression = expression;
+    }
+
+    ContactFilter parse() {
+        ContactFilter filter = or();
+        skipWhitespace();
+        if (position < expression.length()) {
+            throw error("Unexpected '" + expression.charAt(position) + "'");
+        }
+        return filter;
+    }
+
+    private ContactFilter or() {
+        List<ContactFilter> filters = new ArrayList<>();
+        filters.add(and());
+        while (accept(',')) {
+            filters.add(and());
+        }
+        return ContactFilter.or(filters);
+    }
+
+    private ContactFilter and() {
+        List<ContactFilter> filters = new ArrayList<>();
+        filters.add(constraint());
+        while (accept(';')) {
+            filters.add(constraint());
+        }
+        return ContactFilter.and(filters);
+    }
+
+    private ContactFilter constraint() {
+        if (accept('(')) {
+            ContactFilter filter = or();
+            expect(')');
+            return filter;
+        }
+        return comparison();
+    }
+
+    private ContactFilter comparison() {
+        skipWhitespace();
+        int start = position;
+        while (position < expression.length() && isSelectorChar(expression.charAt(position))) {
+            position++;
+        }
+        if (start == position) {
+            throw error(position < expression.length() ? "Expected a property" : "Unexpected end of filter");
+        }
+        String name = expression.substring(start, position);
+        FilterSelector selector = FilterSelector.of(name);
+        if (selector == null) {
+            position = start;
+            throw error("Unknown property '" + name + "'");
+        }
+
+        skipWhitespace();
+        int operatorStart = position;
+        FilterOperator operator = FilterOperator.of(operatorSymbol());
+        if (operator == null) {
+            position = operatorStart;
+            throw error("Expected an operator");
+        }
+        if (operator.isOrdering() && selector.getType() == FilterSelector.Type.BOOLEAN) {
+            position = operatorStart;
+            throw error("Operator " + operator + " doesn't apply to " + selector.getType() + " property '" + name
+                    + "'");
+        }
+
+        List<Object> arguments = new ArrayList<>();
+        if (operator.isMultiArgument()) {
+            expect('(');
+            do {
+                arguments.add(argument(selector, operator));
+            } while (accept(','));
+            expect(')');
+        } else {
+            arguments.add(argument(selector, operator));
+        }
+        return ContactFilter.comparison(selector, operator, arguments);
+    }
+
+    /**
+     * Reads the symbol of an operator: {@code =} followed by letters and {@code =}, or one of {@code == != < <= > >=}.
+     */
+    private String operatorSymbol() {
+        int start = position;
+        if (position < expression.length() && expression.charAt(position) == '=') {
+            position++;
+            while (position < expression.length() && Character.isLetter(expression.charAt(position))) {
+                position++;
+            }
+        } else if (position < expression.length() && "!<>".indexOf(expression.charAt(position)) >= 0) {
+            position++;
+        }
+        if (position < expression.length() && expression.charAt(position) == '=') {
+            position++;
+        }
+        return expression.substring(start, position);
+    }
+
+    private Object argument(FilterSelector selector, FilterOperator operator) {
+        skipWhitespace();
+        int start = position;
+        String value = value();
+        if (selector.getType() == FilterSelector.Type.STRING && !operator.isOrdering() && Wildcard.isPattern(value)) {
+            return new Wildcard(selector.parse(value).toString());
+        }
+        try {
+            return selector.parse(value);
+        } catch (IllegalArgumentException e) {
+            position = start;
+            throw error("Invalid " + selector.getType() + " '" + value + "' for property '" + selector.getName()
+                    + "'");
+        }
+    }
+
+    private String value() {
+        if (position >= expression.length()) {
+            throw error("Expected a value");
+        }
+        char quote = expression.charAt(position);
+        if (quote == '\'' || quote == '"') {
+            int start = position;
+            StringBuilder value = new StringBuilder();
+            position++;
+            while (position < expression.length() && expression.charAt(position) != quote) {
+                char c = expression.charAt(position++);
+                if (c == '\\' && position < expression.length()) {
+                    c = expression.charAt(position++);
+                }
+                value.append(c);
+            }
+            if (position >= expression.length()) {
+                position = start;
+                throw error("Unterminated string");
+            }
+            position++;
+            return value.toString();
+        }
+        int start = position;
+        while (position < expression.length() && !Character.isWhitespace(expression.charAt(position))
+                && RESERVED.indexOf(expression.charAt(position)) < 0) {
+            position++;
+        }
+        if (start == position) {
+            throw error("Expected a value");
+        }
+        return expression.substring(start, position);
+    }
+
+    private boolean accept(char c) {
+        skipWhitespace();
+        if (position < expression.length() && expression.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!accept(c)) {
+            throw error(position < expression.length() ? "Expected '" + c + "'" : "Unexpected end of filter");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+            position++;
+        }
+    }
+
+    private InvalidFilterException error(String message) {
+        return new InvalidFilterException(message, position);
+    }
+
+    private static boolean isSelectorChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '.' || c == '_';
+    }
+}
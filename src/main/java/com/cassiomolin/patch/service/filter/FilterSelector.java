@@ -0,0 +1,219 @@
+package com.cassiomolin.patch.service.filter;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.service.index.ContactAttributeIndex;
+import com.cassiomolin.patch.service.index.Postings;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Property of a contact that filter expressions compare, by its dotted path.
+ * <p>
+ * Multi-valued properties, such as the groups, match a comparison when any of their values does. Their number of
+ * values is exposed as a separate {@code count} property.
+ */
+final class FilterSelector {
+
+    private static final Map<String, FilterSelector> SELECTORS = new LinkedHashMap<>();
+
+    static {
+        single("id", Type.NUMBER, Contact::getId);
+        single("version", Type.NUMBER, Contact::getVersion);
+        single("name", Type.STRING, Contact::getName);
+        single("birthday", Type.DATE, Contact::getBirthday);
+        single("work.title", Type.STRING, contact -> contact.getWork() == null ? null : contact.getWork().getTitle());
+        single("work.company", Type.STRING, contact -> contact.getWork() == null ? null
+                : contact.getWork().getCompany());
+        single("favorite", Type.BOOLEAN, ContactAttributeIndex::isFavorite)
+                .indexedBy((index, value) -> Boolean.TRUE.equals(value) ? index.favorites() : null);
+        single("notes", Type.STRING, Contact::getNotes);
+        single("createdDateTime", Type.DATE_TIME, contact -> toInstant(contact.getCreatedDateTime()));
+        single("lastModifiedDateTime", Type.DATE_TIME, contact -> toInstant(contact.getLastModifiedDateTime()));
+        multi("groups", Type.STRING, Contact::getGroups, group -> group)
+                .indexedBy((index, value) -> index.group((String) value));
+        multi("emails", Type.STRING, Contact::getEmails,
+                email -> ContactAttributeIndex.normalizeEmail(email.getEmail()))
+                .normalizedBy(value -> value.trim().toLowerCase(Locale.ROOT))
+                .indexedBy((index, value) -> index.email((String) value));
+        multi("emails.type", Type.STRING, Contact::getEmails, Email::getType);
+        multi("phones", Type.STRING, Contact::getPhones,
+                phone -> ContactAttributeIndex.normalizePhone(phone.getPhone()))
+                .normalizedBy(value -> value.replaceAll("[^0-9*]", ""))
+                .indexedBy((index, value) -> index.phone((String) value));
+        multi("phones.type", Type.STRING, Contact::getPhones, Phone::getType);
+        single("groups.count", Type.NUMBER, contact -> count(contact.getGroups()));
+        single("emails.count", Type.NUMBER, contact -> count(contact.getEmails()));
+        single("phones.count", Type.NUMBER, contact -> count(contact.getPhones()));
+    }
+
+    private final String name;
+
+    private final Type type;
+
+    private final BiPredicate<Contact, Predicate<Object>> anyMatch;
+
+    private UnaryOperator<String> normalizer = UnaryOperator.identity();
+
+    private BiFunction<ContactAttributeIndex, Object, Postings> index;
+
+    private FilterSelector(String name, Type type, BiPredicate<Contact, Predicate<Object>> anyMatch) {
+        this.name = name;
+        this.type = type;
+        this.anyMatch = anyMatch;
+    }
+
+    /**
+     * Returns the selector with the given path.
+     *
+     * @param name dotted path of the property
+     * @return selector or {@code null} if there's no such property
+     */
+    static FilterSelector of(String name) {
+        return SELECTORS.get(name);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    /**
+     * Converts an argument of a comparison to the type of the property, normalized as its values are.
+     *
+     * @param argument argument as written in the expression
+     * @return value to compare the property to
+     * @throws IllegalArgumentException if the argument is not of the type of the property
+     */
+    Object parse(String argument) {
+        try {
+            return type.parse(type == Type.STRING ? normalizer.apply(argument) : argument);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns whether any value of the property of a contact satisfies a predicate.
+     */
+    boolean anyMatch(Contact contact, Predicate<Object> predicate) {
+        return anyMatch.test(contact, predicate);
+    }
+
+    /**
+     * Looks up the contacts whose property equals a value.
+     *
+     * @return postings of the contacts or {@code null} if the index can't tell them
+     */
+    Postings postings(ContactAttributeIndex index, Object value) {
+        return this.index == null ? null : this.index.apply(index, value);
+    }
+
+    private FilterSelector normalizedBy(UnaryOperator<String> normalizer) {
+        this.normalizer = normalizer;
+        return this;
+    }
+
+    private FilterSelector indexedBy(BiFunction<ContactAttributeIndex, Object, Postings> index) {
+        this.index = index;
+        return this;
+    }
+
+    private static FilterSelector single(String name, Type type, Function<Contact, Object> property) {
+        FilterSelector selector = new FilterSelector(name, type, (contact, predicate) -> {
+            Object value = property.apply(contact);
+            return value != null && predicate.test(value);
+        });
+        SELECTORS.put(name, selector);
+        return selector;
+    }
+
+    private static <E> FilterSelector multi(String name, Type type, Function<Contact, List<E>> elements,
+                                            Function<E, Object> property) {
+        FilterSelector selector = new FilterSelector(name, type, (contact, predicate) -> {
+            List<E> list = elements.apply(contact);
+            if (list == null) {
+                return false;
+            }
+            for (E element : list) {
+                Object value = element == null ? null : property.apply(element);
+                if (value != null && predicate.test(value)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        SELECTORS.put(name, selector);
+        return selector;
+    }
+
+    private static Object toInstant(OffsetDateTime dateTime) {
+        return dateTime == null ? null : dateTime.toInstant();
+    }
+
+    private static Long count(List<?> list) {
+        return list == null ? 0L : (long) list.size();
+    }
+
+    /**
+     * Type of the values of a property, which tells how arguments are parsed.
+     */
+    enum Type {
+
+        STRING {
+            @Override
+            Object parse(String argument) {
+                return argument;
+            }
+        },
+        NUMBER {
+            @Override
+            Object parse(String argument) {
+                return Long.valueOf(argument);
+            }
+        },
+        DATE {
+            @Override
+            Object parse(String argument) {
+                return LocalDate.parse(argument);
+            }
+        },
+        DATE_TIME {
+            @Override
+            Object parse(String argument) {
+                return OffsetDateTime.parse(argument).toInstant();
+            }
+        },
+        BOOLEAN {
+            @Override
+            Object parse(String argument) {
+                if (!argument.equals("true") && !argument.equals("false")) {
+                    throw new IllegalArgumentException("Not a boolean: " + argument);
+                }
+                return Boolean.valueOf(argument);
+            }
+        };
+
+        abstract Object parse(String argument);
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+}
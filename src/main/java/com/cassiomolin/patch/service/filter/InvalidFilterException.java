@@ -0,0 +1,23 @@
+package com.cassiomolin.patch.service.filter;
+
+/**
+ * Thrown when a filter expression can't be parsed.
+ */
+public class InvalidFilterException extends IllegalArgumentException {
+
+    private final int position;
+
+    public InvalidFilterException(String message, int position) {
+        super(message + " at position " + (position + 1));
+        this.position = position;
+    }
+
+    /**
+     * Returns the position in the expression where parsing failed.
+     *
+     * @return zero-based index of the offending character
+     */
+    public int getPosition() {
+        return position;
+    }
+}
@@ -0,0 +1,54 @@
+package com.cassiomolin.patch.service.filter;
+
+import java.util.regex.Pattern;
+
+/**
+ * String pattern in which {@code *} stands for any sequence of characters, matched without regular expressions.
+ */
+final class Wildcard {
+
+    private final String pattern;
+
+    private final String[] segments;
+
+    private final int minLength;
+
+    Wildcard(String pattern) {
+        this.pattern = pattern;
+        this.segments = pattern.split(Pattern.quote("*"), -1);
+        int length = 0;
+        for (String segment : segments) {
+            length += segment.length();
+        }
+        this.minLength = length;
+    }
+
+    /**
+     * Returns whether an argument holds a wildcard.
+     */
+    static boolean isPattern(String argument) {
+        return argument.indexOf('*') >= 0;
+    }
+
+    boolean matches(String value) {
+        int last = segments.length - 1;
+        if (value.length() < minLength || !value.startsWith(segments[0]) || !value.endsWith(segments[last])) {
+            return false;
+        }
+        int from = segments[0].length();
+        int to = value.length() - segments[last].length();
+        for (int i = 1; i < last; i++) {
+            int index = value.indexOf(segments[i], from);
+            if (index < 0 || index + segments[i].length() > to) {
+                return false;
+            }
+            from = index + segments[i].length();
+        }
+        return from <= to;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -0,0 +1,57 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactChangeListener;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * {@link ContactChangeListener}s registered with a service.
+ * <p>
+ * A change is already visible when listeners are notified, so a failing listener can't undo it. Every listener is
+ * still notified, then the first failure is rethrown, with the others suppressed, so the change isn't acknowledged to
+ * the caller as if it had been logged, indexed and so on.
+ */
+@Slf4j
+final class ContactChangeListeners {
+
+    private final List<ContactChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    void add(ContactChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    void contactChanged(Contact previous, Contact current) {
+        notify(listener -> listener.contactChanged(previous, current));
+    }
+
+    void contactsCreated(List<Contact> contacts) {
+        notify(listener -> listener.contactsCreated(contacts));
+    }
+
+    void contactsRestored() {
+        notify(ContactChangeListener::contactsRestored);
+    }
+
+    private void notify(Consumer<ContactChangeListener> notification) {
+        RuntimeException failure = null;
+        for (ContactChangeListener listener : listeners) {
+            try {
+                notification.accept(listener);
+            } catch (RuntimeException e) {
+                log.error("Contact change listener {} failed", listener, e);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.Page;
+import com.cassiomolin.patch.service.index.Postings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Finds the contacts matching a predicate by scanning the store in parallel, on a dedicated fork-join pool.
+ * <p>
+ * The ids are split in chunks of {@value #CHUNK_SIZE}, which the workers of the pool claim in ascending order and read
+ * independently, either as a range of the store or, when the indexes narrowed the contacts down, as the candidates of
+ * the chunk. Matches are gathered chunk by chunk and the scan stops as soon as the chunks completed in a row from the
+ * start hold more contacts than asked for, so a page of contacts costs at most a few chunks per worker past the
+ * contacts of the page.
+ * <p>
+ * The first chunk is read by the calling thread, so scans that end within it, such as pages of common matches, don't
+ * wait for the pool.
+ */
+@Component
+public class ContactScanner {
+
+    static final int CHUNK_SIZE = 4096;
+
+    private final ContactService service;
+
+    private final ForkJoinPool pool;
+
+    public ContactScanner(ContactService service, @Value("${contacts.scan.parallelism:0}") int parallelism) {
+        this.service = service;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Finds up to {@code limit + 1} contacts matching a predicate, the extra one telling whether there are more.
+     * <p>
+     * Like streams of contacts, scans are weakly consistent: contacts changed during the scan may or may not be
+     * reflected, but each contact returned matched the predicate when read.
+     *
+     * @param predicate  predicate the contacts must match
+     * @param candidates postings holding at least every matching contact or {@code null} to read every contact
+     * @param afterId    id of the last contact of the previous page or {@code null} for the first page
+     * @param limit      maximum number of contacts in the page
+     * @return matching contacts with ids greater than {@code afterId}, ordered by id
+     */
+    public List<Contact> scan(Predicate<Contact> predicate, Postings candidates, Long afterId, int limit) {
+        long fromId = afterId == null ? 1 : afterId + 1;
+        if (candidates != null && (fromId = candidates.next(fromId)) < 0) {
+            return new ArrayList<>();
+        }
+        Scan scan = new Scan(predicate, candidates, fromId, limit);
+        scan.work(1);
+        if (!scan.done) {
+            int parallelism = pool.getParallelism();
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    List<RecursiveAction> workers = new ArrayList<>(parallelism);
+                    for (int i = 0; i < parallelism; i++) {
+                        workers.add(new RecursiveAction() {
+                            @Override
+                            protected void compute() {
+                                scan.work(Long.MAX_VALUE);
+                            }
+                        });
+                    }
+                    ForkJoinTask.invokeAll(workers);
+                }
+            });
+        }
+        return scan.result();
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * State of a scan, shared by its workers.
+     */
+    private final class Scan {
+
+        private final Predicate<Contact> predicate;
+
+        private final Postings candidates;
+
+        private final long fromId;
+
+        private final int limit;
+
+        private final AtomicLong nextChunk = new AtomicLong();
+
+        private final Map<Long, List<Contact>> completed = new HashMap<>();
+
+        private final List<Contact> matches = new ArrayList<>();
+
+        private long contiguous;
+
+        private volatile long lastChunk = Long.MAX_VALUE;
+
+        private volatile boolean done;
+
+        Scan(Predicate<Contact> predicate, Postings candidates, long fromId, int limit) {
+            this.predicate = predicate;
+            this.candidates = candidates;
+            this.fromId = fromId;
+            this.limit = limit;
+        }
+
+        /**
+         * Claims and reads chunks until the scan is done or the given number of chunks was read.
+         */
+        void work(long maxChunks) {
+            for (long n = 0; n < maxChunks && !done; n++) {
+                long chunk = nextChunk.getAndIncrement();
+                if (chunk > lastChunk) {
+                    return;
+                }
+                long from = fromId + chunk * CHUNK_SIZE;
+                long to = from + CHUNK_SIZE;
+                if (candidates == null) {
+                    readRange(chunk, from, to);
+                } else {
+                    readCandidates(chunk, from, to);
+                }
+            }
+        }
+
+        private void readRange(long chunk, long from, long to) {
+            Page<Contact> page = service.findContactsInRange(from, to);
+            List<Contact> found = new ArrayList<>();
+            for (Contact contact : page.getItems()) {
+                if (predicate.test(contact)) {
+                    found.add(contact);
+                }
+            }
+            complete(chunk, found, page.isLast());
+        }
+
+        private void readCandidates(long chunk, long from, long to) {
+            List<Contact> found = new ArrayList<>();
+            long id = candidates.next(from);
+            while (id > 0 && id < to && !done) {
+                service.findContact(id).filter(predicate).ifPresent(found::add);
+                id = candidates.next(id + 1);
+            }
+            complete(chunk, found, id < 0);
+        }
+
+        /**
+         * Records the matches of a chunk and appends the chunks completed in a row to the result.
+         */
+        private synchronized void complete(long chunk, List<Contact> found, boolean last) {
+            if (last) {
+                lastChunk = Math.min(lastChunk, chunk);
+            }
+            completed.put(chunk, found);
+            List<Contact> next;
+            while (!done && (next = completed.remove(contiguous)) != null) {
+                matches.addAll(next);
+                done = matches.size() > limit || contiguous >= lastChunk;
+                contiguous++;
+            }
+        }
+
+        synchronized List<Contact> result() {
+            return matches.size() > limit + 1 ? new ArrayList<>(matches.subList(0, limit + 1)) : matches;
+        }
+    }
+}
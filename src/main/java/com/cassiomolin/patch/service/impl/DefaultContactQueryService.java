@@ -0,0 +1,328 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactQuery;
+import com.cassiomolin.patch.service.ContactQueryService;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.ContactSort;
+import com.cassiomolin.patch.service.Page;
+import com.cassiomolin.patch.service.SortKey;
+import com.cassiomolin.patch.service.index.BirthdayIndex;
+import com.cassiomolin.patch.service.index.ContactAttributeIndex;
+import com.cassiomolin.patch.service.index.ContactIndexes;
+import com.cassiomolin.patch.service.index.ContactSortIndex;
+import com.cassiomolin.patch.service.index.FullTextIndex;
+import com.cassiomolin.patch.service.index.Postings;
+import com.cassiomolin.patch.service.index.SuggestionIndex;
+import com.cassiomolin.patch.service.index.Tokenizer;
+import com.cassiomolin.patch.service.index.TopK;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link ContactQueryService} backed by the {@link ContactAttributeIndex}, the {@link FullTextIndex} and the
+ * {@link SuggestionIndex}.
+ * <p>
+ * When the query has indexed criteria, including the parts of its filter the indexes can answer, the postings of each
+ * criterion are intersected, leaping from the postings of the rarest term to the next id present in all of them, so
+ * only the candidate contacts are read from the store. Each contact is checked against the query once read, as it may
+ * have changed since it was indexed and the filter may have criteria the indexes can't answer. Up to a few thousand
+ * candidates are read by the calling thread; more candidates, or queries with no indexed criterion at all, are read
+ * by a parallel scan of the {@link ContactScanner}.
+ * <p>
+ * Sorted pages are read in order from the {@link ContactSortIndex} when the sort property is indexed, skipping the
+ * keys of the contacts that don't match the query, unless the indexes narrowed the contacts down to a few thousand
+ * candidates. Those candidates, and the contacts sorted by a property that isn't indexed, are offered to a
+ * {@link TopK} heap holding the contacts of the page, so sorting takes {@code O(n log k)} time and {@code O(k)}
+ * memory for a page of {@code k} contacts out of {@code n}.
+ * <p>
+ * Birthdays are read day by day from the buckets of the {@link BirthdayIndex}, so finding them takes time
+ * proportional to the number of contacts found rather than to the number of contacts in the store.
+ * <p>
+ * Searches and suggestions are ranked by their index and only the contacts of the results are read from the store.
+ * <p>
+ * Until the {@link ContactIndexes} are ready, as while they're built after a restore, every query is answered by
+ * scanning the contacts instead, the indexes being incomplete: matches are the same, but searches are ranked by id
+ * only.
+ */
+@Service
+@RequiredArgsConstructor
+public class DefaultContactQueryService implements ContactQueryService {
+
+    private final ContactService service;
+
+    private final ContactAttributeIndex index;
+
+    private final FullTextIndex fullTextIndex;
+
+    private final SuggestionIndex suggestionIndex;
+
+    private final ContactScanner scanner;
+
+    private final ContactSortIndex sortIndex;
+
+    private final BirthdayIndex birthdayIndex;
+
+    private final ContactIndexes indexes;
+
+    @Override
+    public Page<Contact> findContacts(ContactQuery query, Long afterId, int limit) {
+        List<Postings> postings = indexes.isReady() ? postingsOf(query) : Collections.emptyList();
+        Postings candidates = postings.isEmpty() ? null : Postings.and(postings);
+        List<Contact> result = candidates != null && candidates.size() <= ContactScanner.CHUNK_SIZE
+                ? lookup(query, candidates, afterId, limit)
+                : scanner.scan(query::matches, candidates, afterId, limit);
+        boolean last = result.size() <= limit;
+        return new Page<>(last ? result : result.subList(0, limit), last);
+    }
+
+    @Override
+    public Page<Contact> findContacts(ContactQuery query, ContactSort sort, SortKey after, int limit) {
+        boolean ready = indexes.isReady();
+        List<Postings> postings = ready ? postingsOf(query) : Collections.emptyList();
+        Postings candidates = postings.isEmpty() ? null : Postings.and(postings);
+        NavigableSet<SortKey> keys = ready ? sortIndex.keys(sort, after) : null;
+        List<Contact> result = keys != null && (candidates == null || candidates.size() > ContactScanner.CHUNK_SIZE)
+                ? walk(query, sort, keys, candidates, limit)
+                : select(query, sort, candidates, after, limit);
+        boolean last = result.size() <= limit;
+        return new Page<>(last ? result : result.subList(0, limit), last);
+    }
+
+    @Override
+    public Page<Contact> findBirthdays(LocalDate from, int days, Long afterId, int limit) {
+        List<Contact> result = indexes.isReady() ? celebrating(from, days, afterId, limit)
+                : scanBirthdays(from, days, afterId, limit);
+        boolean last = result.size() <= limit;
+        return new Page<>(last ? result : result.subList(0, limit), last);
+    }
+
+    @Override
+    public List<Contact> searchContacts(String text, int limit) {
+        Set<String> terms = Tokenizer.tokenize(text);
+        if (!indexes.isReady()) {
+            if (terms.isEmpty()) {
+                return new ArrayList<>();
+            }
+            List<Contact> result = scanner.scan(contact -> matches(contact, terms), null, null, limit);
+            return result.size() <= limit ? result : result.subList(0, limit);
+        }
+        List<Contact> result = new ArrayList<>();
+        for (Long id : fullTextIndex.search(terms, limit)) {
+            service.findContact(id).filter(contact -> matches(contact, terms)).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Contact> suggestContacts(String prefix, int limit) {
+        if (!indexes.isReady()) {
+            return scanSuggestions(prefix, limit);
+        }
+        List<Contact> result = new ArrayList<>();
+        for (Long id : suggestionIndex.suggest(prefix, limit)) {
+            service.findContact(id).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Reads up to {@code limit + 1} contacts celebrating their birthday from the buckets of the birthday index, the
+     * extra one telling whether there are more.
+     */
+    private List<Contact> celebrating(LocalDate from, int days, Long afterId, int limit) {
+        List<Contact> result = new ArrayList<>(Math.min(limit + 1, 1024));
+        for (int i = 0; i < days && result.size() <= limit; i++) {
+            LocalDate date = from.plusDays(i);
+            long after = i == 0 && afterId != null ? afterId : 0;
+            for (Long id : birthdayIndex.celebrating(date, after)) {
+                if (result.size() > limit) {
+                    break;
+                }
+                service.findContact(id)
+                        .filter(contact -> BirthdayIndex.celebrates(contact, date))
+                        .ifPresent(result::add);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Selects up to {@code limit + 1} contacts celebrating their birthday from every contact, in the order of the
+     * birthday index: by date, then by id.
+     */
+    private List<Contact> scanBirthdays(LocalDate from, int days, Long afterId, int limit) {
+        TopK<Birthday> top = new TopK<>(limit + 1, Comparator.comparingLong((Birthday birthday) -> birthday.day)
+                .thenComparingLong(birthday -> birthday.contact.getId()));
+        try (Stream<Contact> contacts = service.streamContacts()) {
+            contacts.filter(contact -> contact.getBirthday() != null).forEach(contact -> {
+                long day = ChronoUnit.DAYS.between(from, BirthdayIndex.nextBirthday(contact.getBirthday(), from));
+                if (day < days && (day > 0 || afterId == null || contact.getId() > afterId)) {
+                    top.offer(new Birthday(day, contact));
+                }
+            });
+        }
+        return top.toList().stream().map(birthday -> birthday.contact).collect(Collectors.toList());
+    }
+
+    /**
+     * Selects the best ranked suggestions from every contact.
+     */
+    private List<Contact> scanSuggestions(String prefix, int limit) {
+        ToLongFunction<Contact> ranking = SuggestionIndex.ranking(prefix);
+        TopK<Suggestion> top = new TopK<>(limit, Comparator.comparingLong((Suggestion suggestion) -> suggestion.rank));
+        try (Stream<Contact> contacts = service.streamContacts()) {
+            contacts.forEach(contact -> {
+                long rank = ranking.applyAsLong(contact);
+                if (rank >= 0) {
+                    top.offer(new Suggestion(rank, contact));
+                }
+            });
+        }
+        return top.toList().stream().map(suggestion -> suggestion.contact).collect(Collectors.toList());
+    }
+
+    private List<Postings> postingsOf(ContactQuery query) {
+        List<Postings> postings = new ArrayList<>(4);
+        if (query.getGroup() != null) {
+            postings.add(index.group(query.getGroup()));
+        }
+        if (Boolean.TRUE.equals(query.getFavorite())) {
+            postings.add(index.favorites());
+        }
+        if (query.getEmail() != null) {
+            postings.add(index.email(query.getEmail()));
+        }
+        if (query.getPhone() != null) {
+            postings.add(index.phone(query.getPhone()));
+        }
+        if (query.getFilter() != null) {
+            Postings filtered = query.getFilter().postings(index);
+            if (filtered != null) {
+                postings.add(filtered);
+            }
+        }
+        return postings;
+    }
+
+    /**
+     * Reads up to {@code limit + 1} matching contacts, the extra one telling whether there are more.
+     */
+    private List<Contact> lookup(ContactQuery query, Postings candidates, Long afterId, int limit) {
+        List<Contact> result = new ArrayList<>(Math.min(limit + 1, 1024));
+        long id = afterId == null ? 1 : afterId + 1;
+        while (result.size() <= limit && (id = candidates.next(id)) > 0) {
+            service.findContact(id).filter(query::matches).ifPresent(result::add);
+            id++;
+        }
+        return result;
+    }
+
+    /**
+     * Reads up to {@code limit + 1} matching contacts in the order of the sort index, the extra one telling whether
+     * there are more. Contacts read with a key other than the one walked are skipped, as they are found at the
+     * position of their current key instead.
+     */
+    private List<Contact> walk(ContactQuery query, ContactSort sort, NavigableSet<SortKey> keys, Postings candidates,
+                               int limit) {
+        List<Contact> result = new ArrayList<>(Math.min(limit + 1, 1024));
+        Set<Long> ids = new HashSet<>();
+        for (SortKey key : keys) {
+            if (result.size() > limit) {
+                break;
+            }
+            if (candidates == null || candidates.contains(key.getId())) {
+                service.findContact(key.getId())
+                        .filter(contact -> key.equals(sort.keyOf(contact)) && query.matches(contact))
+                        .filter(contact -> ids.add(contact.getId()))
+                        .ifPresent(result::add);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Selects up to {@code limit + 1} matching contacts in the order of the sort from the candidates or, if there are
+     * none, from every contact, the extra one telling whether there are more.
+     */
+    private List<Contact> select(ContactQuery query, ContactSort sort, Postings candidates, SortKey after,
+                                 int limit) {
+        Comparator<SortKey> order = sort.comparator();
+        TopK<Hit> top = new TopK<>(limit + 1, Comparator.comparing((Hit hit) -> hit.key, order));
+        Consumer<Contact> offer = contact -> {
+            SortKey key = sort.keyOf(contact);
+            if ((after == null || order.compare(key, after) > 0) && query.matches(contact)) {
+                top.offer(new Hit(key, contact));
+            }
+        };
+        if (candidates == null) {
+            try (Stream<Contact> contacts = service.streamContacts()) {
+                contacts.forEach(offer);
+            }
+        } else {
+            for (long id = candidates.next(1); id > 0; id = candidates.next(id + 1)) {
+                service.findContact(id).ifPresent(offer);
+            }
+        }
+        return top.toList().stream().map(hit -> hit.contact).collect(Collectors.toList());
+    }
+
+    private static boolean matches(Contact contact, Set<String> terms) {
+        Set<String> name = Tokenizer.tokenize(contact.getName());
+        Set<String> notes = Tokenizer.tokenize(contact.getNotes());
+        return terms.stream().allMatch(term -> name.contains(term) || notes.contains(term));
+    }
+
+    private static final class Hit {
+
+        final SortKey key;
+
+        final Contact contact;
+
+        Hit(SortKey key, Contact contact) {
+            this.key = key;
+            this.contact = contact;
+        }
+    }
+
+    private static final class Birthday {
+
+        /**
+         * Days from the first date of the query to the next birthday of the contact.
+         */
+        final long day;
+
+        final Contact contact;
+
+        Birthday(long day, Contact contact) {
+            this.day = day;
+            this.contact = contact;
+        }
+    }
+
+    private static final class Suggestion {
+
+        final long rank;
+
+        final Contact contact;
+
+        Suggestion(long rank, Contact contact) {
+            this.rank = rank;
+            this.contact = contact;
+        }
+    }
+}
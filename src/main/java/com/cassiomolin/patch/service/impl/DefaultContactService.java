@@ -1,52 +1,395 @@
 package com.cassiomolin.patch.service.impl;
 
 import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactChangeListener;
 import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.ContactSource;
+import com.cassiomolin.patch.service.Page;
+import com.cassiomolin.patch.service.store.ContactRecord;
+import com.cassiomolin.patch.service.store.LongConcurrentHashMap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * In-memory {@link ContactService}.
+ * <p>
+ * Contacts are stored as immutable {@link ContactRecord}s, which take a fraction of the memory of a {@link Contact},
+ * and a new {@link Contact} is built from its record on every read. An update works on a contact built from the
+ * current record and publishes the new record with a compare-and-set on the store, retrying if the contact changed in
+ * the meantime. The store lock is only held for the swap itself, so updates to different contacts don't contend.
+ * <p>
+ * Every contact carries a version, which starts at 1 and is incremented by each update. Ids are also kept in a sorted
+ * set, so pages of contacts are read in id order without sorting the whole store.
+ * <p>
+ * Registered {@link ContactChangeListener}s are notified after each successful change, by the thread that made it.
+ * <p>
+ * Contacts restored from a snapshot are left in the snapshot until first accessed. A lookup that misses the store
+ * falls back to the snapshot, decodes the contact and publishes it in the store, after which the snapshot copy is
+ * never read again. Pages and streams read the snapshot contacts not yet published without publishing them, merging
+ * them with the store in id order.
+ */
 @Service
+@ConditionalOnProperty(name = "contacts.store", havingValue = "heap", matchIfMissing = true)
 public class DefaultContactService implements ContactService {
 
-    private static final List<Contact> CONTACTS = new ArrayList<>();
+    private final LongConcurrentHashMap<ContactRecord> contacts = new LongConcurrentHashMap<>();
 
-    private static final AtomicLong ID_GENERATOR = new AtomicLong();
+    private final ConcurrentSkipListSet<Long> ids = new ConcurrentSkipListSet<>();
+
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    private final ContactChangeListeners listeners = new ContactChangeListeners();
+
+    private volatile RestoredContacts restored = new RestoredContacts(ContactSource.EMPTY);
 
     @Override
     public Contact createContact(Contact contact) {
-        contact.setId(ID_GENERATOR.incrementAndGet());
-        contact.setCreatedDateTime(OffsetDateTime.now(ZoneOffset.UTC));
-        contact.setLastModifiedDateTime(OffsetDateTime.now(ZoneOffset.UTC));
-        CONTACTS.add(contact);
+        OffsetDateTime now = now();
+        contact.setId(idGenerator.incrementAndGet());
+        contact.setCreatedDateTime(now);
+        contact.setLastModifiedDateTime(now);
+        contact.setVersion(1L);
+        contacts.put(contact.getId(), ContactRecord.of(contact));
+        ids.add(contact.getId());
+        listeners.contactChanged(null, contact);
         return contact;
     }
 
+    @Override
+    public List<Contact> createContacts(List<Contact> contacts) {
+        long id = idGenerator.getAndAdd(contacts.size());
+        OffsetDateTime now = now();
+        for (Contact contact : contacts) {
+            contact.setId(++id);
+            contact.setCreatedDateTime(now);
+            contact.setLastModifiedDateTime(now);
+            contact.setVersion(1L);
+            this.contacts.put(contact.getId(), ContactRecord.of(contact));
+            ids.add(contact.getId());
+        }
+        listeners.contactsCreated(contacts);
+        return contacts;
+    }
+
     @Override
     public List<Contact> findContacts() {
-        return CONTACTS;
+        return streamContacts().collect(Collectors.toList());
+    }
+
+    @Override
+    public Page<Contact> findContacts(Long afterId, int limit) {
+        Iterator<Contact> iterator = new ContactIterator(afterId);
+        List<Contact> result = new ArrayList<>(Math.min(limit, 1024));
+        while (result.size() < limit && iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return new Page<>(result, !iterator.hasNext());
+    }
+
+    @Override
+    public Page<Contact> findContactsInRange(long fromId, long toId) {
+        Iterator<Contact> iterator = new ContactIterator(fromId - 1);
+        List<Contact> result = new ArrayList<>();
+        while (iterator.hasNext()) {
+            Contact contact = iterator.next();
+            if (contact.getId() >= toId) {
+                return new Page<>(result, false);
+            }
+            result.add(contact);
+        }
+        return new Page<>(result, true);
+    }
+
+    @Override
+    public Stream<Contact> streamContacts() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new ContactIterator(null),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
     }
 
     @Override
     public Optional<Contact> findContact(Long id) {
-        return CONTACTS.stream()
-                .filter(contact -> id.equals(contact.getId()))
-                .findFirst();
+        ContactRecord record = get(id);
+        return record == null ? Optional.empty() : Optional.of(record.toContact());
     }
 
     @Override
     public void updateContact(Contact contact) {
-        contact.setLastModifiedDateTime(OffsetDateTime.now(ZoneOffset.UTC));
-        CONTACTS.set(CONTACTS.indexOf(contact), contact);
+        updateContact(contact.getId(), current -> contact);
+    }
+
+    @Override
+    public Optional<Contact> updateContact(Long id, UnaryOperator<Contact> update) {
+        for (;;) {
+            ContactRecord record = get(id);
+            if (record == null) {
+                return Optional.empty();
+            }
+            Contact current = record.toContact();
+            Contact updated = update.apply(record.toContact());
+            updated.setId(current.getId());
+            updated.setCreatedDateTime(current.getCreatedDateTime());
+            updated.setLastModifiedDateTime(now());
+            updated.setVersion(current.getVersion() + 1);
+            if (contacts.replace(id, record, ContactRecord.of(updated))) {
+                listeners.contactChanged(current, updated);
+                return Optional.of(updated);
+            }
+        }
     }
 
     @Override
     public void deleteContact(Contact contact) {
-        CONTACTS.remove(contact);
+        get(contact.getId());
+        ContactRecord removed = contacts.remove(contact.getId());
+        if (removed != null) {
+            ids.remove(contact.getId());
+            listeners.contactChanged(removed.toContact(), null);
+        }
+    }
+
+    @Override
+    public Optional<Contact> deleteContact(Long id, Consumer<Contact> precondition) {
+        for (;;) {
+            ContactRecord record = get(id);
+            if (record == null) {
+                return Optional.empty();
+            }
+            Contact current = record.toContact();
+            precondition.accept(current);
+            if (contacts.remove(id, record)) {
+                ids.remove(id);
+                listeners.contactChanged(current, null);
+                return Optional.of(current);
+            }
+        }
+    }
+
+    @Override
+    public void addChangeListener(ContactChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void restoreContacts(ContactSource snapshot, Collection<Contact> changes, Set<Long> deletedIds,
+                                long lastId) {
+        RestoredContacts restored = new RestoredContacts(snapshot);
+        contacts.clear();
+        ids.clear();
+        long maxId = snapshot.size() == 0 ? lastId : Math.max(lastId, snapshot.id(snapshot.size() - 1));
+        for (Contact contact : changes) {
+            contacts.put(contact.getId(), ContactRecord.of(contact));
+            int index = snapshot.indexOf(contact.getId());
+            if (index >= 0) {
+                restored.setState(index, RestoredContacts.PUBLISHED);
+            } else {
+                ids.add(contact.getId());
+            }
+            maxId = Math.max(maxId, contact.getId());
+        }
+        for (long id : deletedIds) {
+            int index = snapshot.indexOf(id);
+            if (index >= 0) {
+                restored.setState(index, RestoredContacts.PUBLISHED);
+            }
+        }
+        this.restored = restored;
+        idGenerator.set(maxId);
+        listeners.contactsRestored();
+    }
+
+    /**
+     * Returns the contact with the given id, publishing it in the store first if it's only in the snapshot.
+     */
+    private ContactRecord get(long id) {
+        ContactRecord record = contacts.get(id);
+        if (record != null) {
+            return record;
+        }
+        RestoredContacts restored = this.restored;
+        int index = restored.source.size() == 0 ? -1 : restored.source.indexOf(id);
+        if (index < 0) {
+            return null;
+        }
+        for (;;) {
+            switch (restored.getState(index)) {
+                case RestoredContacts.IN_SNAPSHOT:
+                    if (restored.compareAndSetState(index, RestoredContacts.IN_SNAPSHOT, RestoredContacts.DECODING)) {
+                        try {
+                            contacts.putIfAbsent(id, ContactRecord.of(restored.source.contact(index)));
+                        } catch (RuntimeException e) {
+                            restored.setState(index, RestoredContacts.IN_SNAPSHOT);
+                            throw e;
+                        }
+                        restored.setState(index, RestoredContacts.PUBLISHED);
+                    }
+                    break;
+                case RestoredContacts.DECODING:
+                    Thread.onSpinWait();
+                    break;
+                default:
+                    return contacts.get(id);
+            }
+        }
+    }
+
+    /**
+     * Returns the contact at the given index of the snapshot, without publishing it in the store.
+     */
+    private Contact peek(RestoredContacts restored, int index) {
+        for (;;) {
+            switch (restored.getState(index)) {
+                case RestoredContacts.IN_SNAPSHOT:
+                    return restored.source.contact(index);
+                case RestoredContacts.DECODING:
+                    Thread.onSpinWait();
+                    break;
+                default:
+                    ContactRecord record = contacts.get(restored.source.id(index));
+                    return record == null ? null : record.toContact();
+            }
+        }
+    }
+
+    /**
+     * Returns the current time at the precision of a {@link ContactRecord}, so the contacts returned by writes are
+     * equal to the contacts read afterwards.
+     */
+    private static OffsetDateTime now() {
+        return ContactRecord.truncate(OffsetDateTime.now(ZoneOffset.UTC));
+    }
+
+    /**
+     * Iterates over the contacts in id order, merging the contacts of the store with the contacts of the snapshot.
+     */
+    private final class ContactIterator implements Iterator<Contact> {
+
+        private final RestoredContacts restored = DefaultContactService.this.restored;
+
+        private final Iterator<Long> storedIds;
+
+        private int index;
+
+        private Long storedId;
+
+        private Contact next;
+
+        ContactIterator(Long afterId) {
+            if (afterId == null) {
+                storedIds = ids.iterator();
+            } else {
+                storedIds = ids.tailSet(afterId, false).iterator();
+                int afterIndex = restored.source.size() == 0 ? -1 : restored.source.indexOf(afterId);
+                index = afterIndex >= 0 ? afterIndex + 1 : -afterIndex - 1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (storedId == null && storedIds.hasNext()) {
+                    storedId = storedIds.next();
+                }
+                boolean inSnapshot = index < restored.source.size();
+                if (!inSnapshot && storedId == null) {
+                    return false;
+                }
+                if (inSnapshot && (storedId == null || restored.source.id(index) < storedId)) {
+                    next = peek(restored, index++);
+                } else {
+                    if (inSnapshot && restored.source.id(index) == storedId) {
+                        index++;
+                    }
+                    ContactRecord record = contacts.get(storedId);
+                    next = record == null ? null : record.toContact();
+                    storedId = null;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Contact next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Contact contact = next;
+            next = null;
+            return contact;
+        }
+    }
+
+    /**
+     * Contacts of a snapshot along with their state, packed in two bits per contact: still only in the snapshot,
+     * being decoded by a thread or published in the store, which from then on is the only place to look for them.
+     */
+    private static final class RestoredContacts {
+
+        static final int IN_SNAPSHOT = 0;
+
+        static final int DECODING = 1;
+
+        static final int PUBLISHED = 2;
+
+        final ContactSource source;
+
+        private final AtomicLongArray states;
+
+        RestoredContacts(ContactSource source) {
+            this.source = source;
+            this.states = new AtomicLongArray((source.size() + 31) >>> 5);
+        }
+
+        int getState(int index) {
+            return (int) (states.get(index >>> 5) >>> shift(index)) & 3;
+        }
+
+        boolean compareAndSetState(int index, int expected, int state) {
+            for (;;) {
+                long word = states.get(index >>> 5);
+                if (((int) (word >>> shift(index)) & 3) != expected) {
+                    return false;
+                }
+                if (states.compareAndSet(index >>> 5, word, with(word, index, state))) {
+                    return true;
+                }
+            }
+        }
+
+        void setState(int index, int state) {
+            for (;;) {
+                long word = states.get(index >>> 5);
+                if (states.compareAndSet(index >>> 5, word, with(word, index, state))) {
+                    return;
+                }
+            }
+        }
+
+        private static long with(long word, int index, int state) {
+            return word & ~(3L << shift(index)) | (long) state << shift(index);
+        }
+
+        private static int shift(int index) {
+            return (index & 31) << 1;
+        }
     }
-}
\ No newline at end of file
+}
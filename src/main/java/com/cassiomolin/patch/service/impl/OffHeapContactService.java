@@ -0,0 +1,618 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactChangeListener;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.ContactSource;
+import com.cassiomolin.patch.service.Page;
+import com.cassiomolin.patch.service.store.ContactCodec;
+import com.cassiomolin.patch.service.store.ContactSlabs;
+import com.cassiomolin.patch.service.store.LongConcurrentHashMap;
+import com.cassiomolin.patch.service.store.LongLongHashMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link ContactService} keeping contacts off the heap, for stores too large for the heap and the garbage collector.
+ * <p>
+ * Contacts are stored encoded in {@link ContactSlabs} and only the index lives on the heap: a {@link LongLongHashMap}
+ * from id to record address and a sorted array of ids, about 35 bytes per contact. Each read decodes a new instance of
+ * the contact, which is never shared with other callers.
+ * <p>
+ * Like {@link LongConcurrentHashMap}, contacts are spread by id over {@value #STRIPES} stripes, each with its own
+ * index, its own slabs and its own {@link StampedLock}, so writes only contend with writes to the same stripe. Reads
+ * copy the record of the contact under an optimistic read, retried under the read lock if a write to the stripe got
+ * in the way, and decode the copy outside the lock. The array of ids has a lock of its own, taken by creations before
+ * the lock of the stripe.
+ * <p>
+ * Update functions and delete preconditions run outside the locks, against the state read beforehand: like
+ * {@link DefaultContactService}, the change is only applied if the contact is still at the same address, and retried
+ * otherwise.
+ * <p>
+ * Space left by updates and deletes is reclaimed by a background thread, which compacts the slabs of a stripe one at a
+ * time once half of their bytes are garbage, so writes don't wait for records to be copied.
+ * <p>
+ * Contacts restored from a snapshot are copied to the slabs right away rather than decoded on first access.
+ */
+@Service
+@ConditionalOnProperty(name = "contacts.store", havingValue = "off-heap")
+public class OffHeapContactService implements ContactService {
+
+    private static final long NO_ADDRESS = -1;
+
+    private static final int STREAM_BATCH_SIZE = 256;
+
+    private static final int STRIPES = 16;
+
+    private static final int MIN_SLAB_SIZE = 4096;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * Guards the array of ids and the last id.
+     */
+    private final StampedLock idLock = new StampedLock();
+
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("off-heap-compactor-%d")
+            .setDaemon(true)
+            .build());
+
+    private final ContactChangeListeners listeners = new ContactChangeListeners();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private long[] ids = new long[1024];
+
+    private int idCount;
+
+    private long lastId;
+
+    /**
+     * @param slabSize size of the slabs of all stripes together, each stripe allocating slabs of its share of it
+     */
+    public OffHeapContactService(@Value("${contacts.off-heap.slab-size:16777216}") int slabSize) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(new ContactSlabs(Math.max(slabSize / STRIPES, MIN_SLAB_SIZE)));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compactor.shutdownNow();
+    }
+
+    @Override
+    public Contact createContact(Contact contact) {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        long stamp = idLock.writeLock();
+        try {
+            store(contact, now);
+        } finally {
+            idLock.unlockWrite(stamp);
+        }
+        listeners.contactChanged(null, contact);
+        return contact;
+    }
+
+    @Override
+    public List<Contact> createContacts(List<Contact> contacts) {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        long stamp = idLock.writeLock();
+        try {
+            for (Contact contact : contacts) {
+                store(contact, now);
+            }
+        } finally {
+            idLock.unlockWrite(stamp);
+        }
+        listeners.contactsCreated(contacts);
+        return contacts;
+    }
+
+    @Override
+    public List<Contact> findContacts() {
+        return streamContacts().collect(Collectors.toList());
+    }
+
+    @Override
+    public Page<Contact> findContacts(Long afterId, int limit) {
+        List<Contact> result = new ArrayList<>(Math.min(limit, 1024));
+        long stamp = idLock.readLock();
+        try {
+            int i = afterId == null ? 0 : indexAfter(afterId);
+            for (; i < idCount && result.size() < limit; i++) {
+                Contact contact = stripeOf(ids[i]).read(ids[i]);
+                if (contact != null) {
+                    result.add(contact);
+                }
+            }
+            while (i < idCount && !stripeOf(ids[i]).contains(ids[i])) {
+                i++;
+            }
+            return new Page<>(result, i == idCount);
+        } finally {
+            idLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Page<Contact> findContactsInRange(long fromId, long toId) {
+        List<Contact> result = new ArrayList<>();
+        long stamp = idLock.readLock();
+        try {
+            int i = indexAfter(fromId - 1);
+            for (; i < idCount && ids[i] < toId; i++) {
+                Contact contact = stripeOf(ids[i]).read(ids[i]);
+                if (contact != null) {
+                    result.add(contact);
+                }
+            }
+            while (i < idCount && !stripeOf(ids[i]).contains(ids[i])) {
+                i++;
+            }
+            return new Page<>(result, i == idCount);
+        } finally {
+            idLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Stream<Contact> streamContacts() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new ContactIterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public Optional<Contact> findContact(Long id) {
+        return Optional.ofNullable(stripeOf(id).read(id));
+    }
+
+    @Override
+    public void updateContact(Contact contact) {
+        updateContact(contact.getId(), current -> contact);
+    }
+
+    @Override
+    public Optional<Contact> updateContact(Long id, UnaryOperator<Contact> update) {
+        Stripe stripe = stripeOf(id);
+        for (;;) {
+            EncodedContact record = stripe.find(id);
+            if (record == null) {
+                return Optional.empty();
+            }
+            Contact current = record.decode();
+            Contact updated = update.apply(record.decode());
+            updated.setId(current.getId());
+            updated.setCreatedDateTime(current.getCreatedDateTime());
+            updated.setLastModifiedDateTime(OffsetDateTime.now(ZoneOffset.UTC));
+            updated.setVersion(current.getVersion() + 1);
+            if (!stripe.replace(id, record.address, updated)) {
+                continue;
+            }
+            listeners.contactChanged(current, updated);
+            return Optional.of(updated);
+        }
+    }
+
+    @Override
+    public void deleteContact(Contact contact) {
+        EncodedContact removed = stripeOf(contact.getId()).remove(contact.getId(), NO_ADDRESS);
+        if (removed != null) {
+            released();
+            listeners.contactChanged(removed.decode(), null);
+        }
+    }
+
+    @Override
+    public Optional<Contact> deleteContact(Long id, Consumer<Contact> precondition) {
+        Stripe stripe = stripeOf(id);
+        for (;;) {
+            EncodedContact record = stripe.find(id);
+            if (record == null) {
+                return Optional.empty();
+            }
+            Contact current = record.decode();
+            precondition.accept(current);
+            if (stripe.remove(id, record.address) == null) {
+                continue;
+            }
+            released();
+            listeners.contactChanged(current, null);
+            return Optional.of(current);
+        }
+    }
+
+    @Override
+    public void addChangeListener(ContactChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void restoreContacts(ContactSource snapshot, Collection<Contact> changes, Set<Long> deletedIds,
+                                long lastId) {
+        Map<Long, Contact> changed = new HashMap<>();
+        for (Contact contact : changes) {
+            changed.put(contact.getId(), contact);
+        }
+        long stamp = idLock.writeLock();
+        long[] stamps = new long[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stamps[i] = stripes[i].lock.writeLock();
+        }
+        try {
+            for (Stripe stripe : stripes) {
+                stripe.slabs.clear();
+                stripe.index.clear();
+            }
+            ids = new long[Math.max(1024, snapshot.size() + changed.size())];
+            idCount = 0;
+            for (int i = 0; i < snapshot.size(); i++) {
+                long id = snapshot.id(i);
+                if (!deletedIds.contains(id) && !changed.containsKey(id)) {
+                    restore(snapshot.contact(i));
+                }
+            }
+            changed.values().forEach(this::restore);
+            Arrays.sort(ids, 0, idCount);
+            size.set(idCount);
+            long maxId = idCount == 0 ? 0 : ids[idCount - 1];
+            if (snapshot.size() > 0) {
+                maxId = Math.max(maxId, snapshot.id(snapshot.size() - 1));
+            }
+            this.lastId = Math.max(lastId, maxId);
+        } finally {
+            for (int i = STRIPES - 1; i >= 0; i--) {
+                stripes[i].lock.unlockWrite(stamps[i]);
+            }
+            idLock.unlockWrite(stamp);
+        }
+        listeners.contactsRestored();
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory currently allocated to contacts.
+     */
+    public long getOffHeapBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                bytes += stripe.slabs.getCapacity();
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return bytes;
+    }
+
+    private Stripe stripeOf(long id) {
+        return stripes[(int) (id & (STRIPES - 1))];
+    }
+
+    /**
+     * Assigns the next id to a new contact and stores it. Called with the lock of the ids held, so ids are appended
+     * in ascending order.
+     */
+    private void store(Contact contact, OffsetDateTime now) {
+        contact.setId(++lastId);
+        contact.setCreatedDateTime(now);
+        contact.setLastModifiedDateTime(now);
+        contact.setVersion(1L);
+        stripeOf(contact.getId()).put(contact);
+        appendId(contact.getId());
+        size.incrementAndGet();
+    }
+
+    /**
+     * Stores a restored contact. Called with every lock held.
+     */
+    private void restore(Contact contact) {
+        Stripe stripe = stripeOf(contact.getId());
+        stripe.index.put(contact.getId(), stripe.slabs.write(contact), NO_ADDRESS);
+        appendId(contact.getId());
+    }
+
+    /**
+     * Counts a deleted contact out. Ids of deleted contacts are left in the array of ids until they make up half of
+     * it.
+     */
+    private void released() {
+        int live = size.decrementAndGet();
+        long stamp = idLock.tryOptimisticRead();
+        int count = idCount;
+        if (idLock.validate(stamp) && live >= count / 2) {
+            return;
+        }
+        stamp = idLock.writeLock();
+        try {
+            if (size.get() >= idCount / 2) {
+                return;
+            }
+            int kept = 0;
+            for (int i = 0; i < idCount; i++) {
+                if (stripeOf(ids[i]).contains(ids[i])) {
+                    ids[kept++] = ids[i];
+                }
+            }
+            idCount = kept;
+        } finally {
+            idLock.unlockWrite(stamp);
+        }
+    }
+
+    private void appendId(long id) {
+        if (idCount == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+        ids[idCount++] = id;
+    }
+
+    /**
+     * Returns the position of the first id greater than the given id in the array of ids.
+     */
+    private int indexAfter(long id) {
+        int position = Arrays.binarySearch(ids, 0, idCount, id);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    /**
+     * Contacts whose id falls in a stripe: their index, their slabs and the lock guarding both.
+     */
+    private final class Stripe {
+
+        final StampedLock lock = new StampedLock();
+
+        final LongLongHashMap index = new LongLongHashMap();
+
+        final ContactSlabs slabs;
+
+        final AtomicBoolean compacting = new AtomicBoolean();
+
+        Stripe(ContactSlabs slabs) {
+            this.slabs = slabs;
+        }
+
+        /**
+         * Copies the record of a contact, under an optimistic read first. A read overlapping a write may see the index
+         * and the slabs in an inconsistent state, and even fail, so it's only trusted once validated.
+         *
+         * @return copy of the record or {@code null} if there's no such contact
+         */
+        EncodedContact find(long id) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0L) {
+                try {
+                    EncodedContact record = locate(id);
+                    if (lock.validate(stamp)) {
+                        return record;
+                    }
+                } catch (RuntimeException e) {
+                    // Overlapped a write, read again under the lock
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return locate(id);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        Contact read(long id) {
+            EncodedContact record = find(id);
+            return record == null ? null : record.decode();
+        }
+
+        boolean contains(long id) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0L) {
+                try {
+                    boolean contains = index.containsKey(id);
+                    if (lock.validate(stamp)) {
+                        return contains;
+                    }
+                } catch (RuntimeException e) {
+                    // Overlapped a write, read again under the lock
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return index.containsKey(id);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void put(Contact contact) {
+            long stamp = lock.writeLock();
+            try {
+                index.put(contact.getId(), slabs.write(contact), NO_ADDRESS);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Replaces the record of a contact, provided it's still at the expected address.
+         *
+         * @return {@code false} if the contact has been moved, changed or deleted since it was read
+         */
+        boolean replace(long id, long expectedAddress, Contact contact) {
+            boolean compact;
+            long stamp = lock.writeLock();
+            try {
+                if (index.get(id, NO_ADDRESS) != expectedAddress) {
+                    return false;
+                }
+                index.put(id, slabs.write(contact), NO_ADDRESS);
+                slabs.free(expectedAddress);
+                compact = slabs.needsCompaction();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            if (compact) {
+                compactLater();
+            }
+            return true;
+        }
+
+        /**
+         * Removes a contact, provided it's still at the expected address, if any.
+         *
+         * @param expectedAddress address the contact was read at or {@link #NO_ADDRESS} to remove it wherever it is
+         * @return copy of the removed record or {@code null} if the contact has been moved, changed or deleted
+         */
+        EncodedContact remove(long id, long expectedAddress) {
+            EncodedContact removed;
+            boolean compact;
+            long stamp = lock.writeLock();
+            try {
+                long address = index.get(id, NO_ADDRESS);
+                if (address == NO_ADDRESS || expectedAddress != NO_ADDRESS && address != expectedAddress) {
+                    return null;
+                }
+                removed = new EncodedContact(address, slabs.copy(address));
+                index.remove(id, NO_ADDRESS);
+                slabs.free(address);
+                compact = slabs.needsCompaction();
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            if (compact) {
+                compactLater();
+            }
+            return removed;
+        }
+
+        private EncodedContact locate(long id) {
+            long address = index.get(id, NO_ADDRESS);
+            return address == NO_ADDRESS ? null : new EncodedContact(address, slabs.copy(address));
+        }
+
+        /**
+         * Has the slabs compacted by the background thread, unless it's already on it.
+         */
+        private void compactLater() {
+            if (compacting.compareAndSet(false, true)) {
+                try {
+                    compactor.execute(this::compact);
+                } catch (RejectedExecutionException e) {
+                    compacting.set(false);
+                }
+            }
+        }
+
+        /**
+         * Compacts one slab at a time, releasing the lock in between so writes and reads don't wait for all of them.
+         */
+        private void compact() {
+            boolean needed;
+            do {
+                long stamp = lock.writeLock();
+                try {
+                    needed = slabs.compact(index) && slabs.needsCompaction();
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            } while (needed);
+            compacting.set(false);
+            long stamp = lock.readLock();
+            try {
+                needed = slabs.needsCompaction();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            if (needed) {
+                compactLater();
+            }
+        }
+    }
+
+    /**
+     * Copy of the record of a contact and the address it was read at.
+     */
+    private static final class EncodedContact {
+
+        final long address;
+
+        final ByteBuffer record;
+
+        EncodedContact(long address, ByteBuffer record) {
+            this.address = address;
+            this.record = record;
+        }
+
+        Contact decode() {
+            return ContactCodec.decode(record.duplicate());
+        }
+    }
+
+    /**
+     * Iterates over the contacts in id order, reading them in batches so the lock is only held briefly.
+     */
+    private final class ContactIterator implements Iterator<Contact> {
+
+        private Iterator<Contact> batch = Collections.emptyIterator();
+
+        private Long lastId;
+
+        private boolean last;
+
+        @Override
+        public boolean hasNext() {
+            while (!batch.hasNext()) {
+                if (last) {
+                    return false;
+                }
+                Page<Contact> page = findContacts(lastId, STREAM_BATCH_SIZE);
+                List<Contact> items = page.getItems();
+                if (!items.isEmpty()) {
+                    lastId = items.get(items.size() - 1).getId();
+                }
+                last = page.isLast();
+                batch = items.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Contact next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.next();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.cassiomolin.patch.service.index;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.google.common.collect.Iterables;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.MonthDay;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Index of the contacts by the day of the year of their birthday, so the birthdays of a few days are found without
+ * reading every contact.
+ * <p>
+ * There's a bucket per day of a leap year, {@value #DAYS} in all, holding the ids of the contacts born on that day
+ * in a concurrent skip list, so the contacts celebrating on a date are read in id order in time proportional to
+ * their number. Contacts born on February 29 celebrate on February 28 in common years, when the bucket of February
+ * 29 is merged into the bucket of February 28.
+ */
+@Component
+public class BirthdayIndex implements ContactIndex {
+
+    private static final int DAYS = 366;
+
+    private static final int LEAP_YEAR = 2000;
+
+    private static final MonthDay LEAP_DAY = MonthDay.of(Month.FEBRUARY, 29);
+
+    private static final MonthDay LEAP_DAY_EVE = MonthDay.of(Month.FEBRUARY, 28);
+
+    private final NavigableSet<Long>[] buckets = newBuckets();
+
+    @Override
+    public void update(Contact previous, Contact current) {
+        int previousDay = dayOf(previous);
+        int currentDay = dayOf(current);
+        if (previousDay == currentDay) {
+            return;
+        }
+        long id = current == null ? previous.getId() : current.getId();
+        if (currentDay >= 0) {
+            buckets[currentDay].add(id);
+        }
+        if (previousDay >= 0) {
+            buckets[previousDay].remove(id);
+        }
+    }
+
+    @Override
+    public void repair(long id, Contact current) {
+        int currentDay = dayOf(current);
+        if (currentDay >= 0) {
+            buckets[currentDay].add(id);
+        }
+        for (int day = 0; day < DAYS; day++) {
+            if (day != currentDay) {
+                buckets[day].remove(id);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.stream(buckets).forEach(NavigableSet::clear);
+    }
+
+    /**
+     * Returns the ids of the contacts celebrating their birthday on a date.
+     * <p>
+     * The ids are a live view of the index, which may hold stale ids of contacts changed since they were indexed.
+     *
+     * @param date    date
+     * @param afterId id to start after, {@code 0} to start from the first contact
+     * @return ids greater than {@code afterId} of the contacts born on the month and day of the date, ordered by id
+     */
+    public Iterable<Long> celebrating(LocalDate date, long afterId) {
+        MonthDay day = MonthDay.from(date);
+        Iterable<Long> ids = buckets[dayOf(day)].tailSet(afterId, false);
+        if (day.equals(LEAP_DAY_EVE) && !date.isLeapYear()) {
+            Iterable<Long> leapDay = buckets[dayOf(LEAP_DAY)].tailSet(afterId, false);
+            ids = Iterables.mergeSorted(Arrays.asList(ids, leapDay), Comparator.naturalOrder());
+        }
+        return ids;
+    }
+
+    /**
+     * Returns whether a contact celebrates their birthday on a date.
+     *
+     * @param contact contact
+     * @param date    date
+     * @return {@code true} if the date is a birthday of the contact
+     */
+    public static boolean celebrates(Contact contact, LocalDate date) {
+        return contact.getBirthday() != null && MonthDay.from(contact.getBirthday()).atYear(date.getYear())
+                .equals(date);
+    }
+
+    /**
+     * Returns the first birthday on or after a date.
+     *
+     * @param birthday date of birth
+     * @param from     date
+     * @return first date from {@code from} on which the birthday is celebrated
+     */
+    public static LocalDate nextBirthday(LocalDate birthday, LocalDate from) {
+        MonthDay day = MonthDay.from(birthday);
+        LocalDate next = day.atYear(from.getYear());
+        return next.isBefore(from) ? day.atYear(from.getYear() + 1) : next;
+    }
+
+    /**
+     * Returns the bucket of a contact, from 0 for January 1 to 365 for December 31.
+     */
+    private static int dayOf(Contact contact) {
+        return contact == null || contact.getBirthday() == null ? -1 : dayOf(MonthDay.from(contact.getBirthday()));
+    }
+
+    private static int dayOf(MonthDay day) {
+        return day.atYear(LEAP_YEAR).getDayOfYear() - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static NavigableSet<Long>[] newBuckets() {
+        NavigableSet<Long>[] buckets = new NavigableSet[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            buckets[i] = new ConcurrentSkipListSet<>();
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,145 @@
+package com.cassiomolin.patch.service.index;
+
+import com.cassiomolin.patch.domain.Contact;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Secondary indexes over the groups, the favorite flag, the email addresses and the phone numbers of the contacts.
+ * <p>
+ * Email addresses are indexed trimmed and lower-cased and phone numbers as their digits only, so lookups don't depend
+ * on how they were typed. Only favorites are indexed, as non-favorites are most of the contacts and are better found
+ * by a scan.
+ */
+@Component
+public class ContactAttributeIndex implements ContactIndex {
+
+    private final TermIndex groups = new TermIndex();
+
+    private final IdBitmap favorites = new IdBitmap();
+
+    private final TermIndex emails = new TermIndex();
+
+    private final TermIndex phones = new TermIndex();
+
+    @Override
+    public void update(Contact previous, Contact current) {
+        long id = current == null ? previous.getId() : current.getId();
+        groups.update(id, groupsOf(previous), groupsOf(current));
+        emails.update(id, emailsOf(previous), emailsOf(current));
+        phones.update(id, phonesOf(previous), phonesOf(current));
+        if (isFavorite(current)) {
+            favorites.add(id);
+        } else if (isFavorite(previous)) {
+            favorites.remove(id);
+        }
+    }
+
+    @Override
+    public void repair(long id, Contact current) {
+        groups.replace(id, groupsOf(current));
+        emails.replace(id, emailsOf(current));
+        phones.replace(id, phonesOf(current));
+        if (isFavorite(current)) {
+            favorites.add(id);
+        } else {
+            favorites.remove(id);
+        }
+    }
+
+    @Override
+    public void clear() {
+        groups.clear();
+        emails.clear();
+        phones.clear();
+        favorites.clear();
+    }
+
+    public Postings group(String group) {
+        return groups.get(group);
+    }
+
+    public Postings favorites() {
+        return favorites;
+    }
+
+    public Postings email(String email) {
+        return emails.get(normalizeEmail(email));
+    }
+
+    public Postings phone(String phone) {
+        return phones.get(normalizePhone(phone));
+    }
+
+    public static Set<String> groupsOf(Contact contact) {
+        return contact == null ? Collections.emptySet() : termsOf(contact.getGroups(), Function.identity());
+    }
+
+    public static Set<String> emailsOf(Contact contact) {
+        return contact == null ? Collections.emptySet()
+                : termsOf(contact.getEmails(), email -> normalizeEmail(email.getEmail()));
+    }
+
+    public static Set<String> phonesOf(Contact contact) {
+        return contact == null ? Collections.emptySet()
+                : termsOf(contact.getPhones(), phone -> normalizePhone(phone.getPhone()));
+    }
+
+    public static boolean isFavorite(Contact contact) {
+        return contact != null && Boolean.TRUE.equals(contact.getFavorite());
+    }
+
+    /**
+     * Normalizes an email address as indexed: trimmed and lower-cased.
+     *
+     * @param email email address
+     * @return normalized email address or {@code null} if it's blank
+     */
+    public static String normalizeEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        String normalized = email.trim().toLowerCase(Locale.ROOT);
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    /**
+     * Normalizes a phone number as indexed: its digits only.
+     *
+     * @param phone phone number
+     * @return digits of the phone number or {@code null} if it has none
+     */
+    public static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.length() == 0 ? null : digits.toString();
+    }
+
+    private static <E> Set<String> termsOf(List<E> elements, Function<E, String> term) {
+        if (elements == null || elements.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> terms = new HashSet<>();
+        for (E element : elements) {
+            String value = element == null ? null : term.apply(element);
+            if (value != null) {
+                terms.add(value);
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,36 @@
+package com.cassiomolin.patch.service.index;
+
+import com.cassiomolin.patch.domain.Contact;
+
+/**
+ * Index over the contacts of the store, kept up to date by {@link ContactIndexes}.
+ * <p>
+ * Changes are applied in version order for each contact, one at a time, so an index can update its entries by
+ * diffing the previous and the current state of the contact. Changes to different contacts are applied concurrently,
+ * as are changes and the background build of the index.
+ */
+public interface ContactIndex {
+
+    /**
+     * Indexes a change made to a contact.
+     *
+     * @param previous state of the contact before the change or {@code null} if it's a new contact
+     * @param current  state of the contact after the change or {@code null} if it has been deleted
+     */
+    void update(Contact previous, Contact current);
+
+    /**
+     * Replaces whatever is indexed for a contact with its current state, when the changes that led to it are missing
+     * and the indexed state of the contact is unknown. Unlike updates, repairs may have to look through the whole
+     * index for the entries of the contact.
+     *
+     * @param id      contact id
+     * @param current current state of the contact or {@code null} if it doesn't exist
+     */
+    void repair(long id, Contact current);
+
+    /**
+     * Removes every entry, before the index is rebuilt.
+     */
+    void clear();
+}
@@ -0,0 +1,385 @@
+package com.cassiomolin.patch.service.index;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactChangeListener;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.store.LongLongHashMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Keeps every {@link ContactIndex} up to date with the changes made to the contacts of a {@link ContactService}.
+ * <p>
+ * Listeners may be notified of the changes to a contact out of order, when threads update it concurrently. To let
+ * indexes diff the previous and the current state of a contact, changes are applied in version order: the version
+ * last indexed for each contact is tracked, and a change that doesn't follow it is parked until the changes before it
+ * have been applied. Changes already covered by the indexes are dropped. Contacts are spread over lock stripes by id,
+ * so changes to the same contact are applied one at a time while changes to different contacts run in parallel.
+ * <p>
+ * Indexes are built in the background on startup and whenever contacts are restored, so neither waits for every
+ * contact to be read, and queries should fall back to scanning the contacts until the indexes are {@link #isReady()
+ * ready}. Changes made during a build are indexed as they come: a contact the build hasn't reached yet is indexed
+ * from the state the change left it in, and the build skips the contacts already indexed or deleted since it
+ * started.
+ * <p>
+ * When a change is missing for good, the indexed state of the contact is unknown from then on, and the contact alone
+ * is repaired from its current state in the service: when an index fails to apply a change, when a change has been
+ * parked for longer than {@value #PARK_TIMEOUT_MILLIS} ms, or when more than {@value #MAX_PARKED} changes are parked
+ * overall.
+ */
+@Slf4j
+@Component
+public class ContactIndexes implements ContactChangeListener {
+
+    private static final int STRIPES = 64;
+
+    private static final long NOT_INDEXED = 0;
+
+    static final long PARK_TIMEOUT_MILLIS = 1000;
+
+    static final int MAX_PARKED = 10_000;
+
+    private final ContactService service;
+
+    private final List<ContactIndex> indexes;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final AtomicInteger parkedCount = new AtomicInteger();
+
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("contact-indexes-%d")
+            .setDaemon(true)
+            .build());
+
+    /**
+     * Build in progress, changed with every stripe locked.
+     */
+    private volatile long generation;
+
+    private volatile boolean building;
+
+    private volatile CompletableFuture<Void> ready = new CompletableFuture<>();
+
+    public ContactIndexes(ContactService service, List<ContactIndex> indexes) {
+        this.service = service;
+        this.indexes = indexes;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Starts listening to changes and builds the indexes from the contacts of the service, in the background.
+     */
+    @PostConstruct
+    public void start() {
+        service.addChangeListener(this);
+        rebuild();
+    }
+
+    @PreDestroy
+    public void stop() {
+        builder.shutdownNow();
+    }
+
+    @Override
+    public void contactChanged(Contact previous, Contact current) {
+        long id = current == null ? previous.getId() : current.getId();
+        Stripe stripe = stripes[(int) (id & (STRIPES - 1))];
+        stripe.lock.lock();
+        try {
+            boolean stale;
+            try {
+                stale = stripe.apply(id, previous, current);
+            } catch (RuntimeException e) {
+                log.warn("Failed to index change to contact {}, repairing it", id);
+                try {
+                    stripe.repair(id);
+                } catch (RuntimeException repairFailure) {
+                    e.addSuppressed(repairFailure);
+                }
+                throw e;
+            }
+            if (stale) {
+                log.warn("Change to contact {} missing, repairing it", id);
+                stripe.repair(id);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void contactsRestored() {
+        rebuild();
+    }
+
+    /**
+     * Clears the indexes and builds them again from the contacts of the service, in the background. Changes made in
+     * the meantime are indexed as they come.
+     */
+    public void rebuild() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        long buildGeneration;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+        try {
+            indexes.forEach(ContactIndex::clear);
+            for (Stripe stripe : stripes) {
+                stripe.versions.clear();
+                stripe.deleted.clear();
+                stripe.parked.clear();
+            }
+            parkedCount.set(0);
+            buildGeneration = ++generation;
+            building = true;
+            CompletableFuture<Void> superseded = ready;
+            future.whenComplete((result, failure) -> {
+                if (failure == null) {
+                    superseded.complete(null);
+                } else {
+                    superseded.completeExceptionally(failure);
+                }
+            });
+            ready = future;
+        } finally {
+            for (Stripe stripe : stripes) {
+                stripe.lock.unlock();
+            }
+        }
+        builder.execute(() -> build(buildGeneration, future));
+    }
+
+    /**
+     * Returns whether the indexes hold every contact of the service.
+     *
+     * @return {@code false} while the indexes are being built
+     */
+    public boolean isReady() {
+        return ready.isDone() && !ready.isCompletedExceptionally();
+    }
+
+    /**
+     * Returns a future completed once the indexes are built.
+     *
+     * @return future completed by the build in progress, or by the next one if it's superseded
+     */
+    public CompletableFuture<Void> whenReady() {
+        return ready;
+    }
+
+    private void build(long buildGeneration, CompletableFuture<Void> future) {
+        long start = System.nanoTime();
+        long count = 0;
+        try (Stream<Contact> contacts = service.streamContacts()) {
+            for (Iterator<Contact> iterator = contacts.iterator(); iterator.hasNext(); ) {
+                Contact contact = iterator.next();
+                Stripe stripe = stripes[(int) (contact.getId() & (STRIPES - 1))];
+                stripe.lock.lock();
+                try {
+                    if (generation != buildGeneration) {
+                        return;
+                    }
+                    if (stripe.index(contact)) {
+                        count++;
+                    }
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to build indexes, falling back to scans until contacts are restored", e);
+            future.completeExceptionally(e);
+            return;
+        }
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+        try {
+            if (generation != buildGeneration) {
+                return;
+            }
+            for (Stripe stripe : stripes) {
+                stripe.deleted.clear();
+            }
+            building = false;
+        } finally {
+            for (Stripe stripe : stripes) {
+                stripe.lock.unlock();
+            }
+        }
+        log.info("Indexed {} contacts in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+        future.complete(null);
+    }
+
+    private final class Stripe {
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Version last indexed for each contact of the stripe.
+         */
+        final LongLongHashMap versions = new LongLongHashMap();
+
+        /**
+         * Last version of the contacts deleted during a build, which the build mustn't index.
+         */
+        final LongLongHashMap deleted = new LongLongHashMap();
+
+        /**
+         * Changes waiting for the changes before them, by contact id.
+         */
+        final Map<Long, List<ParkedChange>> parked = new HashMap<>();
+
+        /**
+         * Applies a change, or parks it until the changes before it have been applied.
+         *
+         * @return {@code true} if a change parked for the contact is unlikely to ever be applied
+         */
+        boolean apply(long id, Contact previous, Contact current) {
+            long indexed = versions.get(id, NOT_INDEXED);
+            if (building && indexed == NOT_INDEXED) {
+                // Nothing is indexed for the contact yet, so its current state is indexed as if it were new, rather
+                // than waiting for the build to reach it.
+                long deletedVersion = deleted.get(id, NOT_INDEXED);
+                if (current == null) {
+                    if (previous.getVersion() > deletedVersion) {
+                        deleted.put(id, previous.getVersion(), NOT_INDEXED);
+                    }
+                    return false;
+                }
+                if (current.getVersion() <= deletedVersion) {
+                    return false;
+                }
+                previous = null;
+            } else if (previous == null ? indexed != NOT_INDEXED : previous.getVersion() != indexed) {
+                if (current != null && current.getVersion() <= indexed) {
+                    return false;
+                }
+                long now = System.nanoTime();
+                List<ParkedChange> changes = parked.computeIfAbsent(id, key -> new ArrayList<>(1));
+                changes.add(new ParkedChange(previous, current, now));
+                return parkedCount.incrementAndGet() > MAX_PARKED
+                        || now - changes.get(0).parkedAt > TimeUnit.MILLISECONDS.toNanos(PARK_TIMEOUT_MILLIS);
+            }
+            for (;;) {
+                for (ContactIndex index : indexes) {
+                    index.update(previous, current);
+                }
+                if (current == null) {
+                    versions.remove(id, NOT_INDEXED);
+                    dropParked(id);
+                    return false;
+                }
+                versions.put(id, current.getVersion(), NOT_INDEXED);
+                ParkedChange next = unpark(id, current.getVersion());
+                if (next == null) {
+                    return false;
+                }
+                previous = next.previous;
+                current = next.current;
+            }
+        }
+
+        /**
+         * Indexes a contact read by a build, unless a change indexed or deleted it since.
+         *
+         * @return {@code true} if the contact has been indexed
+         */
+        boolean index(Contact contact) {
+            long id = contact.getId();
+            if (versions.containsKey(id) || contact.getVersion() <= deleted.get(id, NOT_INDEXED)) {
+                return false;
+            }
+            for (ContactIndex index : indexes) {
+                index.update(null, contact);
+            }
+            versions.put(id, contact.getVersion(), NOT_INDEXED);
+            return true;
+        }
+
+        /**
+         * Replaces the entries of a contact with its current state in the service. Every change notified so far is
+         * part of that state, so the changes parked for the contact are dropped.
+         */
+        void repair(long id) {
+            Contact current = service.findContact(id).orElse(null);
+            dropParked(id);
+            versions.remove(id, NOT_INDEXED);
+            for (ContactIndex index : indexes) {
+                index.repair(id, current);
+            }
+            if (current != null) {
+                versions.put(id, current.getVersion(), NOT_INDEXED);
+            } else if (building) {
+                deleted.put(id, Long.MAX_VALUE, NOT_INDEXED);
+            }
+        }
+
+        private void dropParked(long id) {
+            List<ParkedChange> changes = parked.remove(id);
+            if (changes != null) {
+                parkedCount.addAndGet(-changes.size());
+            }
+        }
+
+        /**
+         * Removes the parked change following the given version, dropping the changes it makes obsolete.
+         */
+        private ParkedChange unpark(long id, long version) {
+            List<ParkedChange> changes = parked.get(id);
+            if (changes == null) {
+                return null;
+            }
+            ParkedChange next = null;
+            for (Iterator<ParkedChange> iterator = changes.iterator(); iterator.hasNext(); ) {
+                ParkedChange change = iterator.next();
+                if (change.previous != null && change.previous.getVersion() == version) {
+                    next = change;
+                    iterator.remove();
+                    parkedCount.decrementAndGet();
+                } else if (change.current != null && change.current.getVersion() <= version) {
+                    iterator.remove();
+                    parkedCount.decrementAndGet();
+                }
+            }
+            if (changes.isEmpty()) {
+                parked.remove(id);
+            }
+            return next;
+        }
+    }
+
+    private static final class ParkedChange {
+
+        final Contact previous;
+
+        final Contact current;
+
+        final long parkedAt;
+
+        ParkedChange(Contact previous, Contact current, long parkedAt) {
+            this.previous = previous;
+            this.current = current;
+            this.parkedAt = parkedAt;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.cassiomolin.patch.service.index;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactSort;
+import com.cassiomolin.patch.service.SortKey;
+import com.cassiomolin.patch.service.SortProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Ordered indexes over the indexed {@link SortProperty sort properties}, so a sorted page of contacts is read in
+ * order from where the previous page ended rather than sorted from all contacts.
+ * <p>
+ * Each property has a concurrent skip list of the {@link SortKey sort keys} of the contacts, which can be walked in
+ * either direction while contacts change. When the key of a contact changes, the new key is added before the old one
+ * is removed, so a concurrent walk sees the contact at its old position, its new position or both, but never misses
+ * it: readers tell a stale key from the current one by comparing it to the key of the contact they read.
+ */
+@Component
+public class ContactSortIndex implements ContactIndex {
+
+    private final Map<SortProperty, NavigableSet<SortKey>> keys = new EnumMap<>(SortProperty.class);
+
+    public ContactSortIndex() {
+        for (SortProperty property : SortProperty.values()) {
+            if (property.isIndexed()) {
+                keys.put(property, new ConcurrentSkipListSet<>());
+            }
+        }
+    }
+
+    @Override
+    public void update(Contact previous, Contact current) {
+        for (Map.Entry<SortProperty, NavigableSet<SortKey>> entry : keys.entrySet()) {
+            SortKey previousKey = previous == null ? null : entry.getKey().keyOf(previous);
+            SortKey currentKey = current == null ? null : entry.getKey().keyOf(current);
+            if (currentKey != null && !currentKey.equals(previousKey)) {
+                entry.getValue().add(currentKey);
+            }
+            if (previousKey != null && !previousKey.equals(currentKey)) {
+                entry.getValue().remove(previousKey);
+            }
+        }
+    }
+
+    @Override
+    public void repair(long id, Contact current) {
+        for (Map.Entry<SortProperty, NavigableSet<SortKey>> entry : keys.entrySet()) {
+            SortKey currentKey = current == null ? null : entry.getKey().keyOf(current);
+            if (currentKey != null) {
+                entry.getValue().add(currentKey);
+            }
+            entry.getValue().removeIf(key -> key.getId() == id && !key.equals(currentKey));
+        }
+    }
+
+    @Override
+    public void clear() {
+        keys.values().forEach(NavigableSet::clear);
+    }
+
+    /**
+     * Returns the sort keys following a key, in the order of a sort.
+     * <p>
+     * The keys are a live view of the index: its iterators are weakly consistent and may hold stale keys of contacts
+     * changed since they were indexed.
+     *
+     * @param sort  sort
+     * @param after key of the last contact of the previous page or {@code null} for the first page
+     * @return keys following {@code after} or {@code null} if the sort property isn't indexed
+     */
+    public NavigableSet<SortKey> keys(ContactSort sort, SortKey after) {
+        NavigableSet<SortKey> ordered = keys.get(sort.getProperty());
+        if (ordered == null) {
+            return null;
+        }
+        if (sort.isDescending()) {
+            ordered = ordered.descendingSet();
+        }
+        return after == null ? ordered : ordered.tailSet(after, false);
+    }
+}
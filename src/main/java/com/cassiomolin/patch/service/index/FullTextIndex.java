@@ -0,0 +1,193 @@
+package com.cassiomolin.patch.service.index;
+
+import com.cassiomolin.patch.domain.Contact;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Inverted index over the names and notes of the contacts.
+ * <p>
+ * Each field has its own {@link TermIndex} of the terms produced by the {@link Tokenizer}, so a change to the notes
+ * leaves the postings of the name alone, and a contact whose name and notes didn't change isn't touched at all.
+ * <p>
+ * A search finds the contacts holding every term of the query, in their name or notes, by leaping over the postings
+ * from the rarest term on. Matches are ranked by the sum of the inverse document frequencies of the terms, a term
+ * found in the name weighing {@value #NAME_WEIGHT} times as much as in the notes, and the best ones are kept in a
+ * {@link TopK} heap. Ties are broken by id, so once the heap is full of matches scoring the highest score possible
+ * for the fields the terms are found in, the search stops early.
+ */
+@Component
+public class FullTextIndex implements ContactIndex {
+
+    private static final double NAME_WEIGHT = 3.0;
+
+    private static final Comparator<Hit> RANKING = Comparator.comparingDouble((Hit hit) -> -hit.score)
+            .thenComparingLong(hit -> hit.id);
+
+    private final TermIndex names = new TermIndex();
+
+    private final TermIndex notes = new TermIndex();
+
+    /**
+     * Ids of the contacts indexed, whose number weighs the terms.
+     */
+    private final IdBitmap contacts = new IdBitmap();
+
+    @Override
+    public void update(Contact previous, Contact current) {
+        long id = current == null ? previous.getId() : current.getId();
+        String previousName = previous == null ? null : previous.getName();
+        String currentName = current == null ? null : current.getName();
+        if (!Objects.equals(previousName, currentName)) {
+            names.update(id, Tokenizer.tokenize(previousName), Tokenizer.tokenize(currentName));
+        }
+        String previousNotes = previous == null ? null : previous.getNotes();
+        String currentNotes = current == null ? null : current.getNotes();
+        if (!Objects.equals(previousNotes, currentNotes)) {
+            notes.update(id, Tokenizer.tokenize(previousNotes), Tokenizer.tokenize(currentNotes));
+        }
+        if (previous == null) {
+            contacts.add(id);
+        } else if (current == null) {
+            contacts.remove(id);
+        }
+    }
+
+    @Override
+    public void repair(long id, Contact current) {
+        names.replace(id, Tokenizer.tokenize(current == null ? null : current.getName()));
+        notes.replace(id, Tokenizer.tokenize(current == null ? null : current.getNotes()));
+        if (current == null) {
+            contacts.remove(id);
+        } else {
+            contacts.add(id);
+        }
+    }
+
+    @Override
+    public void clear() {
+        names.clear();
+        notes.clear();
+        contacts.clear();
+    }
+
+    /**
+     * Finds the contacts whose name or notes hold every term of a query.
+     *
+     * @param terms terms of the query, as produced by the {@link Tokenizer}
+     * @param limit maximum number of contacts
+     * @return ids of the best matching contacts, most relevant first
+     */
+    public List<Long> search(Set<String> terms, int limit) {
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Term> query = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            Term t = new Term(names.get(term), notes.get(term), contacts.size());
+            if (t.frequency == 0) {
+                return Collections.emptyList();
+            }
+            query.add(t);
+        }
+        query.sort(Comparator.comparingLong(t -> t.frequency));
+        double maxScore = 0;
+        for (Term term : query) {
+            maxScore += term.maxScore();
+        }
+
+        TopK<Hit> hits = new TopK<>(limit, RANKING);
+        long id = 1;
+        while ((id = query.get(0).next(id)) > 0) {
+            long candidate = id;
+            for (int i = 1; i < query.size() && id == candidate; i++) {
+                id = query.get(i).next(candidate);
+            }
+            if (id < 0) {
+                break;
+            }
+            if (id == candidate) {
+                double score = 0;
+                for (Term term : query) {
+                    score += term.score(candidate);
+                }
+                hits.offer(new Hit(candidate, score));
+                if (hits.isFull() && hits.last().score >= maxScore) {
+                    break;
+                }
+                id++;
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(limit);
+        for (Hit hit : hits.toList()) {
+            ids.add(hit.id);
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the number of distinct terms in names and notes.
+     *
+     * @return number of terms
+     */
+    public int getTermCount() {
+        return names.getTermCount() + notes.getTermCount();
+    }
+
+    /**
+     * Term of a query, found in the name or in the notes of a contact.
+     */
+    private static final class Term {
+
+        final Postings names;
+
+        final Postings notes;
+
+        final long frequency;
+
+        final double weight;
+
+        Term(Postings names, Postings notes, long count) {
+            this.names = names;
+            this.notes = notes;
+            this.frequency = names.size() + notes.size();
+            this.weight = Math.log(1 + (double) Math.max(count, frequency) / Math.max(frequency, 1));
+        }
+
+        long next(long fromId) {
+            long name = names.next(fromId);
+            long note = notes.next(fromId);
+            return name < 0 ? note : note < 0 ? name : Math.min(name, note);
+        }
+
+        /**
+         * Returns the highest score the term can add, depending on the fields it's found in.
+         */
+        double maxScore() {
+            return weight * ((names.size() > 0 ? NAME_WEIGHT : 0) + (notes.size() > 0 ? 1 : 0));
+        }
+
+        double score(long id) {
+            return weight * ((names.contains(id) ? NAME_WEIGHT : 0) + (notes.contains(id) ? 1 : 0));
+        }
+    }
+
+    private static final class Hit {
+
+        final long id;
+
+        final double score;
+
+        Hit(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
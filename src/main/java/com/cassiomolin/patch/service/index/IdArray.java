@@ -0,0 +1,72 @@
+package com.cassiomolin.patch.service.index;
+
+import java.util.Arrays;
+
+/**
+ * Immutable {@link Postings} backed by a sorted array, for terms held by a few contacts. Changes return a new array.
+ */
+final class IdArray implements Postings {
+
+    static final IdArray EMPTY = new IdArray(new long[0]);
+
+    private final long[] ids;
+
+    private IdArray(long[] ids) {
+        this.ids = ids;
+    }
+
+    static IdArray of(long id) {
+        return new IdArray(new long[]{id});
+    }
+
+    IdArray with(long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return this;
+        }
+        int insertion = -index - 1;
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, insertion);
+        result[insertion] = id;
+        System.arraycopy(ids, insertion, result, insertion + 1, ids.length - insertion);
+        return new IdArray(result);
+    }
+
+    IdArray without(long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return this;
+        }
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        System.arraycopy(ids, index + 1, result, index, ids.length - index - 1);
+        return new IdArray(result);
+    }
+
+    IdBitmap toBitmap() {
+        IdBitmap bitmap = new IdBitmap();
+        for (long id : ids) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    @Override
+    public long size() {
+        return ids.length;
+    }
+
+    @Override
+    public boolean contains(long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    @Override
+    public long next(long fromId) {
+        int index = Arrays.binarySearch(ids, fromId);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index < ids.length ? ids[index] : -1;
+    }
+}
@@ -0,0 +1,153 @@
+package com.cassiomolin.patch.service.index;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe {@link Postings} holding a bit per id, for terms held by many contacts.
+ * <p>
+ * Ids are generated in sequence, so they're dense and a bitmap takes a bit per contact of the store rather than a
+ * long per contact of the term. Bits are kept in pages of {@value #PAGE_SIZE} ids, which are only allocated once they
+ * hold an id, and set and cleared with compare-and-set, so writers don't block each other nor readers.
+ */
+public final class IdBitmap implements Postings {
+
+    private static final int PAGE_SHIFT = 12;
+
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    private static final int WORDS_PER_PAGE = PAGE_SIZE >>> 6;
+
+    private volatile AtomicLongArray[] pages = new AtomicLongArray[16];
+
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Adds an id.
+     *
+     * @param id positive contact id
+     * @return {@code true} if the id was not present
+     */
+    public boolean add(long id) {
+        AtomicLongArray page = page(id, true);
+        int word = word(id);
+        long bit = 1L << id;
+        for (;;) {
+            long current = page.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+            if (page.compareAndSet(word, current, current | bit)) {
+                size.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes an id.
+     *
+     * @param id positive contact id
+     * @return {@code true} if the id was present
+     */
+    public boolean remove(long id) {
+        AtomicLongArray page = page(id, false);
+        if (page == null) {
+            return false;
+        }
+        int word = word(id);
+        long bit = 1L << id;
+        for (;;) {
+            long current = page.get(word);
+            if ((current & bit) == 0) {
+                return false;
+            }
+            if (page.compareAndSet(word, current, current & ~bit)) {
+                size.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean contains(long id) {
+        AtomicLongArray page = page(id, false);
+        return page != null && (page.get(word(id)) & 1L << id) != 0;
+    }
+
+    @Override
+    public long next(long fromId) {
+        AtomicLongArray[] pages = this.pages;
+        int pageIndex = (int) (fromId >>> PAGE_SHIFT);
+        int wordIndex = word(fromId);
+        long mask = -1L << fromId;
+        for (; pageIndex < pages.length; pageIndex++, wordIndex = 0, mask = -1L) {
+            AtomicLongArray page = pages[pageIndex];
+            if (page == null) {
+                continue;
+            }
+            for (; wordIndex < WORDS_PER_PAGE; wordIndex++, mask = -1L) {
+                long word = page.get(wordIndex) & mask;
+                if (word != 0) {
+                    return ((long) pageIndex << PAGE_SHIFT) + ((long) wordIndex << 6)
+                            + Long.numberOfTrailingZeros(word);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes all ids, releasing the pages. Must not run concurrently with other changes.
+     */
+    public synchronized void clear() {
+        pages = new AtomicLongArray[16];
+        size.set(0);
+    }
+
+    /**
+     * Returns the bytes taken by the pages of the bitmap.
+     *
+     * @return approximate size in bytes
+     */
+    public long getUsedBytes() {
+        AtomicLongArray[] pages = this.pages;
+        long bytes = (long) pages.length * Integer.BYTES;
+        for (AtomicLongArray page : pages) {
+            if (page != null) {
+                bytes += WORDS_PER_PAGE * Long.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    private AtomicLongArray page(long id, boolean create) {
+        int index = (int) (id >>> PAGE_SHIFT);
+        AtomicLongArray[] pages = this.pages;
+        AtomicLongArray page = index < pages.length ? pages[index] : null;
+        if (page != null || !create) {
+            return page;
+        }
+        synchronized (this) {
+            pages = this.pages;
+            if (index >= pages.length) {
+                pages = Arrays.copyOf(pages, Math.max(index + 1, pages.length * 2));
+            }
+            if (pages[index] == null) {
+                pages[index] = new AtomicLongArray(WORDS_PER_PAGE);
+            }
+            this.pages = pages;
+            return pages[index];
+        }
+    }
+
+    private static int word(long id) {
+        return (int) (id >>> 6) & (WORDS_PER_PAGE - 1);
+    }
+}
@@ -0,0 +1,60 @@
+package com.cassiomolin.patch.service.index;
+
+import java.util.List;
+
+/**
+ * Ids of the contacts indexed under a term, in ascending order.
+ * <p>
+ * Postings may change while they're read: readers see every id that was present during the whole read and may or may
+ * not see ids added or removed in the meantime.
+ */
+public interface Postings {
+
+    /**
+     * Postings holding no id.
+     */
+    Postings EMPTY = IdArray.EMPTY;
+
+    /**
+     * Returns the number of ids, or an upper bound of it for postings combining other postings.
+     *
+     * @return number of ids
+     */
+    long size();
+
+    /**
+     * Returns whether the given id is present.
+     *
+     * @param id contact id
+     * @return {@code true} if the id is present
+     */
+    boolean contains(long id);
+
+    /**
+     * Returns the smallest id greater than or equal to the given id.
+     *
+     * @param fromId positive id to start from
+     * @return next id or {@code -1} if there's none
+     */
+    long next(long fromId);
+
+    /**
+     * Returns the ids present in all the given postings, computed as they're read.
+     *
+     * @param postings postings to intersect, not empty
+     * @return intersection of the postings
+     */
+    static Postings and(List<Postings> postings) {
+        return postings.size() == 1 ? postings.get(0) : new PostingsIntersection(postings);
+    }
+
+    /**
+     * Returns the ids present in any of the given postings, computed as they're read.
+     *
+     * @param postings postings to unite, not empty
+     * @return union of the postings
+     */
+    static Postings or(List<Postings> postings) {
+        return postings.size() == 1 ? postings.get(0) : new PostingsUnion(postings);
+    }
+}
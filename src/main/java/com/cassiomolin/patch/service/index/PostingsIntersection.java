@@ -0,0 +1,55 @@
+package com.cassiomolin.patch.service.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@link Postings} holding the ids present in all of several postings.
+ * <p>
+ * Ids are found by leaping from the postings with the fewest ids to the next id present in all of them, so reading the
+ * intersection costs about as much as reading the smallest postings.
+ */
+final class PostingsIntersection implements Postings {
+
+    private final Postings[] postings;
+
+    PostingsIntersection(List<Postings> postings) {
+        List<Postings> sorted = new ArrayList<>(postings);
+        sorted.sort(Comparator.comparingLong(Postings::size));
+        this.postings = sorted.toArray(new Postings[0]);
+    }
+
+    @Override
+    public long size() {
+        return postings[0].size();
+    }
+
+    @Override
+    public boolean contains(long id) {
+        for (Postings p : postings) {
+            if (!p.contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long next(long fromId) {
+        long id = fromId;
+        while ((id = postings[0].next(id)) > 0) {
+            long candidate = id;
+            for (int i = 1; i < postings.length && id == candidate; i++) {
+                id = postings[i].next(candidate);
+            }
+            if (id < 0) {
+                return -1;
+            }
+            if (id == candidate) {
+                return id;
+            }
+        }
+        return -1;
+    }
+}
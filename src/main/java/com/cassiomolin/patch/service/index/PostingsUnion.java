@@ -0,0 +1,46 @@
+package com.cassiomolin.patch.service.index;
+
+import java.util.List;
+
+/**
+ * {@link Postings} holding the ids present in any of several postings.
+ */
+final class PostingsUnion implements Postings {
+
+    private final Postings[] postings;
+
+    PostingsUnion(List<Postings> postings) {
+        this.postings = postings.toArray(new Postings[0]);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Postings p : postings) {
+            size += p.size();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean contains(long id) {
+        for (Postings p : postings) {
+            if (p.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long next(long fromId) {
+        long next = -1;
+        for (Postings p : postings) {
+            long id = p.next(fromId);
+            if (id > 0 && (next < 0 || id < next)) {
+                next = id;
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,841 @@
+package com.cassiomolin.patch.service.index;
+
+import com.cassiomolin.patch.domain.Contact;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Radix tree of the names, email addresses and phone numbers of the contacts, for typeahead suggestions.
+ * <p>
+ * Each contact is indexed under its full name and each word of it, folded as by the {@link Tokenizer}, its email
+ * addresses, normalized as by the {@link ContactAttributeIndex}, and the digits of its phone numbers. Suggestions for
+ * a prefix are the contacts with a key starting with it, favorites first, then by shortest key and by id.
+ * <p>
+ * An entry of the tree is a single {@code long} packing the favorite flag, the length of the key and the contact id,
+ * in that order of significance, so entries sort in ranking order.
+ * <p>
+ * Chains of nodes with a single child are merged into one edge with a multi-character label, and the tree holds no
+ * object per node: nodes are numbered slots of parallel primitive arrays, linked to their first child and next sibling
+ * by number, with their labels as ranges of a shared {@code char} array. A node with a single entry, such as the leaf
+ * of an email address or a phone number, holds it inline, and only nodes with several entries have an array of them.
+ * Slots of removed nodes are reused, and the labels are compacted once they're mostly garbage.
+ * <p>
+ * Nodes whose subtree holds more than {@value #SMALL_SUBTREE} entries cache the top entries of their subtree, so a
+ * lookup reads a single node however common the prefix is. Caches are filled as a subtree grows past that size and
+ * kept up to date as entries are added. Removing one of their entries drops them, to be recomputed from the caches
+ * of the children on the next lookup of the prefix. Smaller subtrees are walked instead, which keeps most nodes
+ * cache-free.
+ * <p>
+ * Lookups of cached nodes share a read lock, changes and cache refills take the write lock. Sizes are exposed over JMX.
+ */
+@Component
+@ManagedResource
+public class SuggestionIndex implements ContactIndex {
+
+    private static final int SMALL_SUBTREE = 64;
+
+    private static final int ID_BITS = 40;
+
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+
+    private static final int MAX_LENGTH = (1 << 16) - 1;
+
+    private static final long NOT_FAVORITE = 1L << 62;
+
+    private static final int ROOT = 0;
+
+    /**
+     * Link to no node. The root is never a child nor a sibling, so its number is free to mean none.
+     */
+    private static final int NO_NODE = ROOT;
+
+    private static final int INITIAL_NODES = 16;
+
+    private static final int INITIAL_LABELS = 64;
+
+    /**
+     * Bytes of a node slot: six {@code int}s, the inline entry and two references.
+     */
+    private static final int NODE_BYTES = 6 * Integer.BYTES + Long.BYTES + 2 * 4;
+
+    private final int topK;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Start of the label of each node in {@link #labels}.
+     */
+    private int[] labelStarts;
+
+    private int[] labelLengths;
+
+    /**
+     * Children of each node, as a list sorted by the first character of their label.
+     */
+    private int[] firstChildren;
+
+    /**
+     * Next sibling of each node, or next free slot of a removed node.
+     */
+    private int[] nextSiblings;
+
+    /**
+     * Number of entries of the subtree of each node.
+     */
+    private int[] counts;
+
+    /**
+     * Number of entries whose key ends at each node.
+     */
+    private int[] entryCounts;
+
+    /**
+     * Entry of the nodes with a single one.
+     */
+    private long[] singleEntries;
+
+    /**
+     * Entries of the nodes with several ones, in ranking order, in their first {@link #entryCounts} slots.
+     */
+    private long[][] entries;
+
+    /**
+     * Top entries of the subtree of each node in ranking order, one per contact, or {@code null} if not cached.
+     */
+    private long[][] tops;
+
+    private int usedNodes;
+
+    private int freeNodes;
+
+    private char[] labels;
+
+    private int labelsSize;
+
+    private int labelGarbage;
+
+    private long nodeCount;
+
+    private long entryCount;
+
+    private long cachedEntryCount;
+
+    public SuggestionIndex(@Value("${contacts.suggest.top-k:10}") int topK) {
+        this.topK = topK;
+        reset();
+    }
+
+    @Override
+    public void update(Contact previous, Contact current) {
+        long id = current == null ? previous.getId() : current.getId();
+        if (id > ID_MASK) {
+            throw new IllegalArgumentException("Contact id " + id + " is too large to be indexed");
+        }
+        Set<String> previousKeys = keysOf(previous);
+        Set<String> currentKeys = keysOf(current);
+        boolean previousFavorite = ContactAttributeIndex.isFavorite(previous);
+        boolean currentFavorite = ContactAttributeIndex.isFavorite(current);
+        boolean favoriteChanged = previous != null && current != null && previousFavorite != currentFavorite;
+        if (!favoriteChanged && previousKeys.equals(currentKeys)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (String key : previousKeys) {
+                if (favoriteChanged || !currentKeys.contains(key)) {
+                    remove(key, entry(id, previousFavorite, key));
+                }
+            }
+            for (String key : currentKeys) {
+                if (favoriteChanged || !previousKeys.contains(key)) {
+                    add(key, entry(id, currentFavorite, key));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void repair(long id, Contact current) {
+        if (id > ID_MASK) {
+            throw new IllegalArgumentException("Contact id " + id + " is too large to be indexed");
+        }
+        Set<String> currentKeys = keysOf(current);
+        boolean currentFavorite = ContactAttributeIndex.isFavorite(current);
+        lock.writeLock().lock();
+        try {
+            Map<String, Long> indexed = new HashMap<>();
+            entriesOf(ROOT, new StringBuilder(), id, indexed);
+            indexed.forEach((key, entry) -> {
+                if (!currentKeys.contains(key) || entry != entry(id, currentFavorite, key)) {
+                    remove(key, entry);
+                }
+            });
+            for (String key : currentKeys) {
+                long entry = entry(id, currentFavorite, key);
+                if (!Long.valueOf(entry).equals(indexed.get(key))) {
+                    add(key, entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Suggests the contacts with a name, email address or phone number starting with a prefix.
+     *
+     * @param prefix prefix, folded and normalized as the keys are
+     * @param limit  maximum number of contacts, capped by the number of top entries cached per node
+     * @return ids of the suggested contacts, favorites first
+     */
+    public List<Long> suggest(String prefix, int limit) {
+        String key = normalizePrefix(prefix);
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long[] top;
+        lock.readLock().lock();
+        try {
+            int node = find(key);
+            if (node < 0) {
+                return Collections.emptyList();
+            }
+            top = counts[node] <= SMALL_SUBTREE ? collect(node) : tops[node];
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (top == null) {
+            lock.writeLock().lock();
+            try {
+                int node = find(key);
+                top = node < 0 ? new long[0] : top(node);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        List<Long> ids = new ArrayList<>(Math.min(limit, top.length));
+        for (int i = 0; i < top.length && i < limit; i++) {
+            ids.add(top[i] & ID_MASK);
+        }
+        return ids;
+    }
+
+    /**
+     * Returns how contacts rank as suggestions for a prefix, for suggestions made without the index, such as while
+     * it's being built.
+     *
+     * @param prefix prefix, folded and normalized as the keys are
+     * @return function giving the rank of a contact, lower first, or {@code -1} if none of its keys starts with the
+     * prefix
+     */
+    public static ToLongFunction<Contact> ranking(String prefix) {
+        String normalized = normalizePrefix(prefix);
+        return contact -> {
+            if (normalized.isEmpty()) {
+                return -1;
+            }
+            boolean favorite = ContactAttributeIndex.isFavorite(contact);
+            long rank = -1;
+            for (String key : keysOf(contact)) {
+                if (key.startsWith(normalized)) {
+                    long entry = entry(contact.getId(), favorite, key);
+                    rank = rank < 0 ? entry : Math.min(rank, entry);
+                }
+            }
+            return rank;
+        };
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    @ManagedAttribute(description = "Number of nodes of the radix tree")
+    public long getNodeCount() {
+        lock.readLock().lock();
+        try {
+            return nodeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @ManagedAttribute(description = "Number of keys indexed")
+    public long getEntryCount() {
+        lock.readLock().lock();
+        try {
+            return entryCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @ManagedAttribute(description = "Number of entries held by the top entry caches of the nodes")
+    public long getCachedEntryCount() {
+        lock.readLock().lock();
+        try {
+            return cachedEntryCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @ManagedAttribute(description = "Approximate heap used by the radix tree, in bytes")
+    public long getEstimatedBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) counts.length * NODE_BYTES + (long) labels.length * Character.BYTES
+                    + (entryCount + cachedEntryCount) * Long.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the keys a contact is indexed under.
+     *
+     * @param contact contact, may be {@code null}
+     * @return folded name and name words, normalized email addresses and phone digits
+     */
+    static Set<String> keysOf(Contact contact) {
+        if (contact == null) {
+            return Collections.emptySet();
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        Set<String> words = Tokenizer.tokenize(contact.getName());
+        if (!words.isEmpty()) {
+            keys.add(String.join(" ", words));
+            keys.addAll(words);
+        }
+        keys.addAll(ContactAttributeIndex.emailsOf(contact));
+        keys.addAll(ContactAttributeIndex.phonesOf(contact));
+        return keys;
+    }
+
+    /**
+     * Normalizes a prefix as the keys: as phone digits if it only holds digits and phone punctuation, as a name
+     * otherwise.
+     */
+    private static String normalizePrefix(String prefix) {
+        if (prefix == null) {
+            return "";
+        }
+        String trimmed = prefix.trim();
+        if (!trimmed.isEmpty() && trimmed.chars().allMatch(c -> Character.isDigit(c) || "+-(). ".indexOf(c) >= 0)) {
+            return Objects.toString(ContactAttributeIndex.normalizePhone(trimmed), "");
+        }
+        return Tokenizer.fold(trimmed).replaceAll("\\s+", " ");
+    }
+
+    private static long entry(long id, boolean favorite, String key) {
+        return (favorite ? 0 : NOT_FAVORITE) | (long) Math.min(key.length(), MAX_LENGTH) << ID_BITS | id;
+    }
+
+    /**
+     * Drops every node but an empty root.
+     */
+    private void reset() {
+        labelStarts = new int[INITIAL_NODES];
+        labelLengths = new int[INITIAL_NODES];
+        firstChildren = new int[INITIAL_NODES];
+        nextSiblings = new int[INITIAL_NODES];
+        counts = new int[INITIAL_NODES];
+        entryCounts = new int[INITIAL_NODES];
+        singleEntries = new long[INITIAL_NODES];
+        entries = new long[INITIAL_NODES][];
+        tops = new long[INITIAL_NODES][];
+        usedNodes = 1;
+        freeNodes = NO_NODE;
+        labels = new char[INITIAL_LABELS];
+        labelsSize = 0;
+        labelGarbage = 0;
+        nodeCount = 1;
+        entryCount = 0;
+        cachedEntryCount = 0;
+    }
+
+    /**
+     * Returns the node a key ends at or in the label of.
+     *
+     * @return number of the node or {@code -1} if no key starts with the given one
+     */
+    private int find(String key) {
+        int node = ROOT;
+        int i = 0;
+        while (i < key.length()) {
+            int child = child(node, key.charAt(i));
+            if (child == NO_NODE) {
+                return -1;
+            }
+            int common = commonPrefixLength(child, key, i);
+            if (i + common == key.length()) {
+                return child;
+            }
+            if (common < labelLengths[child]) {
+                return -1;
+            }
+            node = child;
+            i += common;
+        }
+        return node;
+    }
+
+    private void add(String key, long entry) {
+        int node = ROOT;
+        int i = 0;
+        for (;;) {
+            counts[node]++;
+            if (counts[node] == SMALL_SUBTREE + 1 && tops[node] == null) {
+                tops[node] = collect(node);
+                cachedEntryCount += tops[node].length;
+            }
+            offer(node, entry);
+            if (i == key.length()) {
+                addEntry(node, entry);
+                entryCount++;
+                return;
+            }
+            int child = child(node, key.charAt(i));
+            if (child == NO_NODE) {
+                int length = key.length() - i;
+                int start = reserveLabel(length);
+                key.getChars(i, key.length(), labels, start);
+                int leaf = newNode(start, length);
+                counts[leaf] = 1;
+                addEntry(leaf, entry);
+                addChild(node, leaf);
+                entryCount++;
+                return;
+            }
+            int common = commonPrefixLength(child, key, i);
+            if (common < labelLengths[child]) {
+                // The middle node takes the head of the label, the child keeps the tail
+                int middle = newNode(labelStarts[child], common);
+                labelStarts[child] += common;
+                labelLengths[child] -= common;
+                counts[middle] = counts[child];
+                replaceChild(node, child, middle);
+                firstChildren[middle] = child;
+                if (tops[child] != null) {
+                    tops[middle] = tops[child].clone();
+                    cachedEntryCount += tops[middle].length;
+                }
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+    }
+
+    private void remove(String key, long entry) {
+        int[] path = new int[key.length() + 1];
+        int depth = 0;
+        int node = ROOT;
+        int i = 0;
+        path[depth++] = node;
+        while (i < key.length()) {
+            node = child(node, key.charAt(i));
+            if (node == NO_NODE || commonPrefixLength(node, key, i) < labelLengths[node]) {
+                return;
+            }
+            i += labelLengths[node];
+            path[depth++] = node;
+        }
+        if (!removeEntry(node, entry)) {
+            return;
+        }
+        entryCount--;
+        long id = entry & ID_MASK;
+        for (int d = 0; d < depth; d++) {
+            int n = path[d];
+            counts[n]--;
+            if (tops[n] != null && (counts[n] <= SMALL_SUBTREE || indexOf(tops[n], id) >= 0)) {
+                cachedEntryCount -= tops[n].length;
+                tops[n] = null;
+            }
+        }
+        prune(path, depth);
+    }
+
+    /**
+     * Removes the nodes left without entries at the end of a path and merges the nodes left with a single child.
+     */
+    private void prune(int[] path, int depth) {
+        for (int d = depth - 1; d > 0; d--) {
+            int node = path[d];
+            int parent = path[d - 1];
+            int child = firstChildren[node];
+            if (entryCounts[node] > 0 || child != NO_NODE && nextSiblings[child] != NO_NODE) {
+                return;
+            }
+            if (child == NO_NODE) {
+                removeChild(parent, node);
+                labelGarbage += labelLengths[node];
+                freeNode(node);
+                continue;
+            }
+            if (labelStarts[node] + labelLengths[node] != labelStarts[child]) {
+                int length = labelLengths[node] + labelLengths[child];
+                int start = reserveLabel(length);
+                System.arraycopy(labels, labelStarts[node], labels, start, labelLengths[node]);
+                System.arraycopy(labels, labelStarts[child], labels, start + labelLengths[node],
+                        labelLengths[child]);
+                labelGarbage += length;
+                labelStarts[child] = start + labelLengths[node];
+            }
+            // The labels are now contiguous, as they are when the node was split off the child
+            labelStarts[child] -= labelLengths[node];
+            labelLengths[child] += labelLengths[node];
+            replaceChild(parent, node, child);
+            if (tops[node] != null) {
+                cachedEntryCount -= tops[node].length;
+            }
+            freeNode(node);
+            return;
+        }
+    }
+
+    /**
+     * Adds an entry to the cached top entries of a node, if they're cached and the entry ranks among them.
+     */
+    private void offer(int node, long entry) {
+        long[] top = tops[node];
+        if (top == null) {
+            return;
+        }
+        int index = indexOf(top, entry & ID_MASK);
+        if (index >= 0) {
+            if (entry < top[index]) {
+                top[index] = entry;
+                Arrays.sort(top);
+            }
+        } else if (top.length < topK) {
+            long[] grown = Arrays.copyOf(top, top.length + 1);
+            grown[top.length] = entry;
+            Arrays.sort(grown);
+            tops[node] = grown;
+            cachedEntryCount++;
+        } else if (entry < top[top.length - 1]) {
+            top[top.length - 1] = entry;
+            Arrays.sort(top);
+        }
+    }
+
+    /**
+     * Returns the top entries of a large subtree, computing them from its children if they're not cached.
+     */
+    private long[] top(int node) {
+        if (counts[node] <= SMALL_SUBTREE) {
+            return collect(node);
+        }
+        if (tops[node] == null) {
+            int children = 0;
+            for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child]) {
+                children++;
+            }
+            long[] candidates = new long[Math.min(entryCounts[node], topK) + children * topK];
+            int size = copyEntries(node, candidates, 0, topK);
+            for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child]) {
+                long[] top = top(child);
+                System.arraycopy(top, 0, candidates, size, top.length);
+                size += top.length;
+            }
+            tops[node] = best(candidates, size);
+            cachedEntryCount += tops[node].length;
+        }
+        return tops[node];
+    }
+
+    /**
+     * Returns the top entries of a small subtree, walking all of it.
+     */
+    private long[] collect(int node) {
+        long[] entries = new long[counts[node]];
+        int size = collect(node, entries, 0);
+        return best(entries, size);
+    }
+
+    private int collect(int node, long[] entries, int size) {
+        size = copyEntries(node, entries, size, Integer.MAX_VALUE);
+        for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child]) {
+            size = collect(child, entries, size);
+        }
+        return size;
+    }
+
+    /**
+     * Returns the best ranked of the first entries of an array, one per contact.
+     */
+    private long[] best(long[] entries, int size) {
+        Arrays.sort(entries, 0, size);
+        long[] best = new long[Math.min(size, topK)];
+        int count = 0;
+        for (int i = 0; i < size && count < best.length; i++) {
+            if (indexOf(best, count, entries[i] & ID_MASK) < 0) {
+                best[count++] = entries[i];
+            }
+        }
+        return count == best.length ? best : Arrays.copyOf(best, count);
+    }
+
+    /**
+     * Finds the entries of a contact in a subtree, walking all of it.
+     */
+    private void entriesOf(int node, StringBuilder key, long id, Map<String, Long> found) {
+        int length = key.length();
+        key.append(labels, labelStarts[node], labelLengths[node]);
+        long[] own = new long[entryCounts[node]];
+        copyEntries(node, own, 0, own.length);
+        for (long entry : own) {
+            if ((entry & ID_MASK) == id) {
+                found.put(key.toString(), entry);
+            }
+        }
+        for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child]) {
+            entriesOf(child, key, id, found);
+        }
+        key.setLength(length);
+    }
+
+    /**
+     * Copies the best ranked entries whose key ends at a node to an array.
+     *
+     * @return size of the array once the entries are copied
+     */
+    private int copyEntries(int node, long[] target, int size, int limit) {
+        int count = Math.min(entryCounts[node], limit);
+        if (entries[node] != null) {
+            System.arraycopy(entries[node], 0, target, size, count);
+        } else if (count == 1) {
+            target[size] = singleEntries[node];
+        }
+        return size + count;
+    }
+
+    private void addEntry(int node, long entry) {
+        int count = entryCounts[node];
+        long[] own = entries[node];
+        if (own == null) {
+            if (count == 0) {
+                singleEntries[node] = entry;
+                entryCounts[node] = 1;
+            } else if (singleEntries[node] != entry) {
+                long single = singleEntries[node];
+                entries[node] = single < entry ? new long[]{single, entry} : new long[]{entry, single};
+                entryCounts[node] = 2;
+            }
+            return;
+        }
+        int index = Arrays.binarySearch(own, 0, count, entry);
+        if (index >= 0) {
+            return;
+        }
+        if (count == own.length) {
+            own = Arrays.copyOf(own, count + 1 + (count >> 1));
+            entries[node] = own;
+        }
+        index = -index - 1;
+        System.arraycopy(own, index, own, index + 1, count - index);
+        own[index] = entry;
+        entryCounts[node] = count + 1;
+    }
+
+    private boolean removeEntry(int node, long entry) {
+        int count = entryCounts[node];
+        long[] own = entries[node];
+        if (own == null) {
+            if (count == 0 || singleEntries[node] != entry) {
+                return false;
+            }
+            entryCounts[node] = 0;
+            return true;
+        }
+        int index = Arrays.binarySearch(own, 0, count, entry);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(own, index + 1, own, index, count - index - 1);
+        entryCounts[node] = --count;
+        if (count == 1) {
+            singleEntries[node] = own[0];
+            entries[node] = null;
+        }
+        return true;
+    }
+
+    private int child(int node, char c) {
+        for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child]) {
+            char first = labels[labelStarts[child]];
+            if (first >= c) {
+                return first == c ? child : NO_NODE;
+            }
+        }
+        return NO_NODE;
+    }
+
+    private void addChild(int parent, int child) {
+        char c = labels[labelStarts[child]];
+        int previous = NO_NODE;
+        int next = firstChildren[parent];
+        while (next != NO_NODE && labels[labelStarts[next]] < c) {
+            previous = next;
+            next = nextSiblings[next];
+        }
+        nextSiblings[child] = next;
+        link(parent, previous, child);
+    }
+
+    private void replaceChild(int parent, int child, int replacement) {
+        nextSiblings[replacement] = nextSiblings[child];
+        nextSiblings[child] = NO_NODE;
+        link(parent, previousSibling(parent, child), replacement);
+    }
+
+    private void removeChild(int parent, int child) {
+        link(parent, previousSibling(parent, child), nextSiblings[child]);
+        nextSiblings[child] = NO_NODE;
+    }
+
+    private int previousSibling(int parent, int child) {
+        int previous = NO_NODE;
+        for (int sibling = firstChildren[parent]; sibling != child; sibling = nextSiblings[sibling]) {
+            previous = sibling;
+        }
+        return previous;
+    }
+
+    /**
+     * Points the sibling before a position, or the parent if it's the first one, to a node.
+     */
+    private void link(int parent, int previous, int node) {
+        if (previous == NO_NODE) {
+            firstChildren[parent] = node;
+        } else {
+            nextSiblings[previous] = node;
+        }
+    }
+
+    private int newNode(int labelStart, int labelLength) {
+        int node;
+        if (freeNodes != NO_NODE) {
+            node = freeNodes;
+            freeNodes = nextSiblings[node];
+        } else {
+            if (usedNodes == counts.length) {
+                growNodes();
+            }
+            node = usedNodes++;
+        }
+        labelStarts[node] = labelStart;
+        labelLengths[node] = labelLength;
+        firstChildren[node] = NO_NODE;
+        nextSiblings[node] = NO_NODE;
+        counts[node] = 0;
+        entryCounts[node] = 0;
+        nodeCount++;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        entries[node] = null;
+        tops[node] = null;
+        nextSiblings[node] = freeNodes;
+        freeNodes = node;
+        nodeCount--;
+    }
+
+    private void growNodes() {
+        int capacity = counts.length + (counts.length >> 1);
+        labelStarts = Arrays.copyOf(labelStarts, capacity);
+        labelLengths = Arrays.copyOf(labelLengths, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        entryCounts = Arrays.copyOf(entryCounts, capacity);
+        singleEntries = Arrays.copyOf(singleEntries, capacity);
+        entries = Arrays.copyOf(entries, capacity);
+        tops = Arrays.copyOf(tops, capacity);
+    }
+
+    /**
+     * Reserves room for a label at the end of the labels, which are compacted first if they don't fit and more than
+     * half of them are garbage. Compaction moves the labels of every node.
+     *
+     * @return start of the room
+     */
+    private int reserveLabel(int length) {
+        if (labelsSize + length > labels.length) {
+            if (labelGarbage > labelsSize / 2) {
+                int live = labelsSize - labelGarbage + length;
+                char[] compacted = new char[Math.max(INITIAL_LABELS, live + (live >> 1))];
+                labelsSize = copyLabels(ROOT, compacted, 0);
+                labelGarbage = 0;
+                labels = compacted;
+            } else {
+                labels = Arrays.copyOf(labels, Math.max(labels.length + (labels.length >> 1), labelsSize + length));
+            }
+        }
+        int start = labelsSize;
+        labelsSize += length;
+        return start;
+    }
+
+    private int copyLabels(int node, char[] target, int size) {
+        System.arraycopy(labels, labelStarts[node], target, size, labelLengths[node]);
+        labelStarts[node] = size;
+        size += labelLengths[node];
+        for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child]) {
+            size = copyLabels(child, target, size);
+        }
+        return size;
+    }
+
+    private int commonPrefixLength(int node, String key, int offset) {
+        int start = labelStarts[node];
+        int max = Math.min(labelLengths[node], key.length() - offset);
+        int i = 0;
+        while (i < max && labels[start + i] == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int indexOf(long[] entries, long id) {
+        return indexOf(entries, entries.length, id);
+    }
+
+    private static int indexOf(long[] entries, int size, long id) {
+        for (int i = 0; i < size; i++) {
+            if ((entries[i] & ID_MASK) == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,109 @@
+package com.cassiomolin.patch.service.index;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe map from terms to the {@link Postings} of the contacts holding them.
+ * <p>
+ * Terms held by up to {@value #ARRAY_THRESHOLD} contacts are kept in sorted arrays, replaced on every change, and
+ * larger terms in {@link IdBitmap}s. Changes to the same term are serialized by the map, while changes to different
+ * terms run in parallel.
+ */
+public class TermIndex {
+
+    private static final int ARRAY_THRESHOLD = 64;
+
+    private final Map<String, Postings> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the postings of a term.
+     *
+     * @param term term, may be {@code null}
+     * @return ids of the contacts holding the term, empty if there's none
+     */
+    public Postings get(String term) {
+        return term == null ? Postings.EMPTY : postings.getOrDefault(term, Postings.EMPTY);
+    }
+
+    /**
+     * Indexes the changes of the terms of a contact, only touching the postings of the terms added or removed.
+     *
+     * @param id       contact id
+     * @param previous terms previously indexed for the contact
+     * @param current  terms to be indexed for the contact
+     */
+    public void update(long id, Collection<String> previous, Collection<String> current) {
+        for (String term : previous) {
+            if (!current.contains(term)) {
+                remove(term, id);
+            }
+        }
+        for (String term : current) {
+            if (!previous.contains(term)) {
+                add(term, id);
+            }
+        }
+    }
+
+    /**
+     * Replaces the terms indexed for a contact, whichever they are, looking through every term for the contact.
+     *
+     * @param id      contact id
+     * @param current terms to be indexed for the contact
+     */
+    public void replace(long id, Collection<String> current) {
+        for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+            if (!current.contains(entry.getKey()) && entry.getValue().contains(id)) {
+                remove(entry.getKey(), id);
+            }
+        }
+        for (String term : current) {
+            add(term, id);
+        }
+    }
+
+    /**
+     * Returns the number of distinct terms.
+     *
+     * @return number of terms
+     */
+    public int getTermCount() {
+        return postings.size();
+    }
+
+    public void clear() {
+        postings.clear();
+    }
+
+    private void add(String term, long id) {
+        postings.compute(term, (key, ids) -> {
+            if (ids == null) {
+                return IdArray.of(id);
+            }
+            if (ids instanceof IdBitmap) {
+                ((IdBitmap) ids).add(id);
+                return ids;
+            }
+            IdArray array = (IdArray) ids;
+            if (array.size() < ARRAY_THRESHOLD) {
+                return array.with(id);
+            }
+            IdBitmap bitmap = array.toBitmap();
+            bitmap.add(id);
+            return bitmap;
+        });
+    }
+
+    private void remove(String term, long id) {
+        postings.computeIfPresent(term, (key, ids) -> {
+            if (ids instanceof IdBitmap) {
+                ((IdBitmap) ids).remove(id);
+                return ids.size() == 0 ? null : ids;
+            }
+            IdArray array = ((IdArray) ids).without(id);
+            return array.size() == 0 ? null : array;
+        });
+    }
+}
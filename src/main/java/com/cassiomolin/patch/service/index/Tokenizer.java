@@ -0,0 +1,61 @@
+package com.cassiomolin.patch.service.index;
+
+import java.text.Normalizer;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into the terms of the {@link FullTextIndex}.
+ * <p>
+ * Terms are the runs of letters and digits of the text, case-folded and stripped of diacritics, so accented
+ * and unaccented spellings of a word are the same term.
+ */
+public final class Tokenizer {
+
+    private Tokenizer() {
+        throw new AssertionError("No instances of Tokenizer for you!");
+    }
+
+    /**
+     * Returns the distinct terms of a text, in order of first occurrence.
+     *
+     * @param text text, may be {@code null}
+     * @return terms of the text
+     */
+    public static Set<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptySet();
+        }
+        String folded = fold(text);
+        Set<String> terms = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Case-folds a text and strips it of diacritics, as its terms are.
+     *
+     * @param text text
+     * @return folded text
+     */
+    public static String fold(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+                return decomposed.replaceAll("\\p{M}+", "").toLowerCase(Locale.ROOT);
+            }
+        }
+        return text.toLowerCase(Locale.ROOT);
+    }
+}
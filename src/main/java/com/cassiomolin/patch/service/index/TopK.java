@@ -0,0 +1,77 @@
+package com.cassiomolin.patch.service.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the first {@code k} elements offered, in the order of a comparator, in a bounded heap.
+ * <p>
+ * The heap holds at most {@code k} elements with the greatest of them at its root, so an element is offered in
+ * {@code O(log k)} time and the memory used doesn't depend on the number of elements offered. Not thread-safe.
+ *
+ * @param <T> type of the elements
+ */
+public class TopK<T> {
+
+    private final int k;
+
+    private final Comparator<? super T> comparator;
+
+    private final PriorityQueue<T> heap;
+
+    public TopK(int k, Comparator<? super T> comparator) {
+        this.k = k;
+        this.comparator = comparator;
+        this.heap = new PriorityQueue<>(Math.min(k, 1024) + 1, comparator.reversed());
+    }
+
+    /**
+     * Offers an element, which is kept if it's among the first {@code k} elements offered so far.
+     *
+     * @param element element
+     * @return {@code true} if the element was kept
+     */
+    public boolean offer(T element) {
+        if (heap.size() < k) {
+            heap.add(element);
+            return true;
+        }
+        if (comparator.compare(element, heap.peek()) >= 0) {
+            return false;
+        }
+        heap.poll();
+        heap.add(element);
+        return true;
+    }
+
+    /**
+     * Returns whether {@code k} elements are kept, after which an element is only kept if it comes before the last.
+     *
+     * @return {@code true} if the heap is full
+     */
+    public boolean isFull() {
+        return heap.size() >= k;
+    }
+
+    /**
+     * Returns the last element kept.
+     *
+     * @return last of the first elements or {@code null} if none was offered
+     */
+    public T last() {
+        return heap.peek();
+    }
+
+    /**
+     * Returns the elements kept, in order.
+     *
+     * @return first elements offered
+     */
+    public List<T> toList() {
+        List<T> list = new ArrayList<>(heap);
+        list.sort(comparator);
+        return list;
+    }
+}
@@ -0,0 +1,348 @@
+package com.cassiomolin.patch.service.persistence;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactChangeListener;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.ContactSource;
+import com.cassiomolin.patch.service.store.ContactCodec;
+import com.cassiomolin.patch.service.store.LongConcurrentHashMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persists the contacts of a {@link ContactService} in a directory, so they survive restarts and crashes.
+ * <p>
+ * Every change is appended to a {@link WriteAheadLog} before it's acknowledged: a created or updated contact is logged
+ * as its new state, encoded with the {@link ContactCodec}, and a deleted contact as its id and last version. If the
+ * append fails, the change stays visible in the service but the failure reaches the caller, so it's never acknowledged
+ * as durable. Binary {@link ContactSnapshot}s of all contacts are taken periodically and on shutdown, after which the
+ * segments they cover are deleted. Startup maps the latest snapshot, replays the tail of the log on top of it and
+ * hands both to the service, which decodes the contacts of the snapshot as they're accessed.
+ * <p>
+ * A snapshot is taken while contacts keep changing. The log is rolled over to a new segment first, so every change
+ * not reflected in the snapshot is logged in that segment or in a later one. Replaying a change the snapshot already
+ * reflects is harmless: records are applied by version, so the newest state of a contact wins whatever the order of
+ * the records. For the same reason, recently deleted contacts are kept as tombstones in snapshots, so a stale update
+ * logged after the deletion doesn't bring the contact back.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "contacts.persistence.enabled", havingValue = "true")
+public class ContactPersistence implements ContactChangeListener {
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private static final byte PUT = 'P';
+
+    private static final byte DELETE = 'D';
+
+    private final ContactService service;
+
+    private final Path directory;
+
+    private final long segmentSize;
+
+    private final long snapshotInterval;
+
+    private final AtomicLong lastId = new AtomicLong();
+
+    private volatile LongConcurrentHashMap<Long> tombstones = new LongConcurrentHashMap<>();
+
+    private volatile LongConcurrentHashMap<Long> previousTombstones = new LongConcurrentHashMap<>();
+
+    private final ThreadLocal<ByteBuffer> recordBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1 << 12));
+
+    private ScheduledExecutorService scheduler;
+
+    private WriteAheadLog writeAheadLog;
+
+    private ContactSnapshot restoredSnapshot;
+
+    public ContactPersistence(ContactService service,
+                              @Value("${contacts.persistence.directory:data}") String directory,
+                              @Value("${contacts.persistence.segment-size:67108864}") long segmentSize,
+                              @Value("${contacts.persistence.snapshot-interval-seconds:600}") long snapshotInterval) {
+        this.service = service;
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Restores the contacts from the directory and starts logging changes.
+     *
+     * @throws IOException if the contacts can't be restored or the log can't be opened
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        recover();
+        writeAheadLog = WriteAheadLog.open(directory, segmentSize);
+        service.addChangeListener(this);
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("contact-snapshot-%d")
+                .setDaemon(true)
+                .build());
+        scheduler.scheduleWithFixedDelay(this::scheduledSnapshot, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Takes a last snapshot and closes the log.
+     *
+     * @throws IOException if the snapshot can't be written or the log can't be closed
+     */
+    @PreDestroy
+    public void stop() throws IOException {
+        scheduler.shutdownNow();
+        try {
+            snapshot();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Closes the log without taking a snapshot: changes logged since the last snapshot are replayed on next start.
+     *
+     * @throws IOException if the log can't be closed
+     */
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        try {
+            writeAheadLog.close();
+        } finally {
+            if (restoredSnapshot != null) {
+                restoredSnapshot.close();
+            }
+        }
+    }
+
+    @Override
+    public void contactChanged(Contact previous, Contact current) {
+        await(writeAheadLog.append(record(previous, current)));
+    }
+
+    @Override
+    public void contactsCreated(List<Contact> contacts) {
+        List<CompletableFuture<Long>> appends = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            appends.add(writeAheadLog.append(record(null, contact)));
+        }
+        appends.forEach(this::await);
+    }
+
+    /**
+     * Writes a snapshot of all contacts and deletes the segments of the log it covers.
+     *
+     * @throws IOException if the snapshot can't be written
+     */
+    public synchronized void snapshot() throws IOException {
+
+        long segment = await(writeAheadLog.rollover());
+        LongConcurrentHashMap<Long> deleted = previousTombstones;
+        previousTombstones = tombstones;
+        tombstones = new LongConcurrentHashMap<>();
+
+        Path snapshot = snapshotPath(segment);
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        Map<Long, Long> tombstones = new TreeMap<>();
+        deleted.forEach((id, version) -> tombstones.merge(id, version, Math::max));
+        previousTombstones.forEach((id, version) -> tombstones.merge(id, version, Math::max));
+        long count = ContactSnapshot.write(temporary, service.streamContacts().iterator(), lastId.get(), tombstones);
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        WriteAheadLog.syncDirectory(directory);
+
+        for (long existing : snapshots()) {
+            if (existing < segment) {
+                deleteSnapshot(existing);
+            }
+        }
+        writeAheadLog.deleteSegmentsBefore(segment);
+        log.info("Snapshot of {} contacts written to {}", count, snapshot);
+    }
+
+    private void recover() throws IOException {
+
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+
+        List<Long> snapshots = snapshots();
+        long fromSegment = 0;
+        if (!snapshots.isEmpty()) {
+            fromSegment = snapshots.get(snapshots.size() - 1);
+            restoredSnapshot = ContactSnapshot.open(snapshotPath(fromSegment));
+            lastId.set(restoredSnapshot.getLastId());
+        }
+        Recovery recovery = new Recovery(restoredSnapshot);
+        long records = WriteAheadLog.replay(directory, fromSegment, recovery::apply);
+
+        Set<Long> deletedIds = new HashSet<>();
+        recovery.deleted.forEach((id, version) -> {
+            deletedIds.add(id);
+            previousTombstones.put(id, version);
+        });
+        ContactSource snapshot = restoredSnapshot == null ? ContactSource.EMPTY : restoredSnapshot;
+        service.restoreContacts(snapshot, recovery.changes.values(), deletedIds, lastId.get());
+        log.info("Restored {} snapshot contacts and {} changes from {} in {} ms ({} log records replayed)",
+                snapshot.size(), recovery.changes.size(), directory,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), records);
+    }
+
+    private byte[] record(Contact previous, Contact current) {
+        if (current == null) {
+            tombstones.put(previous.getId(), previous.getVersion());
+            return ByteBuffer.allocate(1 + Long.BYTES * 2)
+                    .put(DELETE)
+                    .putLong(previous.getId())
+                    .putLong(previous.getVersion())
+                    .array();
+        }
+        lastId.accumulateAndGet(current.getId(), Math::max);
+        ByteBuffer buffer = recordBuffers.get();
+        for (;;) {
+            try {
+                buffer.clear();
+                buffer.put(PUT);
+                ContactCodec.encode(current, buffer);
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                recordBuffers.set(buffer);
+            }
+        }
+    }
+
+    private void deleteSnapshot(long segment) {
+        try {
+            Files.deleteIfExists(snapshotPath(segment));
+        } catch (IOException e) {
+            // The snapshot may still be mapped, on platforms that don't allow deleting mapped files
+            log.warn("Unable to delete snapshot {}", snapshotPath(segment), e);
+        }
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.error("Unable to write snapshot of contacts", e);
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private List<Long> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(),
+                            name.length() - SNAPSHOT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path snapshotPath(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, segment, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * Changes replayed from the log on top of a snapshot. Records may be replayed in any order, as the newest version
+     * of a contact always wins.
+     */
+    private final class Recovery {
+
+        final ContactSnapshot snapshot;
+
+        final LongConcurrentHashMap<Contact> changes = new LongConcurrentHashMap<>();
+
+        final LongConcurrentHashMap<Long> deleted = new LongConcurrentHashMap<>();
+
+        Recovery(ContactSnapshot snapshot) {
+            this.snapshot = snapshot;
+            if (snapshot != null) {
+                snapshot.getTombstones().forEach(deleted::put);
+            }
+        }
+
+        void apply(ByteBuffer record) {
+            byte type = record.get();
+            if (type == PUT) {
+                Contact contact = ContactCodec.decode(record);
+                long id = contact.getId();
+                lastId.accumulateAndGet(id, Math::max);
+                Long deletedVersion = deleted.get(id);
+                if (deletedVersion != null && deletedVersion >= contact.getVersion()) {
+                    return;
+                }
+                if (version(id) < contact.getVersion()) {
+                    changes.put(id, contact);
+                }
+            } else if (type == DELETE) {
+                long id = record.getLong();
+                long version = record.getLong();
+                lastId.accumulateAndGet(id, Math::max);
+                Long deletedVersion = deleted.get(id);
+                if (deletedVersion == null || deletedVersion < version) {
+                    deleted.put(id, version);
+                }
+                Contact existing = changes.get(id);
+                if (existing != null && existing.getVersion() <= version) {
+                    changes.remove(id);
+                }
+            } else {
+                throw new IllegalStateException("Unknown log record type: " + type);
+            }
+        }
+
+        /**
+         * Returns the version of a contact replayed so far or, if it's not been changed, of the snapshot.
+         */
+        private long version(long id) {
+            Contact changed = changes.get(id);
+            if (changed != null) {
+                return changed.getVersion();
+            }
+            int index = snapshot == null ? -1 : snapshot.indexOf(id);
+            return index < 0 ? 0 : snapshot.version(index);
+        }
+    }
+}
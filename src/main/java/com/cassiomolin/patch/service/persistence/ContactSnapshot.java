@@ -0,0 +1,344 @@
+package com.cassiomolin.patch.service.persistence;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactSource;
+import com.cassiomolin.patch.service.store.ContactCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Binary snapshot of contacts, written with a {@link FileChannel} and read through memory mapped buffers.
+ * <p>
+ * The file is laid out as follows:
+ * <ol>
+ * <li>a header with a magic number, the version of the file format, the version of the {@link ContactCodec} encoding,
+ * the highest id ever assigned, the number of contacts and tombstones and the offset of the index;</li>
+ * <li>the contacts in id order, each one prefixed with its length, none of them crossing a region boundary;</li>
+ * <li>the tombstones of recently deleted contacts, as pairs of id and version;</li>
+ * <li>the index, as pairs of id and offset of the contacts, in id order.</li>
+ * </ol>
+ * The file is mapped in regions of {@value #REGION_SIZE} bytes, so files larger than 2 GB can be mapped with {@link
+ * MappedByteBuffer}s. Opening a snapshot only reads its header and tombstones: contacts are decoded when requested,
+ * after looking up the index with a binary search.
+ */
+public final class ContactSnapshot implements ContactSource, Closeable {
+
+    static final int MAGIC = 0x43534e50;
+
+    static final int FORMAT_VERSION = 1;
+
+    static final int REGION_SIZE = 1 << 30;
+
+    private static final int HEADER_SIZE = 64;
+
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES * 2;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer[] regions;
+
+    private final MappedByteBuffer index;
+
+    private final int size;
+
+    private final long lastId;
+
+    private final Map<Long, Long> tombstones;
+
+    private ContactSnapshot(FileChannel channel, MappedByteBuffer[] regions, MappedByteBuffer index, int size,
+                            long lastId, Map<Long, Long> tombstones) {
+        this.channel = channel;
+        this.regions = regions;
+        this.index = index;
+        this.size = size;
+        this.lastId = lastId;
+        this.tombstones = tombstones;
+    }
+
+    /**
+     * Writes a snapshot of contacts.
+     *
+     * @param file       file the snapshot is written to, replaced if it exists
+     * @param contacts   contacts in ascending id order
+     * @param lastId     highest id ever assigned to a contact
+     * @param tombstones versions of recently deleted contacts by id
+     * @return number of contacts written
+     * @throws IOException if the file can't be written
+     */
+    public static long write(Path file, Iterator<Contact> contacts, long lastId, Map<Long, Long> tombstones)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer writer = new Writer(channel);
+            writer.position(HEADER_SIZE);
+            LongArray index = new LongArray();
+            long previousId = Long.MIN_VALUE;
+            while (contacts.hasNext()) {
+                Contact contact = contacts.next();
+                if (contact.getId() <= previousId) {
+                    throw new IllegalArgumentException("Contacts must be in ascending id order: " + contact.getId()
+                            + " after " + previousId);
+                }
+                previousId = contact.getId();
+                index.add(contact.getId());
+                index.add(writer.writeContact(contact));
+            }
+            if (index.size() / 2 > Integer.MAX_VALUE / INDEX_ENTRY_SIZE) {
+                throw new IllegalArgumentException("Too many contacts for a snapshot: " + index.size() / 2);
+            }
+            long tombstonesOffset = writer.align();
+            for (Map.Entry<Long, Long> tombstone : tombstones.entrySet()) {
+                writer.buffer(INDEX_ENTRY_SIZE).putLong(tombstone.getKey()).putLong(tombstone.getValue());
+            }
+            long indexOffset = writer.align();
+            for (int i = 0; i < index.size(); i++) {
+                writer.buffer(Long.BYTES).putLong(index.get(i));
+            }
+            writer.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putInt(ContactCodec.FORMAT_VERSION)
+                    .putInt(index.size() / 2)
+                    .putLong(lastId)
+                    .putLong(tombstonesOffset)
+                    .putInt(tombstones.size())
+                    .putLong(indexOffset);
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            return index.size() / 2;
+        }
+    }
+
+    /**
+     * Opens a snapshot for reading. The snapshot must be closed once no longer read.
+     *
+     * @param file snapshot file
+     * @return snapshot
+     * @throws IOException if the file can't be read or is not a snapshot in a supported format
+     */
+    public static ContactSnapshot open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Not a contact snapshot: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a contact snapshot: " + file);
+            }
+            int formatVersion = header.getInt();
+            int codecVersion = header.getInt();
+            if (formatVersion != FORMAT_VERSION || codecVersion != ContactCodec.FORMAT_VERSION) {
+                throw new IOException("Unsupported contact snapshot format " + formatVersion + "." + codecVersion
+                        + ": " + file);
+            }
+            int size = header.getInt();
+            long lastId = header.getLong();
+            long tombstonesOffset = header.getLong();
+            int tombstoneCount = header.getInt();
+            long indexOffset = header.getLong();
+
+            Map<Long, Long> tombstones = new TreeMap<>();
+            if (tombstoneCount > 0) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, tombstonesOffset,
+                        (long) tombstoneCount * INDEX_ENTRY_SIZE);
+                for (int i = 0; i < tombstoneCount; i++) {
+                    tombstones.put(buffer.getLong(), buffer.getLong());
+                }
+            }
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset,
+                    (long) size * INDEX_ENTRY_SIZE);
+            MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((tombstonesOffset + REGION_SIZE - 1) / REGION_SIZE)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = (long) i * REGION_SIZE;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(REGION_SIZE, tombstonesOffset - start));
+            }
+            return new ContactSnapshot(channel, regions, index, size, lastId, Collections.unmodifiableMap(tombstones));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long id(int index) {
+        return this.index.getLong(index * INDEX_ENTRY_SIZE);
+    }
+
+    @Override
+    public Contact contact(int index) {
+        ByteBuffer record = record(index);
+        return ContactCodec.decode(record);
+    }
+
+    /**
+     * Returns the version of the contact at the given index, without decoding the contact.
+     */
+    public long version(int index) {
+        ByteBuffer record = record(index);
+        return ContactCodec.version(record, record.position());
+    }
+
+    /**
+     * Returns the highest id ever assigned to a contact when the snapshot was taken.
+     */
+    public long getLastId() {
+        return lastId;
+    }
+
+    /**
+     * Returns the versions of the contacts deleted shortly before the snapshot was taken, by id.
+     */
+    public Map<Long, Long> getTombstones() {
+        return tombstones;
+    }
+
+    /**
+     * Closes the file. Buffers already mapped stay readable until they're garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer record(int index) {
+        long offset = this.index.getLong(index * INDEX_ENTRY_SIZE + Long.BYTES);
+        ByteBuffer record = regions[(int) (offset / REGION_SIZE)].duplicate();
+        int position = (int) (offset % REGION_SIZE);
+        record.limit(position + Integer.BYTES + record.getInt(position));
+        record.position(position + Integer.BYTES);
+        return record;
+    }
+
+    /**
+     * Writes the file through a direct buffer, keeping track of the position in the file.
+     */
+    private static final class Writer {
+
+        private final FileChannel channel;
+
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+
+        private ByteBuffer record = ByteBuffer.allocate(1 << 12);
+
+        private long position;
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void position(long position) throws IOException {
+            flush();
+            this.position = position;
+        }
+
+        /**
+         * Writes a contact and returns its offset.
+         */
+        long writeContact(Contact contact) throws IOException {
+            for (;;) {
+                try {
+                    record.clear();
+                    record.putInt(0);
+                    ContactCodec.encode(contact, record);
+                    break;
+                } catch (BufferOverflowException e) {
+                    if (record.capacity() >= REGION_SIZE / 2) {
+                        throw new IllegalArgumentException("Contact too large for a snapshot: " + contact.getId());
+                    }
+                    record = ByteBuffer.allocate(record.capacity() * 2);
+                }
+            }
+            record.putInt(0, record.position() - Integer.BYTES);
+            record.flip();
+            long regionEnd = (position / REGION_SIZE + 1) * REGION_SIZE;
+            if (position + record.remaining() > regionEnd) {
+                position(regionEnd);
+            }
+            long offset = position;
+            buffer(record.remaining()).put(record);
+            return offset;
+        }
+
+        /**
+         * Moves to the next 8 bytes boundary and returns the position.
+         */
+        long align() throws IOException {
+            int padding = (int) (-position & (Long.BYTES - 1));
+            buffer(padding).put(new byte[padding]);
+            return position;
+        }
+
+        /**
+         * Returns the buffer, with at least the given number of bytes remaining, which will be written next.
+         */
+        ByteBuffer buffer(int length) throws IOException {
+            if (buffer.remaining() < length) {
+                flush();
+                if (buffer.capacity() < length) {
+                    buffer = ByteBuffer.allocateDirect(length);
+                }
+            }
+            position += length;
+            return buffer;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            long writePosition = position - buffer.remaining();
+            while (buffer.hasRemaining()) {
+                writePosition += channel.write(buffer, writePosition);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Growable array of primitive longs.
+     */
+    private static final class LongArray {
+
+        private long[] values = new long[1024];
+
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
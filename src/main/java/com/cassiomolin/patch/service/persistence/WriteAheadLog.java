@@ -0,0 +1,397 @@
+package com.cassiomolin.patch.service.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records, split in numbered segment files.
+ * <p>
+ * Records are written by a single thread with group commit: records appended concurrently while a batch is being
+ * synced to disk are queued and written together as the next batch, with a single {@link FileChannel#force(boolean)}.
+ * The future returned by {@link #append(byte[])} completes once the record is durable, so the cost of a sync is shared
+ * by all the writers waiting for it.
+ * <p>
+ * Each record is framed with its length and a CRC-32 of its content. A log is only ever appended to by the instance
+ * that created it: opening a log starts a new segment, so a record torn by a crash is always at the end of a segment.
+ * Replay stops reading a segment at the first incomplete or corrupted record.
+ * <p>
+ * Likewise, when a batch can't be written or synced, its records fail and the segment is closed for good: the next
+ * records are written to a new segment, so the log keeps going after a transient I/O error and a record torn by the
+ * error is at the end of its segment. Records of the failed batch may still be replayed, like any change applied
+ * in memory before it was logged. If the new segment can't be created, appends keep failing until it can.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "wal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final int MAX_BATCH_SIZE = 4096;
+
+    private final Path directory;
+
+    private final long segmentSize;
+
+    private final SegmentOpener opener;
+
+    private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    private FileChannel channel;
+
+    private long segment;
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+    private IOException failure;
+
+    private WriteAheadLog(Path directory, long segmentSize, long segment, SegmentOpener opener) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.opener = opener;
+        this.segment = segment;
+        this.channel = openSegment(segment);
+        this.writer = new Thread(this::write, "write-ahead-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens a log for appending. Records are appended to a new segment, after the existing ones.
+     *
+     * @param directory   directory of the segments, created if needed
+     * @param segmentSize size after which records are appended to a new segment
+     * @return log open for appending
+     * @throws IOException if the first segment can't be created
+     */
+    public static WriteAheadLog open(Path directory, long segmentSize) throws IOException {
+        return open(directory, segmentSize,
+                path -> FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+    }
+
+    static WriteAheadLog open(Path directory, long segmentSize, SegmentOpener opener) throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments = segments(directory);
+        long next = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        return new WriteAheadLog(directory, segmentSize, next, opener);
+    }
+
+    /**
+     * Replays the records of the segments numbered from {@code fromSegment}, in the order they were appended.
+     * <p>
+     * The buffers passed to the consumer are only valid during the call.
+     *
+     * @param directory   directory of the segments
+     * @param fromSegment number of the first segment to be replayed
+     * @param consumer    consumer of the records
+     * @return number of records replayed
+     * @throws IOException if a segment can't be read
+     */
+    public static long replay(Path directory, long fromSegment, Consumer<ByteBuffer> consumer) throws IOException {
+        long records = 0;
+        if (!Files.isDirectory(directory)) {
+            return records;
+        }
+        CRC32 crc = new CRC32();
+        for (long segment : segments(directory)) {
+            if (segment < fromSegment) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segmentPath(directory, segment), StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (mapped.remaining() >= HEADER_SIZE) {
+                    int length = mapped.getInt();
+                    int checksum = mapped.getInt();
+                    if (length < 0 || length > mapped.remaining()) {
+                        break;
+                    }
+                    ByteBuffer record = mapped.slice();
+                    record.limit(length);
+                    crc.reset();
+                    crc.update(record.duplicate());
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    consumer.accept(record.asReadOnlyBuffer());
+                    mapped.position(mapped.position() + length);
+                    records++;
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Appends a record to the log.
+     *
+     * @param record content of the record
+     * @return future completed with the number of the segment the record was written to, once it's durable
+     */
+    public CompletableFuture<Long> append(byte[] record) {
+        return enqueue(new Append(Append.RECORD, record));
+    }
+
+    /**
+     * Starts a new segment. Records appended after this call are written to the new segment or to later ones.
+     *
+     * @return future completed with the number of the new segment
+     */
+    public CompletableFuture<Long> rollover() {
+        return enqueue(new Append(Append.ROLLOVER, null));
+    }
+
+    /**
+     * Deletes the segments numbered before the given segment.
+     *
+     * @param segment number of the first segment to be kept
+     * @throws IOException if a segment can't be deleted
+     */
+    public void deleteSegmentsBefore(long segment) throws IOException {
+        for (long existing : segments(directory)) {
+            if (existing < segment) {
+                Files.deleteIfExists(segmentPath(directory, existing));
+            }
+        }
+    }
+
+    /**
+     * Writes the records appended so far and closes the log. Records appended afterwards fail.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(new Append(Append.CLOSE, null));
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Append append = queue.poll(); append != null; append = queue.poll()) {
+            append.future.completeExceptionally(new IllegalStateException("Write-ahead log is closed"));
+        }
+        channel.close();
+    }
+
+    private CompletableFuture<Long> enqueue(Append append) {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        queue.add(append);
+        if (closed && queue.remove(append)) {
+            append.future.completeExceptionally(new IllegalStateException("Write-ahead log is closed"));
+        }
+        return append.future;
+    }
+
+    private void write() {
+        List<Append> batch = new ArrayList<>();
+        for (;;) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            int start = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                Append append = batch.get(i);
+                if (append.type == Append.RECORD) {
+                    continue;
+                }
+                commit(batch.subList(start, i));
+                start = i + 1;
+                if (append.type == Append.CLOSE) {
+                    batch.subList(start, batch.size()).forEach(queue::add);
+                    return;
+                }
+                roll(append);
+            }
+            commit(batch.subList(start, batch.size()));
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Append> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            reopen();
+            CRC32 crc = new CRC32();
+            buffer.clear();
+            for (Append record : records) {
+                ensureCapacity(HEADER_SIZE + record.content.length);
+                crc.reset();
+                crc.update(record.content);
+                buffer.putInt(record.content.length).putInt((int) crc.getValue()).put(record.content);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            records.forEach(record -> record.future.completeExceptionally(new UncheckedIOException(e)));
+            abandonSegment(e);
+            return;
+        }
+        records.forEach(record -> record.future.complete(segment));
+        if (channel.isOpen() && position() >= segmentSize) {
+            roll(null);
+        }
+    }
+
+    private void roll(Append rollover) {
+        try {
+            if (failure != null) {
+                reopen();
+            } else {
+                channel.force(false);
+                channel.close();
+                channel = openSegment(++segment);
+            }
+        } catch (IOException e) {
+            abandonSegment(e);
+            if (rollover != null) {
+                rollover.future.completeExceptionally(new UncheckedIOException(e));
+            }
+            return;
+        }
+        if (rollover != null) {
+            rollover.future.complete(segment);
+        }
+    }
+
+    /**
+     * Closes the current segment after a failed write, sync or rollover, and starts a new one.
+     */
+    private void abandonSegment(IOException cause) {
+        failure = cause;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+        try {
+            reopen();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Starts a new segment if the current one has been abandoned.
+     *
+     * @throws IOException if the new segment can't be created, in which case the next write tries again
+     */
+    private void reopen() throws IOException {
+        if (failure != null) {
+            channel = openSegment(++segment);
+            failure = null;
+        }
+    }
+
+    private long position() {
+        try {
+            return channel.position();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (buffer.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + size));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+    private FileChannel openSegment(long segment) throws IOException {
+        FileChannel channel = opener.open(segmentPath(directory, segment));
+        syncDirectory(directory);
+        return channel;
+    }
+
+    /**
+     * Syncs a directory, so that files created or renamed in it survive a crash. Not supported on every platform.
+     */
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories can't be opened or synced on some platforms
+        }
+    }
+
+    private static List<Long> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Creates the file of a new segment and opens it for writing.
+     */
+    interface SegmentOpener {
+
+        FileChannel open(Path path) throws IOException;
+    }
+
+    /**
+     * Request queued for the writer thread.
+     */
+    private static final class Append {
+
+        static final int RECORD = 0;
+
+        static final int ROLLOVER = 1;
+
+        static final int CLOSE = 2;
+
+        final int type;
+
+        final byte[] content;
+
+        final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        Append(int type, byte[] content) {
+            this.type = type;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.cassiomolin.patch.service.store;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Binary encoding of {@link Contact}s.
+ * <p>
+ * A contact starts with its id and version, so both can be read without decoding the rest of the contact, followed by
+ * its properties in declaration order. Strings are encoded as UTF-8 prefixed with their length in bytes, lists are
+ * prefixed with their size, and a length or size of {@code -1} stands for {@code null}. Dates are encoded as epoch
+ * days and date-times as epoch seconds, nanoseconds and offset seconds.
+ * <p>
+ * The encoding is identified by {@link #FORMAT_VERSION}, which changes whenever the encoding does.
+ */
+public final class ContactCodec {
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int BIRTHDAY = 1;
+
+    private static final int WORK = 1 << 1;
+
+    private static final int CREATED_DATE_TIME = 1 << 2;
+
+    private static final int LAST_MODIFIED_DATE_TIME = 1 << 3;
+
+    private static final byte NULL = 0;
+
+    private static final byte FALSE = 1;
+
+    private static final byte TRUE = 2;
+
+    private ContactCodec() {
+        throw new AssertionError("No instances of ContactCodec for you!");
+    }
+
+    /**
+     * Encodes a contact at the position of the buffer.
+     *
+     * @param contact contact to be encoded
+     * @param buffer  buffer the contact is written to
+     * @throws java.nio.BufferOverflowException if the contact doesn't fit in the buffer
+     */
+    public static void encode(Contact contact, ByteBuffer buffer) {
+        buffer.putLong(contact.getId());
+        buffer.putLong(contact.getVersion() == null ? 0 : contact.getVersion());
+        buffer.put((byte) ((contact.getBirthday() != null ? BIRTHDAY : 0)
+                | (contact.getWork() != null ? WORK : 0)
+                | (contact.getCreatedDateTime() != null ? CREATED_DATE_TIME : 0)
+                | (contact.getLastModifiedDateTime() != null ? LAST_MODIFIED_DATE_TIME : 0)));
+        putString(buffer, contact.getName());
+        if (contact.getBirthday() != null) {
+            buffer.putLong(contact.getBirthday().toEpochDay());
+        }
+        if (contact.getWork() != null) {
+            putString(buffer, contact.getWork().getTitle());
+            putString(buffer, contact.getWork().getCompany());
+        }
+        putList(buffer, contact.getPhones(), (phone, out) -> {
+            putString(out, phone.getPhone());
+            putString(out, phone.getType());
+        });
+        putList(buffer, contact.getEmails(), (email, out) -> {
+            putString(out, email.getEmail());
+            putString(out, email.getType());
+        });
+        putList(buffer, contact.getGroups(), (group, out) -> putString(out, group));
+        buffer.put(contact.getFavorite() == null ? NULL : contact.getFavorite() ? TRUE : FALSE);
+        putString(buffer, contact.getNotes());
+        if (contact.getCreatedDateTime() != null) {
+            putDateTime(buffer, contact.getCreatedDateTime());
+        }
+        if (contact.getLastModifiedDateTime() != null) {
+            putDateTime(buffer, contact.getLastModifiedDateTime());
+        }
+    }
+
+    /**
+     * Decodes a contact from the position of the buffer.
+     *
+     * @param buffer buffer the contact is read from
+     * @return decoded contact
+     */
+    public static Contact decode(ByteBuffer buffer) {
+        Contact contact = new Contact();
+        contact.setId(buffer.getLong());
+        long version = buffer.getLong();
+        contact.setVersion(version == 0 ? null : version);
+        int flags = buffer.get();
+        contact.setName(getString(buffer));
+        if ((flags & BIRTHDAY) != 0) {
+            contact.setBirthday(LocalDate.ofEpochDay(buffer.getLong()));
+        }
+        if ((flags & WORK) != 0) {
+            contact.setWork(new Work(getString(buffer), getString(buffer)));
+        }
+        contact.setPhones(getList(buffer, in -> new Phone(getString(in), getString(in))));
+        contact.setEmails(getList(buffer, in -> new Email(getString(in), getString(in))));
+        contact.setGroups(getList(buffer, ContactCodec::getString));
+        byte favorite = buffer.get();
+        contact.setFavorite(favorite == NULL ? null : favorite == TRUE);
+        contact.setNotes(getString(buffer));
+        if ((flags & CREATED_DATE_TIME) != 0) {
+            contact.setCreatedDateTime(getDateTime(buffer));
+        }
+        if ((flags & LAST_MODIFIED_DATE_TIME) != 0) {
+            contact.setLastModifiedDateTime(getDateTime(buffer));
+        }
+        return contact;
+    }
+
+    /**
+     * Reads the version of the contact encoded at the given index of the buffer, without decoding the contact.
+     */
+    public static long version(ByteBuffer buffer, int index) {
+        return buffer.getLong(index + Long.BYTES);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static <E> void putList(ByteBuffer buffer, List<E> list, BiConsumer<E, ByteBuffer> encoder) {
+        if (list == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(list.size());
+        for (E element : list) {
+            if (element == null) {
+                buffer.put(NULL);
+            } else {
+                buffer.put(TRUE);
+                encoder.accept(element, buffer);
+            }
+        }
+    }
+
+    private static <E> List<E> getList(ByteBuffer buffer, Function<ByteBuffer, E> decoder) {
+        int size = buffer.getInt();
+        if (size < 0) {
+            return null;
+        }
+        List<E> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(buffer.get() == NULL ? null : decoder.apply(buffer));
+        }
+        return list;
+    }
+
+    private static void putDateTime(ByteBuffer buffer, OffsetDateTime dateTime) {
+        buffer.putLong(dateTime.toEpochSecond());
+        buffer.putInt(dateTime.getNano());
+        buffer.putInt(dateTime.getOffset().getTotalSeconds());
+    }
+
+    private static OffsetDateTime getDateTime(ByteBuffer buffer) {
+        long epochSecond = buffer.getLong();
+        int nano = buffer.getInt();
+        ZoneOffset offset = ZoneOffset.ofTotalSeconds(buffer.getInt());
+        return OffsetDateTime.of(LocalDateTime.ofEpochSecond(epochSecond, nano, offset), offset);
+    }
+}
@@ -0,0 +1,180 @@
+package com.cassiomolin.patch.service.store;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Compact, immutable representation of a {@link Contact}, as kept in memory by the store.
+ * <p>
+ * A record holds no object besides its strings and flat arrays: dates are stored as epoch days and date-times as
+ * epoch milliseconds in UTC, the phones and emails as arrays of alternating values and types, and the groups as an
+ * array. Strings with few distinct values (groups, phone and email types, work title and company) are interned in a
+ * dictionary shared by all records, which only holds them as long as a record does.
+ * <p>
+ * Date-times are truncated to milliseconds and converted to UTC.
+ */
+public final class ContactRecord {
+
+    private static final Interner<String> DICTIONARY = Interners.newWeakInterner();
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final long NO_DATE_TIME = Long.MIN_VALUE;
+
+    private static final byte FAVORITE = 1;
+
+    private static final byte NOT_FAVORITE = 1 << 1;
+
+    private static final byte WORK = 1 << 2;
+
+    /**
+     * Stands for a {@code null} phone or email in the flat arrays, compared by identity.
+     */
+    private static final String NULL_ELEMENT = new String("");
+
+    private final long id;
+
+    private final long version;
+
+    private final String name;
+
+    private final int birthday;
+
+    private final String workTitle;
+
+    private final String workCompany;
+
+    private final String[] phones;
+
+    private final String[] emails;
+
+    private final String[] groups;
+
+    private final String notes;
+
+    private final long createdDateTime;
+
+    private final long lastModifiedDateTime;
+
+    private final byte flags;
+
+    private ContactRecord(Contact contact) {
+        this.id = contact.getId();
+        this.version = contact.getVersion() == null ? 0 : contact.getVersion();
+        this.name = contact.getName();
+        this.birthday = contact.getBirthday() == null ? NO_DATE : Math.toIntExact(contact.getBirthday().toEpochDay());
+        this.workTitle = contact.getWork() == null ? null : intern(contact.getWork().getTitle());
+        this.workCompany = contact.getWork() == null ? null : intern(contact.getWork().getCompany());
+        this.phones = flatten(contact.getPhones(), Phone::getPhone, Phone::getType);
+        this.emails = flatten(contact.getEmails(), Email::getEmail, Email::getType);
+        this.groups = contact.getGroups() == null ? null
+                : contact.getGroups().stream().map(ContactRecord::intern).toArray(String[]::new);
+        this.notes = contact.getNotes();
+        this.createdDateTime = toEpochMilli(contact.getCreatedDateTime());
+        this.lastModifiedDateTime = toEpochMilli(contact.getLastModifiedDateTime());
+        this.flags = (byte) ((contact.getFavorite() == null ? 0 : contact.getFavorite() ? FAVORITE : NOT_FAVORITE)
+                | (contact.getWork() == null ? 0 : WORK));
+    }
+
+    /**
+     * Creates the record of a contact, which must have an id.
+     *
+     * @param contact contact
+     * @return record holding the state of the contact
+     */
+    public static ContactRecord of(Contact contact) {
+        return new ContactRecord(contact);
+    }
+
+    /**
+     * Truncates a date-time to the precision of a record, so that a contact compares equal to the contact built from
+     * its record.
+     *
+     * @param dateTime date-time
+     * @return date-time truncated to milliseconds, in UTC
+     */
+    public static OffsetDateTime truncate(OffsetDateTime dateTime) {
+        return toDateTime(toEpochMilli(dateTime));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Builds a new contact from this record, which doesn't share any mutable state with other contacts.
+     *
+     * @return contact
+     */
+    public Contact toContact() {
+        Contact contact = new Contact();
+        contact.setId(id);
+        contact.setVersion(version == 0 ? null : version);
+        contact.setName(name);
+        contact.setBirthday(birthday == NO_DATE ? null : LocalDate.ofEpochDay(birthday));
+        contact.setWork((flags & WORK) == 0 ? null : new Work(workTitle, workCompany));
+        contact.setPhones(expand(phones, Phone::new));
+        contact.setEmails(expand(emails, Email::new));
+        contact.setGroups(groups == null ? null : new ArrayList<>(Arrays.asList(groups)));
+        contact.setFavorite((flags & FAVORITE) != 0 ? Boolean.TRUE : (flags & NOT_FAVORITE) != 0 ? Boolean.FALSE : null);
+        contact.setNotes(notes);
+        contact.setCreatedDateTime(toDateTime(createdDateTime));
+        contact.setLastModifiedDateTime(toDateTime(lastModifiedDateTime));
+        return contact;
+    }
+
+    private static String intern(String value) {
+        return value == null ? null : DICTIONARY.intern(value);
+    }
+
+    private static <E> String[] flatten(List<E> list, Function<E, String> value, Function<E, String> type) {
+        if (list == null) {
+            return null;
+        }
+        String[] array = new String[list.size() * 2];
+        for (int i = 0; i < list.size(); i++) {
+            E element = list.get(i);
+            array[i * 2] = element == null ? NULL_ELEMENT : value.apply(element);
+            array[i * 2 + 1] = element == null ? null : intern(type.apply(element));
+        }
+        return array;
+    }
+
+    private static <E> List<E> expand(String[] array, BiFunction<String, String, E> factory) {
+        if (array == null) {
+            return null;
+        }
+        List<E> list = new ArrayList<>(array.length / 2);
+        for (int i = 0; i < array.length; i += 2) {
+            list.add(array[i] == NULL_ELEMENT ? null : factory.apply(array[i], array[i + 1]));
+        }
+        return list;
+    }
+
+    private static long toEpochMilli(OffsetDateTime dateTime) {
+        return dateTime == null ? NO_DATE_TIME : dateTime.toInstant().toEpochMilli();
+    }
+
+    private static OffsetDateTime toDateTime(long epochMilli) {
+        return epochMilli == NO_DATE_TIME ? null : OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMilli),
+                ZoneOffset.UTC);
+    }
+}
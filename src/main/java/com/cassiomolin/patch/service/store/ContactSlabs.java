@@ -0,0 +1,279 @@
+package com.cassiomolin.patch.service.store;
+
+import com.cassiomolin.patch.domain.Contact;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contacts encoded with {@link ContactCodec} in off-heap slabs, which are large direct {@link ByteBuffer}s.
+ * <p>
+ * Records are appended to the last slab, each one prefixed with its length, and never modified: an updated contact is
+ * written as a new record and the old one becomes garbage. A record is addressed by the number of its slab in the
+ * high 32 bits and its offset in the slab in the low 32 bits. {@link #compact(LongLongHashMap)} copies the records
+ * still live in the slab with the most garbage to the last slab and releases it, so the space taken by the slabs stays
+ * proportional to the live records.
+ * <p>
+ * Not thread-safe, except for {@link #copy(long)}, which may race with writes as part of an optimistic read. Released
+ * slabs are freed by the garbage collector, like any direct buffer.
+ */
+public class ContactSlabs {
+
+    private static final int LENGTH_SIZE = Integer.BYTES;
+
+    private final int slabSize;
+
+    private final List<Slab> slabs = new ArrayList<>();
+
+    private Slab last;
+
+    private int lastNumber = -1;
+
+    private ByteBuffer record = ByteBuffer.allocate(1 << 12);
+
+    private long usedBytes;
+
+    private long garbageBytes;
+
+    /**
+     * @param slabSize size of a slab in bytes, larger contacts getting a slab of their own
+     */
+    public ContactSlabs(int slabSize) {
+        if (slabSize <= LENGTH_SIZE) {
+            throw new IllegalArgumentException("Slab size too small: " + slabSize);
+        }
+        this.slabSize = slabSize;
+    }
+
+    /**
+     * Writes a contact to the last slab.
+     *
+     * @param contact contact to be written
+     * @return address of the record
+     */
+    public long write(Contact contact) {
+        for (;;) {
+            try {
+                record.clear();
+                ContactCodec.encode(contact, record);
+                break;
+            } catch (BufferOverflowException e) {
+                if (record.capacity() > Integer.MAX_VALUE / 4) {
+                    throw new IllegalArgumentException("Contact too large to be stored: " + contact.getId());
+                }
+                record = ByteBuffer.allocate(record.capacity() * 2);
+            }
+        }
+        record.flip();
+        int offset = allocate(LENGTH_SIZE + record.remaining());
+        last.buffer.putInt(offset, record.remaining());
+        ByteBuffer target = last.buffer.duplicate();
+        target.position(offset + LENGTH_SIZE);
+        target.put(record);
+        return address(lastNumber, offset);
+    }
+
+    /**
+     * Decodes the contact at the given address.
+     *
+     * @param address address of the record
+     * @return new instance of the contact
+     */
+    public Contact read(long address) {
+        return ContactCodec.decode(record(address));
+    }
+
+    /**
+     * Copies the record at the given address to the heap, so it can be decoded once the lock guarding the slabs has
+     * been released.
+     * <p>
+     * May be called without the lock, as part of an optimistic read: if the slabs are changed concurrently, the copy
+     * may hold garbage or this method may throw, which the caller must tell by validating its read before using the
+     * copy.
+     *
+     * @param address address of the record
+     * @return copy of the record, positioned at its start
+     */
+    public ByteBuffer copy(long address) {
+        ByteBuffer buffer = slabs.get(slabNumber(address)).buffer.duplicate();
+        int offset = offset(address);
+        int length = buffer.getInt(offset);
+        if (length < 0 || length > buffer.capacity() - offset - LENGTH_SIZE) {
+            throw new IllegalStateException("Invalid record at address " + address);
+        }
+        buffer.limit(offset + LENGTH_SIZE + length).position(offset + LENGTH_SIZE);
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        copy.put(buffer).flip();
+        return copy;
+    }
+
+    /**
+     * Reads the version of the contact at the given address, without decoding the contact.
+     *
+     * @param address address of the record
+     * @return version of the contact
+     */
+    public long version(long address) {
+        ByteBuffer record = record(address);
+        return ContactCodec.version(record, record.position());
+    }
+
+    /**
+     * Marks the record at the given address as garbage. The record can still be read until its slab is compacted.
+     *
+     * @param address address of the record
+     */
+    public void free(long address) {
+        Slab slab = slabs.get(slabNumber(address));
+        int size = LENGTH_SIZE + slab.buffer.getInt(offset(address));
+        slab.garbage += size;
+        garbageBytes += size;
+    }
+
+    /**
+     * Returns whether at least half of the bytes written to all slabs, and at least a slab worth of bytes, are garbage,
+     * some of it outside the last slab.
+     *
+     * @return {@code true} if {@link #compact(LongLongHashMap)} would compact a slab
+     */
+    public boolean needsCompaction() {
+        return garbageBytes * 2 > usedBytes && garbageBytes >= slabSize && garbageBytes > last.garbage;
+    }
+
+    /**
+     * Compacts the slab with the most garbage, provided {@link #needsCompaction() compaction is needed}. Live records
+     * are the ones the index maps their contact id to: they are copied to the last slab and the index is updated with
+     * their new addresses.
+     *
+     * @param index addresses of the live records, by contact id
+     * @return {@code true} if a slab has been compacted
+     */
+    public boolean compact(LongLongHashMap index) {
+        if (!needsCompaction()) {
+            return false;
+        }
+        int candidate = -1;
+        for (int i = 0; i < slabs.size(); i++) {
+            Slab slab = slabs.get(i);
+            if (slab != null && slab != last && slab.garbage > 0
+                    && (candidate < 0 || slab.garbage > slabs.get(candidate).garbage)) {
+                candidate = i;
+            }
+        }
+        if (candidate < 0) {
+            return false;
+        }
+        Slab slab = slabs.get(candidate);
+        for (int offset = 0; offset < slab.used; ) {
+            int size = LENGTH_SIZE + slab.buffer.getInt(offset);
+            long id = slab.buffer.getLong(offset + LENGTH_SIZE);
+            if (index.get(id, -1) == address(candidate, offset)) {
+                ByteBuffer source = slab.buffer.duplicate();
+                source.limit(offset + size).position(offset);
+                int target = allocate(size);
+                ByteBuffer destination = last.buffer.duplicate();
+                destination.position(target);
+                destination.put(source);
+                index.put(id, address(lastNumber, target), -1);
+            }
+            offset += size;
+        }
+        slabs.set(candidate, null);
+        usedBytes -= slab.used;
+        garbageBytes -= slab.garbage;
+        return true;
+    }
+
+    /**
+     * Releases all slabs.
+     */
+    public void clear() {
+        slabs.clear();
+        last = null;
+        lastNumber = -1;
+        usedBytes = 0;
+        garbageBytes = 0;
+    }
+
+    /**
+     * Returns the number of bytes of the slabs currently allocated.
+     */
+    public long getCapacity() {
+        long capacity = 0;
+        for (Slab slab : slabs) {
+            if (slab != null) {
+                capacity += slab.buffer.capacity();
+            }
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the number of bytes taken by records, live or not, in the slabs currently allocated.
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Returns the number of bytes taken by records that are no longer live.
+     */
+    public long getGarbageBytes() {
+        return garbageBytes;
+    }
+
+    private ByteBuffer record(long address) {
+        ByteBuffer record = slabs.get(slabNumber(address)).buffer.duplicate();
+        int offset = offset(address);
+        record.limit(offset + LENGTH_SIZE + record.getInt(offset));
+        record.position(offset + LENGTH_SIZE);
+        return record;
+    }
+
+    /**
+     * Reserves space at the end of the last slab, starting a new slab if it's full, and returns its offset.
+     */
+    private int allocate(int size) {
+        if (last == null || last.buffer.capacity() - last.used < size) {
+            last = new Slab(ByteBuffer.allocateDirect(Math.max(slabSize, size)));
+            lastNumber = slabs.indexOf(null);
+            if (lastNumber < 0) {
+                lastNumber = slabs.size();
+                slabs.add(last);
+            } else {
+                slabs.set(lastNumber, last);
+            }
+        }
+        int offset = last.used;
+        last.used += size;
+        usedBytes += size;
+        return offset;
+    }
+
+    private static long address(int slab, int offset) {
+        return (long) slab << 32 | offset;
+    }
+
+    private static int slabNumber(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static final class Slab {
+
+        final ByteBuffer buffer;
+
+        int used;
+
+        int garbage;
+
+        Slab(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
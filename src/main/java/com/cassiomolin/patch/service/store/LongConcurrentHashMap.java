@@ -0,0 +1,517 @@
+package com.cassiomolin.patch.service.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Concurrent hash map keyed by primitive {@code long} values.
+ * <p>
+ * Keys are spread across a fixed number of segments, each one an open addressing table with linear probing guarded
+ * by its own {@link StampedLock}. Lookups use optimistic reads and don't block in the absence of a concurrent write
+ * to the same segment, while writes only contend with writes hashed to the same segment. Keys are never boxed.
+ * <p>
+ * Like {@link java.util.concurrent.ConcurrentHashMap}, this map does not accept {@code null} values.
+ *
+ * @param <V> type of the values
+ */
+public class LongConcurrentHashMap<V> {
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 64;
+
+    private static final int DEFAULT_SEGMENT_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final Segment<V>[] segments;
+
+    private final int segmentShift;
+
+    public LongConcurrentHashMap() {
+        this(DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    @SuppressWarnings("unchecked")
+    public LongConcurrentHashMap(int concurrencyLevel) {
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must be positive: " + concurrencyLevel);
+        }
+        int segmentCount = Integer.highestOneBit(Math.min(concurrencyLevel, 1 << 16) * 2 - 1);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment<>();
+        }
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     *
+     * @param key key to look up
+     * @return mapped value or {@code null} if there's no mapping for the key
+     */
+    public V get(long key) {
+        long hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * Returns whether there's a value mapped to the given key.
+     *
+     * @param key key to look up
+     * @return {@code true} if the key is mapped
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the given key to the given value.
+     *
+     * @param key   key
+     * @param value value, must not be {@code null}
+     * @return previous value mapped to the key or {@code null} if there was none
+     */
+    public V put(long key, V value) {
+        requireValue(value);
+        long hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, false);
+    }
+
+    /**
+     * Maps the given key to the given value unless the key is already mapped.
+     *
+     * @param key   key
+     * @param value value, must not be {@code null}
+     * @return current value mapped to the key or {@code null} if the given value has been stored
+     */
+    public V putIfAbsent(long key, V value) {
+        requireValue(value);
+        long hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, true);
+    }
+
+    /**
+     * Replaces the value mapped to the given key, only if the key is mapped.
+     *
+     * @param key   key
+     * @param value value, must not be {@code null}
+     * @return previous value mapped to the key or {@code null} if the key was not mapped
+     */
+    public V replace(long key, V value) {
+        requireValue(value);
+        long hash = hash(key);
+        return segmentFor(hash).replace(key, hash, value);
+    }
+
+    /**
+     * Replaces the value mapped to the given key, only if the key is currently mapped to the expected value. Values
+     * are compared by identity, so this can be used as a compare-and-set on immutable snapshots.
+     *
+     * @param key           key
+     * @param expectedValue value expected to be mapped to the key
+     * @param value         new value, must not be {@code null}
+     * @return {@code true} if the value has been replaced
+     */
+    public boolean replace(long key, V expectedValue, V value) {
+        requireValue(value);
+        long hash = hash(key);
+        return segmentFor(hash).replace(key, hash, expectedValue, value);
+    }
+
+    /**
+     * Removes the mapping for the given key.
+     *
+     * @param key key
+     * @return removed value or {@code null} if the key was not mapped
+     */
+    public V remove(long key) {
+        long hash = hash(key);
+        return segmentFor(hash).remove(key, hash);
+    }
+
+    /**
+     * Removes the mapping for the given key, only if the key is currently mapped to the expected value. Values are
+     * compared by identity.
+     *
+     * @param key           key
+     * @param expectedValue value expected to be mapped to the key
+     * @return {@code true} if the mapping has been removed
+     */
+    public boolean remove(long key, V expectedValue) {
+        long hash = hash(key);
+        return segmentFor(hash).remove(key, hash, expectedValue);
+    }
+
+    /**
+     * Returns the number of mappings. The result is a snapshot and may be stale under concurrent writes.
+     *
+     * @return number of mappings
+     */
+    public int size() {
+        long size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns whether the map is empty.
+     *
+     * @return {@code true} if there are no mappings
+     */
+    public boolean isEmpty() {
+        for (Segment<V> segment : segments) {
+            if (segment.size() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all mappings.
+     */
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the values. Each segment is copied atomically, but the map as a whole is not locked, so
+     * concurrent writes to other segments may or may not be reflected.
+     *
+     * @return values currently in the map, in no particular order
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        for (Segment<V> segment : segments) {
+            segment.copyValuesTo(values);
+        }
+        return values;
+    }
+
+    /**
+     * Performs the given action for each mapping. Iteration is weakly consistent: each segment is copied atomically
+     * and the action runs without holding any lock, so it may safely write to this map.
+     *
+     * @param action action to be performed for each mapping
+     */
+    public void forEach(LongObjConsumer<? super V> action) {
+        List<V> values = new ArrayList<>();
+        for (Segment<V> segment : segments) {
+            long[] keys = segment.copyEntriesTo(values);
+            for (int i = 0; i < keys.length; i++) {
+                action.accept(keys[i], values.get(i));
+            }
+            values.clear();
+        }
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        return segments[(int) (hash >>> segmentShift) & (segments.length - 1)];
+    }
+
+    private static void requireValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer: sequential ids end up evenly spread across segments and slots.
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Action performed on each mapping of a {@link LongConcurrentHashMap}.
+     *
+     * @param <V> type of the values
+     */
+    @FunctionalInterface
+    public interface LongObjConsumer<V> {
+
+        void accept(long key, V value);
+    }
+
+    /**
+     * Keys and values are held together so that a reader always sees arrays of the same length.
+     */
+    private static final class Table {
+
+        final long[] keys;
+
+        final Object[] values;
+
+        final int mask;
+
+        final int threshold;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+            this.threshold = (int) (capacity * LOAD_FACTOR);
+        }
+    }
+
+    private static final class Segment<V> {
+
+        private final StampedLock lock = new StampedLock();
+
+        private Table table = new Table(DEFAULT_SEGMENT_CAPACITY);
+
+        private int size;
+
+        V get(long key, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0L) {
+                Object value = find(table, key, hash);
+                if (lock.validate(stamp)) {
+                    return cast(value);
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return cast(find(table, key, hash));
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        V put(long key, long hash, V value, boolean onlyIfAbsent) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int index = (int) hash & t.mask;
+                while (t.values[index] != null) {
+                    if (t.keys[index] == key) {
+                        V previous = cast(t.values[index]);
+                        if (!onlyIfAbsent) {
+                            t.values[index] = value;
+                        }
+                        return previous;
+                    }
+                    index = (index + 1) & t.mask;
+                }
+                t.keys[index] = key;
+                t.values[index] = value;
+                if (++size > t.threshold) {
+                    resize();
+                }
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        V replace(long key, long hash, V value) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int index = indexOf(t, key, hash);
+                if (index < 0) {
+                    return null;
+                }
+                V previous = cast(t.values[index]);
+                t.values[index] = value;
+                return previous;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean replace(long key, long hash, V expectedValue, V value) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int index = indexOf(t, key, hash);
+                if (index < 0 || t.values[index] != expectedValue) {
+                    return false;
+                }
+                t.values[index] = value;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        V remove(long key, long hash) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int index = indexOf(t, key, hash);
+                if (index < 0) {
+                    return null;
+                }
+                V previous = cast(t.values[index]);
+                delete(t, index);
+                size--;
+                return previous;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(long key, long hash, V expectedValue) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int index = indexOf(t, key, hash);
+                if (index < 0 || t.values[index] != expectedValue) {
+                    return false;
+                }
+                delete(t, index);
+                size--;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = lock.tryOptimisticRead();
+            int result = size;
+            if (lock.validate(stamp)) {
+                return result;
+            }
+            stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = lock.writeLock();
+            try {
+                table = new Table(DEFAULT_SEGMENT_CAPACITY);
+                size = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void copyValuesTo(List<V> target) {
+            long stamp = lock.readLock();
+            try {
+                Object[] values = table.values;
+                for (Object value : values) {
+                    if (value != null) {
+                        target.add(cast(value));
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        long[] copyEntriesTo(List<V> target) {
+            long stamp = lock.readLock();
+            try {
+                Table t = table;
+                long[] keys = new long[size];
+                int count = 0;
+                for (int i = 0; i < t.values.length; i++) {
+                    if (t.values[i] != null) {
+                        keys[count++] = t.keys[i];
+                        target.add(cast(t.values[i]));
+                    }
+                }
+                return keys;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Probes for the key. May run concurrently with a writer (optimistic read), so the probe length is bounded by
+         * the table capacity and the result is only trusted once the caller has validated its stamp.
+         */
+        private static Object find(Table t, long key, long hash) {
+            int index = (int) hash & t.mask;
+            for (int probes = 0; probes <= t.mask; probes++) {
+                Object value = t.values[index];
+                if (value == null) {
+                    return null;
+                }
+                if (t.keys[index] == key) {
+                    return value;
+                }
+                index = (index + 1) & t.mask;
+            }
+            return null;
+        }
+
+        private static int indexOf(Table t, long key, long hash) {
+            int index = (int) hash & t.mask;
+            while (t.values[index] != null) {
+                if (t.keys[index] == key) {
+                    return index;
+                }
+                index = (index + 1) & t.mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Backward shift deletion: entries following the removed slot are moved back when their probe sequence would
+         * otherwise be broken, so no tombstones are left behind.
+         */
+        private static void delete(Table t, int index) {
+            int free = index;
+            int current = index;
+            t.values[free] = null;
+            while (true) {
+                current = (current + 1) & t.mask;
+                Object value = t.values[current];
+                if (value == null) {
+                    return;
+                }
+                int ideal = (int) hash(t.keys[current]) & t.mask;
+                boolean reachable = free <= current
+                        ? free < ideal && ideal <= current
+                        : free < ideal || ideal <= current;
+                if (!reachable) {
+                    t.keys[free] = t.keys[current];
+                    t.values[free] = value;
+                    t.values[current] = null;
+                    free = current;
+                }
+            }
+        }
+
+        private void resize() {
+            Table old = table;
+            Table resized = new Table(old.keys.length << 1);
+            for (int i = 0; i < old.values.length; i++) {
+                Object value = old.values[i];
+                if (value != null) {
+                    long key = old.keys[i];
+                    int index = (int) hash(key) & resized.mask;
+                    while (resized.values[index] != null) {
+                        index = (index + 1) & resized.mask;
+                    }
+                    resized.keys[index] = key;
+                    resized.values[index] = value;
+                }
+            }
+            table = resized;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> V cast(Object value) {
+            return (V) value;
+        }
+    }
+}
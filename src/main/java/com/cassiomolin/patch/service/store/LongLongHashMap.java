@@ -0,0 +1,195 @@
+package com.cassiomolin.patch.service.store;
+
+/**
+ * Hash map from primitive {@code long} keys to primitive {@code long} values.
+ * <p>
+ * An open addressing table with linear probing, holding keys and values in two flat arrays, so a mapping costs no
+ * object at all. Key {@code 0} marks free slots and can't be mapped. Not thread-safe, but lookups racing with writes
+ * end, possibly with a wrong result or an exception, so they can be part of an optimistic read.
+ */
+public class LongLongHashMap {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+
+    private long[] values;
+
+    private int mask;
+
+    private int threshold;
+
+    private int size;
+
+    public LongLongHashMap() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     *
+     * @param key          key to look up
+     * @param defaultValue value returned if there's no mapping for the key
+     * @return mapped value or {@code defaultValue}
+     */
+    public long get(long key, long defaultValue) {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : values[index];
+    }
+
+    /**
+     * Returns whether there's a value mapped to the given key.
+     *
+     * @param key key to look up
+     * @return {@code true} if the key is mapped
+     */
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Maps the given key to the given value.
+     *
+     * @param key          key, must not be {@code 0}
+     * @param value        value
+     * @param defaultValue value returned if the key was not mapped
+     * @return previous value mapped to the key or {@code defaultValue}
+     */
+    public long put(long key, long value, long defaultValue) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is not supported");
+        }
+        int index = (int) hash(key) & mask;
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                long previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > threshold) {
+            resize();
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Removes the mapping for the given key.
+     *
+     * @param key          key
+     * @param defaultValue value returned if the key was not mapped
+     * @return removed value or {@code defaultValue}
+     */
+    public long remove(long key, long defaultValue) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return defaultValue;
+        }
+        long previous = values[index];
+        delete(index);
+        size--;
+        return previous;
+    }
+
+    /**
+     * Returns the number of mappings.
+     *
+     * @return number of mappings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all mappings, shrinking the table back to its initial capacity.
+     */
+    public void clear() {
+        allocate(DEFAULT_CAPACITY);
+        size = 0;
+    }
+
+    private int indexOf(long key) {
+        if (key == 0) {
+            return -1;
+        }
+        // The table is read once, so a lookup racing with a resize, as part of an optimistic read, probes a single
+        // table that always has free slots, and ends
+        long[] table = keys;
+        int tableMask = table.length - 1;
+        int index = (int) hash(key) & tableMask;
+        while (table[index] != 0) {
+            if (table[index] == key) {
+                return index;
+            }
+            index = (index + 1) & tableMask;
+        }
+        return -1;
+    }
+
+    /**
+     * Backward shift deletion, as in {@link LongConcurrentHashMap}.
+     */
+    private void delete(int index) {
+        int free = index;
+        int current = index;
+        keys[free] = 0;
+        while (true) {
+            current = (current + 1) & mask;
+            long key = keys[current];
+            if (key == 0) {
+                return;
+            }
+            int ideal = (int) hash(key) & mask;
+            boolean reachable = free <= current
+                    ? free < ideal && ideal <= current
+                    : free < ideal || ideal <= current;
+            if (!reachable) {
+                keys[free] = key;
+                values[free] = values[current];
+                keys[current] = 0;
+                free = current;
+            }
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int index = (int) hash(key) & mask;
+                while (keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer, as in {@link LongConcurrentHashMap}.
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,18 @@
+package com.cassiomolin.patch.web;
+
+import org.springframework.http.MediaType;
+
+public final class StreamMediaType {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    public static final MediaType APPLICATION_NDJSON;
+
+    static {
+        APPLICATION_NDJSON = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+    }
+
+    private StreamMediaType() {
+        throw new AssertionError("No instances of StreamMediaType for you!");
+    }
+}
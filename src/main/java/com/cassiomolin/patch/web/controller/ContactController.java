@@ -1,36 +1,88 @@
 package com.cassiomolin.patch.web.controller;
 
 import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactQuery;
+import com.cassiomolin.patch.service.ContactQueryService;
 import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.ContactSort;
+import com.cassiomolin.patch.service.Page;
+import com.cassiomolin.patch.service.filter.ContactFilter;
+import com.cassiomolin.patch.service.filter.InvalidFilterException;
+import com.cassiomolin.patch.service.index.BirthdayIndex;
+import com.cassiomolin.patch.service.index.Tokenizer;
 import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.StreamMediaType;
+import com.cassiomolin.patch.web.exception.BadRequestException;
+import com.cassiomolin.patch.web.exception.GoneException;
+import com.cassiomolin.patch.web.exception.PreconditionFailedException;
 import com.cassiomolin.patch.web.exception.ResourceNotFoundException;
 import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.patch.PatchSchemas;
 import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.output.ContactImportResourceOutput;
 import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
+import com.cassiomolin.patch.web.resource.output.ContactVersionResourceOutput;
+import com.cassiomolin.patch.web.util.ContactDeltas;
+import com.cassiomolin.patch.web.util.ContactImporter;
+import com.cassiomolin.patch.web.util.ContactStreamWriter;
+import com.cassiomolin.patch.web.util.Cursors;
+import com.cassiomolin.patch.web.util.EntityTags;
 import com.cassiomolin.patch.web.util.PatchHelper;
+import com.cassiomolin.patch.web.util.Preferences;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.json.JsonMergePatch;
 import javax.json.JsonPatch;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/contacts")
 @RequiredArgsConstructor
 public class ContactController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int MAX_BIRTHDAY_DAYS = 365;
+
     private final ContactMapper mapper;
 
     private final ContactService service;
 
+    private final ContactQueryService queryService;
+
     private final PatchHelper patchHelper;
 
+    private final PatchSchemas patchSchemas;
+
+    private final ContactStreamWriter streamWriter;
+
+    private final ContactImporter importer;
+
+    private final ContactDeltas contactDeltas;
+
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Void> updateContact(@Valid @RequestBody ContactResourceInput contactResource) {
 
@@ -45,73 +97,393 @@ public class ContactController {
         return ResponseEntity.created(location).build();
     }
 
+    /**
+     * Imports contacts in bulk from newline delimited JSON, one contact per line.
+     * <p>
+     * Lines that can't be parsed or fail validation are reported along with their line number, without failing the
+     * contacts of the other lines.
+     */
+    @PostMapping(consumes = StreamMediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ContactImportResourceOutput> importContacts(InputStream body) throws IOException {
+
+        ContactImportResourceOutput report = importer.importContacts(body);
+
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * Finds a page of contacts ordered by id, or by a property if {@code sort} is given, such as {@code name} or
+     * {@code lastModifiedDateTime,desc}.
+     * <p>
+     * The body holds the contacts of the page. If there are more contacts, a {@code Link} header points to the next
+     * page. Clients that only need a few properties can list them in {@code fields}; the id is always included.
+     * <p>
+     * Contacts can be filtered by group, favorite flag, email address and phone number, which are looked up in
+     * secondary indexes rather than by scanning all contacts, and by a {@code filter} expression over any property,
+     * as described in {@link ContactFilter}. The parts of the expression the indexes can't answer are evaluated by a
+     * parallel scan.
+     * <p>
+     * Contacts sorted by name, creation or last modification date-time are read in order from an index; the other
+     * sort properties, {@code birthday} and {@code work.company}, are sorted on demand without sorting every
+     * contact.
+     */
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<ContactResourceOutput>> findContacts() {
+    public ResponseEntity<MappingJacksonValue> findContacts(@RequestParam(defaultValue = "100") int limit,
+                                                            @RequestParam(required = false) String cursor,
+                                                            @RequestParam(required = false) List<String> fields,
+                                                            @RequestParam(required = false) String group,
+                                                            @RequestParam(required = false) Boolean favorite,
+                                                            @RequestParam(required = false) String email,
+                                                            @RequestParam(required = false) String phone,
+                                                            @RequestParam(required = false) String filter,
+                                                            @RequestParam(required = false) String sort) {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("The limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        ContactQuery query = ContactQuery.builder().group(group).favorite(favorite).email(email).phone(phone)
+                .filter(filter == null ? null : parseFilter(filter))
+                .build();
+        ContactSort contactSort = sort == null ? null : parseSort(sort);
+        Page<Contact> page;
+        if (contactSort != null) {
+            page = queryService.findContacts(query, contactSort, Cursors.decode(cursor, contactSort.getProperty()),
+                    limit);
+        } else if (query.isEmpty()) {
+            page = service.findContacts(Cursors.decode(cursor), limit);
+        } else {
+            page = queryService.findContacts(query, Cursors.decode(cursor), limit);
+        }
+        List<ContactResourceOutput> contactResources = mapper.asOutput(page.getItems());
+
+        MappingJacksonValue body = withFields(contactResources, fields);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!page.isLast()) {
+            Contact last = page.getItems().get(page.getItems().size() - 1);
+            String nextCursor = contactSort == null ? Cursors.encode(last.getId())
+                    : Cursors.encode(contactSort.getProperty(), contactSort.keyOf(last));
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", nextCursor)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+
+        return response.body(body);
+    }
 
-        List<Contact> contacts = service.findContacts();
-        List<ContactResourceOutput> contactResources = mapper.asOutput(contacts);
+    /**
+     * Searches the contacts whose name or notes contain every word of {@code q}, most relevant first.
+     * <p>
+     * Words are matched regardless of case and diacritics. Contacts whose name holds a word rank above contacts whose
+     * notes do, and rarer words weigh more than common ones.
+     */
+    @GetMapping(path = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<MappingJacksonValue> searchContacts(@RequestParam String q,
+                                                              @RequestParam(defaultValue = "20") int limit,
+                                                              @RequestParam(required = false) List<String> fields) {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("The limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (Tokenizer.tokenize(q).isEmpty()) {
+            throw new BadRequestException("The query must contain at least one word");
+        }
+
+        List<Contact> contacts = queryService.searchContacts(q, limit);
+
+        return ResponseEntity.ok(withFields(mapper.asOutput(contacts), fields));
+    }
 
-        return ResponseEntity.ok(contactResources);
+    /**
+     * Suggests contacts as a name, an email address or a phone number is typed, favorites first.
+     * <p>
+     * Contacts are suggested when their name, a word of their name, an email address or a phone number starts with
+     * {@code prefix}. At most as many contacts as cached per prefix by the index are returned, whatever the limit.
+     */
+    @GetMapping(path = "/suggest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<MappingJacksonValue> suggestContacts(@RequestParam String prefix,
+                                                               @RequestParam(defaultValue = "10") int limit,
+                                                               @RequestParam(required = false) List<String> fields) {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("The limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (prefix.trim().isEmpty()) {
+            throw new BadRequestException("The prefix must not be blank");
+        }
+
+        List<Contact> contacts = queryService.suggestContacts(prefix, limit);
+
+        return ResponseEntity.ok(withFields(mapper.asOutput(contacts), fields));
+    }
+
+    /**
+     * Finds the contacts celebrating their birthday in the {@code days} days from {@code from}, today by default,
+     * ordered by the date of their birthday. Contacts born on February 29 celebrate on February 28 in common years.
+     * <p>
+     * Birthdays are looked up in an index by day of the year, so the cost of a request depends on the number of
+     * contacts found rather than on the number of contacts. If there are more contacts, a {@code Link} header points
+     * to the next page.
+     */
+    @GetMapping(path = "/birthdays", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<MappingJacksonValue> findBirthdays(@RequestParam(required = false)
+                                                             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                             @RequestParam(defaultValue = "7") int days,
+                                                             @RequestParam(defaultValue = "100") int limit,
+                                                             @RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) List<String> fields) {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("The limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (days < 1 || days > MAX_BIRTHDAY_DAYS) {
+            throw new BadRequestException("The number of days must be between 1 and " + MAX_BIRTHDAY_DAYS);
+        }
+
+        LocalDate start = from == null ? LocalDate.now(ZoneOffset.UTC) : from;
+        Page<Contact> page = queryService.findBirthdays(start, days, Cursors.decode(cursor), limit);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!page.isLast()) {
+            Contact last = page.getItems().get(page.getItems().size() - 1);
+            LocalDate birthday = BirthdayIndex.nextBirthday(last.getBirthday(), start);
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("from", birthday)
+                    .replaceQueryParam("days", days - ChronoUnit.DAYS.between(start, birthday))
+                    .replaceQueryParam("cursor", Cursors.encode(last.getId()))
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+
+        return response.body(withFields(mapper.asOutput(page.getItems()), fields));
+    }
+
+    /**
+     * Exports all contacts ordered by id, as newline delimited JSON if requested in the {@code Accept} header or as a
+     * JSON array otherwise.
+     * <p>
+     * Contacts are written to the response as they are read from the store, so memory use stays constant regardless
+     * of the number of contacts.
+     */
+    @GetMapping(params = "export", produces = {StreamMediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public void exportContacts(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                               HttpServletResponse response) throws IOException {
+
+        boolean ndjson = accept != null && MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(StreamMediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+
+        response.setContentType(ndjson ? StreamMediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        try (Stream<Contact> contacts = service.streamContacts()) {
+            if (ndjson) {
+                streamWriter.writeNdjson(contacts, response.getOutputStream());
+            } else {
+                streamWriter.writeJsonArray(contacts, response.getOutputStream());
+            }
+        }
     }
 
     @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<ContactResourceOutput> findContact(@PathVariable Long id) {
+    public ResponseEntity<ContactResourceOutput> findContact(@PathVariable Long id, WebRequest request) {
 
         Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
+        String etag = EntityTags.of(contact.getVersion());
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
         ContactResourceOutput contactResource = mapper.asOutput(contact);
 
-        return ResponseEntity.ok(contactResource);
+        return ResponseEntity.ok().eTag(etag).body(contactResource);
     }
 
-    @PutMapping(path = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Void> updateContact(@PathVariable Long id,
-                                              @RequestBody @Valid ContactResourceInput contactResource) {
+    /**
+     * Returns a contact as it was at a given date-time, rebuilt from its history. Versions that are no longer retained
+     * are answered with {@code 410 Gone}.
+     */
+    @GetMapping(path = "/{id}", params = "asOf", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ContactResourceOutput> findContactAsOf(@PathVariable Long id,
+                                                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime asOf) {
 
         Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
-        mapper.update(contact, contactResource);
-        service.updateContact(contact);
+        if (asOf.isBefore(contact.getCreatedDateTime())) {
+            throw new ResourceNotFoundException();
+        }
 
-        return ResponseEntity.noContent().build();
+        ContactResourceOutput contactResource = contactDeltas.asOf(contact, asOf).orElseThrow(GoneException::new);
+
+        return ResponseEntity.ok(contactResource);
     }
 
-    @PatchMapping(path = "/{id}", consumes = PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
-    public ResponseEntity<Void> updateContact(@PathVariable Long id,
-                                              @RequestBody JsonPatch patchDocument) {
+    /**
+     * Lists the versions of a contact still retained, newest first, each with the changes that produced it.
+     */
+    @GetMapping(path = "/{id}/history", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<ContactVersionResourceOutput>> findContactHistory(@PathVariable Long id) {
 
         Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
-        ContactResourceInput contactResource = mapper.asInput(contact);
-        ContactResourceInput contactResourcePatched = patchHelper.patch(patchDocument, contactResource, ContactResourceInput.class);
 
-        mapper.update(contact, contactResourcePatched);
-        service.updateContact(contact);
+        return ResponseEntity.ok().eTag(EntityTags.of(contact.getVersion())).body(contactDeltas.history(contact));
+    }
 
-        return ResponseEntity.noContent().build();
+    /**
+     * Returns the changes made to a contact since the version held by the client as a JSON Patch document, so the
+     * client can bring its copy up to date without downloading the whole contact. Changes since a version that is no
+     * longer retained are answered with {@code 410 Gone}, and the client has to fetch the contact again.
+     */
+    @GetMapping(path = "/{id}/changes", produces = PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
+    public ResponseEntity<JsonPatch> findChanges(@PathVariable Long id, @RequestParam long since) {
+
+        Contact contact = findContactSince(id, since);
+        JsonPatch patch = contactDeltas.diff(contact, since).orElseThrow(GoneException::new);
+
+        return ResponseEntity.ok().eTag(EntityTags.of(contact.getVersion())).body(patch);
     }
 
-    @PatchMapping(path = "/{id}", consumes = PatchMediaType.APPLICATION_MERGE_PATCH_VALUE)
-    public ResponseEntity<Void> updateContact(@PathVariable Long id,
-                                              @RequestBody JsonMergePatch mergePatchDocument) {
+    /**
+     * Returns the changes made to a contact since the version held by the client as a JSON Merge Patch document.
+     *
+     * @see #findChanges(Long, long)
+     */
+    @GetMapping(path = "/{id}/changes", produces = PatchMediaType.APPLICATION_MERGE_PATCH_VALUE)
+    public ResponseEntity<JsonMergePatch> findMergeChanges(@PathVariable Long id, @RequestParam long since) {
 
-        Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
-        ContactResourceInput contactResource = mapper.asInput(contact);
-        ContactResourceInput contactResourcePatched = patchHelper.mergePatch(mergePatchDocument, contactResource, ContactResourceInput.class);
+        Contact contact = findContactSince(id, since);
+        JsonMergePatch mergePatch = contactDeltas.mergeDiff(contact, since).orElseThrow(GoneException::new);
 
-        mapper.update(contact, contactResourcePatched);
-        service.updateContact(contact);
+        return ResponseEntity.ok().eTag(EntityTags.of(contact.getVersion())).body(mergePatch);
+    }
 
-        return ResponseEntity.noContent().build();
+    @PutMapping(path = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<MappingJacksonValue> updateContact(@PathVariable Long id,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) List<String> ifMatch,
+                                                           @RequestHeader(value = Preferences.PREFER, required = false) List<String> prefer,
+                                                           @RequestParam(required = false) List<String> fields,
+                                                           @RequestBody @Valid ContactResourceInput contactResource) {
+
+        Contact contactUpdated = service.updateContact(id, contact -> {
+            checkIfMatch(ifMatch, contact);
+            mapper.update(contact, contactResource);
+            return contact;
+        }).orElseThrow(ResourceNotFoundException::new);
+
+        return updated(contactUpdated, prefer, fields);
     }
 
+    @PatchMapping(path = "/{id}", consumes = PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
+    public ResponseEntity<MappingJacksonValue> updateContact(@PathVariable Long id,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) List<String> ifMatch,
+                                                           @RequestHeader(value = Preferences.PREFER, required = false) List<String> prefer,
+                                                           @RequestParam(required = false) List<String> fields,
+                                                           @RequestBody JsonPatch patchDocument) {
+
+        patchSchemas.check(patchDocument, ContactResourceInput.class);
+
+        Contact contactUpdated = service.updateContact(id, contact -> {
+            checkIfMatch(ifMatch, contact);
+            ContactResourceInput contactResource = mapper.asInput(contact);
+            ContactResourceInput contactResourcePatched = patchHelper.patch(patchDocument, contactResource, ContactResourceInput.class);
+            mapper.update(contact, contactResourcePatched);
+            return contact;
+        }).orElseThrow(ResourceNotFoundException::new);
+
+        return updated(contactUpdated, prefer, fields);
+    }
 
+    @PatchMapping(path = "/{id}", consumes = PatchMediaType.APPLICATION_MERGE_PATCH_VALUE)
+    public ResponseEntity<MappingJacksonValue> updateContact(@PathVariable Long id,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) List<String> ifMatch,
+                                                           @RequestHeader(value = Preferences.PREFER, required = false) List<String> prefer,
+                                                           @RequestParam(required = false) List<String> fields,
+                                                           @RequestBody JsonMergePatch mergePatchDocument) {
+
+        patchSchemas.check(mergePatchDocument, ContactResourceInput.class);
+
+        Contact contactUpdated = service.updateContact(id, contact -> {
+            checkIfMatch(ifMatch, contact);
+            ContactResourceInput contactResource = mapper.asInput(contact);
+            ContactResourceInput contactResourcePatched = patchHelper.mergePatch(mergePatchDocument, contactResource, ContactResourceInput.class);
+            mapper.update(contact, contactResourcePatched);
+            return contact;
+        }).orElseThrow(ResourceNotFoundException::new);
+
+        return updated(contactUpdated, prefer, fields);
+    }
 
     @DeleteMapping(path = "/{id}")
-    public ResponseEntity<Void> deleteContact(@PathVariable Long id) {
+    public ResponseEntity<Void> deleteContact(@PathVariable Long id,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) List<String> ifMatch) {
 
-        Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
-        service.deleteContact(contact);
+        service.deleteContact(id, contact -> checkIfMatch(ifMatch, contact))
+                .orElseThrow(ResourceNotFoundException::new);
 
         return ResponseEntity.noContent().build();
     }
 
+    private static ContactFilter parseFilter(String filter) {
+        try {
+            return ContactFilter.parse(filter);
+        } catch (InvalidFilterException e) {
+            throw new BadRequestException("Invalid filter: " + e.getMessage());
+        }
+    }
+
+    private static ContactSort parseSort(String sort) {
+        try {
+            return ContactSort.parse(sort);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid sort: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Wraps contacts for serialization, restricted to the given fields and the id if any fields are given.
+     */
+    private static MappingJacksonValue withFields(Object contactResources, List<String> fields) {
+        MappingJacksonValue body = new MappingJacksonValue(contactResources);
+        if (fields != null && !fields.isEmpty()) {
+            Set<String> properties = new HashSet<>(fields);
+            properties.add("id");
+            body.setFilters(new SimpleFilterProvider().addFilter(ContactResourceOutput.FIELDS_FILTER,
+                    SimpleBeanPropertyFilter.filterOutAllExcept(properties)));
+        }
+        return body;
+    }
+
+    /**
+     * Answers a request that updated a contact with its new entity tag and, if the client prefers so, its new
+     * representation, serialized from the updated contact rather than read again from the store.
+     * <p>
+     * The entity tag is that of the full representation, so it's left out when only some fields are returned, as in
+     * the responses that list contacts.
+     */
+    private ResponseEntity<MappingJacksonValue> updated(Contact contact, List<String> prefer, List<String> fields) {
+        String etag = EntityTags.of(contact.getVersion());
+        if (!Preferences.returnRepresentation(prefer)) {
+            return ResponseEntity.noContent().eTag(etag).build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(Preferences.PREFERENCE_APPLIED, Preferences.RETURN_REPRESENTATION);
+        if (fields == null || fields.isEmpty()) {
+            response.eTag(etag);
+        }
+        return response.body(withFields(mapper.asOutput(contact), fields));
+    }
+
+    private Contact findContactSince(Long id, long since) {
+        Contact contact = service.findContact(id).orElseThrow(ResourceNotFoundException::new);
+        if (since < 1 || since > contact.getVersion()) {
+            throw new BadRequestException("Version must be between 1 and " + contact.getVersion());
+        }
+        return contact;
+    }
 
+    private static void checkIfMatch(List<String> ifMatch, Contact contact) {
+        if (!EntityTags.ifMatch(ifMatch, EntityTags.of(contact.getVersion()))) {
+            throw new PreconditionFailedException();
+        }
+    }
 }
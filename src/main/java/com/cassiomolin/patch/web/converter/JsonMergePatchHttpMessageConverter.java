@@ -1,6 +1,7 @@
 package com.cassiomolin.patch.web.converter;
 
 import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.exception.PayloadTooLargeException;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.converter.AbstractHttpMessageConverter;
@@ -8,21 +9,32 @@ import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.http.converter.HttpMessageNotWritableException;
 import org.springframework.stereotype.Component;
 
-import javax.json.Json;
 import javax.json.JsonMergePatch;
-import javax.json.JsonReader;
 import javax.json.JsonWriter;
+import javax.json.JsonWriterFactory;
+import javax.json.spi.JsonProvider;
 
 /**
  * HTTP message converter for {@link JsonMergePatch}.
  * <p>
- * Only supports {@code application/merge-patch+json} media type.
+ * Only supports {@code application/merge-patch+json} media type. Documents are read with the {@link
+ * PatchDocumentReader}, which streams the body and enforces the configured size and depth limits.
  */
 @Component
 public class JsonMergePatchHttpMessageConverter extends AbstractHttpMessageConverter<JsonMergePatch> {
 
-    public JsonMergePatchHttpMessageConverter() {
+    private final PatchDocumentReader documentReader;
+
+    private final JsonWriterFactory writerFactory;
+
+    private final JsonProvider provider;
+
+    public JsonMergePatchHttpMessageConverter(PatchDocumentReader documentReader, JsonWriterFactory writerFactory,
+                                              JsonProvider provider) {
         super(PatchMediaType.APPLICATION_MERGE_PATCH);
+        this.documentReader = documentReader;
+        this.writerFactory = writerFactory;
+        this.provider = provider;
     }
 
     @Override
@@ -34,8 +46,10 @@ public class JsonMergePatchHttpMessageConverter extends AbstractHttpMessageConve
     protected JsonMergePatch readInternal(Class<? extends JsonMergePatch> clazz, HttpInputMessage inputMessage)
             throws HttpMessageNotReadableException {
 
-        try (JsonReader reader = Json.createReader(inputMessage.getBody())) {
-            return Json.createMergePatch(reader.readValue());
+        try {
+            return provider.createMergePatch(documentReader.readMergePatch(inputMessage));
+        } catch (PayloadTooLargeException e) {
+            throw e;
         } catch (Exception e) {
             throw new HttpMessageNotReadableException(e.getMessage(), inputMessage);
         }
@@ -45,7 +59,7 @@ public class JsonMergePatchHttpMessageConverter extends AbstractHttpMessageConve
     protected void writeInternal(JsonMergePatch jsonMergePatch, HttpOutputMessage outputMessage)
             throws HttpMessageNotWritableException {
 
-        try (JsonWriter writer = Json.createWriter(outputMessage.getBody())) {
+        try (JsonWriter writer = writerFactory.createWriter(outputMessage.getBody())) {
             writer.write(jsonMergePatch.toJsonValue());
         } catch (Exception e) {
             throw new HttpMessageNotWritableException(e.getMessage(), e);
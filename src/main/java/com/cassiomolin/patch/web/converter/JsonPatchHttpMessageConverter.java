@@ -1,6 +1,8 @@
 package com.cassiomolin.patch.web.converter;
 
 import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.exception.PayloadTooLargeException;
+import com.cassiomolin.patch.web.patch.PatchPlanCache;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.converter.AbstractHttpMessageConverter;
@@ -8,21 +10,33 @@ import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.http.converter.HttpMessageNotWritableException;
 import org.springframework.stereotype.Component;
 
-import javax.json.Json;
 import javax.json.JsonPatch;
-import javax.json.JsonReader;
 import javax.json.JsonWriter;
+import javax.json.JsonWriterFactory;
 
 /**
  * HTTP message converter for {@link JsonPatch}.
  * <p>
- * Only supports {@code application/json-patch+json} media type.
+ * Only supports {@code application/json-patch+json} media type. Documents are read with the {@link
+ * PatchDocumentReader}, which streams the body and enforces the configured size, operation count and depth limits,
+ * and are then compiled through the {@link PatchPlanCache}, so the pointers of recurring patch shapes are parsed only
+ * once.
  */
 @Component
 public class JsonPatchHttpMessageConverter extends AbstractHttpMessageConverter<JsonPatch> {
 
-    public JsonPatchHttpMessageConverter() {
+    private final PatchDocumentReader documentReader;
+
+    private final JsonWriterFactory writerFactory;
+
+    private final PatchPlanCache planCache;
+
+    public JsonPatchHttpMessageConverter(PatchDocumentReader documentReader, JsonWriterFactory writerFactory,
+                                         PatchPlanCache planCache) {
         super(PatchMediaType.APPLICATION_JSON_PATCH);
+        this.documentReader = documentReader;
+        this.writerFactory = writerFactory;
+        this.planCache = planCache;
     }
 
     @Override
@@ -34,8 +48,10 @@ public class JsonPatchHttpMessageConverter extends AbstractHttpMessageConverter<
     protected JsonPatch readInternal(Class<? extends JsonPatch> clazz, HttpInputMessage inputMessage)
             throws HttpMessageNotReadableException {
 
-        try (JsonReader reader = Json.createReader(inputMessage.getBody())) {
-            return Json.createPatch(reader.readArray());
+        try {
+            return planCache.compile(documentReader.readPatch(inputMessage));
+        } catch (PayloadTooLargeException e) {
+            throw e;
         } catch (Exception e) {
             throw new HttpMessageNotReadableException(e.getMessage(), inputMessage);
         }
@@ -45,7 +61,7 @@ public class JsonPatchHttpMessageConverter extends AbstractHttpMessageConverter<
     protected void writeInternal(JsonPatch jsonPatch, HttpOutputMessage outputMessage)
             throws HttpMessageNotWritableException {
 
-        try (JsonWriter writer = Json.createWriter(outputMessage.getBody())) {
+        try (JsonWriter writer = writerFactory.createWriter(outputMessage.getBody())) {
             writer.write(jsonPatch.toJsonArray());
         } catch (Exception e) {
             throw new HttpMessageNotWritableException(e.getMessage(), e);
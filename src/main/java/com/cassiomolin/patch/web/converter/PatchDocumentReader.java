@@ -0,0 +1,214 @@
+package com.cassiomolin.patch.web.converter;
+
+import com.cassiomolin.patch.web.exception.PayloadTooLargeException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.stereotype.Component;
+
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonException;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads JSON Patch and JSON Merge Patch documents from request bodies.
+ * <p>
+ * Documents are built from the {@link JsonParser} events as the body is read, so limits on the body size, the number
+ * of operations and the nesting depth are enforced before an oversized document is fully buffered:
+ * <ul>
+ * <li>{@code patch.limits.max-body-size}: maximum body size in bytes, also checked against the
+ * {@code Content-Length} header before reading</li>
+ * <li>{@code patch.limits.max-operations}: maximum number of operations in a JSON Patch document</li>
+ * <li>{@code patch.limits.max-depth}: maximum nesting depth of arrays and objects</li>
+ * </ul>
+ * Exceeding the body size or the number of operations results in a {@link PayloadTooLargeException}; any other
+ * problem results in a {@link JsonException}.
+ */
+@Component
+public class PatchDocumentReader {
+
+    private final JsonParserFactory parserFactory;
+
+    private final JsonBuilderFactory builderFactory;
+
+    private final long maxBodySize;
+
+    private final int maxOperations;
+
+    private final int maxDepth;
+
+    public PatchDocumentReader(JsonParserFactory parserFactory,
+                               JsonBuilderFactory builderFactory,
+                               @Value("${patch.limits.max-body-size:1048576}") long maxBodySize,
+                               @Value("${patch.limits.max-operations:1000}") int maxOperations,
+                               @Value("${patch.limits.max-depth:32}") int maxDepth) {
+        this.parserFactory = parserFactory;
+        this.builderFactory = builderFactory;
+        this.maxBodySize = maxBodySize;
+        this.maxOperations = maxOperations;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Reads a JSON Patch document.
+     *
+     * @param inputMessage HTTP request
+     * @return JSON Patch operations
+     * @throws IOException if the body can't be read
+     */
+    public JsonArray readPatch(HttpInputMessage inputMessage) throws IOException {
+        LimitedInputStream body = open(inputMessage);
+        try (JsonParser parser = parserFactory.createParser(body)) {
+            if (!parser.hasNext() || parser.next() != JsonParser.Event.START_ARRAY) {
+                throw new JsonException("JSON Patch document must be an array");
+            }
+            JsonArrayBuilder operations = builderFactory.createArrayBuilder();
+            int count = 0;
+            for (JsonParser.Event event = parser.next(); event != JsonParser.Event.END_ARRAY; event = parser.next()) {
+                if (++count > maxOperations) {
+                    throw new PayloadTooLargeException("JSON Patch document exceeds " + maxOperations + " operations");
+                }
+                operations.add(readValue(parser, event, 2));
+            }
+            ensureEnd(parser);
+            return operations.build();
+        } catch (JsonException e) {
+            throw body.limitExceeded() ? tooLarge() : e;
+        }
+    }
+
+    /**
+     * Reads a JSON Merge Patch document.
+     *
+     * @param inputMessage HTTP request
+     * @return JSON Merge Patch document
+     * @throws IOException if the body can't be read
+     */
+    public JsonValue readMergePatch(HttpInputMessage inputMessage) throws IOException {
+        LimitedInputStream body = open(inputMessage);
+        try (JsonParser parser = parserFactory.createParser(body)) {
+            if (!parser.hasNext()) {
+                throw new JsonException("JSON Merge Patch document must not be empty");
+            }
+            JsonValue value = readValue(parser, parser.next(), 1);
+            ensureEnd(parser);
+            return value;
+        } catch (JsonException e) {
+            throw body.limitExceeded() ? tooLarge() : e;
+        }
+    }
+
+    private LimitedInputStream open(HttpInputMessage inputMessage) throws IOException {
+        if (inputMessage.getHeaders().getContentLength() > maxBodySize) {
+            throw tooLarge();
+        }
+        return new LimitedInputStream(inputMessage.getBody(), maxBodySize);
+    }
+
+    private JsonValue readValue(JsonParser parser, JsonParser.Event event, int depth) {
+        switch (event) {
+            case START_ARRAY:
+                checkDepth(depth);
+                JsonArrayBuilder array = builderFactory.createArrayBuilder();
+                for (JsonParser.Event next = parser.next(); next != JsonParser.Event.END_ARRAY; next = parser.next()) {
+                    array.add(readValue(parser, next, depth + 1));
+                }
+                return array.build();
+            case START_OBJECT:
+                checkDepth(depth);
+                JsonObjectBuilder object = builderFactory.createObjectBuilder();
+                for (JsonParser.Event next = parser.next(); next != JsonParser.Event.END_OBJECT; next = parser.next()) {
+                    String name = parser.getString();
+                    object.add(name, readValue(parser, parser.next(), depth + 1));
+                }
+                return object.build();
+            case VALUE_STRING:
+            case VALUE_NUMBER:
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+            case VALUE_NULL:
+                return parser.getValue();
+            default:
+                throw new JsonException("Unexpected JSON event: " + event);
+        }
+    }
+
+    private void checkDepth(int depth) {
+        if (depth > maxDepth) {
+            throw new JsonException("JSON document exceeds the maximum nesting depth of " + maxDepth);
+        }
+    }
+
+    private static void ensureEnd(JsonParser parser) {
+        if (parser.hasNext()) {
+            throw new JsonException("Unexpected content after the JSON document");
+        }
+    }
+
+    private PayloadTooLargeException tooLarge() {
+        return new PayloadTooLargeException("Request body exceeds " + maxBodySize + " bytes");
+    }
+
+    /**
+     * Input stream that fails once more than a given number of bytes has been read.
+     */
+    private final class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        boolean limitExceeded() {
+            return count > limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long n) {
+            count += n;
+            if (count > limit) {
+                throw tooLarge();
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.cassiomolin.patch.web.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.GONE)
+public class GoneException extends RuntimeException {
+
+}
@@ -0,0 +1,20 @@
+package com.cassiomolin.patch.web.exception;
+
+import com.cassiomolin.patch.web.patch.PatchViolation;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+@Getter
+@ResponseStatus(value = HttpStatus.UNPROCESSABLE_ENTITY)
+public class InvalidPatchException extends RuntimeException {
+
+    private final List<PatchViolation> violations;
+
+    public InvalidPatchException(List<PatchViolation> violations) {
+        super("Patch document doesn't fit the resource: " + violations);
+        this.violations = violations;
+    }
+}
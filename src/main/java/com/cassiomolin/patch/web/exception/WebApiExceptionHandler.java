@@ -1,7 +1,9 @@
 package com.cassiomolin.patch.web.exception;
 
 
+import com.cassiomolin.patch.web.patch.PatchViolation;
 import com.cassiomolin.patch.web.resource.error.ApiError;
+import com.cassiomolin.patch.web.resource.error.ApiPatchOperationError;
 import com.cassiomolin.patch.web.resource.error.ApiResourcePropertyError;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -65,6 +67,23 @@ public class WebApiExceptionHandler extends ResponseEntityExceptionHandler {
         return handleExceptionInternal(ex, apiError, new HttpHeaders(), apiError.getStatus(), request);
     }
 
+    @ExceptionHandler(InvalidPatchException.class)
+    public ResponseEntity<Object> handleInvalidPatch(InvalidPatchException ex, WebRequest request) {
+
+        List<ApiPatchOperationError> errors = ex.getViolations()
+                .stream()
+                .map(this::toPatchOperationError)
+                .collect(toList());
+
+        ApiError apiError = ApiError.builder()
+                .message("Invalid patch document")
+                .status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .details(errors)
+                .build();
+
+        return handleExceptionInternal(ex, apiError, new HttpHeaders(), apiError.getStatus(), request);
+    }
+
     private ApiResourcePropertyError toResourcePropertyError(ConstraintViolation violation) {
 
         return ApiResourcePropertyError.builder()
@@ -82,4 +101,13 @@ public class WebApiExceptionHandler extends ResponseEntityExceptionHandler {
                 .invalidValue(fieldError.getRejectedValue())
                 .build();
     }
-}
\ No newline at end of file
+
+    private ApiPatchOperationError toPatchOperationError(PatchViolation violation) {
+
+        return ApiPatchOperationError.builder()
+                .operation(violation.getOperation())
+                .path(violation.getPath())
+                .message(violation.getMessage())
+                .build();
+    }
+}
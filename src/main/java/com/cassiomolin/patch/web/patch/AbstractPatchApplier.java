@@ -0,0 +1,80 @@
+package com.cassiomolin.patch.web.patch;
+
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Base class for the {@link PatchApplier}s generated for {@link Patchable} classes.
+ * <p>
+ * Generated subclasses only declare the bean constructor and its properties.
+ *
+ * @param <T> type of the bean
+ */
+public abstract class AbstractPatchApplier<T> implements PatchApplier<T> {
+
+    private final Supplier<T> constructor;
+
+    private final List<PatchProperty<T>> properties;
+
+    private final Map<String, PatchProperty<T>> propertiesByName;
+
+    protected AbstractPatchApplier(Supplier<T> constructor, List<PatchProperty<T>> properties) {
+        this.constructor = constructor;
+        this.properties = properties;
+        this.propertiesByName = new HashMap<>();
+        for (PatchProperty<T> property : properties) {
+            this.propertiesByName.put(property.getName(), property);
+        }
+    }
+
+    /**
+     * Returns the property with the given JSON name.
+     *
+     * @param name property name
+     * @return property or {@code null} if there's no such property
+     */
+    public PatchProperty<T> getProperty(String name) {
+        return propertiesByName.get(name);
+    }
+
+    @Override
+    public T newInstance() {
+        return constructor.get();
+    }
+
+    @Override
+    public T copy(T source) {
+        if (source == null) {
+            return null;
+        }
+        T target = constructor.get();
+        for (PatchProperty<T> property : properties) {
+            property.copy(source, target);
+        }
+        return target;
+    }
+
+    @Override
+    public boolean apply(T target, PatchOperationType type, String[] path, int offset, JsonValue value) {
+        if (offset >= path.length) {
+            return false;
+        }
+        PatchProperty<T> property = propertiesByName.get(path[offset]);
+        return property != null && property.apply(target, type, path, offset + 1, value);
+    }
+
+    @Override
+    public boolean merge(T target, JsonObject patch) {
+        for (Map.Entry<String, JsonValue> member : patch.entrySet()) {
+            PatchProperty<T> property = propertiesByName.get(member.getKey());
+            if (property == null || !property.merge(target, member.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
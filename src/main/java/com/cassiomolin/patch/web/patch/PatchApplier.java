@@ -0,0 +1,81 @@
+package com.cassiomolin.patch.web.patch;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
+/**
+ * Applies JSON Patch and JSON Merge Patch documents directly to the properties of a bean, without converting it to an
+ * intermediate JSON tree. Implementations are generated at compile time for classes annotated with {@link Patchable}.
+ * <p>
+ * Appliers only handle what maps unambiguously to the bean properties. Whenever something is not supported, or would
+ * fail, they give up and return {@code false} (or {@code null}), leaving the document to the generic patch path, which
+ * is the reference for both results and errors.
+ *
+ * @param <T> type of the bean
+ */
+public interface PatchApplier<T> {
+
+    /**
+     * Creates a new, empty instance of the bean.
+     *
+     * @return new instance
+     */
+    T newInstance();
+
+    /**
+     * Deep copies a bean, so that it can be patched without affecting the original.
+     *
+     * @param source bean to be copied, may be {@code null}
+     * @return copy of the bean
+     */
+    T copy(T source);
+
+    /**
+     * Applies a single JSON Patch operation to the bean, in place.
+     *
+     * @param target bean to be patched
+     * @param type   operation type
+     * @param path   reference tokens of the target location
+     * @param offset index of the first reference token that refers to a property of this bean
+     * @param value  operation value, {@code null} for {@code remove}
+     * @return {@code false} if the operation is not supported
+     */
+    boolean apply(T target, PatchOperationType type, String[] path, int offset, JsonValue value);
+
+    /**
+     * Applies a JSON Merge Patch object to the bean, in place.
+     *
+     * @param target bean to be patched
+     * @param patch  JSON Merge Patch object
+     * @return {@code false} if the patch is not supported
+     */
+    boolean merge(T target, JsonObject patch);
+
+    /**
+     * Applies a JSON Patch document to a copy of the bean.
+     *
+     * @param operations JSON Patch operations
+     * @param source     bean to be patched, which is left untouched
+     * @return patched copy or {@code null} if the document is not supported
+     * @throws javax.json.JsonException if the document is not a valid JSON Patch document
+     */
+    default T patch(JsonArray operations, T source) {
+        return PlannedJsonPatch.of(operations).apply(this, source);
+    }
+
+    /**
+     * Applies a JSON Merge Patch document to a copy of the bean.
+     *
+     * @param patch  JSON Merge Patch document
+     * @param source bean to be patched, which is left untouched
+     * @return patched copy or {@code null} if the document is not supported
+     */
+    default T mergePatch(JsonValue patch, T source) {
+        if (patch.getValueType() != JsonValue.ValueType.OBJECT) {
+            return null;
+        }
+        T target = copy(source);
+        return merge(target, (JsonObject) patch) ? target : null;
+    }
+}
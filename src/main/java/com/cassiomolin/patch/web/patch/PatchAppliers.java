@@ -0,0 +1,40 @@
+package com.cassiomolin.patch.web.patch;
+
+import java.util.Optional;
+
+/**
+ * Looks up the {@link PatchApplier}s generated for {@link Patchable} classes.
+ */
+public final class PatchAppliers {
+
+    static final String APPLIER_SUFFIX = "PatchApplier";
+
+    private static final ClassValue<Optional<PatchApplier<?>>> APPLIERS = new ClassValue<Optional<PatchApplier<?>>>() {
+
+        @Override
+        protected Optional<PatchApplier<?>> computeValue(Class<?> type) {
+            try {
+                Class<?> applierClass = Class.forName(type.getName() + APPLIER_SUFFIX, true, type.getClassLoader());
+                return Optional.of((PatchApplier<?>) applierClass.getField("INSTANCE").get(null));
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                return Optional.empty();
+            }
+        }
+    };
+
+    private PatchAppliers() {
+        throw new AssertionError("No instances of PatchAppliers for you!");
+    }
+
+    /**
+     * Returns the generated applier for the given class, if there's one.
+     *
+     * @param type bean class
+     * @param <T>  type of the bean
+     * @return applier for the class
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Optional<PatchApplier<T>> find(Class<T> type) {
+        return (Optional<PatchApplier<T>>) (Optional<?>) APPLIERS.get(type);
+    }
+}
@@ -0,0 +1,51 @@
+package com.cassiomolin.patch.web.patch;
+
+import javax.json.JsonException;
+
+/**
+ * Operations defined by JSON Patch (RFC 6902).
+ */
+public enum PatchOperationType {
+
+    ADD("add"),
+    REMOVE("remove"),
+    REPLACE("replace"),
+    MOVE("move"),
+    COPY("copy"),
+    TEST("test");
+
+    private final String operationName;
+
+    PatchOperationType(String operationName) {
+        this.operationName = operationName;
+    }
+
+    public String operationName() {
+        return operationName;
+    }
+
+    /**
+     * Returns the operation type for the value of the {@code op} member of a JSON Patch operation.
+     *
+     * @param operationName value of the {@code op} member
+     * @return operation type
+     */
+    public static PatchOperationType fromOperationName(String operationName) {
+        switch (operationName) {
+            case "add":
+                return ADD;
+            case "remove":
+                return REMOVE;
+            case "replace":
+                return REPLACE;
+            case "move":
+                return MOVE;
+            case "copy":
+                return COPY;
+            case "test":
+                return TEST;
+            default:
+                throw new JsonException("Illegal value for the op member: " + operationName);
+        }
+    }
+}
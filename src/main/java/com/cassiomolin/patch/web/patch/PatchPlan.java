@@ -0,0 +1,255 @@
+package com.cassiomolin.patch.web.patch;
+
+import com.cassiomolin.patch.web.util.JsonTreePatcher;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+/**
+ * Precompiled structure of a JSON Patch document: the operation types and their pointers split into reference tokens,
+ * with the operation values left out.
+ * <p>
+ * Documents with the same structure share a plan, so pointers are only parsed once per structure. The plan also
+ * remembers how its target locations resolve to the properties of a {@link PatchApplier}.
+ */
+public final class PatchPlan {
+
+    private final PatchOperationType[] types;
+
+    private final String[][] paths;
+
+    private final String[][] froms;
+
+    private volatile Resolution resolution;
+
+    private PatchPlan(PatchOperationType[] types, String[][] paths, String[][] froms) {
+        this.types = types;
+        this.paths = paths;
+        this.froms = froms;
+    }
+
+    /**
+     * Compiles the plan of a JSON Patch document.
+     *
+     * @param operations JSON Patch operations
+     * @return plan of the document
+     * @throws JsonException if the document is not a valid JSON Patch document
+     */
+    public static PatchPlan compile(JsonArray operations) {
+        int size = operations.size();
+        PatchOperationType[] types = new PatchOperationType[size];
+        String[][] paths = new String[size][];
+        String[][] froms = new String[size][];
+        for (int i = 0; i < size; i++) {
+            JsonObject operation = operation(operations, i);
+            types[i] = PatchOperationType.fromOperationName(requiredString(operation, "op"));
+            paths[i] = JsonTreePatcher.parsePointer(requiredString(operation, "path"));
+            switch (types[i]) {
+                case MOVE:
+                case COPY:
+                    froms[i] = JsonTreePatcher.parsePointer(requiredString(operation, "from"));
+                    break;
+                case REMOVE:
+                    break;
+                default:
+                    if (!operation.containsKey("value")) {
+                        throw new JsonException("JSON Patch operation must contain a 'value' member: " + operation);
+                    }
+            }
+        }
+        return new PatchPlan(types, paths, froms);
+    }
+
+    /**
+     * Returns a key that identifies the structure of a JSON Patch document: operations and pointers, but no values.
+     *
+     * @param operations JSON Patch operations
+     * @return structure of the document
+     */
+    public static String shapeOf(JsonArray operations) {
+        StringBuilder shape = new StringBuilder();
+        for (JsonValue operation : operations) {
+            if (operation.getValueType() != JsonValue.ValueType.OBJECT) {
+                shape.append(operation.getValueType()).append('\u0001');
+                continue;
+            }
+            JsonObject object = (JsonObject) operation;
+            appendMember(shape, object.get("op"));
+            appendMember(shape, object.get("path"));
+            appendMember(shape, object.get("from"));
+            shape.append(object.containsKey("value") ? '\u0002' : '\u0001');
+        }
+        return shape.toString();
+    }
+
+    /**
+     * Extracts the values of the operations of a JSON Patch document, in the order of the operations.
+     *
+     * @param operations JSON Patch operations
+     * @return operation values, with {@code null} for operations that take none
+     */
+    public static JsonValue[] valuesOf(JsonArray operations) {
+        JsonValue[] values = new JsonValue[operations.size()];
+        for (int i = 0; i < values.length; i++) {
+            JsonValue operation = operations.get(i);
+            if (operation.getValueType() == JsonValue.ValueType.OBJECT) {
+                values[i] = ((JsonObject) operation).get("value");
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the number of operations.
+     *
+     * @return number of operations
+     */
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * Returns the type of an operation.
+     *
+     * @param index index of the operation
+     * @return operation type
+     */
+    public PatchOperationType getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * Returns the reference tokens of the target location of an operation, which must not be modified.
+     *
+     * @param index index of the operation
+     * @return reference tokens of the path
+     */
+    public String[] getPath(int index) {
+        return paths[index];
+    }
+
+    /**
+     * Returns the reference tokens of the source location of a {@code move} or {@code copy} operation, which must
+     * not be modified.
+     *
+     * @param index index of the operation
+     * @return reference tokens of the source or {@code null} for other operations
+     */
+    public String[] getFrom(int index) {
+        return froms[index];
+    }
+
+    /**
+     * Applies the plan to a Jackson tree.
+     *
+     * @param target document to be patched, modified in place whenever possible
+     * @param values operation values
+     * @return patched document
+     */
+    public JsonNode apply(JsonNode target, JsonValue[] values) {
+        JsonNode document = target;
+        for (int i = 0; i < types.length; i++) {
+            document = JsonTreePatcher.applyOperation(types[i], paths[i], froms[i], values[i], document);
+        }
+        return document;
+    }
+
+    /**
+     * Applies the plan to a copy of a bean through its generated applier.
+     *
+     * @param applier applier of the bean class
+     * @param source  bean to be patched, which is left untouched
+     * @param values  operation values
+     * @param <T>     type of the bean
+     * @return patched copy or {@code null} if the applier doesn't support the document
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T apply(PatchApplier<T> applier, T source, JsonValue[] values) {
+        Resolution resolved = resolve(applier);
+        if (!resolved.supported) {
+            return null;
+        }
+        T target = applier.copy(source);
+        for (int i = 0; i < types.length; i++) {
+            boolean applied = resolved.properties != null
+                    ? ((PatchProperty<T>) resolved.properties[i]).apply(target, types[i], paths[i], 1, values[i])
+                    : applier.apply(target, types[i], paths[i], 0, values[i]);
+            if (!applied) {
+                return null;
+            }
+        }
+        return target;
+    }
+
+    private Resolution resolve(PatchApplier<?> applier) {
+        Resolution resolved = resolution;
+        if (resolved == null || resolved.applier != applier) {
+            resolved = new Resolution(applier);
+            resolution = resolved;
+        }
+        return resolved;
+    }
+
+    private static JsonObject operation(JsonArray operations, int index) {
+        JsonValue operation = operations.get(index);
+        if (operation.getValueType() != JsonValue.ValueType.OBJECT) {
+            throw new JsonException("JSON Patch operation must be an object: " + operation);
+        }
+        return (JsonObject) operation;
+    }
+
+    private static String requiredString(JsonObject operation, String name) {
+        JsonValue value = operation.get(name);
+        if (value == null || value.getValueType() != JsonValue.ValueType.STRING) {
+            throw new JsonException("JSON Patch operation must contain a string '" + name + "' member: " + operation);
+        }
+        return ((JsonString) value).getString();
+    }
+
+    /**
+     * Appends a member of an operation, tagged with its type and prefixed with its length, so the members of different
+     * documents can't run into each other whatever characters they hold.
+     */
+    private static void appendMember(StringBuilder shape, JsonValue value) {
+        if (value == null) {
+            shape.append('-');
+            return;
+        }
+        String text = value instanceof JsonString ? ((JsonString) value).getString() : value.toString();
+        shape.append(value instanceof JsonString ? 's' : 'j').append(text.length()).append(':').append(text);
+    }
+
+    /**
+     * Target locations of the plan resolved against the properties of an applier.
+     */
+    private final class Resolution {
+
+        final PatchApplier<?> applier;
+
+        final boolean supported;
+
+        final PatchProperty<?>[] properties;
+
+        Resolution(PatchApplier<?> applier) {
+            this.applier = applier;
+            boolean supported = true;
+            for (PatchOperationType type : types) {
+                supported &= type != PatchOperationType.MOVE && type != PatchOperationType.COPY;
+            }
+            PatchProperty<?>[] properties = null;
+            if (supported && applier instanceof AbstractPatchApplier) {
+                properties = new PatchProperty<?>[types.length];
+                for (int i = 0; i < types.length && supported; i++) {
+                    properties[i] = paths[i].length == 0 ? null : ((AbstractPatchApplier<?>) applier).getProperty(paths[i][0]);
+                    supported = properties[i] != null;
+                }
+            }
+            this.supported = supported;
+            this.properties = properties;
+        }
+    }
+}
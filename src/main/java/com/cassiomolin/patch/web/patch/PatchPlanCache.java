@@ -0,0 +1,106 @@
+package com.cassiomolin.patch.web.patch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.json.JsonArray;
+
+/**
+ * Bounded cache of {@link PatchPlan}s, keyed by the structure of the JSON Patch documents.
+ * <p>
+ * Clients tend to send the same few patch shapes over and over, so the pointers of those shapes are parsed and
+ * resolved once. Plans are weighed by the length of their key, which grows with the number and the length of the
+ * pointers, and the least recently used plans are evicted once the maximum weight is reached. Documents with many
+ * operations are never cached.
+ * <p>
+ * A plan compiled on a miss is only cached once the document has been checked against the schema of the resource
+ * it targets and {@link #admit(PlannedJsonPatch) admitted}, so documents with pointers that don't exist, which clients
+ * can vary at will, can't fill the cache. Statistics are exposed over JMX.
+ */
+@Component
+@ManagedResource(objectName = "com.cassiomolin.patch:type=PatchPlanCache", description = "JSON Patch plan cache")
+public class PatchPlanCache {
+
+    static final int MAXIMUM_CACHEABLE_OPERATIONS = 32;
+
+    private final Cache<String, PatchPlan> plans;
+
+    public PatchPlanCache(@Value("${patch.plan-cache.maximum-weight:262144}") long maximumWeight) {
+        this.plans = CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((String shape, PatchPlan plan) -> shape.length())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Compiles a JSON Patch document, reusing the plan of a previous document with the same structure. A new plan
+     * isn't cached until the document is {@link #admit(PlannedJsonPatch) admitted}.
+     *
+     * @param operations JSON Patch operations
+     * @return compiled document
+     * @throws javax.json.JsonException if the document is not a valid JSON Patch document
+     */
+    public PlannedJsonPatch compile(JsonArray operations) {
+        if (operations.size() > MAXIMUM_CACHEABLE_OPERATIONS) {
+            return PlannedJsonPatch.of(operations);
+        }
+        String shape = PatchPlan.shapeOf(operations);
+        PatchPlan plan = plans.getIfPresent(shape);
+        if (plan != null) {
+            return new PlannedJsonPatch(plan, PatchPlan.valuesOf(operations), operations);
+        }
+        return new PlannedJsonPatch(PatchPlan.compile(operations), PatchPlan.valuesOf(operations), operations, shape);
+    }
+
+    /**
+     * Caches the plan of a document compiled by this cache, once its pointers have been checked against a schema.
+     * Documents whose plan came from the cache, or wasn't to be cached, are ignored.
+     *
+     * @param patch document that fits the schema of the resource it targets
+     */
+    public void admit(PlannedJsonPatch patch) {
+        if (patch.getShape() != null) {
+            plans.asMap().putIfAbsent(patch.getShape(), patch.getPlan());
+        }
+    }
+
+    @ManagedAttribute(description = "Number of cached plans")
+    public long getSize() {
+        return plans.size();
+    }
+
+    @ManagedAttribute(description = "Number of documents whose plan was found in the cache")
+    public long getHitCount() {
+        return plans.stats().hitCount();
+    }
+
+    @ManagedAttribute(description = "Number of documents whose plan had to be compiled")
+    public long getMissCount() {
+        return plans.stats().missCount();
+    }
+
+    @ManagedAttribute(description = "Ratio of documents whose plan was found in the cache")
+    public double getHitRate() {
+        return plans.stats().hitRate();
+    }
+
+    @ManagedAttribute(description = "Number of plans evicted from the cache")
+    public long getEvictionCount() {
+        return plans.stats().evictionCount();
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics.
+     *
+     * @return cache statistics
+     */
+    public CacheStats stats() {
+        return plans.stats();
+    }
+}
@@ -0,0 +1,456 @@
+package com.cassiomolin.patch.web.patch;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Property of a bean handled by a generated {@link PatchApplier}.
+ * <p>
+ * Generated appliers declare one property per field, bound to the field's getter and setter through method
+ * references, and this class implements the JSON Patch and JSON Merge Patch semantics on top of them.
+ *
+ * @param <T> type of the bean
+ */
+public abstract class PatchProperty<T> {
+
+    /**
+     * Returned by {@link Elements#decode(JsonValue)} when a value can't be decoded.
+     */
+    private static final Object UNSUPPORTED = new Object();
+
+    private final String name;
+
+    PatchProperty(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Creates a property holding a scalar value.
+     */
+    public static <T, V> PatchProperty<T> scalar(String name, Function<T, V> getter, BiConsumer<T, V> setter,
+                                                 ValueCodec<V> codec) {
+        return new ScalarProperty<>(name, getter, setter, codec);
+    }
+
+    /**
+     * Creates a property holding a nested bean.
+     */
+    public static <T, V> PatchProperty<T> object(String name, Function<T, V> getter, BiConsumer<T, V> setter,
+                                                 Supplier<PatchApplier<V>> applier) {
+        return new ObjectProperty<>(name, getter, setter, applier);
+    }
+
+    /**
+     * Creates a property holding a list of scalar values.
+     */
+    public static <T, E> PatchProperty<T> scalarList(String name, Function<T, List<E>> getter,
+                                                     BiConsumer<T, List<E>> setter, ValueCodec<E> codec) {
+        return new ListProperty<>(name, getter, setter, new ScalarElements<>(codec));
+    }
+
+    /**
+     * Creates a property holding a list of nested beans.
+     */
+    public static <T, E> PatchProperty<T> objectList(String name, Function<T, List<E>> getter,
+                                                     BiConsumer<T, List<E>> setter, Supplier<PatchApplier<E>> applier) {
+        return new ListProperty<>(name, getter, setter, new ObjectElements<>(applier));
+    }
+
+    /**
+     * Copies the property value from one bean to another, deep copying nested beans and lists.
+     */
+    abstract void copy(T source, T target);
+
+    /**
+     * Applies a JSON Patch operation whose path starts with this property.
+     *
+     * @param next index of the reference token following the property name
+     */
+    abstract boolean apply(T target, PatchOperationType type, String[] path, int next, JsonValue value);
+
+    /**
+     * Applies the JSON Merge Patch value of this property.
+     */
+    abstract boolean merge(T target, JsonValue value);
+
+    private static final class ScalarProperty<T, V> extends PatchProperty<T> {
+
+        private final Function<T, V> getter;
+
+        private final BiConsumer<T, V> setter;
+
+        private final ValueCodec<V> codec;
+
+        ScalarProperty(String name, Function<T, V> getter, BiConsumer<T, V> setter, ValueCodec<V> codec) {
+            super(name);
+            this.getter = getter;
+            this.setter = setter;
+            this.codec = codec;
+        }
+
+        @Override
+        void copy(T source, T target) {
+            setter.accept(target, getter.apply(source));
+        }
+
+        @Override
+        boolean apply(T target, PatchOperationType type, String[] path, int next, JsonValue value) {
+            if (next != path.length) {
+                return false;
+            }
+            switch (type) {
+                case ADD:
+                    return set(target, value);
+                case REPLACE:
+                    return getter.apply(target) != null && set(target, value);
+                case REMOVE:
+                    if (!codec.isNullable() || getter.apply(target) == null) {
+                        return false;
+                    }
+                    setter.accept(target, null);
+                    return true;
+                case TEST:
+                    V current = getter.apply(target);
+                    return current != null && codec.accepts(value) && current.equals(codec.decode(value));
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        boolean merge(T target, JsonValue value) {
+            return set(target, value);
+        }
+
+        private boolean set(T target, JsonValue value) {
+            if (!codec.accepts(value)) {
+                return false;
+            }
+            setter.accept(target, codec.decode(value));
+            return true;
+        }
+    }
+
+    private static final class ObjectProperty<T, V> extends PatchProperty<T> {
+
+        private final Function<T, V> getter;
+
+        private final BiConsumer<T, V> setter;
+
+        private final Supplier<PatchApplier<V>> applier;
+
+        ObjectProperty(String name, Function<T, V> getter, BiConsumer<T, V> setter, Supplier<PatchApplier<V>> applier) {
+            super(name);
+            this.getter = getter;
+            this.setter = setter;
+            this.applier = applier;
+        }
+
+        @Override
+        void copy(T source, T target) {
+            setter.accept(target, applier.get().copy(getter.apply(source)));
+        }
+
+        @Override
+        boolean apply(T target, PatchOperationType type, String[] path, int next, JsonValue value) {
+            V current = getter.apply(target);
+            if (next < path.length) {
+                return current != null && applier.get().apply(current, type, path, next, value);
+            }
+            switch (type) {
+                case ADD:
+                    return set(target, value);
+                case REPLACE:
+                    return current != null && set(target, value);
+                case REMOVE:
+                    if (current == null) {
+                        return false;
+                    }
+                    setter.accept(target, null);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        boolean merge(T target, JsonValue value) {
+            if (value.getValueType() == ValueType.NULL) {
+                setter.accept(target, null);
+                return true;
+            }
+            if (value.getValueType() != ValueType.OBJECT) {
+                return false;
+            }
+            V current = getter.apply(target);
+            if (current == null) {
+                current = applier.get().newInstance();
+                setter.accept(target, current);
+            }
+            return applier.get().merge(current, (JsonObject) value);
+        }
+
+        private boolean set(T target, JsonValue value) {
+            if (value.getValueType() == ValueType.NULL) {
+                setter.accept(target, null);
+                return true;
+            }
+            V created = createObject(applier.get(), value);
+            if (created == null) {
+                return false;
+            }
+            setter.accept(target, created);
+            return true;
+        }
+    }
+
+    private static final class ListProperty<T, E> extends PatchProperty<T> {
+
+        private final Function<T, List<E>> getter;
+
+        private final BiConsumer<T, List<E>> setter;
+
+        private final Elements<E> elements;
+
+        ListProperty(String name, Function<T, List<E>> getter, BiConsumer<T, List<E>> setter, Elements<E> elements) {
+            super(name);
+            this.getter = getter;
+            this.setter = setter;
+            this.elements = elements;
+        }
+
+        @Override
+        void copy(T source, T target) {
+            List<E> list = getter.apply(source);
+            if (list == null) {
+                setter.accept(target, null);
+                return;
+            }
+            List<E> copy = new ArrayList<>(list.size());
+            for (E element : list) {
+                copy.add(elements.copy(element));
+            }
+            setter.accept(target, copy);
+        }
+
+        @Override
+        boolean apply(T target, PatchOperationType type, String[] path, int next, JsonValue value) {
+            List<E> list = getter.apply(target);
+            if (next == path.length) {
+                return applyToList(target, type, list, value);
+            }
+            if (list == null) {
+                return false;
+            }
+            if (next == path.length - 1) {
+                return applyToElement(type, list, path[next], value);
+            }
+            int index = index(path[next], list.size() - 1);
+            if (index < 0 || list.get(index) == null) {
+                return false;
+            }
+            return elements.apply(list.get(index), type, path, next + 1, value);
+        }
+
+        @Override
+        boolean merge(T target, JsonValue value) {
+            return setList(target, value);
+        }
+
+        private boolean applyToList(T target, PatchOperationType type, List<E> list, JsonValue value) {
+            switch (type) {
+                case ADD:
+                    return setList(target, value);
+                case REPLACE:
+                    return list != null && setList(target, value);
+                case REMOVE:
+                    if (list == null) {
+                        return false;
+                    }
+                    setter.accept(target, null);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private boolean applyToElement(PatchOperationType type, List<E> list, String token, JsonValue value) {
+            switch (type) {
+                case ADD: {
+                    int index = "-".equals(token) ? list.size() : index(token, list.size());
+                    E element = elements.decode(value);
+                    if (index < 0 || element == UNSUPPORTED) {
+                        return false;
+                    }
+                    list.add(index, element);
+                    return true;
+                }
+                case REPLACE: {
+                    int index = index(token, list.size() - 1);
+                    E element = elements.decode(value);
+                    if (index < 0 || element == UNSUPPORTED) {
+                        return false;
+                    }
+                    list.set(index, element);
+                    return true;
+                }
+                case REMOVE: {
+                    int index = index(token, list.size() - 1);
+                    if (index < 0) {
+                        return false;
+                    }
+                    list.remove(index);
+                    return true;
+                }
+                case TEST: {
+                    int index = index(token, list.size() - 1);
+                    return index >= 0 && elements.test(list.get(index), value);
+                }
+                default:
+                    return false;
+            }
+        }
+
+        private boolean setList(T target, JsonValue value) {
+            if (value.getValueType() == ValueType.NULL) {
+                setter.accept(target, null);
+                return true;
+            }
+            if (value.getValueType() != ValueType.ARRAY) {
+                return false;
+            }
+            JsonArray array = value.asJsonArray();
+            List<E> list = new ArrayList<>(array.size());
+            for (JsonValue item : array) {
+                E element = elements.decode(item);
+                if (element == UNSUPPORTED) {
+                    return false;
+                }
+                list.add(element);
+            }
+            setter.accept(target, list);
+            return true;
+        }
+
+        /**
+         * Parses an array index as defined by RFC 6901.
+         *
+         * @return the index or {@code -1} if the token is not an index or the index is greater than {@code max}
+         */
+        private static int index(String token, int max) {
+            int length = token.length();
+            if (length == 0 || length > 9 || (length > 1 && token.charAt(0) == '0')) {
+                return -1;
+            }
+            int index = 0;
+            for (int i = 0; i < length; i++) {
+                char c = token.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                index = index * 10 + (c - '0');
+            }
+            return index <= max ? index : -1;
+        }
+    }
+
+    private static <V> V createObject(PatchApplier<V> applier, JsonValue value) {
+        if (value.getValueType() != ValueType.OBJECT) {
+            return null;
+        }
+        V created = applier.newInstance();
+        return applier.merge(created, (JsonObject) value) ? created : null;
+    }
+
+    /**
+     * Strategy for the elements of a list property.
+     */
+    private interface Elements<E> {
+
+        E copy(E element);
+
+        /**
+         * Decodes an element.
+         *
+         * @return decoded element or {@link #UNSUPPORTED} if the value can't be decoded
+         */
+        E decode(JsonValue value);
+
+        boolean test(E element, JsonValue value);
+
+        boolean apply(E element, PatchOperationType type, String[] path, int next, JsonValue value);
+    }
+
+    private static final class ScalarElements<E> implements Elements<E> {
+
+        private final ValueCodec<E> codec;
+
+        ScalarElements(ValueCodec<E> codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public E copy(E element) {
+            return element;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E decode(JsonValue value) {
+            return codec.accepts(value) ? codec.decode(value) : (E) UNSUPPORTED;
+        }
+
+        @Override
+        public boolean test(E element, JsonValue value) {
+            return codec.accepts(value) && Objects.equals(element, codec.decode(value));
+        }
+
+        @Override
+        public boolean apply(E element, PatchOperationType type, String[] path, int next, JsonValue value) {
+            return false;
+        }
+    }
+
+    private static final class ObjectElements<E> implements Elements<E> {
+
+        private final Supplier<PatchApplier<E>> applier;
+
+        ObjectElements(Supplier<PatchApplier<E>> applier) {
+            this.applier = applier;
+        }
+
+        @Override
+        public E copy(E element) {
+            return applier.get().copy(element);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E decode(JsonValue value) {
+            E created = createObject(applier.get(), value);
+            return created != null ? created : (E) UNSUPPORTED;
+        }
+
+        @Override
+        public boolean test(E element, JsonValue value) {
+            return false;
+        }
+
+        @Override
+        public boolean apply(E element, PatchOperationType type, String[] path, int next, JsonValue value) {
+            return applier.get().apply(element, type, path, next, value);
+        }
+    }
+}
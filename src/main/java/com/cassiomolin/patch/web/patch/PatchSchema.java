@@ -0,0 +1,531 @@
+package com.cassiomolin.patch.web.patch;
+
+import com.cassiomolin.patch.web.util.JsonTreePatcher;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBase;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
+import javax.validation.Validator;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.groups.Default;
+import javax.validation.metadata.BeanDescriptor;
+import javax.validation.metadata.ConstraintDescriptor;
+import javax.validation.metadata.ContainerElementTypeDescriptor;
+import javax.validation.metadata.PropertyDescriptor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled schema of a patchable resource class, against which patch documents are checked before the resource they
+ * target is even loaded.
+ * <p>
+ * The schema is derived from the Jackson view of the class: its JSON properties, whether they hold objects, arrays or
+ * scalar values, and, for scalar values, the deserializer that reads them, so values are accepted exactly as they would
+ * be when the patched resource is read back. Properties annotated with {@link NotNull}, {@link NotEmpty} or {@link
+ * NotBlank} in the default group, at the top level or in the beans cascaded with {@code @Valid}, must not be removed or
+ * set to values breaking those constraints. Anything else, such as array bounds or other constraints, depends on the
+ * resource and is still checked once the patch is applied.
+ * <p>
+ * A JSON Patch document is checked operation by operation: every path must exist in the schema and every value must
+ * fit the location it's written to. Constraints only apply to the last operation writing a location, so that a
+ * property may be removed and added again.
+ */
+public final class PatchSchema {
+
+    private static final PatchSchema ANY = new PatchSchema(Kind.ANY, null, null, null);
+
+    private final Kind kind;
+
+    private final JavaType type;
+
+    private final Map<String, Property> properties;
+
+    private final ObjectReader reader;
+
+    private PatchSchema items;
+
+    private PatchSchema(Kind kind, JavaType type, Map<String, Property> properties, ObjectReader reader) {
+        this.kind = kind;
+        this.type = type;
+        this.properties = properties;
+        this.reader = reader;
+    }
+
+    /**
+     * Compiles the schema of a resource class.
+     *
+     * @param type      resource class
+     * @param mapper    object mapper the resource is read with
+     * @param validator validator the resource is validated with
+     * @return schema of the class
+     */
+    public static PatchSchema compile(Class<?> type, ObjectMapper mapper, Validator validator) {
+        return new Compiler(mapper, validator).compile(mapper.constructType(type), true);
+    }
+
+    /**
+     * Checks a JSON Patch document against the schema.
+     *
+     * @param patch JSON Patch document
+     * @return violations, ordered by operation
+     */
+    public List<PatchViolation> checkPatch(PlannedJsonPatch patch) {
+        PatchPlan plan = patch.getPlan();
+        JsonArray operations = patch.toJsonArray();
+        Check check = new Check();
+        Map<String, PatchViolation> lastWrites = new LinkedHashMap<>();
+        for (int i = 0; i < plan.size(); i++) {
+            check.operation = i;
+            String[] path = plan.getPath(i);
+            switch (plan.getType(i)) {
+                case TEST:
+                    check.resolve(this, path, false);
+                    break;
+                case REMOVE:
+                    Target removed = check.resolve(this, path, false);
+                    if (removed != null) {
+                        check.write(lastWrites, removed, path, JsonValue.NULL, true);
+                    }
+                    break;
+                case ADD:
+                case REPLACE:
+                    Target target = check.resolve(this, path, plan.getType(i) == PatchOperationType.ADD);
+                    if (target != null) {
+                        JsonValue value = operations.getJsonObject(i).get("value");
+                        check.value(target.schema, value, JsonTreePatcher.toPointer(path));
+                        check.write(lastWrites, target, path, value, plan.getType(i) == PatchOperationType.ADD);
+                    }
+                    break;
+                case MOVE:
+                case COPY:
+                    String[] from = plan.getFrom(i);
+                    Target source = check.resolve(this, from, false);
+                    Target destination = check.resolve(this, path, true);
+                    if (source == null || destination == null) {
+                        break;
+                    }
+                    if (!accepts(destination.schema, source.schema)) {
+                        check.add(JsonTreePatcher.toPointer(path), "cannot hold the value of "
+                                + JsonTreePatcher.toPointer(from));
+                    }
+                    if (plan.getType(i) == PatchOperationType.MOVE) {
+                        check.write(lastWrites, source, from, JsonValue.NULL, true);
+                    }
+                    check.write(lastWrites, destination, path, null, true);
+                    break;
+            }
+        }
+        check.violations.addAll(lastWrites.values());
+        check.violations.sort(Comparator.comparing(PatchViolation::getOperation));
+        return check.violations;
+    }
+
+    /**
+     * Checks a JSON Merge Patch document against the schema.
+     *
+     * @param mergePatch JSON Merge Patch document
+     * @return violations
+     */
+    public List<PatchViolation> checkMergePatch(JsonValue mergePatch) {
+        Check check = new Check();
+        if (kind == Kind.OBJECT && mergePatch.getValueType() != ValueType.OBJECT) {
+            check.add("", "must be an object");
+        } else {
+            check.merge(this, mergePatch, "");
+        }
+        return check.violations;
+    }
+
+    /**
+     * Tells whether a location may hold a value copied from another location. Scalar values are left to the
+     * deserializer, as their actual value isn't known.
+     */
+    private static boolean accepts(PatchSchema target, PatchSchema source) {
+        if (target.kind == Kind.ANY || source.kind == Kind.ANY) {
+            return true;
+        }
+        if (target.kind != source.kind) {
+            return false;
+        }
+        switch (target.kind) {
+            case OBJECT:
+                return target.type.equals(source.type);
+            case ARRAY:
+                return accepts(target.items, source.items);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Tells whether the deserializer of a scalar type reads a value. Strings are read from any scalar value, so they
+     * are told apart without a deserializer.
+     */
+    private boolean reads(JsonValue value) {
+        if (type.hasRawClass(String.class)) {
+            return value.getValueType() != ValueType.OBJECT && value.getValueType() != ValueType.ARRAY;
+        }
+        try {
+            reader.readValue(value.toString());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String child(String pointer, String token) {
+        return pointer + '/' + token.replace("~", "~0").replace("/", "~1");
+    }
+
+    private enum Kind {
+        OBJECT, ARRAY, SCALAR, ANY
+    }
+
+    /**
+     * JSON property of an object, with the constraints derived for it.
+     */
+    private static final class Property {
+
+        final PatchSchema schema;
+
+        final boolean notNull;
+
+        final boolean notEmpty;
+
+        final boolean notBlank;
+
+        Property(PatchSchema schema, PropertyDescriptor descriptor) {
+            this.schema = schema;
+            boolean notNull = false;
+            boolean notEmpty = false;
+            boolean notBlank = false;
+            if (descriptor != null) {
+                for (ConstraintDescriptor<?> constraint : descriptor.getConstraintDescriptors()) {
+                    if (constraint.getGroups().contains(Default.class)) {
+                        Class<?> annotation = constraint.getAnnotation().annotationType();
+                        notNull |= annotation == NotNull.class;
+                        notEmpty |= annotation == NotEmpty.class;
+                        notBlank |= annotation == NotBlank.class;
+                    }
+                }
+            }
+            this.notNull = notNull;
+            this.notEmpty = notEmpty;
+            this.notBlank = notBlank;
+        }
+
+        boolean isConstrained() {
+            return notNull || notEmpty || notBlank;
+        }
+
+        /**
+         * Returns the message of the first constraint a value breaks.
+         */
+        String check(JsonValue value) {
+            ValueType type = value.getValueType();
+            if (notNull && type == ValueType.NULL) {
+                return "must not be null";
+            }
+            if (notEmpty && (type == ValueType.NULL
+                    || type == ValueType.STRING && ((JsonString) value).getString().isEmpty()
+                    || type == ValueType.ARRAY && ((JsonArray) value).isEmpty()
+                    || type == ValueType.OBJECT && ((JsonObject) value).isEmpty())) {
+                return "must not be empty";
+            }
+            if (notBlank && (type == ValueType.NULL
+                    || type == ValueType.STRING && ((JsonString) value).getString().trim().isEmpty())) {
+                return "must not be blank";
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Location of the resource a pointer resolves to.
+     */
+    private static final class Target {
+
+        final PatchSchema schema;
+
+        /**
+         * Property the location is, or {@code null} for an array element or a location of unknown structure.
+         */
+        final Property property;
+
+        /**
+         * Tells whether the location is an array element, so that writing it shifts the elements after it.
+         */
+        final boolean element;
+
+        Target(PatchSchema schema, Property property, boolean element) {
+            this.schema = schema;
+            this.property = property;
+            this.element = element;
+        }
+    }
+
+    /**
+     * Violations found while checking a document.
+     */
+    private static final class Check {
+
+        final List<PatchViolation> violations = new ArrayList<>();
+
+        Integer operation;
+
+        void add(String path, String message) {
+            violations.add(new PatchViolation(operation, path, message));
+        }
+
+        /**
+         * Resolves a pointer against a schema.
+         *
+         * @param append tells whether the pointer may end with {@code -} to append to an array
+         * @return the location or {@code null} if the pointer doesn't exist in the schema
+         */
+        Target resolve(PatchSchema schema, String[] tokens, boolean append) {
+            Property property = null;
+            boolean element = false;
+            for (int i = 0; i < tokens.length; i++) {
+                String token = tokens[i];
+                switch (schema.kind) {
+                    case OBJECT:
+                        property = schema.properties.get(token);
+                        if (property == null) {
+                            add(JsonTreePatcher.toPointer(Arrays.copyOf(tokens, i + 1)), "does not exist");
+                            return null;
+                        }
+                        schema = property.schema;
+                        element = false;
+                        break;
+                    case ARRAY:
+                        boolean appended = append && i == tokens.length - 1 && token.equals("-");
+                        if (!appended && JsonTreePatcher.parseIndex(token) < 0) {
+                            add(JsonTreePatcher.toPointer(Arrays.copyOf(tokens, i + 1)), "is not a valid array index");
+                            return null;
+                        }
+                        property = null;
+                        schema = schema.items;
+                        element = true;
+                        break;
+                    case SCALAR:
+                        add(JsonTreePatcher.toPointer(Arrays.copyOf(tokens, i + 1)), "does not exist");
+                        return null;
+                    default:
+                        return new Target(ANY, null, false);
+                }
+            }
+            return new Target(schema, property, element);
+        }
+
+        /**
+         * Records the last value written to a location, forgetting about the values written inside it before.
+         * Inserting or removing array elements shifts the others, so the values written inside the array are forgotten
+         * too and left to the validation of the patched resource.
+         *
+         * @param value  value written, {@link JsonValue#NULL} for a removal or {@code null} if it's not known
+         * @param shifts tells whether an array element written is inserted or removed rather than replaced
+         */
+        void write(Map<String, PatchViolation> lastWrites, Target target, String[] tokens, JsonValue value,
+                   boolean shifts) {
+            if (tokens.length == 0 && value == JsonValue.NULL) {
+                add("", "must not be removed");
+                return;
+            }
+            String pointer = JsonTreePatcher.toPointer(tokens);
+            String scope = target.element && shifts
+                    ? JsonTreePatcher.toPointer(Arrays.copyOf(tokens, tokens.length - 1)) : pointer;
+            Iterator<String> pointers = lastWrites.keySet().iterator();
+            while (pointers.hasNext()) {
+                String written = pointers.next();
+                if (written.equals(scope) || written.startsWith(scope + '/')) {
+                    pointers.remove();
+                }
+            }
+            String message = target.property == null || value == null ? null : target.property.check(value);
+            if (message != null) {
+                lastWrites.put(pointer, new PatchViolation(operation, pointer, message));
+            }
+        }
+
+        /**
+         * Checks a value written to a location of a schema.
+         */
+        void value(PatchSchema schema, JsonValue value, String pointer) {
+            if (value.getValueType() == ValueType.NULL) {
+                return;
+            }
+            switch (schema.kind) {
+                case OBJECT:
+                    if (value.getValueType() != ValueType.OBJECT) {
+                        add(pointer, "must be an object");
+                        return;
+                    }
+                    JsonObject object = (JsonObject) value;
+                    for (Map.Entry<String, JsonValue> member : object.entrySet()) {
+                        Property property = schema.properties.get(member.getKey());
+                        String memberPointer = child(pointer, member.getKey());
+                        if (property == null) {
+                            add(memberPointer, "does not exist");
+                        } else {
+                            value(property.schema, member.getValue(), memberPointer);
+                            constraints(property, member.getValue(), memberPointer);
+                        }
+                    }
+                    for (Map.Entry<String, Property> property : schema.properties.entrySet()) {
+                        if (property.getValue().isConstrained() && !object.containsKey(property.getKey())) {
+                            constraints(property.getValue(), JsonValue.NULL, child(pointer, property.getKey()));
+                        }
+                    }
+                    break;
+                case ARRAY:
+                    if (value.getValueType() != ValueType.ARRAY) {
+                        add(pointer, "must be an array");
+                        return;
+                    }
+                    JsonArray array = (JsonArray) value;
+                    for (int i = 0; i < array.size(); i++) {
+                        value(schema.items, array.get(i), pointer + '/' + i);
+                    }
+                    break;
+                case SCALAR:
+                    if (!schema.reads(value)) {
+                        add(pointer, "is not a valid " + schema.type.getRawClass().getSimpleName());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * Checks the members of a JSON Merge Patch document merged into an object.
+         */
+        void merge(PatchSchema schema, JsonValue patch, String pointer) {
+            if (schema.kind != Kind.OBJECT) {
+                value(schema, patch, pointer);
+                return;
+            }
+            for (Map.Entry<String, JsonValue> member : ((JsonObject) patch).entrySet()) {
+                Property property = schema.properties.get(member.getKey());
+                String memberPointer = child(pointer, member.getKey());
+                JsonValue value = member.getValue();
+                if (property == null) {
+                    add(memberPointer, "does not exist");
+                } else if (property.schema.kind == Kind.OBJECT && value.getValueType() == ValueType.OBJECT) {
+                    merge(property.schema, value, memberPointer);
+                } else {
+                    value(property.schema, value, memberPointer);
+                    constraints(property, value, memberPointer);
+                }
+            }
+        }
+
+        private void constraints(Property property, JsonValue value, String pointer) {
+            String message = property.check(value);
+            if (message != null) {
+                add(pointer, message);
+            }
+        }
+    }
+
+    /**
+     * Builds the schemas of a class and of the classes it refers to, sharing the schemas of recurring classes.
+     */
+    private static final class Compiler {
+
+        private final ObjectMapper mapper;
+
+        private final Validator validator;
+
+        private final DeserializationContext context;
+
+        private final Map<List<Object>, PatchSchema> schemas = new HashMap<>();
+
+        Compiler(ObjectMapper mapper, Validator validator) {
+            this.mapper = mapper;
+            this.validator = validator;
+            this.context = ((DefaultDeserializationContext) mapper.getDeserializationContext())
+                    .createInstance(mapper.getDeserializationConfig(), null, null);
+        }
+
+        /**
+         * Compiles the schema of a type.
+         *
+         * @param constrained tells whether the constraints of the type apply, as it's the resource class or cascaded
+         */
+        PatchSchema compile(JavaType type, boolean constrained) {
+            List<Object> key = Arrays.asList(type, constrained);
+            PatchSchema schema = schemas.get(key);
+            if (schema != null) {
+                return schema;
+            }
+            if (type.isArrayType() || type.isCollectionLikeType()) {
+                schema = new PatchSchema(Kind.ARRAY, type, null, null);
+                schemas.put(key, schema);
+                schema.items = compile(type.getContentType(), constrained);
+            } else if (type.isMapLikeType() || type.isJavaLangObject() || type.isTypeOrSubTypeOf(JsonNode.class)) {
+                schema = ANY;
+            } else if (isBean(type)) {
+                schema = new PatchSchema(Kind.OBJECT, type, new LinkedHashMap<>(), null);
+                schemas.put(key, schema);
+                BeanDescriptor constraints = constrained ? validator.getConstraintsForClass(type.getRawClass()) : null;
+                for (BeanPropertyDefinition property : mapper.getDeserializationConfig().introspect(type)
+                        .findProperties()) {
+                    if (!property.couldDeserialize()) {
+                        continue;
+                    }
+                    PropertyDescriptor descriptor = constraints == null ? null
+                            : constraints.getConstraintsForProperty(property.getInternalName());
+                    PatchSchema propertySchema = compile(property.getPrimaryType(),
+                            descriptor != null && isCascaded(descriptor));
+                    schema.properties.put(property.getName(), new Property(propertySchema, descriptor));
+                }
+            } else {
+                schema = new PatchSchema(Kind.SCALAR, type, null, mapper.readerFor(type));
+            }
+            schemas.put(key, schema);
+            return schema;
+        }
+
+        private boolean isBean(JavaType type) {
+            try {
+                return context.findRootValueDeserializer(type) instanceof BeanDeserializerBase;
+            } catch (JsonMappingException e) {
+                return false;
+            }
+        }
+
+        private static boolean isCascaded(PropertyDescriptor property) {
+            if (property.isCascaded()) {
+                return true;
+            }
+            for (ContainerElementTypeDescriptor element : property.getConstrainedContainerElementTypes()) {
+                if (element.isCascaded()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
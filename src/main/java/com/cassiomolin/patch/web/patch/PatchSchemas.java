@@ -0,0 +1,87 @@
+package com.cassiomolin.patch.web.patch;
+
+import com.cassiomolin.patch.web.exception.InvalidPatchException;
+import com.cassiomolin.patch.web.exception.UnprocessableEntityException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import javax.json.JsonMergePatch;
+import javax.json.JsonPatch;
+import javax.validation.Validator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks patch documents against the {@link PatchSchema} of the resource class they target, compiled once per class.
+ * <p>
+ * Checking a document takes no more than walking it, so documents that can't apply to the resource are rejected
+ * before the resource is loaded, with the offending operations and paths. JSON Patch documents that fit the schema
+ * are admitted to the {@link PatchPlanCache}.
+ */
+@Component
+public class PatchSchemas {
+
+    private final ObjectMapper mapper;
+
+    private final Validator validator;
+
+    private final PatchPlanCache planCache;
+
+    private final Map<Class<?>, PatchSchema> schemas = new ConcurrentHashMap<>();
+
+    public PatchSchemas(ObjectMapper mapper, Validator validator, PatchPlanCache planCache) {
+        this.mapper = mapper;
+        this.validator = validator;
+        this.planCache = planCache;
+    }
+
+    /**
+     * Returns the schema of a resource class.
+     *
+     * @param type resource class
+     * @return schema of the class
+     */
+    public PatchSchema get(Class<?> type) {
+        return schemas.computeIfAbsent(type, key -> PatchSchema.compile(key, mapper, validator));
+    }
+
+    /**
+     * Checks a JSON Patch document against the schema of a resource class.
+     *
+     * @param patch JSON Patch document
+     * @param type  resource class
+     * @throws InvalidPatchException if the document doesn't fit the schema
+     */
+    public void check(JsonPatch patch, Class<?> type) {
+        PlannedJsonPatch plannedPatch;
+        if (patch instanceof PlannedJsonPatch) {
+            plannedPatch = (PlannedJsonPatch) patch;
+        } else {
+            try {
+                plannedPatch = PlannedJsonPatch.of(patch.toJsonArray());
+            } catch (Exception e) {
+                throw new UnprocessableEntityException(e);
+            }
+        }
+        throwIfInvalid(get(type).checkPatch(plannedPatch));
+        planCache.admit(plannedPatch);
+    }
+
+    /**
+     * Checks a JSON Merge Patch document against the schema of a resource class.
+     *
+     * @param mergePatch JSON Merge Patch document
+     * @param type       resource class
+     * @throws InvalidPatchException if the document doesn't fit the schema
+     */
+    public void check(JsonMergePatch mergePatch, Class<?> type) {
+        throwIfInvalid(get(type).checkMergePatch(mergePatch.toJsonValue()));
+    }
+
+    private static void throwIfInvalid(List<PatchViolation> violations) {
+        if (!violations.isEmpty()) {
+            throw new InvalidPatchException(violations);
+        }
+    }
+}
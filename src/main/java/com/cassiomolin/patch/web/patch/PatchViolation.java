@@ -0,0 +1,22 @@
+package com.cassiomolin.patch.web.patch;
+
+import lombok.Value;
+
+/**
+ * Reason why a patch document doesn't fit the schema of the resource it targets.
+ */
+@Value
+public class PatchViolation {
+
+    /**
+     * Index of the offending operation of a JSON Patch document, {@code null} for a JSON Merge Patch document.
+     */
+    Integer operation;
+
+    /**
+     * JSON Pointer to the offending location of the resource.
+     */
+    String path;
+
+    String message;
+}
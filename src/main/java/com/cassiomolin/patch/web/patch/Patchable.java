@@ -0,0 +1,21 @@
+package com.cassiomolin.patch.web.patch;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a resource class for which a typed {@link PatchApplier} is generated at compile time.
+ * <p>
+ * The generated applier is named after the class with the {@code PatchApplier} suffix and lives in the same package.
+ * The class must have a no-args constructor and JavaBeans accessors for its fields, and its JSON property names must
+ * match its field names.
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface Patchable {
+
+}
@@ -0,0 +1,95 @@
+package com.cassiomolin.patch.web.patch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.json.JsonArray;
+import javax.json.JsonPatch;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import javax.json.spi.JsonProvider;
+
+/**
+ * {@link JsonPatch} backed by a {@link PatchPlan}, possibly shared with other documents of the same structure, and the
+ * values of its own operations.
+ */
+public final class PlannedJsonPatch implements JsonPatch {
+
+    private static final JsonProvider PROVIDER = JsonProvider.provider();
+
+    private final PatchPlan plan;
+
+    private final JsonValue[] values;
+
+    private final JsonArray operations;
+
+    /**
+     * Structure of the document, if its plan is to be cached once the document is admitted.
+     */
+    private final String shape;
+
+    PlannedJsonPatch(PatchPlan plan, JsonValue[] values, JsonArray operations) {
+        this(plan, values, operations, null);
+    }
+
+    PlannedJsonPatch(PatchPlan plan, JsonValue[] values, JsonArray operations, String shape) {
+        this.plan = plan;
+        this.values = values;
+        this.operations = operations;
+        this.shape = shape;
+    }
+
+    /**
+     * Compiles a JSON Patch document without going through a {@link PatchPlanCache}.
+     *
+     * @param operations JSON Patch operations
+     * @return compiled document
+     */
+    public static PlannedJsonPatch of(JsonArray operations) {
+        return new PlannedJsonPatch(PatchPlan.compile(operations), PatchPlan.valuesOf(operations), operations);
+    }
+
+    public PatchPlan getPlan() {
+        return plan;
+    }
+
+    String getShape() {
+        return shape;
+    }
+
+    /**
+     * Applies the document to a Jackson tree.
+     *
+     * @param target document to be patched, modified in place whenever possible
+     * @return patched document
+     */
+    public JsonNode apply(JsonNode target) {
+        return plan.apply(target, values);
+    }
+
+    /**
+     * Applies the document to a copy of a bean through its generated applier.
+     *
+     * @param applier applier of the bean class
+     * @param source  bean to be patched, which is left untouched
+     * @param <T>     type of the bean
+     * @return patched copy or {@code null} if the applier doesn't support the document
+     */
+    public <T> T apply(PatchApplier<T> applier, T source) {
+        return plan.apply(applier, source, values);
+    }
+
+    @Override
+    public <T extends JsonStructure> T apply(T target) {
+        return PROVIDER.createPatch(operations).apply(target);
+    }
+
+    @Override
+    public JsonArray toJsonArray() {
+        return operations;
+    }
+
+    @Override
+    public String toString() {
+        return operations.toString();
+    }
+}
@@ -0,0 +1,186 @@
+package com.cassiomolin.patch.web.patch;
+
+import javax.json.JsonNumber;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Decodes JSON values into property values for the generated {@link PatchApplier}s.
+ * <p>
+ * Codecs only accept the JSON types that map unambiguously to the property type. Anything else, such as a number sent
+ * for a string property, is left to the generic patch path so that Jackson's coercion rules keep applying.
+ *
+ * @param <V> type of the property
+ */
+public abstract class ValueCodec<V> {
+
+    public static final ValueCodec<String> STRING = new ValueCodec<String>(true) {
+
+        @Override
+        boolean acceptsNonNull(JsonValue value) {
+            return value.getValueType() == ValueType.STRING;
+        }
+
+        @Override
+        String decodeNonNull(JsonValue value) {
+            return ((JsonString) value).getString();
+        }
+    };
+
+    public static final ValueCodec<Boolean> BOOLEAN = new BooleanCodec(true);
+
+    public static final ValueCodec<Boolean> PRIMITIVE_BOOLEAN = new BooleanCodec(false);
+
+    public static final ValueCodec<Integer> INTEGER = new IntegerCodec(true);
+
+    public static final ValueCodec<Integer> PRIMITIVE_INTEGER = new IntegerCodec(false);
+
+    public static final ValueCodec<Long> LONG = new LongCodec(true);
+
+    public static final ValueCodec<Long> PRIMITIVE_LONG = new LongCodec(false);
+
+    public static final ValueCodec<Double> DOUBLE = new DoubleCodec(true);
+
+    public static final ValueCodec<Double> PRIMITIVE_DOUBLE = new DoubleCodec(false);
+
+    public static final ValueCodec<BigDecimal> BIG_DECIMAL = new ValueCodec<BigDecimal>(true) {
+
+        @Override
+        boolean acceptsNonNull(JsonValue value) {
+            return value.getValueType() == ValueType.NUMBER;
+        }
+
+        @Override
+        BigDecimal decodeNonNull(JsonValue value) {
+            return ((JsonNumber) value).bigDecimalValue();
+        }
+    };
+
+    public static final ValueCodec<LocalDate> LOCAL_DATE = new ValueCodec<LocalDate>(true) {
+
+        @Override
+        boolean acceptsNonNull(JsonValue value) {
+            return value.getValueType() == ValueType.STRING;
+        }
+
+        @Override
+        LocalDate decodeNonNull(JsonValue value) {
+            return LocalDate.parse(((JsonString) value).getString());
+        }
+    };
+
+    private final boolean nullable;
+
+    ValueCodec(boolean nullable) {
+        this.nullable = nullable;
+    }
+
+    /**
+     * Returns whether the property accepts {@code null}, that is, whether it's not a primitive.
+     *
+     * @return {@code true} if {@code null} is accepted
+     */
+    public boolean isNullable() {
+        return nullable;
+    }
+
+    /**
+     * Returns whether the given JSON value can be decoded by this codec.
+     *
+     * @param value JSON value
+     * @return {@code true} if the value is accepted
+     */
+    public boolean accepts(JsonValue value) {
+        if (value.getValueType() == ValueType.NULL) {
+            return nullable;
+        }
+        return acceptsNonNull(value);
+    }
+
+    /**
+     * Decodes a JSON value previously {@link #accepts(JsonValue) accepted} by this codec.
+     *
+     * @param value JSON value
+     * @return decoded value
+     */
+    public V decode(JsonValue value) {
+        return value.getValueType() == ValueType.NULL ? null : decodeNonNull(value);
+    }
+
+    abstract boolean acceptsNonNull(JsonValue value);
+
+    abstract V decodeNonNull(JsonValue value);
+
+    private static final class BooleanCodec extends ValueCodec<Boolean> {
+
+        BooleanCodec(boolean nullable) {
+            super(nullable);
+        }
+
+        @Override
+        boolean acceptsNonNull(JsonValue value) {
+            return value.getValueType() == ValueType.TRUE || value.getValueType() == ValueType.FALSE;
+        }
+
+        @Override
+        Boolean decodeNonNull(JsonValue value) {
+            return value.getValueType() == ValueType.TRUE;
+        }
+    }
+
+    private static final class IntegerCodec extends ValueCodec<Integer> {
+
+        IntegerCodec(boolean nullable) {
+            super(nullable);
+        }
+
+        @Override
+        boolean acceptsNonNull(JsonValue value) {
+            return value.getValueType() == ValueType.NUMBER && ((JsonNumber) value).isIntegral()
+                    && ((JsonNumber) value).bigIntegerValue().bitLength() < 32;
+        }
+
+        @Override
+        Integer decodeNonNull(JsonValue value) {
+            return ((JsonNumber) value).intValue();
+        }
+    }
+
+    private static final class LongCodec extends ValueCodec<Long> {
+
+        LongCodec(boolean nullable) {
+            super(nullable);
+        }
+
+        @Override
+        boolean acceptsNonNull(JsonValue value) {
+            return value.getValueType() == ValueType.NUMBER && ((JsonNumber) value).isIntegral()
+                    && ((JsonNumber) value).bigIntegerValue().bitLength() < 64;
+        }
+
+        @Override
+        Long decodeNonNull(JsonValue value) {
+            return ((JsonNumber) value).longValue();
+        }
+    }
+
+    private static final class DoubleCodec extends ValueCodec<Double> {
+
+        DoubleCodec(boolean nullable) {
+            super(nullable);
+        }
+
+        @Override
+        boolean acceptsNonNull(JsonValue value) {
+            return value.getValueType() == ValueType.NUMBER;
+        }
+
+        @Override
+        Double decodeNonNull(JsonValue value) {
+            return ((JsonNumber) value).doubleValue();
+        }
+    }
+}
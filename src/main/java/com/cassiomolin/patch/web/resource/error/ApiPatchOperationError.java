@@ -0,0 +1,19 @@
+package com.cassiomolin.patch.web.resource.error;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApiPatchOperationError {
+
+    private Integer operation;
+
+    private String path;
+
+    private String message;
+}
@@ -1,5 +1,6 @@
 package com.cassiomolin.patch.web.resource.input;
 
+import com.cassiomolin.patch.web.patch.Patchable;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,6 +12,7 @@ import java.util.List;
 
 @Data
 @Builder
+@Patchable
 @NoArgsConstructor
 @AllArgsConstructor
 public class ContactResourceInput {
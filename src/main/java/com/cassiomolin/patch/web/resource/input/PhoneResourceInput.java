@@ -1,5 +1,6 @@
 package com.cassiomolin.patch.web.resource.input;
 
+import com.cassiomolin.patch.web.patch.Patchable;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -7,6 +8,7 @@ import lombok.NoArgsConstructor;
 
 @Data
 @Builder
+@Patchable
 @NoArgsConstructor
 @AllArgsConstructor
 public class PhoneResourceInput {
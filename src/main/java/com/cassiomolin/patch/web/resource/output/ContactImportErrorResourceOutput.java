@@ -0,0 +1,22 @@
+package com.cassiomolin.patch.web.resource.output;
+
+import com.cassiomolin.patch.web.resource.error.ApiResourcePropertyError;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactImportErrorResourceOutput {
+
+    private long line;
+
+    private String message;
+
+    private List<ApiResourcePropertyError> details;
+}
@@ -0,0 +1,21 @@
+package com.cassiomolin.patch.web.resource.output;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactImportResourceOutput {
+
+    private long imported;
+
+    private long failed;
+
+    private List<ContactImportErrorResourceOutput> errors;
+}
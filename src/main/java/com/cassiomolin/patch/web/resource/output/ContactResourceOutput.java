@@ -1,5 +1,6 @@
 package com.cassiomolin.patch.web.resource.output;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,8 +14,14 @@ import java.util.List;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonFilter(ContactResourceOutput.FIELDS_FILTER)
 public class ContactResourceOutput {
 
+    /**
+     * Filter used to project the contact on the fields requested by the client. It's ignored when not provided.
+     */
+    public static final String FIELDS_FILTER = "contactFields";
+
     private Long id;
 
     private String name;
@@ -0,0 +1,25 @@
+package com.cassiomolin.patch.web.resource.output;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.json.JsonArray;
+import java.time.OffsetDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactVersionResourceOutput {
+
+    private Long version;
+
+    private OffsetDateTime lastModifiedDateTime;
+
+    /**
+     * JSON Patch document that turned the previous version into this one.
+     */
+    private JsonArray changes;
+}
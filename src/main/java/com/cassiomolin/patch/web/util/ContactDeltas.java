@@ -0,0 +1,520 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactChangeListener;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.store.LongConcurrentHashMap;
+import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
+import com.cassiomolin.patch.web.resource.output.ContactVersionResourceOutput;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.json.JsonMergePatch;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonPatch;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import javax.json.spi.JsonProvider;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the history of each contact, so clients that cache contacts can ask for the changes since the version they
+ * hold rather than downloading the whole contact again, and so past versions of a contact can be listed and read.
+ * <p>
+ * Each update is stored as a reverse delta over the top-level properties of the contact representation: the
+ * properties it changed and their previous values, serialized as compact JSON. A delta takes memory in proportion to
+ * the change, and it's computed once, when the update is notified, by comparing the properties of the previous and the
+ * current representation and serializing only the previous values of the properties that differ. Every {@code
+ * contacts.changes.checkpoint-interval} versions, the delta also carries a checkpoint: all properties at its version.
+ * <p>
+ * The changes since a version are found by walking the deltas back to that version, which yields the properties
+ * changed since and their values at that version, and by diffing those properties alone against the current contact.
+ * A past version is rebuilt from the nearest checkpoint after it, or from the current contact, by applying the deltas
+ * in between, so reading a past version applies no more deltas than the checkpoint interval.
+ * <p>
+ * Only the last {@code contacts.changes.max-versions} deltas of each contact are kept, and the deltas of all contacts
+ * take up to about {@code contacts.changes.max-bytes}: past that, the deltas of the oldest updates are evicted first,
+ * whatever the contact. Evicting a delta drops the older deltas of the contact with it, as they can't be reached any
+ * more. Deltas are not persisted either, so versions that are no longer covered, or whose deltas have not been
+ * notified yet, are unknown and clients have to fetch the contact again.
+ */
+@Component
+public class ContactDeltas implements ContactChangeListener {
+
+    private final ContactService service;
+
+    private final ContactMapper mapper;
+
+    private final ObjectMapper objectMapper;
+
+    private final JsonProvider provider;
+
+    private final int maxVersions;
+
+    private final int checkpointInterval;
+
+    private final long maxBytes;
+
+    /**
+     * Names of the serialized properties of {@link ContactResourceOutput}. Deltas refer to properties by their index.
+     */
+    private final String[] names;
+
+    private final AnnotatedMember[] accessors;
+
+    private final LongConcurrentHashMap<Chain> chains = new LongConcurrentHashMap<>();
+
+    /**
+     * Updates in the order they were recorded, so the deltas of the oldest ones are evicted first.
+     */
+    private final Queue<Update> updates = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Estimated size of the deltas of the updates in the queue. Deltas already dropped from their chain still count
+     * until their update leaves the queue, so the deltas actually held never take more.
+     */
+    private final AtomicLong bytes = new AtomicLong();
+
+    public ContactDeltas(ContactService service, ContactMapper mapper, ObjectMapper objectMapper,
+                         JsonProvider provider, @Value("${contacts.changes.max-versions:1024}") int maxVersions,
+                         @Value("${contacts.changes.checkpoint-interval:16}") int checkpointInterval,
+                         @Value("${contacts.changes.max-bytes:67108864}") long maxBytes) {
+        this.service = service;
+        this.mapper = mapper;
+        this.objectMapper = objectMapper;
+        this.provider = provider;
+        this.maxVersions = maxVersions;
+        this.checkpointInterval = checkpointInterval;
+        this.maxBytes = maxBytes;
+        BeanDescription description = objectMapper.getSerializationConfig()
+                .introspect(objectMapper.constructType(ContactResourceOutput.class));
+        List<String> names = new ArrayList<>();
+        List<AnnotatedMember> accessors = new ArrayList<>();
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (property.couldSerialize()) {
+                names.add(property.getName());
+                accessors.add(property.getAccessor());
+            }
+        }
+        this.names = names.toArray(new String[0]);
+        this.accessors = accessors.toArray(new AnnotatedMember[0]);
+    }
+
+    /**
+     * Starts listening to changes.
+     */
+    @PostConstruct
+    public void start() {
+        service.addChangeListener(this);
+    }
+
+    @Override
+    public void contactChanged(Contact previous, Contact current) {
+        if (previous == null) {
+            return;
+        }
+        if (current == null) {
+            chains.remove(previous.getId());
+            return;
+        }
+        Delta delta = delta(previous, current);
+        Chain chain = chains.get(current.getId());
+        if (chain == null) {
+            Chain created = new Chain();
+            chain = chains.putIfAbsent(current.getId(), created);
+            if (chain == null) {
+                chain = created;
+            }
+        }
+        chain.add(delta, maxVersions);
+        Update update = new Update(current.getId(), delta.version, delta.size + Update.SIZE);
+        updates.add(update);
+        bytes.addAndGet(update.size);
+        evict();
+    }
+
+    @Override
+    public void contactsRestored() {
+        chains.clear();
+        updates.clear();
+        bytes.set(0);
+    }
+
+    /**
+     * Computes the changes made to a contact since a version as a JSON Patch document.
+     *
+     * @param contact current state of the contact
+     * @param since   version of the contact held by the client
+     * @return document that turns the contact at {@code since} into the current contact, or empty if the changes
+     * since that version are unknown
+     */
+    public Optional<JsonPatch> diff(Contact contact, long since) {
+        return changedProperties(contact, since)
+                .map(properties -> provider.createDiff(properties[0], properties[1]));
+    }
+
+    /**
+     * Computes the changes made to a contact since a version as a JSON Merge Patch document.
+     *
+     * @param contact current state of the contact
+     * @param since   version of the contact held by the client
+     * @return document that turns the contact at {@code since} into the current contact, or empty if the changes
+     * since that version are unknown
+     */
+    public Optional<JsonMergePatch> mergeDiff(Contact contact, long since) {
+        return changedProperties(contact, since)
+                .map(properties -> provider.createMergeDiff(properties[0], properties[1]));
+    }
+
+    /**
+     * Rebuilds a contact as it was at a given date-time.
+     *
+     * @param contact  current state of the contact
+     * @param dateTime date-time, not before the creation of the contact
+     * @return representation of the version of the contact that was current at {@code dateTime}, or empty if that
+     * version is unknown
+     */
+    public Optional<ContactResourceOutput> asOf(Contact contact, OffsetDateTime dateTime) {
+        long epochMilli = dateTime.toInstant().toEpochMilli();
+        if (epochMilli >= contact.getLastModifiedDateTime().toInstant().toEpochMilli()) {
+            return Optional.of(mapper.asOutput(contact));
+        }
+        List<Delta> deltas = deltas(contact);
+        int index = lastModifiedBy(deltas, epochMilli);
+        if (index < 0) {
+            return Optional.empty();
+        }
+        int start = index;
+        while (start < deltas.size() && deltas.get(start).checkpoint == null) {
+            start++;
+        }
+        byte[][] values = start < deltas.size()
+                ? deltas.get(start).checkpoint.clone()
+                : values(mapper.asOutput(contact));
+        rewind(deltas, start, index, values, null);
+        return Optional.of(toOutput(values));
+    }
+
+    /**
+     * Lists the known versions of a contact, from the current version back to the oldest one still covered, each with
+     * the JSON Patch document that turned the previous version into it. The oldest version comes without changes.
+     *
+     * @param contact current state of the contact
+     * @return versions of the contact, newest first
+     */
+    public List<ContactVersionResourceOutput> history(Contact contact) {
+        List<Delta> deltas = deltas(contact);
+        byte[][] values = values(mapper.asOutput(contact));
+        List<ContactVersionResourceOutput> history = new ArrayList<>(deltas.size() + 1);
+        long version = contact.getVersion();
+        OffsetDateTime lastModifiedDateTime = contact.getLastModifiedDateTime();
+        for (int i = deltas.size() - 1; i >= 0; i--) {
+            Delta delta = deltas.get(i);
+            JsonObjectBuilder before = provider.createObjectBuilder();
+            JsonObjectBuilder after = provider.createObjectBuilder();
+            for (int j = 0; j < delta.properties.length; j++) {
+                int property = delta.properties[j];
+                add(before, property, delta.values[j]);
+                add(after, property, values[property]);
+                values[property] = delta.values[j];
+            }
+            history.add(ContactVersionResourceOutput.builder()
+                    .version(version)
+                    .lastModifiedDateTime(lastModifiedDateTime)
+                    .changes(provider.createDiff(before.build(), after.build()).toJsonArray())
+                    .build());
+            version = delta.version;
+            lastModifiedDateTime = OffsetDateTime.ofInstant(Instant.ofEpochMilli(delta.lastModified), ZoneOffset.UTC);
+        }
+        history.add(ContactVersionResourceOutput.builder()
+                .version(version)
+                .lastModifiedDateTime(lastModifiedDateTime)
+                .build());
+        return history;
+    }
+
+    /**
+     * Returns the properties changed since a version, with their values at that version and their current values.
+     */
+    private Optional<JsonObject[]> changedProperties(Contact contact, long since) {
+        if (since == contact.getVersion()) {
+            JsonObject empty = JsonValue.EMPTY_JSON_OBJECT;
+            return Optional.of(new JsonObject[]{empty, empty});
+        }
+        List<Delta> deltas = deltas(contact);
+        long index = deltas.size() - (contact.getVersion() - since);
+        if (index < 0) {
+            return Optional.empty();
+        }
+        byte[][] values = new byte[names.length][];
+        boolean[] changed = new boolean[names.length];
+        rewind(deltas, deltas.size(), (int) index, values, changed);
+        ContactResourceOutput current = mapper.asOutput(contact);
+        JsonObjectBuilder before = provider.createObjectBuilder();
+        JsonObjectBuilder after = provider.createObjectBuilder();
+        for (int property = 0; property < names.length; property++) {
+            if (changed[property]) {
+                add(before, property, values[property]);
+                Object value = accessors[property].getValue(current);
+                add(after, property, value == null ? null : write(value));
+            }
+        }
+        return Optional.of(new JsonObject[]{before.build(), after.build()});
+    }
+
+    /**
+     * Evicts the deltas of the oldest updates until the deltas held are back under the limit.
+     */
+    private void evict() {
+        while (bytes.get() > maxBytes) {
+            Update update = updates.poll();
+            if (update == null) {
+                return;
+            }
+            bytes.addAndGet(-update.size);
+            Chain chain = chains.get(update.id);
+            if (chain != null) {
+                chain.removeUpTo(update.version);
+            }
+        }
+    }
+
+    /**
+     * Returns the deltas that lead back from the current version of a contact without gaps, oldest first.
+     */
+    private List<Delta> deltas(Contact contact) {
+        Chain chain = chains.get(contact.getId());
+        return chain == null ? Collections.emptyList() : chain.deltasBefore(contact.getVersion());
+    }
+
+    /**
+     * Returns the index of the delta of the last version modified at or before a date-time, or {@code -1} if the
+     * deltas don't go back that far. Versions are modified in order, so the deltas are searched by halves.
+     */
+    private static int lastModifiedBy(List<Delta> deltas, long epochMilli) {
+        int low = 0;
+        int high = deltas.size() - 1;
+        int index = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (deltas.get(middle).lastModified <= epochMilli) {
+                index = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Applies the deltas from {@code to - 1} back to {@code from} to the property values of the version that follows
+     * delta {@code to - 1}, flagging the properties they change if {@code changed} is given.
+     */
+    private static void rewind(List<Delta> deltas, int to, int from, byte[][] values, boolean[] changed) {
+        for (int i = to - 1; i >= from; i--) {
+            Delta delta = deltas.get(i);
+            for (int j = 0; j < delta.properties.length; j++) {
+                values[delta.properties[j]] = delta.values[j];
+                if (changed != null) {
+                    changed[delta.properties[j]] = true;
+                }
+            }
+        }
+    }
+
+    private Delta delta(Contact previous, Contact current) {
+        ContactResourceOutput before = mapper.asOutput(previous);
+        ContactResourceOutput after = mapper.asOutput(current);
+        int[] properties = new int[names.length];
+        byte[][] values = new byte[names.length][];
+        int changed = 0;
+        for (int property = 0; property < names.length; property++) {
+            Object value = accessors[property].getValue(before);
+            if (!Objects.equals(value, accessors[property].getValue(after))) {
+                properties[changed] = property;
+                values[changed++] = value == null ? null : write(value);
+            }
+        }
+        byte[][] checkpoint = previous.getVersion() % checkpointInterval == 0 ? values(before) : null;
+        return new Delta(previous.getVersion(), previous.getLastModifiedDateTime().toInstant().toEpochMilli(),
+                Arrays.copyOf(properties, changed), Arrays.copyOf(values, changed), checkpoint);
+    }
+
+    /**
+     * Serializes the properties of a contact representation, {@code null} standing for the properties left out.
+     */
+    private byte[][] values(ContactResourceOutput contactResource) {
+        byte[][] values = new byte[names.length][];
+        for (int property = 0; property < names.length; property++) {
+            Object value = accessors[property].getValue(contactResource);
+            values[property] = value == null ? null : write(value);
+        }
+        return values;
+    }
+
+    private ContactResourceOutput toOutput(byte[][] values) {
+        try {
+            ObjectNode node = objectMapper.createObjectNode();
+            for (int property = 0; property < names.length; property++) {
+                if (values[property] != null) {
+                    node.set(names[property], objectMapper.readTree(values[property]));
+                }
+            }
+            return objectMapper.treeToValue(node, ContactResourceOutput.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void add(JsonObjectBuilder builder, int property, byte[] value) {
+        if (value != null) {
+            try (JsonReader reader = provider.createReader(new ByteArrayInputStream(value))) {
+                builder.add(names[property], reader.readValue());
+            }
+        }
+    }
+
+    private byte[] write(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reverse delta of an update: the values the properties it changed had at {@link #version}, {@code null} for the
+     * properties it added, and the values of all properties at that version if it's a checkpoint.
+     */
+    private static final class Delta {
+
+        final long version;
+
+        final long lastModified;
+
+        final int[] properties;
+
+        final byte[][] values;
+
+        final byte[][] checkpoint;
+
+        /**
+         * Estimated size of the delta in memory, headers and references included.
+         */
+        final long size;
+
+        Delta(long version, long lastModified, int[] properties, byte[][] values, byte[][] checkpoint) {
+            this.version = version;
+            this.lastModified = lastModified;
+            this.properties = properties;
+            this.values = values;
+            this.checkpoint = checkpoint;
+            this.size = 48 + 16 + Integer.BYTES * properties.length + sizeOf(values) + sizeOf(checkpoint);
+        }
+
+        private static long sizeOf(byte[][] values) {
+            if (values == null) {
+                return 0;
+            }
+            long size = 16 + 8 * values.length;
+            for (byte[] value : values) {
+                if (value != null) {
+                    size += 16 + value.length;
+                }
+            }
+            return size;
+        }
+    }
+
+    private static final class Update {
+
+        /**
+         * Estimated size of an update in the queue, queue node included.
+         */
+        static final long SIZE = 64;
+
+        final long id;
+
+        final long version;
+
+        final long size;
+
+        Update(long id, long version, long size) {
+            this.id = id;
+            this.version = version;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Deltas of a contact ordered by version. Updates may be notified out of order, so deltas are inserted in place.
+     */
+    private static final class Chain {
+
+        private final List<Delta> deltas = new ArrayList<>();
+
+        synchronized void add(Delta delta, int maxVersions) {
+            int index = deltas.size();
+            while (index > 0 && deltas.get(index - 1).version > delta.version) {
+                index--;
+            }
+            if (index > 0 && deltas.get(index - 1).version == delta.version) {
+                return;
+            }
+            deltas.add(index, delta);
+            if (deltas.size() > maxVersions) {
+                deltas.subList(0, deltas.size() - maxVersions).clear();
+            }
+        }
+
+        /**
+         * Removes the deltas up to a version.
+         */
+        synchronized void removeUpTo(long version) {
+            int to = 0;
+            while (to < deltas.size() && deltas.get(to).version <= version) {
+                to++;
+            }
+            deltas.subList(0, to).clear();
+        }
+
+        /**
+         * Returns a copy of the deltas that lead back from a version without gaps, oldest first. Deltas are
+         * immutable, so they're read outside of the lock.
+         */
+        synchronized List<Delta> deltasBefore(long version) {
+            int to = deltas.size();
+            while (to > 0 && deltas.get(to - 1).version >= version) {
+                to--;
+            }
+            int from = to;
+            while (from > 0 && deltas.get(from - 1).version == version - (to - from) - 1) {
+                from--;
+            }
+            return new ArrayList<>(deltas.subList(from, to));
+        }
+    }
+}
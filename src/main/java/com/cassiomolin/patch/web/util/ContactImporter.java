@@ -0,0 +1,353 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.resource.error.ApiResourcePropertyError;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.output.ContactImportErrorResourceOutput;
+import com.cassiomolin.patch.web.resource.output.ContactImportResourceOutput;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Imports contacts from newline delimited JSON, one {@link ContactResourceInput} per line.
+ * <p>
+ * The import runs as a pipeline:
+ * <ol>
+ * <li>the calling thread reads lines and groups them in batches;</li>
+ * <li>a pool of workers, one per core, parses, validates and maps the batches in parallel;</li>
+ * <li>the calling thread inserts the valid contacts of each batch, in the order of the input.</li>
+ * </ol>
+ * At most {@code contacts.import.max-pending-batches} batches are in flight: once that many are pending, reading
+ * waits for the oldest batch to be inserted, so a fast client can't make the import buffer the whole body.
+ * <p>
+ * Invalid lines don't fail the import: they're reported with their line number and the contacts of the valid lines are
+ * still created. A line must hold a single JSON object, of at most {@code contacts.import.max-line-length} characters:
+ * longer lines are skipped as they're read, rather than buffered. Only the first {@code contacts.import.max-errors}
+ * errors are reported, the others are only counted.
+ */
+@Component
+public class ContactImporter {
+
+    private final ContactService service;
+
+    private final ContactMapper mapper;
+
+    private final Validator validator;
+
+    private final ObjectReader reader;
+
+    private final ExecutorService workers;
+
+    private final int batchSize;
+
+    private final int maxPendingBatches;
+
+    private final int maxLineLength;
+
+    private final int maxErrors;
+
+    public ContactImporter(ContactService service, ContactMapper mapper, Validator validator, ObjectMapper objectMapper,
+                           @Value("${contacts.import.batch-size:1000}") int batchSize,
+                           @Value("${contacts.import.max-pending-batches:0}") int maxPendingBatches,
+                           @Value("${contacts.import.max-line-length:65536}") int maxLineLength,
+                           @Value("${contacts.import.max-errors:100}") int maxErrors) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        this.service = service;
+        this.mapper = mapper;
+        this.validator = validator;
+        this.reader = objectMapper.readerFor(ContactResourceInput.class)
+                .with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+        this.workers = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("contact-import-%d")
+                .setDaemon(true)
+                .build());
+        this.batchSize = batchSize;
+        this.maxPendingBatches = maxPendingBatches > 0 ? maxPendingBatches : threads * 2;
+        this.maxLineLength = maxLineLength;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Imports contacts from a stream of newline delimited JSON. Blank lines are ignored.
+     *
+     * @param input newline delimited JSON
+     * @return import report
+     * @throws IOException if the input can't be read
+     */
+    public ContactImportResourceOutput importContacts(InputStream input) throws IOException {
+
+        Report report = new Report(maxErrors);
+        Deque<CompletableFuture<Batch>> pending = new ArrayDeque<>();
+
+        try (LineReader lines = new LineReader(new InputStreamReader(input, StandardCharsets.UTF_8), maxLineLength)) {
+            Batch batch = new Batch(batchSize);
+            long lineNumber = 0;
+            for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+                lineNumber++;
+                if (lines.isTooLong()) {
+                    batch.add(lineNumber, null);
+                } else if (line.trim().isEmpty()) {
+                    continue;
+                } else {
+                    batch.add(lineNumber, line);
+                }
+                if (batch.size() == batchSize) {
+                    submit(batch, pending, report);
+                    batch = new Batch(batchSize);
+                }
+            }
+            if (batch.size() > 0) {
+                submit(batch, pending, report);
+            }
+            while (!pending.isEmpty()) {
+                insert(pending.poll().join(), report);
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(false));
+        }
+
+        return report.toOutput();
+    }
+
+    private void submit(Batch batch, Deque<CompletableFuture<Batch>> pending, Report report) {
+        while (!pending.isEmpty() && (pending.size() >= maxPendingBatches || pending.peek().isDone())) {
+            insert(pending.poll().join(), report);
+        }
+        pending.add(CompletableFuture.supplyAsync(() -> process(batch), workers));
+    }
+
+    private Batch process(Batch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            String line = batch.lines.get(i);
+            batch.lines.set(i, null);
+            if (line == null) {
+                batch.errors.add(error(batch.lineNumbers[i], "Line longer than " + maxLineLength + " characters", null));
+                continue;
+            }
+            ContactResourceInput resource;
+            try {
+                resource = reader.readValue(line);
+            } catch (JsonProcessingException e) {
+                batch.errors.add(error(batch.lineNumbers[i], "Malformed JSON: " + e.getOriginalMessage(), null));
+                continue;
+            } catch (IOException e) {
+                batch.errors.add(error(batch.lineNumbers[i], "Malformed JSON: " + e.getMessage(), null));
+                continue;
+            }
+            if (resource == null) {
+                batch.errors.add(error(batch.lineNumbers[i], "Malformed JSON: contact must be an object", null));
+                continue;
+            }
+            Set<ConstraintViolation<ContactResourceInput>> violations = validator.validate(resource);
+            if (!violations.isEmpty()) {
+                batch.errors.add(error(batch.lineNumbers[i], "Validation error", violations.stream()
+                        .map(this::toResourcePropertyError)
+                        .collect(toList())));
+                continue;
+            }
+            batch.contacts.add(mapper.asContact(resource));
+        }
+        return batch;
+    }
+
+    private void insert(Batch batch, Report report) {
+        if (!batch.contacts.isEmpty()) {
+            service.createContacts(batch.contacts);
+        }
+        report.imported += batch.contacts.size();
+        batch.errors.forEach(report::add);
+    }
+
+    private ContactImportErrorResourceOutput error(long line, String message, List<ApiResourcePropertyError> details) {
+        return ContactImportErrorResourceOutput.builder()
+                .line(line)
+                .message(message)
+                .details(details)
+                .build();
+    }
+
+    private ApiResourcePropertyError toResourcePropertyError(ConstraintViolation<?> violation) {
+        return ApiResourcePropertyError.builder()
+                .property(violation.getPropertyPath().toString())
+                .message(violation.getMessage())
+                .invalidValue(violation.getInvalidValue())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Lines of the input processed together, along with the outcome of processing them. Lines that were too long to be
+     * read are held as {@code null}.
+     */
+    private static final class Batch {
+
+        final List<String> lines;
+
+        final long[] lineNumbers;
+
+        final List<Contact> contacts;
+
+        final List<ContactImportErrorResourceOutput> errors = new ArrayList<>();
+
+        Batch(int capacity) {
+            this.lines = new ArrayList<>(capacity);
+            this.lineNumbers = new long[capacity];
+            this.contacts = new ArrayList<>(capacity);
+        }
+
+        void add(long lineNumber, String line) {
+            lineNumbers[lines.size()] = lineNumber;
+            lines.add(line);
+        }
+
+        int size() {
+            return lines.size();
+        }
+    }
+
+    private static final class Report {
+
+        final int maxErrors;
+
+        long imported;
+
+        long failed;
+
+        final List<ContactImportErrorResourceOutput> errors = new ArrayList<>();
+
+        Report(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        void add(ContactImportErrorResourceOutput error) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(error);
+            }
+        }
+
+        ContactImportResourceOutput toOutput() {
+            return ContactImportResourceOutput.builder()
+                    .imported(imported)
+                    .failed(failed)
+                    .errors(errors)
+                    .build();
+        }
+    }
+
+    /**
+     * Reads lines like {@link java.io.BufferedReader#readLine()}, ended by {@code \n}, {@code \r} or {@code \r\n}, but
+     * skips the rest of a line once it's longer than a maximum instead of buffering it.
+     */
+    private static final class LineReader implements Closeable {
+
+        private final Reader reader;
+
+        private final int maxLength;
+
+        private final char[] buffer = new char[8192];
+
+        private final StringBuilder line = new StringBuilder();
+
+        private int position;
+
+        private int limit;
+
+        private boolean skipLineFeed;
+
+        private boolean tooLong;
+
+        LineReader(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * Returns the next line, without its terminator, or {@code null} at the end of the input. A line that's too
+         * long is returned empty.
+         */
+        String readLine() throws IOException {
+            line.setLength(0);
+            tooLong = false;
+            for (;;) {
+                if (position == limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        if (!tooLong && line.length() == 0) {
+                            return null;
+                        }
+                        return line.toString();
+                    }
+                }
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (buffer[position] == '\n') {
+                        position++;
+                        continue;
+                    }
+                }
+                int start = position;
+                while (position < limit && buffer[position] != '\n' && buffer[position] != '\r') {
+                    position++;
+                }
+                if (!tooLong) {
+                    if (line.length() + position - start > maxLength) {
+                        tooLong = true;
+                        line.setLength(0);
+                    } else {
+                        line.append(buffer, start, position - start);
+                    }
+                }
+                if (position < limit) {
+                    skipLineFeed = buffer[position++] == '\r';
+                    return line.toString();
+                }
+            }
+        }
+
+        /**
+         * Returns whether the last line read was longer than the maximum.
+         */
+        boolean isTooLong() {
+            return tooLong;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes contacts to an output stream one at a time, as they are read from the store.
+ * <p>
+ * Each contact is mapped and serialized on its own, so memory use doesn't depend on the number of contacts. The output
+ * is flushed after the first contact so that clients start receiving data right away; after that, the generator
+ * buffer decides when bytes are sent.
+ */
+@Component
+public class ContactStreamWriter {
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectWriter writer;
+
+    private final ContactMapper mapper;
+
+    public ContactStreamWriter(ObjectMapper objectMapper, ContactMapper mapper) {
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writerFor(ContactResourceOutput.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.mapper = mapper;
+    }
+
+    /**
+     * Writes contacts as newline delimited JSON: one JSON object per line.
+     *
+     * @param contacts contacts to be written
+     * @param output   target stream, left open
+     * @throws IOException if the contacts can't be written
+     */
+    public void writeNdjson(Stream<Contact> contacts, OutputStream output) throws IOException {
+        try (JsonGenerator generator = createGenerator(output)) {
+            generator.setRootValueSeparator(null);
+            boolean first = true;
+            for (Iterator<Contact> iterator = contacts.iterator(); iterator.hasNext(); ) {
+                writer.writeValue(generator, mapper.asOutput(iterator.next()));
+                generator.writeRaw('\n');
+                if (first) {
+                    generator.flush();
+                    first = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes contacts as a JSON array.
+     *
+     * @param contacts contacts to be written
+     * @param output   target stream, left open
+     * @throws IOException if the contacts can't be written
+     */
+    public void writeJsonArray(Stream<Contact> contacts, OutputStream output) throws IOException {
+        try (JsonGenerator generator = createGenerator(output)) {
+            generator.writeStartArray();
+            generator.flush();
+            for (Iterator<Contact> iterator = contacts.iterator(); iterator.hasNext(); ) {
+                writer.writeValue(generator, mapper.asOutput(iterator.next()));
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private JsonGenerator createGenerator(OutputStream output) throws IOException {
+        return objectMapper.getFactory()
+                .createGenerator(output, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+}
@@ -0,0 +1,113 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.service.SortKey;
+import com.cassiomolin.patch.service.SortProperty;
+import com.cassiomolin.patch.web.exception.BadRequestException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Opaque pagination cursors.
+ * <p>
+ * A cursor holds the key of the last item of a page, so the next page starts right after it regardless of items
+ * inserted or deleted in the meantime. The key is encoded so that clients don't rely on its format.
+ * <p>
+ * The key of a sorted page is the {@link SortKey} of its last item: the id and the value of the sort property, if
+ * any.
+ */
+public final class Cursors {
+
+    private static final byte VERSION = 1;
+
+    private static final byte SORTED_VERSION = 2;
+
+    private Cursors() {
+        throw new AssertionError("No instances of Cursors for you!");
+    }
+
+    /**
+     * Encodes the key of the last item of a page.
+     *
+     * @param key key of the last item
+     * @return cursor
+     */
+    public static String encode(long key) {
+        byte[] bytes = ByteBuffer.allocate(1 + Long.BYTES).put(VERSION).putLong(key).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Decodes a cursor.
+     *
+     * @param cursor cursor, {@code null} for the first page
+     * @return key of the last item of the previous page or {@code null} for the first page
+     * @throws BadRequestException if the cursor is invalid
+     */
+    public static Long decode(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            if (buffer.remaining() == 1 + Long.BYTES && buffer.get() == VERSION) {
+                return buffer.getLong();
+            }
+        } catch (IllegalArgumentException e) {
+            // handled below
+        }
+        throw new BadRequestException("Invalid cursor: " + cursor);
+    }
+
+    /**
+     * Encodes the sort key of the last item of a sorted page.
+     *
+     * @param property sort property
+     * @param key      sort key of the last item
+     * @return cursor
+     */
+    public static String encode(SortProperty property, SortKey key) {
+        byte[] value = key.getValue() == null
+                ? new byte[0] : property.format(key.getValue()).getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = ByteBuffer.allocate(2 + Long.BYTES + value.length)
+                .put(SORTED_VERSION).putLong(key.getId()).put((byte) (key.getValue() == null ? 0 : 1)).put(value)
+                .array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Decodes a cursor of a sorted page.
+     *
+     * @param cursor   cursor, {@code null} for the first page
+     * @param property sort property
+     * @return sort key of the last item of the previous page or {@code null} for the first page
+     * @throws BadRequestException if the cursor is invalid
+     */
+    public static SortKey decode(String cursor, SortProperty property) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.remaining() >= 2 + Long.BYTES && buffer.get() == SORTED_VERSION) {
+                long id = buffer.getLong();
+                byte present = buffer.get();
+                if (present == 0 && !buffer.hasRemaining()) {
+                    return new SortKey(null, id);
+                }
+                if (present == 1) {
+                    String value = new String(Arrays.copyOfRange(bytes, buffer.position(), bytes.length),
+                            StandardCharsets.UTF_8);
+                    return new SortKey(property.parse(value), id);
+                }
+            }
+        } catch (IllegalArgumentException | DateTimeException e) {
+            // handled below
+        }
+        throw new BadRequestException("Invalid cursor: " + cursor);
+    }
+}
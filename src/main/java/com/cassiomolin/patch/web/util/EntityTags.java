@@ -0,0 +1,53 @@
+package com.cassiomolin.patch.web.util;
+
+import java.util.List;
+
+/**
+ * Entity tags derived from resource versions.
+ * <p>
+ * A version changes whenever the resource changes, so it's a strong validator on its own: tags are computed and
+ * compared without serializing the representation.
+ */
+public final class EntityTags {
+
+    private static final String ANY = "*";
+
+    private static final String WEAK_PREFIX = "W/";
+
+    private EntityTags() {
+        throw new AssertionError("No instances of EntityTags for you!");
+    }
+
+    /**
+     * Returns the strong entity tag of a resource version.
+     *
+     * @param version resource version
+     * @return quoted entity tag
+     */
+    public static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Evaluates an {@code If-Match} header against the current entity tag of an existing resource, using the strong
+     * comparison function of RFC 7232.
+     *
+     * @param ifMatch values of the {@code If-Match} header, {@code null} or empty if absent
+     * @param etag    current entity tag
+     * @return {@code true} if the header is absent or matches the current entity tag
+     */
+    public static boolean ifMatch(List<String> ifMatch, String etag) {
+        if (ifMatch == null || ifMatch.isEmpty()) {
+            return true;
+        }
+        for (String value : ifMatch) {
+            for (String tag : value.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.equals(ANY) || (!candidate.startsWith(WEAK_PREFIX) && candidate.equals(etag))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,421 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.web.patch.PatchOperationType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies JSON Patch (RFC 6902) and JSON Merge Patch (RFC 7386) documents to mutable Jackson trees.
+ * <p>
+ * Operations are applied in place, so patching a document doesn't copy it once per operation as the immutable
+ * JSR-353 structures do. Errors are reported with {@link JsonException}, as the JSR-353 implementation does.
+ */
+public final class JsonTreePatcher {
+
+    private static final JsonNodeFactory NODE_FACTORY = JsonNodeFactory.instance;
+
+    private JsonTreePatcher() {
+        throw new AssertionError("No instances of JsonTreePatcher for you!");
+    }
+
+    /**
+     * Applies a JSON Patch document.
+     *
+     * @param operations JSON Patch operations
+     * @param target     document to be patched, modified in place whenever possible
+     * @return patched document, which is {@code target} unless the whole document has been replaced
+     */
+    public static JsonNode applyPatch(JsonArray operations, JsonNode target) {
+        JsonNode document = target;
+        for (JsonValue operation : operations) {
+            if (operation.getValueType() != JsonValue.ValueType.OBJECT) {
+                throw new JsonException("JSON Patch operation must be an object: " + operation);
+            }
+            document = applyOperation((JsonObject) operation, document);
+        }
+        return document;
+    }
+
+    /**
+     * Applies a single JSON Patch operation.
+     *
+     * @param operation JSON Patch operation
+     * @param target    document to be patched, modified in place whenever possible
+     * @return patched document, which is {@code target} unless the whole document has been replaced
+     */
+    public static JsonNode applyOperation(JsonObject operation, JsonNode target) {
+        PatchOperationType type = PatchOperationType.fromOperationName(requiredString(operation, "op"));
+        String[] path = parsePointer(requiredString(operation, "path"));
+        switch (type) {
+            case MOVE:
+            case COPY:
+                return applyOperation(type, path, parsePointer(requiredString(operation, "from")), null, target);
+            case REMOVE:
+                return applyOperation(type, path, null, null, target);
+            default:
+                return applyOperation(type, path, null, requiredValue(operation), target);
+        }
+    }
+
+    /**
+     * Applies a single JSON Patch operation whose pointers have already been parsed.
+     *
+     * @param type   operation type
+     * @param path   reference tokens of the target location
+     * @param from   reference tokens of the source location, for {@code move} and {@code copy}
+     * @param value  operation value, for {@code add}, {@code replace} and {@code test}
+     * @param target document to be patched, modified in place whenever possible
+     * @return patched document, which is {@code target} unless the whole document has been replaced
+     */
+    public static JsonNode applyOperation(PatchOperationType type, String[] path, String[] from, JsonValue value,
+                                          JsonNode target) {
+        switch (type) {
+            case ADD:
+                return add(target, path, toJsonNode(value));
+            case REMOVE:
+                return remove(target, path);
+            case REPLACE:
+                return replace(target, path, toJsonNode(value));
+            case MOVE:
+                return move(target, from, path);
+            case COPY:
+                return add(target, path, get(target, from).deepCopy());
+            default:
+                test(target, path, toJsonNode(value));
+                return target;
+        }
+    }
+
+    /**
+     * Applies a JSON Merge Patch document.
+     *
+     * @param patch  JSON Merge Patch document
+     * @param target document to be patched, modified in place whenever possible
+     * @return patched document
+     */
+    public static JsonNode applyMergePatch(JsonValue patch, JsonNode target) {
+        if (patch.getValueType() != JsonValue.ValueType.OBJECT) {
+            return toJsonNode(patch);
+        }
+        ObjectNode object = target != null && target.isObject() ? (ObjectNode) target : NODE_FACTORY.objectNode();
+        for (Map.Entry<String, JsonValue> member : ((JsonObject) patch).entrySet()) {
+            if (member.getValue().getValueType() == JsonValue.ValueType.NULL) {
+                object.remove(member.getKey());
+            } else {
+                object.set(member.getKey(), applyMergePatch(member.getValue(), object.get(member.getKey())));
+            }
+        }
+        return object;
+    }
+
+    /**
+     * Splits a JSON Pointer (RFC 6901) into its unescaped reference tokens.
+     *
+     * @param pointer JSON Pointer
+     * @return reference tokens, empty for the whole document
+     */
+    public static String[] parsePointer(String pointer) {
+        if (pointer.isEmpty()) {
+            return new String[0];
+        }
+        if (pointer.charAt(0) != '/') {
+            throw new JsonException("A non-empty JSON Pointer must begin with a '/': " + pointer);
+        }
+        List<String> tokens = new ArrayList<>();
+        int start = 1;
+        while (true) {
+            int end = pointer.indexOf('/', start);
+            String token = pointer.substring(start, end < 0 ? pointer.length() : end);
+            tokens.add(token.indexOf('~') < 0 ? token : unescape(token, pointer));
+            if (end < 0) {
+                return tokens.toArray(new String[0]);
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Converts a JSR-353 value to a Jackson tree without going through a serializer.
+     *
+     * @param value JSR-353 value
+     * @return equivalent Jackson tree
+     */
+    public static JsonNode toJsonNode(JsonValue value) {
+        switch (value.getValueType()) {
+            case OBJECT:
+                ObjectNode object = NODE_FACTORY.objectNode();
+                for (Map.Entry<String, JsonValue> member : ((JsonObject) value).entrySet()) {
+                    object.set(member.getKey(), toJsonNode(member.getValue()));
+                }
+                return object;
+            case ARRAY:
+                ArrayNode array = NODE_FACTORY.arrayNode();
+                for (JsonValue element : (JsonArray) value) {
+                    array.add(toJsonNode(element));
+                }
+                return array;
+            case STRING:
+                return NODE_FACTORY.textNode(((JsonString) value).getString());
+            case NUMBER:
+                JsonNumber number = (JsonNumber) value;
+                if (!number.isIntegral()) {
+                    return NODE_FACTORY.numberNode(number.bigDecimalValue());
+                }
+                BigInteger integer = number.bigIntegerValue();
+                return integer.bitLength() < 64
+                        ? NODE_FACTORY.numberNode(integer.longValue())
+                        : NODE_FACTORY.numberNode(integer);
+            case TRUE:
+                return NODE_FACTORY.booleanNode(true);
+            case FALSE:
+                return NODE_FACTORY.booleanNode(false);
+            default:
+                return NODE_FACTORY.nullNode();
+        }
+    }
+
+    static JsonNode get(JsonNode document, String[] tokens) {
+        JsonNode current = document;
+        for (String token : tokens) {
+            current = child(current, token);
+            if (current == null) {
+                throw new JsonException("Path doesn't exist: " + toPointer(tokens));
+            }
+        }
+        return current;
+    }
+
+    static JsonNode add(JsonNode document, String[] tokens, JsonNode value) {
+        if (tokens.length == 0) {
+            return value;
+        }
+        JsonNode parent = parent(document, tokens);
+        String token = tokens[tokens.length - 1];
+        if (parent.isObject()) {
+            ((ObjectNode) parent).set(token, value);
+        } else {
+            ArrayNode array = (ArrayNode) parent;
+            if ("-".equals(token)) {
+                array.add(value);
+            } else {
+                int index = arrayIndex(token, tokens);
+                if (index > array.size()) {
+                    throw new JsonException("Array index out of bounds: " + toPointer(tokens));
+                }
+                array.insert(index, value);
+            }
+        }
+        return document;
+    }
+
+    static JsonNode remove(JsonNode document, String[] tokens) {
+        if (tokens.length == 0) {
+            throw new JsonException("The root of the document can't be removed");
+        }
+        JsonNode parent = parent(document, tokens);
+        String token = tokens[tokens.length - 1];
+        if (parent.isObject()) {
+            if (((ObjectNode) parent).remove(token) == null) {
+                throw new JsonException("Path doesn't exist: " + toPointer(tokens));
+            }
+        } else {
+            ArrayNode array = (ArrayNode) parent;
+            int index = existingArrayIndex(array, token, tokens);
+            array.remove(index);
+        }
+        return document;
+    }
+
+    static JsonNode replace(JsonNode document, String[] tokens, JsonNode value) {
+        if (tokens.length == 0) {
+            return value;
+        }
+        JsonNode parent = parent(document, tokens);
+        String token = tokens[tokens.length - 1];
+        if (parent.isObject()) {
+            ObjectNode object = (ObjectNode) parent;
+            if (!object.has(token)) {
+                throw new JsonException("Path doesn't exist: " + toPointer(tokens));
+            }
+            object.set(token, value);
+        } else {
+            ArrayNode array = (ArrayNode) parent;
+            array.set(existingArrayIndex(array, token, tokens), value);
+        }
+        return document;
+    }
+
+    private static JsonNode move(JsonNode document, String[] from, String[] path) {
+        if (Arrays.equals(from, path)) {
+            return document;
+        }
+        if (path.length > from.length && Arrays.equals(from, Arrays.copyOf(path, from.length))) {
+            throw new JsonException("A location can't be moved into one of its children: " + toPointer(from));
+        }
+        JsonNode value = get(document, from);
+        return add(remove(document, from), path, value);
+    }
+
+    private static void test(JsonNode document, String[] tokens, JsonNode expected) {
+        JsonNode actual = get(document, tokens);
+        if (!numericAwareEquals(actual, expected)) {
+            throw new JsonException("Test operation failed for path: " + toPointer(tokens));
+        }
+    }
+
+    private static boolean numericAwareEquals(JsonNode actual, JsonNode expected) {
+        if (actual.isNumber() && expected.isNumber()) {
+            return actual.decimalValue().compareTo(expected.decimalValue()) == 0;
+        }
+        if (actual.isContainerNode() && expected.isContainerNode() && actual.size() == expected.size()
+                && actual.getNodeType() == expected.getNodeType()) {
+            if (actual.isArray()) {
+                for (int i = 0; i < actual.size(); i++) {
+                    if (!numericAwareEquals(actual.get(i), expected.get(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            for (Iterator<String> names = actual.fieldNames(); names.hasNext(); ) {
+                String name = names.next();
+                if (!expected.has(name) || !numericAwareEquals(actual.get(name), expected.get(name))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return actual.equals(expected);
+    }
+
+    private static JsonNode parent(JsonNode document, String[] tokens) {
+        JsonNode current = document;
+        for (int i = 0; i < tokens.length - 1; i++) {
+            current = child(current, tokens[i]);
+            if (current == null) {
+                throw new JsonException("Path doesn't exist: " + toPointer(tokens));
+            }
+        }
+        if (!current.isContainerNode()) {
+            throw new JsonException("Parent of the target location is not an object or an array: " + toPointer(tokens));
+        }
+        return current;
+    }
+
+    private static JsonNode child(JsonNode node, String token) {
+        if (node.isObject()) {
+            return node.get(token);
+        }
+        if (node.isArray()) {
+            if ("-".equals(token)) {
+                return null;
+            }
+            int index = parseIndex(token);
+            return index < 0 ? null : node.get(index);
+        }
+        return null;
+    }
+
+    private static int existingArrayIndex(ArrayNode array, String token, String[] tokens) {
+        int index = arrayIndex(token, tokens);
+        if (index >= array.size()) {
+            throw new JsonException("Array index out of bounds: " + toPointer(tokens));
+        }
+        return index;
+    }
+
+    private static int arrayIndex(String token, String[] tokens) {
+        int index = parseIndex(token);
+        if (index < 0) {
+            throw new JsonException("Illegal array index: " + toPointer(tokens));
+        }
+        return index;
+    }
+
+    /**
+     * Parses an array index as defined by RFC 6901: digits only and no leading zeros.
+     *
+     * @param token reference token
+     * @return the index or {@code -1} if the token is not a valid array index
+     */
+    public static int parseIndex(String token) {
+        int length = token.length();
+        if (length == 0 || length > 9 || (length > 1 && token.charAt(0) == '0')) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < length; i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+
+    private static String unescape(String token, String pointer) {
+        StringBuilder builder = new StringBuilder(token.length());
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '~') {
+                char next = i + 1 < token.length() ? token.charAt(++i) : 0;
+                if (next == '0') {
+                    builder.append('~');
+                } else if (next == '1') {
+                    builder.append('/');
+                } else {
+                    throw new JsonException("Illegal escape sequence in JSON Pointer: " + pointer);
+                }
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Formats reference tokens as a JSON Pointer, escaping them as defined by RFC 6901.
+     *
+     * @param tokens reference tokens
+     * @return JSON Pointer
+     */
+    public static String toPointer(String[] tokens) {
+        StringBuilder builder = new StringBuilder();
+        for (String token : tokens) {
+            builder.append('/').append(token.replace("~", "~0").replace("/", "~1"));
+        }
+        return builder.toString();
+    }
+
+    private static String requiredString(JsonObject operation, String name) {
+        JsonValue value = operation.get(name);
+        if (value == null || value.getValueType() != JsonValue.ValueType.STRING) {
+            throw new JsonException("JSON Patch operation must contain a string '" + name + "' member: " + operation);
+        }
+        return ((JsonString) value).getString();
+    }
+
+    private static JsonValue requiredValue(JsonObject operation) {
+        JsonValue value = operation.get("value");
+        if (value == null) {
+            throw new JsonException("JSON Patch operation must contain a 'value' member: " + operation);
+        }
+        return value;
+    }
+}
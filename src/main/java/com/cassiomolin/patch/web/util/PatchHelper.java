@@ -1,13 +1,15 @@
 package com.cassiomolin.patch.web.util;
 
 import com.cassiomolin.patch.web.exception.UnprocessableEntityException;
+import com.cassiomolin.patch.web.patch.PatchApplier;
+import com.cassiomolin.patch.web.patch.PatchAppliers;
+import com.cassiomolin.patch.web.patch.PlannedJsonPatch;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import javax.json.JsonMergePatch;
 import javax.json.JsonPatch;
-import javax.json.JsonStructure;
 import javax.json.JsonValue;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
@@ -15,15 +17,29 @@ import javax.validation.Validator;
 import java.util.Set;
 
 @Component
-@RequiredArgsConstructor
 public class PatchHelper {
 
     private final ObjectMapper mapper;
 
-    private final Validator validator;
+    private final PatchValidator validator;
+
+    public PatchHelper(ObjectMapper mapper, Validator validator) {
+        this.mapper = mapper;
+        this.validator = new PatchValidator(validator);
+    }
 
     /**
      * Performs a JSON Patch operation.
+     * <p>
+     * When a {@link PatchApplier} has been generated for the bean class, the operations are applied straight to a copy
+     * of the object. Otherwise, or if the applier doesn't support the document, the object is converted to a mutable
+     * Jackson tree once, all operations are applied to that tree in place and the result is converted back to the bean
+     * class.
+     * <p>
+     * Documents read by the message converter come precompiled from the {@link
+     * com.cassiomolin.patch.web.patch.PatchPlanCache}; any other document is compiled here.
+     * <p>
+     * The target object is expected to be valid, so only the properties the operations touched are validated.
      *
      * @param patch      JSON Patch document
      * @param targetBean object that will be patched
@@ -32,13 +48,22 @@ public class PatchHelper {
      * @return patched object
      */
     public <T> T patch(JsonPatch patch, T targetBean, Class<T> beanClass) {
-        JsonStructure target = mapper.convertValue(targetBean, JsonStructure.class);
-        JsonValue patched = applyPatch(patch, target);
-        return convertAndValidate(patched, beanClass);
+        PlannedJsonPatch plannedPatch = compile(patch);
+        T patchedBean = PatchAppliers.find(beanClass)
+                .map(applier -> applyPatch(applier, plannedPatch, targetBean))
+                .orElse(null);
+        if (patchedBean == null) {
+            JsonNode target = mapper.valueToTree(targetBean);
+            patchedBean = convert(applyPatch(plannedPatch, target), beanClass);
+        }
+        throwIfInvalid(validator.validate(patchedBean, plannedPatch.getPlan()));
+        return patchedBean;
     }
 
     /**
-     * Performs a JSON Merge Patch operation
+     * Performs a JSON Merge Patch operation.
+     * <p>
+     * The target object is expected to be valid, so only the properties the document touched are validated.
      *
      * @param mergePatch JSON Merge Patch document
      * @param targetBean object that will be patched
@@ -47,12 +72,50 @@ public class PatchHelper {
      * @return patched object
      */
     public <T> T mergePatch(JsonMergePatch mergePatch, T targetBean, Class<T> beanClass) {
-        JsonValue target = mapper.convertValue(targetBean, JsonValue.class);
-        JsonValue patched = applyMergePatch(mergePatch, target);
-        return convertAndValidate(patched, beanClass);
+        JsonValue patch = mergePatch.toJsonValue();
+        T patchedBean = PatchAppliers.find(beanClass)
+                .map(applier -> applyMergePatch(applier, patch, targetBean))
+                .orElse(null);
+        if (patchedBean == null) {
+            JsonNode target = mapper.valueToTree(targetBean);
+            patchedBean = convert(applyMergePatch(patch, target), beanClass);
+        }
+        throwIfInvalid(validator.validate(patchedBean, patch));
+        return patchedBean;
+    }
+
+    private PlannedJsonPatch compile(JsonPatch patch) {
+        if (patch instanceof PlannedJsonPatch) {
+            return (PlannedJsonPatch) patch;
+        }
+        try {
+            return PlannedJsonPatch.of(patch.toJsonArray());
+        } catch (Exception e) {
+            throw new UnprocessableEntityException(e);
+        }
     }
 
-    private JsonValue applyPatch(JsonPatch patch, JsonStructure target) {
+    /**
+     * Applies the operations through the generated applier. Any failure is left to the generic path, which is the
+     * reference for errors.
+     */
+    private <T> T applyPatch(PatchApplier<T> applier, PlannedJsonPatch patch, T targetBean) {
+        try {
+            return patch.apply(applier, targetBean);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private <T> T applyMergePatch(PatchApplier<T> applier, JsonValue patch, T targetBean) {
+        try {
+            return applier.mergePatch(patch, targetBean);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private JsonNode applyPatch(PlannedJsonPatch patch, JsonNode target) {
         try {
             return patch.apply(target);
         } catch (Exception e) {
@@ -60,22 +123,23 @@ public class PatchHelper {
         }
     }
 
-    private JsonValue applyMergePatch(JsonMergePatch mergePatch, JsonValue target) {
+    private JsonNode applyMergePatch(JsonValue patch, JsonNode target) {
         try {
-            return mergePatch.apply(target);
+            return JsonTreePatcher.applyMergePatch(patch, target);
         } catch (Exception e) {
             throw new UnprocessableEntityException(e);
         }
     }
 
-    private <T> T convertAndValidate(JsonValue jsonValue, Class<T> beanClass) {
-        T bean = mapper.convertValue(jsonValue, beanClass);
-        validate(bean);
-        return bean;
+    private <T> T convert(JsonNode jsonNode, Class<T> beanClass) {
+        try {
+            return mapper.treeToValue(jsonNode, beanClass);
+        } catch (Exception e) {
+            throw new UnprocessableEntityException(e);
+        }
     }
 
-    private <T> void validate(T bean) {
-        Set<ConstraintViolation<T>> violations = validator.validate(bean);
+    private static <T> void throwIfInvalid(Set<ConstraintViolation<T>> violations) {
         if (!violations.isEmpty()) {
             throw new ConstraintViolationException(violations);
         }
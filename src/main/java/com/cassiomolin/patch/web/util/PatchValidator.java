@@ -0,0 +1,290 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.web.patch.PatchOperationType;
+import com.cassiomolin.patch.web.patch.PatchPlan;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.util.ReflectionUtils;
+
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import javax.validation.ConstraintViolation;
+import javax.validation.Path;
+import javax.validation.Validator;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Null;
+import javax.validation.constraints.Size;
+import javax.validation.metadata.BeanDescriptor;
+import javax.validation.metadata.ConstraintDescriptor;
+import javax.validation.metadata.ContainerElementTypeDescriptor;
+import javax.validation.metadata.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Validates a patched bean by the properties the patch touched only, so the cost of validation depends on the size of
+ * the patch rather than on the size of the bean.
+ * <p>
+ * The bean was valid before it was patched, so only the top-level properties the patch added, replaced or removed can
+ * break a constraint. Their constraints are checked with {@link Validator#validateValue}, which unlike {@link
+ * Validator#validateProperty} doesn't walk the rest of the bean. Properties cascaded with {@code @Valid} are validated
+ * along with the beans nested in them through a bean holding nothing but the property; when the property is a list and
+ * the patch only changed some of its elements in place or appended elements to it, the other elements are left out of
+ * the list, so only the changed ones are validated. Violations are reported by the same validator with the same paths,
+ * messages and invalid values as when validating the whole bean.
+ * <p>
+ * Beans with class-level constraints, patches of the whole document and properties that can't be told apart from
+ * their JSON name are validated whole.
+ */
+class PatchValidator {
+
+    private static final Set<Class<?>> SIZE_CONSTRAINTS = new HashSet<>(Arrays.asList(
+            NotNull.class, Null.class, NotEmpty.class, Size.class));
+
+    private final Validator validator;
+
+    PatchValidator(Validator validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * Validates a bean patched by a JSON Patch document.
+     *
+     * @param bean patched bean
+     * @param plan plan of the JSON Patch document
+     * @param <T>  type of the bean
+     * @return constraint violations
+     */
+    <T> Set<ConstraintViolation<T>> validate(T bean, PatchPlan plan) {
+        return validate(bean, affectedBy(plan));
+    }
+
+    /**
+     * Validates a bean patched by a JSON Merge Patch document.
+     *
+     * @param bean       patched bean
+     * @param mergePatch JSON Merge Patch document
+     * @param <T>        type of the bean
+     * @return constraint violations
+     */
+    <T> Set<ConstraintViolation<T>> validate(T bean, JsonValue mergePatch) {
+        return validate(bean, affectedBy(mergePatch));
+    }
+
+    private <T> Set<ConstraintViolation<T>> validate(T bean, Map<String, Elements> affected) {
+        BeanDescriptor descriptor = validator.getConstraintsForClass(bean.getClass());
+        if (affected == null || descriptor.hasConstraints()) {
+            return validator.validate(bean);
+        }
+        DirectFieldAccessor accessor = new DirectFieldAccessor(bean);
+        Set<ConstraintViolation<T>> violations = new HashSet<>();
+        for (Map.Entry<String, Elements> entry : affected.entrySet()) {
+            String name = entry.getKey();
+            if (!accessor.isReadableProperty(name)) {
+                return validator.validate(bean);
+            }
+            PropertyDescriptor property = descriptor.getConstraintsForProperty(name);
+            if (property == null) {
+                continue;
+            }
+            Object value = accessor.getPropertyValue(name);
+            if (value != null && isCascaded(property)) {
+                violations.addAll(validateCascaded(bean, name, value, entry.getValue(), property));
+            } else {
+                violations.addAll(validateValue(bean, name, value));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Validates a cascaded property, and the beans nested in it, through a bean holding nothing but the property.
+     * <p>
+     * When only some elements of a list were touched, the others are blanked out of the list held, provided the
+     * constraints of the list itself only depend on its size. Violations of those constraints are then reported again
+     * for the actual list.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Set<ConstraintViolation<T>> validateCascaded(T bean, String name, Object value, Elements elements,
+                                                            PropertyDescriptor property) {
+        Object original = value;
+        Set<Integer> indexes = null;
+        if (value instanceof List && !elements.all && isSizeConstrained(property)) {
+            List<?> list = (List<?>) value;
+            indexes = elements.indexes(list.size());
+            List<Object> sparse = new ArrayList<>(Collections.nCopies(list.size(), null));
+            for (int index : indexes) {
+                sparse.set(index, list.get(index));
+            }
+            value = sparse;
+        }
+        T holder = (T) BeanUtils.instantiateClass(bean.getClass());
+        Field field = ReflectionUtils.findField(bean.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, holder, value);
+        Set<ConstraintViolation<T>> violations = new HashSet<>();
+        boolean invalidList = false;
+        for (ConstraintViolation<T> violation : validator.validate(holder)) {
+            Iterator<Path.Node> nodes = violation.getPropertyPath().iterator();
+            if (!name.equals(nodes.next().getName())) {
+                continue;
+            }
+            if (indexes == null) {
+                violations.add(violation);
+            } else if (!nodes.hasNext()) {
+                invalidList = true;
+            } else if (indexes.contains(nodes.next().getIndex())) {
+                violations.add(violation);
+            }
+        }
+        if (invalidList) {
+            for (ConstraintViolation<T> violation : validateValue(bean, name, original)) {
+                Iterator<Path.Node> nodes = violation.getPropertyPath().iterator();
+                nodes.next();
+                if (!nodes.hasNext()) {
+                    violations.add(violation);
+                }
+            }
+        }
+        return violations;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Set<ConstraintViolation<T>> validateValue(T bean, String name, Object value) {
+        return validator.validateValue((Class<T>) bean.getClass(), name, value);
+    }
+
+    private static boolean isSizeConstrained(PropertyDescriptor property) {
+        for (ConstraintDescriptor<?> constraint : property.getConstraintDescriptors()) {
+            if (!SIZE_CONSTRAINTS.contains(constraint.getAnnotation().annotationType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCascaded(PropertyDescriptor property) {
+        if (property.isCascaded()) {
+            return true;
+        }
+        for (ContainerElementTypeDescriptor element : property.getConstrainedContainerElementTypes()) {
+            if (element.isCascaded()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the top-level properties a JSON Patch document touches.
+     *
+     * @return elements touched by property or {@code null} if the whole document is
+     */
+    static Map<String, Elements> affectedBy(PatchPlan plan) {
+        Map<String, Elements> affected = new HashMap<>();
+        for (int i = 0; i < plan.size(); i++) {
+            PatchOperationType type = plan.getType(i);
+            if (type == PatchOperationType.TEST) {
+                continue;
+            }
+            if (!touch(affected, plan.getPath(i), type != PatchOperationType.REPLACE)) {
+                return null;
+            }
+            if (type == PatchOperationType.MOVE && !touch(affected, plan.getFrom(i), true)) {
+                return null;
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Returns the top-level properties a JSON Merge Patch document touches.
+     *
+     * @return elements touched by property or {@code null} if the whole document is
+     */
+    static Map<String, Elements> affectedBy(JsonValue mergePatch) {
+        if (mergePatch.getValueType() != JsonValue.ValueType.OBJECT) {
+            return null;
+        }
+        Map<String, Elements> affected = new HashMap<>();
+        for (String name : ((JsonObject) mergePatch).keySet()) {
+            affected.put(name, Elements.ALL);
+        }
+        return affected;
+    }
+
+    /**
+     * Records the location an operation changes, telling whether it adds or removes it.
+     *
+     * @return {@code false} if the location is the whole document
+     */
+    private static boolean touch(Map<String, Elements> affected, String[] path, boolean structural) {
+        if (path.length == 0) {
+            return false;
+        }
+        Elements elements = affected.computeIfAbsent(path[0], name -> new Elements());
+        if (path.length == 1) {
+            elements.all = true;
+        } else if (path.length == 2 && path[1].equals("-")) {
+            elements.appended++;
+        } else if (path.length == 2 && structural || !isIndex(path[1])) {
+            elements.all = true;
+        } else {
+            elements.changed.add(Integer.parseInt(path[1]));
+        }
+        return true;
+    }
+
+    private static boolean isIndex(String token) {
+        if (token.isEmpty() || token.length() > 9 || (token.charAt(0) == '0' && token.length() > 1)) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (token.charAt(i) < '0' || token.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Elements of a property a patch touched: all of them, or the ones changed in place and the ones appended, when
+     * no element was inserted or removed elsewhere.
+     */
+    static final class Elements {
+
+        static final Elements ALL = new Elements();
+
+        static {
+            ALL.all = true;
+        }
+
+        boolean all;
+
+        final Set<Integer> changed = new HashSet<>();
+
+        int appended;
+
+        Set<Integer> indexes(int size) {
+            Set<Integer> indexes = new HashSet<>();
+            for (int index : changed) {
+                if (index < size) {
+                    indexes.add(index);
+                }
+            }
+            for (int index = Math.max(0, size - appended); index < size; index++) {
+                indexes.add(index);
+            }
+            return indexes;
+        }
+    }
+}
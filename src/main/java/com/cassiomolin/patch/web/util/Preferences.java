@@ -0,0 +1,52 @@
+package com.cassiomolin.patch.web.util;
+
+import java.util.List;
+
+/**
+ * Client preferences sent in the {@code Prefer} header (RFC 7240).
+ */
+public final class Preferences {
+
+    public static final String PREFER = "Prefer";
+
+    public static final String PREFERENCE_APPLIED = "Preference-Applied";
+
+    public static final String RETURN_REPRESENTATION = "return=representation";
+
+    private static final String RETURN = "return";
+
+    private static final String REPRESENTATION = "representation";
+
+    private Preferences() {
+        throw new AssertionError("No instances of Preferences for you!");
+    }
+
+    /**
+     * Tells whether the client prefers a request that changes a resource to return its new representation rather than
+     * a minimal response. Only the first {@code return} preference counts, as RFC 7240 requires.
+     *
+     * @param prefer values of the {@code Prefer} header, {@code null} or empty if absent
+     * @return {@code true} if the client asked for {@code return=representation}
+     */
+    public static boolean returnRepresentation(List<String> prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String value : prefer) {
+            for (String preference : value.split(",")) {
+                String token = preference.split(";", 2)[0];
+                int equals = token.indexOf('=');
+                String name = (equals < 0 ? token : token.substring(0, equals)).trim();
+                if (name.equalsIgnoreCase(RETURN)) {
+                    return equals >= 0 && unquote(token.substring(equals + 1).trim()).equals(REPRESENTATION);
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String unquote(String value) {
+        return value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")
+                ? value.substring(1, value.length() - 1) : value;
+    }
+}
@@ -0,0 +1,110 @@
+package com.cassiomolin.patch.service.filter;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+import com.cassiomolin.patch.service.index.ContactAttributeIndex;
+import com.cassiomolin.patch.service.index.Postings;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ContactFilterTest {
+
+    @Test
+    public void matches_shouldEvaluateEveryComparison_whenJoinedByAnd() {
+
+        ContactFilter filter = ContactFilter.parse("birthday=lt=1990-01-01;work.company==*Acme*;phones.count=gt=2");
+
+        Contact contact = contact();
+        assertThat(filter.matches(contact)).isTrue();
+
+        contact.setBirthday(LocalDate.of(1990, 1, 1));
+        assertThat(filter.matches(contact)).isFalse();
+    }
+
+    @Test
+    public void matches_shouldGiveAndPrecedenceOverOr() {
+
+        Contact contact = contact();
+
+        assertThat(ContactFilter.parse("name==Jane;favorite==true,groups==friends").matches(contact)).isTrue();
+        assertThat(ContactFilter.parse("name==Jane;(favorite==true,groups==friends)").matches(contact)).isFalse();
+    }
+
+    @Test
+    public void matches_shouldMatchAnyValue_whenPropertyHasSeveralValues() {
+
+        Contact contact = contact();
+
+        assertThat(ContactFilter.parse("groups=in=(family,work)").matches(contact)).isTrue();
+        assertThat(ContactFilter.parse("groups=out=(family,work)").matches(contact)).isFalse();
+        assertThat(ContactFilter.parse("emails==JOHN@EXAMPLE.COM").matches(contact)).isTrue();
+        assertThat(ContactFilter.parse("phones=='+1 555-0101'").matches(contact)).isTrue();
+        assertThat(ContactFilter.parse("phones.type!=home").matches(contact)).isFalse();
+    }
+
+    @Test
+    public void matches_shouldOnlyMatchNegations_whenPropertyHasNoValue() {
+
+        Contact contact = contact();
+        contact.setNotes(null);
+
+        assertThat(ContactFilter.parse("notes==*").matches(contact)).isFalse();
+        assertThat(ContactFilter.parse("notes<z").matches(contact)).isFalse();
+        assertThat(ContactFilter.parse("notes!=x").matches(contact)).isTrue();
+    }
+
+    @Test
+    public void postings_shouldUseIndexes_whenComparisonsAreIndexed() {
+
+        ContactAttributeIndex index = new ContactAttributeIndex();
+        Contact contact = contact();
+        index.update(null, contact);
+
+        Postings postings = ContactFilter.parse("groups==friends;name==John*").postings(index);
+
+        assertThat(postings).isNotNull();
+        assertThat(postings.next(1)).isEqualTo(1L);
+        assertThat(ContactFilter.parse("groups==friends,name==John*").postings(index)).isNull();
+        assertThat(ContactFilter.parse("groups==friend*").postings(index)).isNull();
+    }
+
+    @Test
+    public void parse_shouldThrowInvalidFilterException_whenExpressionIsInvalid() {
+
+        Throwable unknownProperty = catchThrowable(() -> ContactFilter.parse("name==John;nickname==Jo"));
+        Throwable invalidDate = catchThrowable(() -> ContactFilter.parse("birthday=lt=1990-13-01"));
+        Throwable unbalanced = catchThrowable(() -> ContactFilter.parse("(name==John"));
+
+        assertThat(unknownProperty).isInstanceOf(InvalidFilterException.class)
+                .hasMessage("Unknown property 'nickname' at position 12");
+        assertThat(invalidDate).isInstanceOf(InvalidFilterException.class)
+                .hasMessage("Invalid date '1990-13-01' for property 'birthday' at position 13");
+        assertThat(unbalanced).isInstanceOf(InvalidFilterException.class)
+                .hasMessage("Unexpected end of filter at position 12");
+    }
+
+    private static Contact contact() {
+        return Contact.builder()
+                .id(1L)
+                .name("John Appleseed")
+                .birthday(LocalDate.of(1985, 2, 28))
+                .work(Work.builder().company("Acme Inc.").build())
+                .phones(Arrays.asList(Phone.builder().phone("+1 555 0100").type("home").build(),
+                        Phone.builder().phone("+1 555 0101").type("mobile").build(),
+                        Phone.builder().phone("+1 555 0102").type("work").build()))
+                .emails(Collections.singletonList(Email.builder().email("john@example.com").build()))
+                .groups(Arrays.asList("friends", "work"))
+                .favorite(false)
+                .notes("Met at the conference")
+                .version(1L)
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.service.ContactQuery;
+import com.cassiomolin.patch.service.Page;
+import com.cassiomolin.patch.service.index.BirthdayIndex;
+import com.cassiomolin.patch.service.index.ContactAttributeIndex;
+import com.cassiomolin.patch.service.index.ContactIndexes;
+import com.cassiomolin.patch.service.index.ContactSortIndex;
+import com.cassiomolin.patch.service.index.FullTextIndex;
+import com.cassiomolin.patch.service.index.SuggestionIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares finding contacts through the secondary indexes with filtering a full scan of the store, which is what
+ * clients had to do before.
+ * <p>
+ * {@code favoritesInGroup} asks for the first page of favorites in one of 10 groups (about 3% of the contacts) and
+ * {@code email} for the owner of a random email address.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms8g", "-Xmx8g"})
+public class ContactQueryBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000000"})
+    private int size;
+
+    private DefaultContactService service;
+
+    private DefaultContactQueryService queryService;
+
+    private final ContactQuery favoritesInGroup = ContactQuery.builder().group("group 7").favorite(true).build();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        service = new DefaultContactService();
+        ContactAttributeIndex index = new ContactAttributeIndex();
+        ContactIndexes indexes = new ContactIndexes(service, Collections.singletonList(index));
+        indexes.start();
+        indexes.whenReady().join();
+        queryService = new DefaultContactQueryService(service, index, new FullTextIndex(), new SuggestionIndex(10),
+                new ContactScanner(service, 0), new ContactSortIndex(), new BirthdayIndex(), indexes);
+        for (int i = 0; i < size; i += 1000) {
+            List<Contact> contacts = new ArrayList<>(1000);
+            for (int j = i; j < Math.min(i + 1000, size); j++) {
+                contacts.add(contact(j));
+            }
+            service.createContacts(contacts);
+        }
+    }
+
+    @Benchmark
+    public Page<Contact> favoritesInGroupIndexed() {
+        return queryService.findContacts(favoritesInGroup, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Contact> favoritesInGroupScan() {
+        return scan(favoritesInGroup);
+    }
+
+    @Benchmark
+    public Page<Contact> emailIndexed() {
+        return queryService.findContacts(randomEmail(), null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Contact> emailScan() {
+        return scan(randomEmail());
+    }
+
+    private List<Contact> scan(ContactQuery query) {
+        return service.streamContacts().filter(query::matches).limit(PAGE_SIZE).collect(Collectors.toList());
+    }
+
+    private ContactQuery randomEmail() {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        return ContactQuery.builder().email("Contact" + i + "@example.com").build();
+    }
+
+    private static Contact contact(int i) {
+        return Contact.builder()
+                .name("Contact " + i)
+                .phones(Arrays.asList(Phone.builder().phone("+1 555 " + i).type("mobile").build()))
+                .emails(Arrays.asList(Email.builder().email("contact" + i + "@example.com").type("work").build()))
+                .groups(Arrays.asList("friends", "group " + i % 10))
+                .favorite(i % 3 == 0)
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ContactQueryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,317 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.service.ContactQuery;
+import com.cassiomolin.patch.service.ContactSort;
+import com.cassiomolin.patch.service.Page;
+import com.cassiomolin.patch.service.filter.ContactFilter;
+import com.cassiomolin.patch.service.index.BirthdayIndex;
+import com.cassiomolin.patch.service.index.ContactAttributeIndex;
+import com.cassiomolin.patch.service.index.ContactIndexes;
+import com.cassiomolin.patch.service.index.ContactSortIndex;
+import com.cassiomolin.patch.service.index.FullTextIndex;
+import com.cassiomolin.patch.service.index.SuggestionIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefaultContactQueryServiceTest {
+
+    private final DefaultContactService service = new DefaultContactService();
+
+    private final ContactAttributeIndex index = new ContactAttributeIndex();
+
+    private final FullTextIndex fullTextIndex = new FullTextIndex();
+
+    private final SuggestionIndex suggestionIndex = new SuggestionIndex(10);
+
+    private final ContactScanner scanner = new ContactScanner(service, 2);
+
+    private final ContactSortIndex sortIndex = new ContactSortIndex();
+
+    private final BirthdayIndex birthdayIndex = new BirthdayIndex();
+
+    private final ContactIndexes indexes = new ContactIndexes(service,
+            Arrays.asList(index, fullTextIndex, suggestionIndex, sortIndex, birthdayIndex));
+
+    private final DefaultContactQueryService queryService = new DefaultContactQueryService(service, index,
+            fullTextIndex, suggestionIndex, scanner, sortIndex, birthdayIndex, indexes);
+
+    @Before
+    public void setUp() {
+        indexes.start();
+        indexes.whenReady().join();
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            contacts.add(Contact.builder()
+                    .name("Contact " + i)
+                    .notes(i % 2 == 0 ? "Plays tennis" : null)
+                    .groups(Arrays.asList(i % 2 == 0 ? "friends" : "work"))
+                    .favorite(i % 3 == 0)
+                    .phones(Arrays.asList(Phone.builder().phone("+1 (555) 01" + i).build()))
+                    .build());
+        }
+        service.createContacts(contacts);
+    }
+
+    @After
+    public void tearDown() {
+        scanner.shutdown();
+        indexes.stop();
+    }
+
+    @Test
+    public void findContacts_shouldIntersectIndexes_whenSeveralCriteriaAreGiven() {
+
+        Page<Contact> page = queryService.findContacts(
+                ContactQuery.builder().group("friends").favorite(true).build(), null, 1000);
+
+        assertThat(page.getItems()).extracting(Contact::getId)
+                .containsExactlyElementsOf(expectedIds(id -> (id - 1) % 6 == 0));
+        assertThat(page.isLast()).isTrue();
+    }
+
+    @Test
+    public void findContacts_shouldReturnPagesAfterCursor() {
+
+        ContactQuery query = ContactQuery.builder().group("work").build();
+
+        Page<Contact> first = queryService.findContacts(query, null, 100);
+        Page<Contact> second = queryService.findContacts(query, first.getItems().get(99).getId(), 100);
+
+        assertThat(first.isLast()).isFalse();
+        assertThat(second.isLast()).isTrue();
+        assertThat(second.getItems()).extracting(Contact::getId).startsWith(202L).hasSize(50);
+    }
+
+    @Test
+    public void findContacts_shouldScanStore_whenNoCriterionIsIndexed() {
+
+        Page<Contact> page = queryService.findContacts(
+                ContactQuery.builder().favorite(false).build(), null, 1000);
+
+        assertThat(page.getItems()).extracting(Contact::getId)
+                .containsExactlyElementsOf(expectedIds(id -> (id - 1) % 3 != 0));
+    }
+
+    @Test
+    public void findContacts_shouldMatchNormalizedPhone() {
+
+        Page<Contact> page = queryService.findContacts(
+                ContactQuery.builder().phone("155501 42").build(), null, 10);
+
+        assertThat(page.getItems()).extracting(Contact::getName).containsExactly("Contact 42");
+    }
+
+    @Test
+    public void findContacts_shouldReflectUpdates() {
+
+        service.updateContact(2L, contact -> {
+            contact.setGroups(Arrays.asList("friends"));
+            return contact;
+        });
+
+        Page<Contact> page = queryService.findContacts(ContactQuery.builder().group("work").build(), null, 1);
+
+        assertThat(page.getItems()).extracting(Contact::getId).containsExactly(4L);
+    }
+
+    @Test
+    public void findContacts_shouldScanInParallel_whenFilterIsNotIndexed() {
+
+        ContactQuery query = ContactQuery.builder()
+                .filter(ContactFilter.parse("name==*7,phones=='+1 (555) 0128'"))
+                .build();
+        List<Long> expected = expectedIds(id -> (id - 1) % 10 == 7 || id == 29);
+
+        Page<Contact> first = queryService.findContacts(query, null, 10);
+        Page<Contact> second = queryService.findContacts(query, first.getItems().get(9).getId(), 100);
+
+        assertThat(first.getItems()).extracting(Contact::getId).containsExactlyElementsOf(expected.subList(0, 10));
+        assertThat(first.isLast()).isFalse();
+        assertThat(second.getItems()).extracting(Contact::getId)
+                .containsExactlyElementsOf(expected.subList(10, expected.size()));
+        assertThat(second.isLast()).isTrue();
+    }
+
+    @Test
+    public void findContacts_shouldNarrowScanDownWithIndexes_whenFilterIsPartlyIndexed() {
+
+        ContactQuery query = ContactQuery.builder()
+                .filter(ContactFilter.parse("groups=in=(friends,family);favorite==true;phones.count=ge=1"))
+                .build();
+
+        Page<Contact> page = queryService.findContacts(query, null, 1000);
+
+        assertThat(page.getItems()).extracting(Contact::getId)
+                .containsExactlyElementsOf(expectedIds(id -> (id - 1) % 6 == 0));
+    }
+
+    @Test
+    public void findContacts_shouldReadSortIndex_whenSortPropertyIsIndexed() {
+
+        ContactSort sort = ContactSort.parse("name,desc");
+
+        Page<Contact> first = queryService.findContacts(ContactQuery.builder().build(), sort, null, 5);
+        Page<Contact> second = queryService.findContacts(ContactQuery.builder().build(), sort,
+                sort.keyOf(first.getItems().get(4)), 5);
+
+        assertThat(first.getItems()).extracting(Contact::getId).containsExactly(100L, 99L, 98L, 97L, 96L);
+        assertThat(first.isLast()).isFalse();
+        assertThat(second.getItems()).extracting(Contact::getId).containsExactly(95L, 94L, 93L, 92L, 91L);
+    }
+
+    @Test
+    public void findContacts_shouldSortCandidates_whenIndexesNarrowContactsDown() {
+
+        ContactQuery query = ContactQuery.builder().group("friends").favorite(true).build();
+
+        Page<Contact> page = queryService.findContacts(query, ContactSort.parse("name,desc"), null, 3);
+
+        assertThat(page.getItems()).extracting(Contact::getName)
+                .containsExactly("Contact 96", "Contact 90", "Contact 84");
+        assertThat(page.isLast()).isFalse();
+    }
+
+    @Test
+    public void findContacts_shouldSelectTopContacts_whenSortPropertyIsNotIndexed() {
+
+        setBirthday(10L, LocalDate.of(1990, 5, 1));
+        setBirthday(20L, LocalDate.of(1985, 1, 1));
+        setBirthday(30L, LocalDate.of(2000, 1, 1));
+        ContactQuery query = ContactQuery.builder().group("work").build();
+        ContactSort sort = ContactSort.parse("birthday");
+
+        Page<Contact> first = queryService.findContacts(query, sort, null, 2);
+        Page<Contact> second = queryService.findContacts(query, sort, sort.keyOf(first.getItems().get(1)), 2);
+
+        assertThat(first.getItems()).extracting(Contact::getId).containsExactly(20L, 10L);
+        assertThat(first.isLast()).isFalse();
+        assertThat(second.getItems()).extracting(Contact::getId).containsExactly(30L, 2L);
+    }
+
+    @Test
+    public void findContacts_shouldPageByCurrentSortKeys_whenSortKeysChange() {
+
+        ContactSort sort = ContactSort.parse("name");
+        Page<Contact> first = queryService.findContacts(ContactQuery.builder().build(), sort, null, 2);
+
+        rename(11L, "Aaron");
+        rename(3L, "Contact 100a");
+        Page<Contact> second = queryService.findContacts(ContactQuery.builder().build(), sort,
+                sort.keyOf(first.getItems().get(1)), 2);
+
+        assertThat(first.getItems()).extracting(Contact::getName).containsExactly("Contact 0", "Contact 1");
+        assertThat(second.getItems()).extracting(Contact::getName).containsExactly("Contact 100", "Contact 100a");
+    }
+
+    @Test
+    public void findBirthdays_shouldReturnContactsByDateOfNextBirthday() {
+
+        setBirthday(5L, LocalDate.of(1990, 12, 31));
+        setBirthday(7L, LocalDate.of(1970, 1, 1));
+        setBirthday(6L, LocalDate.of(1985, 1, 1));
+        setBirthday(8L, LocalDate.of(1992, 1, 4));
+        setBirthday(9L, LocalDate.of(1980, 12, 29));
+
+        Page<Contact> first = queryService.findBirthdays(LocalDate.of(2023, 12, 30), 5, null, 2);
+        Page<Contact> second = queryService.findBirthdays(LocalDate.of(2024, 1, 1), 3, 6L, 2);
+
+        assertThat(first.getItems()).extracting(Contact::getId).containsExactly(5L, 6L);
+        assertThat(first.isLast()).isFalse();
+        assertThat(second.getItems()).extracting(Contact::getId).containsExactly(7L);
+        assertThat(second.isLast()).isTrue();
+    }
+
+    @Test
+    public void searchContacts_shouldReturnContactsMatchingEveryWord() {
+
+        List<Contact> contacts = queryService.searchContacts("Tennis contact 42", 10);
+
+        assertThat(contacts).extracting(Contact::getName).containsExactly("Contact 42");
+    }
+
+    @Test
+    public void searchContacts_shouldReflectUpdatesOfNotes() {
+
+        service.updateContact(44L, contact -> {
+            contact.setNotes("Plays tennis too");
+            return contact;
+        });
+
+        assertThat(queryService.searchContacts("tennis 43", 10)).extracting(Contact::getId).containsExactly(44L);
+    }
+
+    @Test
+    public void suggestContacts_shouldReturnFavoritesFirst() {
+
+        List<Contact> contacts = queryService.suggestContacts("CONTACT 4", 4);
+
+        assertThat(contacts).extracting(Contact::getName)
+                .containsExactly("Contact 42", "Contact 45", "Contact 48", "Contact 4");
+    }
+
+    @Test
+    public void suggestContacts_shouldMatchPhonePrefix() {
+
+        List<Contact> contacts = queryService.suggestContacts("+1 555-0142", 10);
+
+        assertThat(contacts).extracting(Contact::getName).containsExactly("Contact 42");
+    }
+
+    @Test
+    public void queries_shouldScanStore_whenIndexesAreNotReady() {
+
+        setBirthday(5L, LocalDate.of(1990, 12, 31));
+        setBirthday(6L, LocalDate.of(1985, 1, 1));
+        DefaultContactQueryService scanning = new DefaultContactQueryService(service, new ContactAttributeIndex(),
+                new FullTextIndex(), new SuggestionIndex(10), scanner, new ContactSortIndex(), new BirthdayIndex(),
+                new ContactIndexes(service, Collections.emptyList()));
+
+        assertThat(scanning.findContacts(ContactQuery.builder().group("friends").favorite(true).build(), null, 1000)
+                .getItems()).extracting(Contact::getId).containsExactlyElementsOf(expectedIds(id -> (id - 1) % 6 == 0));
+        assertThat(scanning.findContacts(ContactQuery.builder().group("work").build(),
+                ContactSort.parse("name,desc"), null, 2).getItems()).extracting(Contact::getName)
+                .containsExactly("Contact 99", "Contact 97");
+        assertThat(scanning.findBirthdays(LocalDate.of(2023, 12, 30), 5, null, 10).getItems())
+                .extracting(Contact::getId).containsExactly(5L, 6L);
+        assertThat(scanning.searchContacts("Tennis contact 42", 10)).extracting(Contact::getName)
+                .containsExactly("Contact 42");
+        assertThat(scanning.suggestContacts("CONTACT 4", 4)).extracting(Contact::getName)
+                .containsExactly("Contact 42", "Contact 45", "Contact 48", "Contact 4");
+    }
+
+    private void setBirthday(long id, LocalDate birthday) {
+        service.updateContact(id, contact -> {
+            contact.setBirthday(birthday);
+            return contact;
+        });
+    }
+
+    private void rename(long id, String name) {
+        service.updateContact(id, contact -> {
+            contact.setName(name);
+            return contact;
+        });
+    }
+
+    private static List<Long> expectedIds(LongPredicate predicate) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 300; id++) {
+            if (predicate.test(id)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,71 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of looking up a contact by id as the store grows.
+ * <p>
+ * The {@code listScan} benchmark reproduces the former {@code ArrayList} based lookup for comparison. Run it with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.cassiomolin.patch.service.impl.DefaultContactServiceBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms12g", "-Xmx12g"})
+public class DefaultContactServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private DefaultContactService service;
+
+    private List<Contact> list;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        service = new DefaultContactService();
+        list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Contact contact = service.createContact(Contact.builder().name("Contact " + i).build());
+            list.add(contact);
+        }
+    }
+
+    @Benchmark
+    public Optional<Contact> findContact() {
+        return service.findContact(randomId());
+    }
+
+    @Benchmark
+    public Optional<Contact> listScan() {
+        Long id = randomId();
+        return list.stream()
+                .filter(contact -> id.equals(contact.getId()))
+                .findFirst();
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, size + 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DefaultContactServiceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
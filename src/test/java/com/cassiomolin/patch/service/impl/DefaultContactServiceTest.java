@@ -0,0 +1,309 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactSource;
+import com.cassiomolin.patch.service.Page;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class DefaultContactServiceTest {
+
+    private final DefaultContactService service = new DefaultContactService();
+
+    @Test
+    public void createContact_shouldAssignIdAndTimestamps() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").build());
+
+        assertThat(contact.getId()).isEqualTo(1L);
+        assertThat(contact.getCreatedDateTime()).isNotNull();
+        assertThat(contact.getLastModifiedDateTime()).isNotNull();
+        assertThat(contact.getVersion()).isEqualTo(1L);
+        assertThat(service.findContact(1L).get()).isEqualToComparingFieldByFieldRecursively(contact);
+    }
+
+    @Test
+    public void findContacts_shouldReturnContactsOrderedById() {
+
+        for (int i = 0; i < 100; i++) {
+            service.createContact(Contact.builder().name("Contact " + i).build());
+        }
+
+        assertThat(service.findContacts())
+                .extracting(Contact::getId)
+                .isSorted()
+                .hasSize(100);
+    }
+
+    @Test
+    public void findContactsPage_shouldReturnContactsAfterGivenId() {
+
+        for (int i = 0; i < 10; i++) {
+            service.createContact(Contact.builder().name("Contact " + i).build());
+        }
+        service.deleteContact(service.findContact(5L).get());
+
+        Page<Contact> first = service.findContacts(null, 4);
+        assertThat(first.getItems()).extracting(Contact::getId).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(first.isLast()).isFalse();
+
+        service.createContact(Contact.builder().name("Contact 10").build());
+
+        Page<Contact> second = service.findContacts(4L, 4);
+        assertThat(second.getItems()).extracting(Contact::getId).containsExactly(6L, 7L, 8L, 9L);
+        assertThat(second.isLast()).isFalse();
+
+        Page<Contact> third = service.findContacts(9L, 4);
+        assertThat(third.getItems()).extracting(Contact::getId).containsExactly(10L, 11L);
+        assertThat(third.isLast()).isTrue();
+    }
+
+    @Test
+    public void updateContact_shouldReplaceStoredContact() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").build());
+
+        Contact update = Contact.builder().id(contact.getId()).name("John W. Appleseed").build();
+        service.updateContact(update);
+
+        assertThat(service.findContact(contact.getId()).get()).isEqualToComparingFieldByFieldRecursively(update);
+        assertThat(update.getLastModifiedDateTime()).isNotNull();
+    }
+
+    @Test
+    public void updateContactById_shouldReplaceStoredContactWithUpdatedCopy() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").groups(new ArrayList<>()).build());
+
+        Contact updated = service.updateContact(contact.getId(), copy -> {
+            copy.setId(42L);
+            copy.setName("John W. Appleseed");
+            copy.getGroups().add("Friends");
+            return copy;
+        }).get();
+
+        assertThat(updated).isNotSameAs(contact);
+        assertThat(updated.getId()).isEqualTo(contact.getId());
+        assertThat(updated.getName()).isEqualTo("John W. Appleseed");
+        assertThat(updated.getGroups()).containsExactly("Friends");
+        assertThat(updated.getCreatedDateTime()).isEqualTo(contact.getCreatedDateTime());
+        assertThat(updated.getVersion()).isEqualTo(2L);
+        assertThat(service.findContact(contact.getId()).get()).isEqualToComparingFieldByFieldRecursively(updated);
+
+        assertThat(contact.getName()).isEqualTo("John Appleseed");
+        assertThat(contact.getGroups()).isEmpty();
+    }
+
+    @Test
+    public void updateContactById_shouldReturnEmpty_whenContactDoesNotExist() {
+        assertThat(service.updateContact(1L, contact -> contact)).isEmpty();
+    }
+
+    @Test
+    public void updateContactById_shouldKeepStoredContact_whenUpdateFails() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").build());
+
+        try {
+            service.updateContact(contact.getId(), copy -> {
+                copy.setName("John W. Appleseed");
+                throw new IllegalStateException();
+            });
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertThat(service.findContact(contact.getId()).get()).isEqualToComparingFieldByFieldRecursively(contact);
+        assertThat(contact.getName()).isEqualTo("John Appleseed");
+    }
+
+    @Test
+    public void updateContactById_shouldNotLoseUpdates_whenWritersRace() throws Exception {
+
+        int writers = 64;
+        int updatesPerWriter = 100;
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").groups(new ArrayList<>()).notes("0").build());
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            Future<Boolean> reader = executor.submit(() -> {
+                start.await();
+                boolean consistent = true;
+                while (writing.get()) {
+                    Contact current = service.findContact(contact.getId()).get();
+                    consistent &= current.getNotes().equals(String.valueOf(current.getGroups().size()));
+                }
+                return consistent;
+            });
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                String writer = "writer-" + w;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < updatesPerWriter; i++) {
+                        String group = writer + "-" + i;
+                        service.updateContact(contact.getId(), copy -> {
+                            copy.getGroups().add(group);
+                            copy.setNotes(String.valueOf(copy.getGroups().size()));
+                            return copy;
+                        });
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+            writing.set(false);
+            assertThat(reader.get(1, TimeUnit.MINUTES)).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Contact updated = service.findContact(contact.getId()).get();
+        assertThat(updated.getGroups()).hasSize(writers * updatesPerWriter).doesNotHaveDuplicates();
+        assertThat(updated.getNotes()).isEqualTo(String.valueOf(writers * updatesPerWriter));
+    }
+
+    @Test
+    public void deleteContactById_shouldKeepContact_whenPreconditionFails() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").build());
+
+        try {
+            service.deleteContact(contact.getId(), current -> {
+                throw new IllegalStateException();
+            });
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertThat(service.findContact(contact.getId()).get()).isEqualToComparingFieldByFieldRecursively(contact);
+        assertThat(service.deleteContact(contact.getId(), current -> { }).get())
+                .isEqualToComparingFieldByFieldRecursively(contact);
+        assertThat(service.findContact(contact.getId())).isEmpty();
+    }
+
+    @Test
+    public void deleteContact_shouldRemoveContact() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").build());
+        service.deleteContact(contact);
+
+        assertThat(service.findContact(contact.getId())).isEmpty();
+        assertThat(service.findContacts()).isEmpty();
+    }
+
+    @Test
+    public void addChangeListener_shouldNotifyEveryChange() {
+
+        List<String> changes = new ArrayList<>();
+        service.addChangeListener((previous, current) -> changes.add(
+                (previous == null ? "-" : previous.getVersion()) + ">" + (current == null ? "-" : current.getVersion())));
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").build());
+        service.createContacts(Arrays.asList(Contact.builder().name("Jane").build()));
+        service.updateContact(contact.getId(), current -> current);
+        service.updateContact(42L, current -> current);
+        service.deleteContact(contact.getId(), current -> { });
+
+        assertThat(changes).containsExactly("->1", "->1", "1>2", "2>-");
+    }
+
+    @Test
+    public void addChangeListener_shouldNotifyEveryListenerAndRethrow_whenListenerFails() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").build());
+        List<Long> notified = new ArrayList<>();
+        service.addChangeListener((previous, current) -> {
+            throw new IllegalStateException("Unable to log change");
+        });
+        service.addChangeListener((previous, current) -> notified.add(current.getVersion()));
+
+        Throwable thrown = catchThrowable(() -> service.updateContact(contact.getId(), current -> current));
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class).hasMessage("Unable to log change");
+        assertThat(notified).containsExactly(2L);
+        assertThat(service.findContact(contact.getId()).get().getVersion()).isEqualTo(2L);
+    }
+
+    @Test
+    public void restoreContacts_shouldGenerateIdsAfterLastId() {
+
+        service.createContact(Contact.builder().name("Discarded").build());
+        service.restoreContacts(Arrays.asList(
+                Contact.builder().id(3L).name("John Appleseed").version(4L).build(),
+                Contact.builder().id(1L).name("Jane").version(1L).build()), 7L);
+
+        assertThat(service.findContacts()).extracting(Contact::getId).containsExactly(1L, 3L);
+        assertThat(service.findContact(3L).get().getVersion()).isEqualTo(4L);
+        assertThat(service.createContact(Contact.builder().name("New").build()).getId()).isEqualTo(8L);
+    }
+
+    @Test
+    public void restoreContacts_shouldMergeSnapshotWithChanges_whenSnapshotIsDecodedLazily() {
+
+        AtomicInteger decoded = new AtomicInteger();
+        List<Contact> snapshot = Arrays.asList(
+                Contact.builder().id(1L).name("One").version(1L).build(),
+                Contact.builder().id(3L).name("Three").version(1L).build(),
+                Contact.builder().id(5L).name("Five").version(1L).build(),
+                Contact.builder().id(7L).name("Seven").version(1L).build());
+        ContactSource source = new ContactSource() {
+
+            @Override
+            public int size() {
+                return snapshot.size();
+            }
+
+            @Override
+            public long id(int index) {
+                return snapshot.get(index).getId();
+            }
+
+            @Override
+            public Contact contact(int index) {
+                decoded.incrementAndGet();
+                Contact contact = snapshot.get(index);
+                return Contact.builder().id(contact.getId()).name(contact.getName()).version(contact.getVersion())
+                        .build();
+            }
+        };
+
+        service.restoreContacts(source, Arrays.asList(
+                Contact.builder().id(3L).name("Three updated").version(2L).build(),
+                Contact.builder().id(4L).name("Four").version(1L).build()), Collections.singleton(5L), 7L);
+
+        assertThat(decoded).hasValue(0);
+        assertThat(service.findContact(3L).get().getName()).isEqualTo("Three updated");
+        assertThat(service.findContact(5L)).isEmpty();
+        assertThat(service.findContacts()).extracting(Contact::getId).containsExactly(1L, 3L, 4L, 7L);
+        assertThat(service.findContacts(3L, 2).getItems()).extracting(Contact::getId).containsExactly(4L, 7L);
+
+        Contact updated = service.updateContact(7L, contact -> {
+            contact.setName("Seven updated");
+            return contact;
+        }).get();
+
+        assertThat(updated.getVersion()).isEqualTo(2L);
+        assertThat(service.findContact(7L).get().getName()).isEqualTo("Seven updated");
+        assertThat(service.createContact(Contact.builder().name("New").build()).getId()).isEqualTo(8L);
+    }
+}
@@ -0,0 +1,62 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of atomic contact updates as the number of writer threads grows.
+ * <p>
+ * Writers pick random contacts, so with enough contacts they rarely collide and the throughput should scale with the
+ * number of cores. The {@code main} method runs the benchmark with 1, 2, 4... threads up to the number of available
+ * processors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DefaultContactServiceUpdateBenchmark {
+
+    @Param({"100000"})
+    private int size;
+
+    private DefaultContactService service;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        service = new DefaultContactService();
+        for (int i = 0; i < size; i++) {
+            service.createContact(Contact.builder().name("Contact " + i).favorite(false).build());
+        }
+    }
+
+    @Benchmark
+    public Optional<Contact> updateContact() {
+        long id = ThreadLocalRandom.current().nextLong(1, size + 1);
+        return service.updateContact(id, contact -> {
+            contact.setFavorite(!contact.getFavorite());
+            return contact;
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+            new Runner(new OptionsBuilder()
+                    .include(DefaultContactServiceUpdateBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+            if (threads == processors) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.cassiomolin.patch.service.impl;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.service.Page;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapContactServiceTest {
+
+    private final OffHeapContactService service = new OffHeapContactService(4096);
+
+    @Test
+    public void findContact_shouldReturnNewInstanceOfStoredContact() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed")
+                .phones(Arrays.asList(Phone.builder().phone("+1 555 0100").type("mobile").build())).build());
+
+        Contact found = service.findContact(contact.getId()).get();
+        found.setName("Changed");
+
+        assertThat(service.findContact(contact.getId()).get())
+                .isEqualToComparingFieldByFieldRecursively(contact)
+                .isNotSameAs(found);
+    }
+
+    @Test
+    public void findContactsPage_shouldReturnContactsAfterGivenId() {
+
+        for (int i = 0; i < 10; i++) {
+            service.createContact(Contact.builder().name("Contact " + i).build());
+        }
+        service.deleteContact(service.findContact(5L).get());
+        service.deleteContact(10L, contact -> { });
+
+        Page<Contact> first = service.findContacts(null, 4);
+        assertThat(first.getItems()).extracting(Contact::getId).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(first.isLast()).isFalse();
+
+        Page<Contact> second = service.findContacts(4L, 4);
+        assertThat(second.getItems()).extracting(Contact::getId).containsExactly(6L, 7L, 8L, 9L);
+        assertThat(second.isLast()).isTrue();
+    }
+
+    @Test
+    public void updateContactById_shouldNotLoseUpdates_whenWritersRace() throws Exception {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").notes("0").build());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        service.updateContact(contact.getId(), current -> {
+                            current.setNotes(String.valueOf(Integer.parseInt(current.getNotes()) + 1));
+                            return current;
+                        });
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Contact updated = service.findContact(contact.getId()).get();
+        assertThat(updated.getNotes()).isEqualTo("4000");
+        assertThat(updated.getVersion()).isEqualTo(4001L);
+    }
+
+    @Test
+    public void updateContactById_shouldReclaimSpace_whenContactsAreRewritten() throws Exception {
+
+        for (int i = 0; i < 100; i++) {
+            service.createContact(Contact.builder().name("Contact " + i).build());
+        }
+        long capacity = service.getOffHeapBytes();
+
+        for (int i = 0; i < 100_000; i++) {
+            service.updateContact((long) (i % 100 + 1), contact -> {
+                contact.setNotes("Updated");
+                return contact;
+            });
+        }
+
+        // Slabs are compacted in the background
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getOffHeapBytes() > capacity * 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(service.getOffHeapBytes()).isLessThanOrEqualTo(capacity * 3);
+        assertThat(service.findContacts()).hasSize(100).allSatisfy(contact -> {
+            assertThat(contact.getVersion()).isEqualTo(1001L);
+            assertThat(contact.getNotes()).isEqualTo("Updated");
+        });
+    }
+
+    @Test
+    public void findContact_shouldReadConsistentContacts_whenContactsAreRewrittenAndCompacted() throws Exception {
+
+        for (int i = 0; i < 100; i++) {
+            service.createContact(Contact.builder().name("Contact " + i).notes("0").build());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    service.updateContact((long) (i % 100 + 1), contact -> {
+                        contact.setNotes(String.valueOf(contact.getVersion()));
+                        return contact;
+                    });
+                }
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    while (!writer.isDone()) {
+                        for (long id = 1; id <= 100; id++) {
+                            Contact contact = service.findContact(id).get();
+                            assertThat(contact.getId()).isEqualTo(id);
+                            assertThat(contact.getNotes()).isEqualTo(String.valueOf(contact.getVersion() - 1));
+                        }
+                    }
+                }));
+            }
+            writer.get();
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void restoreContacts_shouldGenerateIdsAfterLastId() {
+
+        service.createContact(Contact.builder().name("Discarded").build());
+        service.restoreContacts(Arrays.asList(
+                Contact.builder().id(3L).name("John Appleseed").version(4L).build(),
+                Contact.builder().id(1L).name("Jane").version(1L).build()), 7L);
+
+        assertThat(service.findContacts()).extracting(Contact::getId).containsExactly(1L, 3L);
+        assertThat(service.findContact(3L).get().getVersion()).isEqualTo(4L);
+        assertThat(service.createContact(Contact.builder().name("New").build()).getId()).isEqualTo(8L);
+        assertThat(service.findContacts(3L, 10).getItems())
+                .extracting(Contact::getId).containsExactly(8L);
+    }
+}
@@ -0,0 +1,61 @@
+package com.cassiomolin.patch.service.index;
+
+import com.cassiomolin.patch.domain.Contact;
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BirthdayIndexTest {
+
+    private final BirthdayIndex index = new BirthdayIndex();
+
+    @Test
+    public void celebrating_shouldReturnContactsBornOnMonthAndDay() {
+
+        index.update(null, contact(1L, LocalDate.of(1990, 3, 1)));
+        index.update(null, contact(2L, LocalDate.of(1985, 3, 2)));
+        index.update(null, contact(3L, LocalDate.of(2001, 3, 1)));
+        index.update(null, contact(4L, null));
+
+        assertThat(index.celebrating(LocalDate.of(2023, 3, 1), 0)).containsExactly(1L, 3L);
+        assertThat(index.celebrating(LocalDate.of(2023, 3, 1), 1)).containsExactly(3L);
+        assertThat(index.celebrating(LocalDate.of(2023, 3, 3), 0)).isEmpty();
+    }
+
+    @Test
+    public void celebrating_shouldReturnContactsBornOnLeapDayOnFebruary28_whenYearIsCommon() {
+
+        index.update(null, contact(1L, LocalDate.of(1992, 2, 29)));
+        index.update(null, contact(2L, LocalDate.of(1990, 2, 28)));
+        index.update(null, contact(3L, LocalDate.of(1991, 2, 28)));
+
+        assertThat(index.celebrating(LocalDate.of(2023, 2, 28), 0)).containsExactly(1L, 2L, 3L);
+        assertThat(index.celebrating(LocalDate.of(2024, 2, 28), 0)).containsExactly(2L, 3L);
+        assertThat(index.celebrating(LocalDate.of(2024, 2, 29), 0)).containsExactly(1L);
+        assertThat(BirthdayIndex.nextBirthday(LocalDate.of(1992, 2, 29), LocalDate.of(2023, 3, 1)))
+                .isEqualTo(LocalDate.of(2024, 2, 29));
+    }
+
+    @Test
+    public void update_shouldMoveContact_whenBirthdayChanges() {
+
+        Contact previous = contact(1L, LocalDate.of(1990, 3, 1));
+        index.update(null, previous);
+        Contact current = contact(1L, LocalDate.of(1990, 12, 31));
+        current.setVersion(2L);
+        index.update(previous, current);
+
+        assertThat(index.celebrating(LocalDate.of(2023, 3, 1), 0)).isEmpty();
+        assertThat(index.celebrating(LocalDate.of(2023, 12, 31), 0)).containsExactly(1L);
+
+        index.update(current, null);
+
+        assertThat(index.celebrating(LocalDate.of(2023, 12, 31), 0)).isEmpty();
+    }
+
+    private static Contact contact(long id, LocalDate birthday) {
+        return Contact.builder().id(id).name("Contact " + id).birthday(birthday).version(1L).build();
+    }
+}
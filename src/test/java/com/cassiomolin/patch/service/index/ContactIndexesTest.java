@@ -0,0 +1,261 @@
+package com.cassiomolin.patch.service.index;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.service.impl.DefaultContactService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ContactIndexesTest {
+
+    private final DefaultContactService service = new DefaultContactService();
+
+    private final ContactAttributeIndex index = new ContactAttributeIndex();
+
+    private final ContactIndexes indexes = new ContactIndexes(service, Collections.singletonList(index));
+
+    @Before
+    public void setUp() {
+        indexes.start();
+        indexes.whenReady().join();
+    }
+
+    @After
+    public void tearDown() {
+        indexes.stop();
+    }
+
+    @Test
+    public void contactChanged_shouldIndexCreatedUpdatedAndDeletedContacts() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed")
+                .groups(Arrays.asList("friends")).favorite(true)
+                .emails(Arrays.asList(Email.builder().email("John@Example.com ").build())).build());
+
+        assertThat(index.group("friends").contains(contact.getId())).isTrue();
+        assertThat(index.favorites().contains(contact.getId())).isTrue();
+        assertThat(index.email("john@example.com").contains(contact.getId())).isTrue();
+
+        service.updateContact(contact.getId(), current -> {
+            current.setGroups(Arrays.asList("work"));
+            current.setFavorite(false);
+            return current;
+        });
+
+        assertThat(index.group("friends").contains(contact.getId())).isFalse();
+        assertThat(index.group("work").contains(contact.getId())).isTrue();
+        assertThat(index.favorites().contains(contact.getId())).isFalse();
+
+        service.deleteContact(contact.getId(), current -> { });
+
+        assertThat(index.group("work").size()).isZero();
+        assertThat(index.email("john@example.com").size()).isZero();
+    }
+
+    @Test
+    public void contactChanged_shouldApplyChangesInVersionOrder_whenNotifiedOutOfOrder() {
+
+        indexes.contactChanged(null, contact(1L, 1L, "a"));
+        indexes.contactChanged(contact(1L, 2L, "b"), contact(1L, 3L, "c"));
+        indexes.contactChanged(contact(1L, 1L, "a"), contact(1L, 2L, "b"));
+
+        assertThat(index.group("a").size()).isZero();
+        assertThat(index.group("b").size()).isZero();
+        assertThat(index.group("c").contains(1L)).isTrue();
+
+        indexes.contactChanged(contact(2L, 2L, "b"), null);
+        indexes.contactChanged(contact(2L, 1L, "a"), contact(2L, 2L, "b"));
+        indexes.contactChanged(null, contact(2L, 1L, "a"));
+
+        assertThat(index.group("a").size()).isZero();
+        assertThat(index.group("b").size()).isZero();
+    }
+
+    @Test
+    public void contactChanged_shouldMatchStore_whenWritersRace() throws Exception {
+
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            contacts.add(Contact.builder().name("Contact " + i).groups(Arrays.asList("group 0")).build());
+        }
+        service.createContacts(contacts);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 5_000; i++) {
+                        String group = "group " + random.nextInt(5);
+                        boolean favorite = random.nextBoolean();
+                        service.updateContact(1L + random.nextInt(100), current -> {
+                            current.setGroups(Arrays.asList(group));
+                            current.setFavorite(favorite);
+                            return current;
+                        });
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (Contact contact : service.findContacts()) {
+            for (int g = 0; g < 5; g++) {
+                assertThat(index.group("group " + g).contains(contact.getId()))
+                        .isEqualTo(contact.getGroups().contains("group " + g));
+            }
+            assertThat(index.favorites().contains(contact.getId())).isEqualTo(contact.getFavorite());
+        }
+    }
+
+    @Test
+    public void contactChanged_shouldRepairContact_whenIndexFailsToApplyChange() {
+
+        AtomicBoolean failed = new AtomicBoolean();
+        ContactIndex failing = new ContactIndex() {
+
+            @Override
+            public void update(Contact previous, Contact current) {
+                if (current != null && current.getGroups().contains("b") && failed.compareAndSet(false, true)) {
+                    throw new IllegalStateException();
+                }
+            }
+
+            @Override
+            public void repair(long id, Contact current) {
+            }
+
+            @Override
+            public void clear() {
+            }
+        };
+        ContactAttributeIndex recovered = new ContactAttributeIndex();
+        ContactIndexes recovering = new ContactIndexes(service, Arrays.asList(failing, recovered));
+        recovering.start();
+        recovering.whenReady().join();
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed")
+                .groups(Arrays.asList("a")).build());
+
+        Throwable thrown = catchThrowable(() -> service.updateContact(contact.getId(), current -> {
+            current.setGroups(Arrays.asList("b"));
+            return current;
+        }));
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class);
+        assertThat(recovered.group("a").size()).isZero();
+        assertThat(recovered.group("b").contains(contact.getId())).isTrue();
+
+        service.updateContact(contact.getId(), current -> {
+            current.setGroups(Arrays.asList("c"));
+            return current;
+        });
+
+        assertThat(recovered.group("b").size()).isZero();
+        assertThat(recovered.group("c").contains(contact.getId())).isTrue();
+        recovering.stop();
+    }
+
+    @Test
+    public void contactChanged_shouldRepairContact_whenTooManyChangesAreParked() {
+
+        indexes.contactChanged(null, contact(1L, 1L, "a"));
+        for (int i = 0; i < ContactIndexes.MAX_PARKED; i++) {
+            indexes.contactChanged(contact(2L + i, 1L, "b"), contact(2L + i, 2L, "b"));
+        }
+        assertThat(index.group("a").contains(1L)).isTrue();
+
+        indexes.contactChanged(contact(1L, 2L, "a"), contact(1L, 3L, "c"));
+
+        assertThat(index.group("a").size()).isZero();
+        assertThat(index.group("c").size()).isZero();
+
+        indexes.contactChanged(null, contact(2L, 1L, "b"));
+
+        assertThat(index.group("b").contains(2L)).isTrue();
+    }
+
+    @Test
+    public void contactsRestored_shouldRebuildIndexes() {
+
+        service.createContact(Contact.builder().name("John Appleseed").groups(Arrays.asList("friends")).build());
+
+        service.restoreContacts(Arrays.asList(Contact.builder().id(7L).name("Jane Appleseed")
+                .groups(Arrays.asList("family")).version(3L).build()), 7L);
+        indexes.whenReady().join();
+
+        assertThat(indexes.isReady()).isTrue();
+        assertThat(index.group("friends").size()).isZero();
+        assertThat(index.group("family").contains(7L)).isTrue();
+    }
+
+    @Test
+    public void contactsRestored_shouldIndexChangesMadeWhileBuilding() throws Exception {
+
+        CountDownLatch streaming = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        DefaultContactService blocking = new DefaultContactService() {
+
+            @Override
+            public Stream<Contact> streamContacts() {
+                streaming.countDown();
+                try {
+                    changed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.streamContacts();
+            }
+        };
+        ContactAttributeIndex building = new ContactAttributeIndex();
+        ContactIndexes buildingIndexes = new ContactIndexes(blocking, Collections.singletonList(building));
+        blocking.restoreContacts(Arrays.asList(contact(1L, 1L, "a"), contact(2L, 1L, "a"), contact(3L, 1L, "a")),
+                3L);
+        buildingIndexes.start();
+        streaming.await();
+
+        blocking.updateContact(1L, current -> {
+            current.setGroups(Arrays.asList("b"));
+            return current;
+        });
+        blocking.deleteContact(2L, current -> { });
+        Contact created = blocking.createContact(Contact.builder().name("Jane Appleseed")
+                .groups(Arrays.asList("a")).build());
+
+        assertThat(buildingIndexes.isReady()).isFalse();
+        changed.countDown();
+        buildingIndexes.whenReady().get(10, TimeUnit.SECONDS);
+
+        assertThat(building.group("a").contains(1L)).isFalse();
+        assertThat(building.group("b").contains(1L)).isTrue();
+        assertThat(building.group("a").contains(2L)).isFalse();
+        assertThat(building.group("a").contains(3L)).isTrue();
+        assertThat(building.group("a").contains(created.getId())).isTrue();
+        buildingIndexes.stop();
+    }
+
+    private static Contact contact(long id, long version, String group) {
+        return Contact.builder().id(id).name("John Appleseed").groups(Arrays.asList(group)).version(version).build();
+    }
+}
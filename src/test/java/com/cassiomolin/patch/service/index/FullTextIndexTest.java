@@ -0,0 +1,61 @@
+package com.cassiomolin.patch.service.index;
+
+import com.cassiomolin.patch.domain.Contact;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FullTextIndexTest {
+
+    private final FullTextIndex index = new FullTextIndex();
+
+    @Test
+    public void search_shouldReturnContactsHoldingEveryTerm() {
+
+        index.update(null, contact(1L, "John Appleseed", "Met at the conference"));
+        index.update(null, contact(2L, "Jane Appleseed", "Plays tennis"));
+        index.update(null, contact(3L, "John Smith", null));
+
+        assertThat(index.search(Tokenizer.tokenize("john appleseed"), 10)).containsExactly(1L);
+        assertThat(index.search(Tokenizer.tokenize("APPLESEED tennis"), 10)).containsExactly(2L);
+        assertThat(index.search(Tokenizer.tokenize("john tennis"), 10)).isEmpty();
+    }
+
+    @Test
+    public void search_shouldRankNameMatchesFirst() {
+
+        index.update(null, contact(1L, "Jane Doe", "Works with Lisbon office"));
+        index.update(null, contact(2L, "Lisbon Tours", null));
+        index.update(null, contact(3L, "John Doe", "Lives in Lisbon"));
+
+        assertThat(index.search(Tokenizer.tokenize("lisbon"), 2)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    public void update_shouldReindexChangedFieldsOnly() {
+
+        Contact previous = contact(1L, "John Appleseed", "Plays tennis");
+        index.update(null, previous);
+        Contact current = contact(1L, "John Appleseed", "Plays golf");
+        current.setVersion(2L);
+        index.update(previous, current);
+
+        assertThat(index.search(Tokenizer.tokenize("tennis"), 10)).isEmpty();
+        assertThat(index.search(Tokenizer.tokenize("golf john"), 10)).containsExactly(1L);
+
+        index.update(current, null);
+
+        assertThat(index.search(Tokenizer.tokenize("john"), 10)).isEmpty();
+    }
+
+    @Test
+    public void tokenize_shouldFoldCaseAndDiacritics() {
+
+        assertThat(Tokenizer.tokenize("José O'Brien, SÃO paulo 42"))
+                .containsExactly("jose", "o", "brien", "sao", "paulo", "42");
+    }
+
+    private static Contact contact(long id, String name, String notes) {
+        return Contact.builder().id(id).name(name).notes(notes).version(1L).build();
+    }
+}
@@ -0,0 +1,121 @@
+package com.cassiomolin.patch.service.index;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SuggestionIndexTest {
+
+    private final SuggestionIndex index = new SuggestionIndex(10);
+
+    @Test
+    public void suggest_shouldRankFavoritesFirstThenShorterKeys() {
+
+        index.update(null, contact(1L, "Johnathan Smith", false));
+        index.update(null, contact(2L, "John Smith", false));
+        index.update(null, contact(3L, "Johnny Appleseed", true));
+        index.update(null, contact(4L, "Jane Doe", true));
+
+        assertThat(index.suggest("jo", 10)).containsExactly(3L, 2L, 1L);
+        assertThat(index.suggest("SMI", 10)).containsExactly(1L, 2L);
+        assertThat(index.suggest("john smith", 10)).containsExactly(2L);
+        assertThat(index.suggest("x", 10)).isEmpty();
+    }
+
+    @Test
+    public void suggest_shouldMatchFoldedNamesEmailsAndPhoneDigits() {
+
+        Contact contact = contact(1L, "José Álvarez", false);
+        contact.setEmails(Collections.singletonList(Email.builder().email("Jose.Alvarez@Example.com").build()));
+        contact.setPhones(Collections.singletonList(Phone.builder().phone("+1 (555) 0100").build()));
+        index.update(null, contact);
+
+        assertThat(index.suggest("  ALV", 10)).containsExactly(1L);
+        assertThat(index.suggest("jose   alv", 10)).containsExactly(1L);
+        assertThat(index.suggest("jose.alvarez@", 10)).containsExactly(1L);
+        assertThat(index.suggest("+1 555-01", 10)).containsExactly(1L);
+        assertThat(index.suggest("555", 10)).isEmpty();
+    }
+
+    @Test
+    public void suggest_shouldKeepTopEntriesOfLargeSubtrees_whenContactsChange() {
+
+        for (long id = 1; id <= 200; id++) {
+            index.update(null, contact(id, "Contact " + id, false));
+        }
+        assertThat(index.suggest("cont", 3)).containsExactly(1L, 2L, 3L);
+
+        Contact previous = contact(150L, "Contact 150", false);
+        Contact current = contact(150L, "Contact 150", true);
+        index.update(previous, current);
+        index.update(contact(1L, "Contact 1", false), null);
+
+        assertThat(index.suggest("cont", 3)).containsExactly(150L, 2L, 3L);
+        assertThat(index.suggest("contact 1", 3)).containsExactly(150L, 10L, 11L);
+    }
+
+    @Test
+    public void suggest_shouldMatchScan_whenContactsAreRenamedAndRemoved() {
+
+        String[] names = {"Ann", "Anna", "Annabel", "Anne Smith", "Bob", "Bobby Brown", "Smithers", "An"};
+        Map<Long, Contact> contacts = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            long id = 1 + random.nextInt(300);
+            Contact previous = contacts.get(id);
+            Contact current = random.nextInt(4) == 0 ? null
+                    : contact(id, names[random.nextInt(names.length)] + " " + random.nextInt(50), random.nextBoolean());
+            if (previous != null || current != null) {
+                index.update(previous, current);
+            }
+            if (current == null) {
+                contacts.remove(id);
+            } else {
+                contacts.put(id, current);
+            }
+        }
+
+        for (String prefix : new String[]{"a", "an", "anna", "anne s", "bob", "smith", "1", "4"}) {
+            ToLongFunction<Contact> ranking = SuggestionIndex.ranking(prefix);
+            List<Long> expected = contacts.values().stream()
+                    .filter(contact -> ranking.applyAsLong(contact) >= 0)
+                    .sorted(Comparator.comparingLong(ranking))
+                    .limit(10)
+                    .map(Contact::getId)
+                    .collect(Collectors.toList());
+            assertThat(index.suggest(prefix, 10)).as(prefix).isEqualTo(expected);
+        }
+
+        contacts.values().forEach(contact -> index.update(contact, null));
+        assertThat(index.getEntryCount()).isZero();
+        assertThat(index.getNodeCount()).isEqualTo(1);
+        assertThat(index.suggest("a", 10)).isEmpty();
+    }
+
+    @Test
+    public void clear_shouldRemoveEveryEntry() {
+
+        index.update(null, contact(1L, "John Smith", false));
+        index.clear();
+
+        assertThat(index.suggest("john", 10)).isEmpty();
+        assertThat(index.getEntryCount()).isZero();
+        assertThat(index.getNodeCount()).isEqualTo(1);
+    }
+
+    private static Contact contact(long id, String name, boolean favorite) {
+        return Contact.builder().id(id).name(name).favorite(favorite).version(1L).build();
+    }
+}
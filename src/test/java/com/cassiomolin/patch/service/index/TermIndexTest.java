@@ -0,0 +1,69 @@
+package com.cassiomolin.patch.service.index;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TermIndexTest {
+
+    private final TermIndex index = new TermIndex();
+
+    @Test
+    public void update_shouldOnlyTouchAddedAndRemovedTerms() {
+
+        index.update(1L, Collections.emptySet(), set("friends", "family"));
+        index.update(2L, Collections.emptySet(), set("friends"));
+        index.update(1L, set("friends", "family"), set("friends", "work"));
+
+        assertThat(ids(index.get("friends"))).containsExactly(1L, 2L);
+        assertThat(ids(index.get("work"))).containsExactly(1L);
+        assertThat(index.get("family").size()).isZero();
+        assertThat(index.getTermCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void get_shouldReturnIdsInOrder_whenPostingsGrowIntoBitmap() {
+
+        for (long id = 10_000; id > 0; id -= 7) {
+            index.update(id, Collections.emptySet(), set("friends"));
+        }
+        for (long id = 10_000; id > 0; id -= 14) {
+            index.update(id, set("friends"), Collections.emptySet());
+        }
+
+        TreeSet<Long> expected = new TreeSet<>();
+        for (long id = 10_000 - 7; id > 0; id -= 14) {
+            expected.add(id);
+        }
+        Postings postings = index.get("friends");
+        assertThat(postings).isInstanceOf(IdBitmap.class);
+        assertThat(postings.size()).isEqualTo(expected.size());
+        assertThat(ids(postings)).containsExactlyElementsOf(expected);
+        assertThat(postings.contains(10_000 - 7)).isTrue();
+        assertThat(postings.contains(10_000)).isFalse();
+    }
+
+    @Test
+    public void get_shouldReturnEmptyPostings_whenTermIsUnknownOrNull() {
+
+        assertThat(index.get("unknown").size()).isZero();
+        assertThat(index.get(null).next(1)).isEqualTo(-1);
+    }
+
+    private static TreeSet<String> set(String... terms) {
+        TreeSet<String> set = new TreeSet<>();
+        Collections.addAll(set, terms);
+        return set;
+    }
+
+    private static TreeSet<Long> ids(Postings postings) {
+        TreeSet<Long> ids = new TreeSet<>();
+        for (long id = postings.next(1); id > 0; id = postings.next(id + 1)) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,151 @@
+package com.cassiomolin.patch.service.persistence;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.impl.DefaultContactService;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Kills a process while it's writing contacts and checks that every change it acknowledged survives the crash.
+ */
+public class ContactPersistenceCrashTest {
+
+    private static final String ACKNOWLEDGED = "ack";
+
+    private static final String DELETING = "deleting";
+
+    private static final int ACKNOWLEDGEMENTS_BEFORE_KILL = 5_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void start_shouldRestoreAcknowledgedChanges_whenProcessIsKilledMidWrite() throws Exception {
+
+        Path directory = folder.newFolder().toPath();
+        Map<Long, Long> versions = new HashMap<>();
+        Set<Long> deleted = new HashSet<>();
+        Set<Long> deleting = new HashSet<>();
+
+        Process process = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                Writer.class.getName(), directory.toString())
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            int acknowledgements = 0;
+            for (String line = output.readLine(); line != null; line = output.readLine()) {
+                String[] fields = line.split(" ");
+                if (fields.length == 2 && fields[0].equals(DELETING)) {
+                    deleting.add(Long.parseLong(fields[1]));
+                    continue;
+                }
+                if (fields.length != 3 || !fields[0].equals(ACKNOWLEDGED)) {
+                    continue;
+                }
+                long id = Long.parseLong(fields[1]);
+                long version = Long.parseLong(fields[2]);
+                if (version < 0) {
+                    deleted.add(id);
+                } else {
+                    versions.merge(id, version, Math::max);
+                }
+                if (++acknowledgements == ACKNOWLEDGEMENTS_BEFORE_KILL) {
+                    // Unlike Process, ProcessHandle doesn't close the pipes: what was printed before the kill is read
+                    process.toHandle().destroyForcibly();
+                }
+            }
+        } finally {
+            process.destroyForcibly();
+            assertThat(process.waitFor(30, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(versions).isNotEmpty();
+
+        DefaultContactService service = new DefaultContactService();
+        ContactPersistence persistence = new ContactPersistence(service, directory.toString(), 64 * 1024, 3600);
+        persistence.start();
+        try {
+            versions.forEach((id, version) -> {
+                Optional<Contact> contact = service.findContact(id);
+                if (deleted.contains(id)) {
+                    assertThat(contact).as("contact %d", id).isEmpty();
+                } else if (!contact.isPresent()) {
+                    assertThat(deleting).as("contacts being deleted").contains(id);
+                } else {
+                    assertThat(contact.get().getVersion()).as("version of contact %d", id).isGreaterThanOrEqualTo(version);
+                }
+            });
+            long maxId = versions.keySet().stream().mapToLong(Long::longValue).max().getAsLong();
+            assertThat(service.createContact(Contact.builder().name("New").build()).getId()).isGreaterThan(maxId);
+        } finally {
+            persistence.stop();
+        }
+    }
+
+    /**
+     * Creates, updates and deletes contacts from several threads until it's killed, printing each acknowledged change
+     * as {@code ack <id> <version>}, with a negative version for deletions. Deletions are announced beforehand as
+     * {@code deleting <id>}, as the process may be killed after a deletion is durable but before it's acknowledged.
+     * Snapshots are taken every second and segments are small, so the process is also killed while rolling segments
+     * over and writing snapshots.
+     */
+    public static class Writer {
+
+        public static void main(String[] args) throws Exception {
+            DefaultContactService service = new DefaultContactService();
+            ContactPersistence persistence = new ContactPersistence(service, args[0], 64 * 1024, 1);
+            persistence.start();
+            for (int i = 0; i < 4; i++) {
+                new Thread(() -> write(service)).start();
+            }
+        }
+
+        private static void write(DefaultContactService service) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (;;) {
+                Contact created = service.createContact(Contact.builder().name("Contact").notes("0").build());
+                acknowledge(created.getId(), created.getVersion());
+                for (int i = 0, updates = random.nextInt(4); i < updates; i++) {
+                    long id = random.nextLong(1, created.getId() + 1);
+                    service.updateContact(id, contact -> {
+                        contact.setNotes(String.valueOf(random.nextInt()));
+                        return contact;
+                    }).ifPresent(updated -> acknowledge(updated.getId(), updated.getVersion()));
+                }
+                if (random.nextInt(5) == 0) {
+                    long id = random.nextLong(1, created.getId() + 1);
+                    announceDeletion(id);
+                    service.deleteContact(id, contact -> { }).ifPresent(removed -> acknowledge(id, -1));
+                }
+            }
+        }
+
+        private static synchronized void announceDeletion(long id) {
+            System.out.println(DELETING + " " + id);
+            System.out.flush();
+        }
+
+        private static synchronized void acknowledge(long id, long version) {
+            System.out.println(ACKNOWLEDGED + " " + id + " " + version);
+            System.out.flush();
+        }
+    }
+}
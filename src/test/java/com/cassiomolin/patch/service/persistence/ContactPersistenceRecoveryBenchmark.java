@@ -0,0 +1,136 @@
+package com.cassiomolin.patch.service.persistence;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+import com.cassiomolin.patch.service.impl.DefaultContactService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures how long it takes to restore contacts on startup, from a snapshot followed by a tail of log records.
+ * <p>
+ * Each measurement restores a fresh copy of the data directory, as stopping the persistence takes a snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx8g")
+public class ContactPersistenceRecoveryBenchmark {
+
+    private static final long SEGMENT_SIZE = 64 << 20;
+
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"100000"})
+    private int tail;
+
+    private Path directory;
+
+    private Path copy;
+
+    private ContactPersistence persistence;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("contacts");
+        DefaultContactService service = new DefaultContactService();
+        ContactPersistence persistence = start(service, directory);
+        for (int i = 0; i < size; i += 1000) {
+            List<Contact> contacts = new ArrayList<>(1000);
+            for (int j = i; j < Math.min(i + 1000, size); j++) {
+                contacts.add(contact(j));
+            }
+            service.createContacts(contacts);
+        }
+        persistence.snapshot();
+        for (int i = 0; i < tail; i++) {
+            service.updateContact(ThreadLocalRandom.current().nextLong(1, size + 1), contact -> {
+                contact.setNotes("Updated");
+                return contact;
+            });
+        }
+        persistence.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void copyDirectory() throws IOException {
+        copy = Files.createTempDirectory("contacts");
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    @Benchmark
+    public DefaultContactService recover() throws IOException {
+        DefaultContactService service = new DefaultContactService();
+        persistence = start(service, copy);
+        return service;
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteCopy() throws IOException {
+        persistence.stop();
+        persistence = null;
+        delete(copy);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        delete(directory);
+    }
+
+    private ContactPersistence start(DefaultContactService service, Path directory) throws IOException {
+        ContactPersistence persistence = new ContactPersistence(service, directory.toString(),
+                SEGMENT_SIZE, Long.MAX_VALUE / 2);
+        persistence.start();
+        return persistence;
+    }
+
+    private static Contact contact(int i) {
+        return Contact.builder()
+                .name("Contact " + i)
+                .birthday(LocalDate.of(1950 + i % 50, 1 + i % 12, 1 + i % 28))
+                .work(Work.builder().title("Engineer").company("Company " + i % 100).build())
+                .phones(Arrays.asList(Phone.builder().phone("+1 555 " + i).type("mobile").build()))
+                .emails(Arrays.asList(Email.builder().email("contact" + i + "@example.com").type("work").build()))
+                .groups(Arrays.asList("friends", "group " + i % 10))
+                .favorite(i % 3 == 0)
+                .notes("Notes of contact " + i)
+                .build();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ContactPersistenceRecoveryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,39 @@
+package com.cassiomolin.patch.service.persistence;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.impl.DefaultContactService;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ContactPersistenceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void contactChanged_shouldFailChangeAndNotifyOtherListeners_whenAppendFails() throws Exception {
+
+        DefaultContactService service = new DefaultContactService();
+        ContactPersistence persistence = new ContactPersistence(service, folder.newFolder().toString(), 1 << 20, 600);
+        persistence.start();
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").build());
+        List<Long> notified = new ArrayList<>();
+        service.addChangeListener((previous, current) -> notified.add(current.getVersion()));
+        persistence.close();
+
+        Throwable thrown = catchThrowable(() -> service.updateContact(contact.getId(), current -> {
+            current.setNotes("Cool guy!");
+            return current;
+        }));
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class);
+        assertThat(notified).containsExactly(2L);
+    }
+}
@@ -0,0 +1,147 @@
+package com.cassiomolin.patch.service.persistence;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+import com.cassiomolin.patch.service.impl.DefaultContactService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time to restart with {@code size} contacts, from newline delimited JSON parsed into the store and from
+ * a memory mapped snapshot decoded lazily.
+ * <p>
+ * Both measurements end with a lookup, the first request served after the restart.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx16g")
+public class ContactSnapshotBenchmark {
+
+    @Param({"1000000", "10000000"})
+    private int size;
+
+    private ObjectMapper mapper;
+
+    private Path json;
+
+    private Path snapshot;
+
+    private ContactSnapshot restored;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mapper = new JacksonConfig().objectMapper();
+        json = Files.createTempFile("contacts", ".json");
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(json));
+             SequenceWriter writer = mapper.writerFor(Contact.class).withRootValueSeparator("\n").writeValues(output)) {
+            for (Iterator<Contact> contacts = contacts(); contacts.hasNext(); ) {
+                writer.write(contacts.next());
+            }
+        }
+        snapshot = Files.createTempFile("contacts", ".snapshot");
+        ContactSnapshot.write(snapshot, contacts(), size, Collections.emptyMap());
+    }
+
+    @Benchmark
+    public Contact restartFromJson() throws IOException {
+        List<Contact> contacts = new ArrayList<>(size);
+        try (MappingIterator<Contact> iterator = mapper.readerFor(Contact.class).readValues(json.toFile())) {
+            while (iterator.hasNext()) {
+                contacts.add(iterator.next());
+            }
+        }
+        DefaultContactService service = new DefaultContactService();
+        service.restoreContacts(contacts, size);
+        return service.findContact((long) size / 2).get();
+    }
+
+    @Benchmark
+    public Contact restartFromSnapshot() throws IOException {
+        restored = ContactSnapshot.open(snapshot);
+        DefaultContactService service = new DefaultContactService();
+        service.restoreContacts(restored, Collections.emptyList(), Collections.emptySet(), restored.getLastId());
+        return service.findContact((long) size / 2).get();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeSnapshot() throws IOException {
+        if (restored != null) {
+            restored.close();
+            restored = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(json);
+        Files.delete(snapshot);
+    }
+
+    private Iterator<Contact> contacts() {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        return new Iterator<Contact>() {
+
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < size;
+            }
+
+            @Override
+            public Contact next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                i++;
+                return Contact.builder()
+                        .id((long) i)
+                        .name("Contact " + i)
+                        .birthday(LocalDate.of(1950 + i % 50, 1 + i % 12, 1 + i % 28))
+                        .work(Work.builder().title("Engineer").company("Company " + i % 100).build())
+                        .phones(Arrays.asList(Phone.builder().phone("+1 555 " + i).type("mobile").build()))
+                        .emails(Arrays.asList(Email.builder().email("contact" + i + "@example.com").type("work").build()))
+                        .groups(Arrays.asList("friends", "group " + i % 10))
+                        .favorite(i % 3 == 0)
+                        .notes("Notes of contact " + i)
+                        .createdDateTime(now)
+                        .lastModifiedDateTime(now)
+                        .version(1L)
+                        .build();
+            }
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ContactSnapshotBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
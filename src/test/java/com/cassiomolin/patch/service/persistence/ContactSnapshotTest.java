@@ -0,0 +1,79 @@
+package com.cassiomolin.patch.service.persistence;
+
+import com.cassiomolin.patch.domain.Contact;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ContactSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void open_shouldReadWrittenContactsAndTombstones() throws Exception {
+
+        Path file = folder.newFile().toPath();
+        List<Contact> contacts = new ArrayList<>();
+        for (long id = 1; id <= 50_000; id += 2) {
+            contacts.add(Contact.builder().id(id).name("Contact " + id).groups(Arrays.asList("friends"))
+                    .version(id % 5 + 1).build());
+        }
+        Map<Long, Long> tombstones = new TreeMap<>();
+        tombstones.put(2L, 3L);
+        tombstones.put(50_002L, 1L);
+
+        assertThat(ContactSnapshot.write(file, contacts.iterator(), 50_002L, tombstones)).isEqualTo(contacts.size());
+
+        try (ContactSnapshot snapshot = ContactSnapshot.open(file)) {
+            assertThat(snapshot.size()).isEqualTo(contacts.size());
+            assertThat(snapshot.getLastId()).isEqualTo(50_002L);
+            assertThat(snapshot.getTombstones()).isEqualTo(tombstones);
+            for (int i = 0; i < contacts.size(); i++) {
+                assertThat(snapshot.id(i)).isEqualTo(contacts.get(i).getId());
+                assertThat(snapshot.version(i)).isEqualTo(contacts.get(i).getVersion());
+                assertThat(snapshot.contact(i)).isEqualToComparingFieldByFieldRecursively(contacts.get(i));
+            }
+            assertThat(snapshot.indexOf(25_001L)).isEqualTo(12_500);
+            assertThat(snapshot.indexOf(25_002L)).isEqualTo(-12_502);
+        }
+    }
+
+    @Test
+    public void write_shouldThrowIllegalArgumentException_whenContactsAreNotInIdOrder() throws Exception {
+
+        Path file = folder.newFile().toPath();
+        List<Contact> contacts = Arrays.asList(
+                Contact.builder().id(2L).name("John Appleseed").build(),
+                Contact.builder().id(1L).name("Jane").build());
+
+        Throwable thrown = catchThrowable(() -> ContactSnapshot.write(file, contacts.iterator(), 2L,
+                Collections.emptyMap()));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void open_shouldThrowIOException_whenFileIsNotSnapshot() throws Exception {
+
+        Path file = folder.newFile().toPath();
+        Files.write(file, new byte[128]);
+
+        Throwable thrown = catchThrowable(() -> ContactSnapshot.open(file));
+
+        assertThat(thrown).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,206 @@
+package com.cassiomolin.patch.service.persistence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class WriteAheadLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replay_shouldReturnRecordsInAppendOrder_whenLogSpansSegments() throws Exception {
+
+        Path directory = folder.newFolder().toPath();
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 64)) {
+            for (int i = 0; i < 100; i++) {
+                log.append(bytes("record " + i)).join();
+            }
+        }
+
+        assertThat(segments(directory).size()).isGreaterThan(1);
+        assertThat(replay(directory, 0)).hasSize(100).startsWith("record 0", "record 1").endsWith("record 99");
+    }
+
+    @Test
+    public void replay_shouldSkipRecordsBeforeRollover_whenReplayingFromNewSegment() throws Exception {
+
+        Path directory = folder.newFolder().toPath();
+        long segment;
+        try (WriteAheadLog log = WriteAheadLog.open(directory, Long.MAX_VALUE)) {
+            log.append(bytes("before")).join();
+            segment = log.rollover().join();
+            log.append(bytes("after")).join();
+            log.deleteSegmentsBefore(segment);
+        }
+
+        assertThat(segments(directory)).hasSize(1);
+        assertThat(replay(directory, segment)).containsExactly("after");
+    }
+
+    @Test
+    public void replay_shouldStopAtTornRecord_whenSegmentEndsWithPartialWrite() throws Exception {
+
+        Path directory = folder.newFolder().toPath();
+        try (WriteAheadLog log = WriteAheadLog.open(directory, Long.MAX_VALUE)) {
+            log.append(bytes("first")).join();
+            log.append(bytes("second")).join();
+        }
+        Path segment = segments(directory).get(0);
+        byte[] content = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(content, content.length - 2));
+        Files.write(segment, new byte[]{0, 0, 0, 9, 1, 2}, StandardOpenOption.APPEND);
+
+        try (WriteAheadLog log = WriteAheadLog.open(directory, Long.MAX_VALUE)) {
+            log.append(bytes("third")).join();
+        }
+
+        assertThat(replay(directory, 0)).containsExactly("first", "third");
+    }
+
+    @Test
+    public void append_shouldMakeEveryRecordDurable_whenWritersAreConcurrent() throws Exception {
+
+        Path directory = folder.newFolder().toPath();
+        int threads = 8;
+        int recordsPerThread = 200;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 4096)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < recordsPerThread; i++) {
+                        log.append(bytes(thread + ":" + i)).join();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<String> records = replay(directory, 0);
+        assertThat(records).hasSize(threads * recordsPerThread).doesNotHaveDuplicates();
+        for (int t = 0; t < threads; t++) {
+            String prefix = t + ":";
+            assertThat(records.stream().filter(record -> record.startsWith(prefix)).collect(toList()))
+                    .isSortedAccordingTo((a, b) -> Integer.compare(sequence(a), sequence(b)));
+        }
+    }
+
+    @Test
+    public void append_shouldFail_whenLogIsClosed() throws Exception {
+
+        WriteAheadLog log = WriteAheadLog.open(folder.newFolder().toPath(), Long.MAX_VALUE);
+        CompletableFuture<Long> appended = log.append(bytes("record"));
+        log.close();
+
+        assertThat(appended).isCompleted();
+        assertThat(appended.isCompletedExceptionally()).isFalse();
+        assertThat(catchThrowable(() -> log.append(bytes("late"))))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void append_shouldWriteToNewSegment_whenSegmentFails() throws Exception {
+
+        Path directory = folder.newFolder().toPath();
+        List<FileChannel> channels = new ArrayList<>();
+        try (WriteAheadLog log = WriteAheadLog.open(directory, Long.MAX_VALUE, path -> {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            channels.add(channel);
+            return channel;
+        })) {
+            log.append(bytes("first")).join();
+            channels.get(0).close();
+
+            assertThat(catchThrowable(() -> log.append(bytes("lost")).join()))
+                    .hasCauseInstanceOf(UncheckedIOException.class);
+            assertThat(log.append(bytes("second")).join()).isEqualTo(2L);
+        }
+
+        assertThat(segments(directory)).hasSize(2);
+        assertThat(replay(directory, 0)).containsExactly("first", "second");
+    }
+
+    @Test
+    public void append_shouldRecover_whenNewSegmentCanOnlyBeCreatedLater() throws Exception {
+
+        Path directory = folder.newFolder().toPath();
+        List<FileChannel> channels = new ArrayList<>();
+        AtomicInteger failingOpens = new AtomicInteger();
+        try (WriteAheadLog log = WriteAheadLog.open(directory, Long.MAX_VALUE, path -> {
+            if (failingOpens.getAndUpdate(count -> Math.max(count - 1, 0)) > 0) {
+                throw new IOException("No space left on device");
+            }
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            channels.add(channel);
+            return channel;
+        })) {
+            log.append(bytes("first")).join();
+            failingOpens.set(2);
+            channels.get(0).close();
+
+            assertThat(catchThrowable(() -> log.append(bytes("lost")).join()))
+                    .hasCauseInstanceOf(UncheckedIOException.class);
+            assertThat(catchThrowable(() -> log.append(bytes("also lost")).join()))
+                    .hasCauseInstanceOf(UncheckedIOException.class)
+                    .hasStackTraceContaining("No space left on device");
+            assertThat(log.append(bytes("second")).join()).isGreaterThan(1L);
+            assertThat(log.rollover().join()).isGreaterThan(2L);
+            log.append(bytes("third")).join();
+        }
+
+        assertThat(replay(directory, 0)).containsExactly("first", "second", "third");
+    }
+
+    private static List<String> replay(Path directory, long fromSegment) throws Exception {
+        List<String> records = new ArrayList<>();
+        WriteAheadLog.replay(directory, fromSegment, record -> {
+            byte[] content = new byte[record.remaining()];
+            record.get(content);
+            records.add(new String(content, StandardCharsets.UTF_8));
+        });
+        return records;
+    }
+
+    private static List<Path> segments(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().collect(toList());
+        }
+    }
+
+    private static int sequence(String record) {
+        return Integer.parseInt(record.substring(record.indexOf(':') + 1));
+    }
+
+    private static byte[] bytes(String record) {
+        return record.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,78 @@
+package com.cassiomolin.patch.service.store;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ContactCodecTest {
+
+    @Test
+    public void decode_shouldReturnEncodedContact_whenEveryPropertyIsSet() {
+
+        Contact contact = Contact.builder()
+                .id(42L)
+                .name("John Appleseed")
+                .birthday(LocalDate.of(1985, 2, 28))
+                .work(Work.builder().title("Engineer").company("Acme").build())
+                .phones(Arrays.asList(Phone.builder().phone("+1 555 0100").type("mobile").build(), null))
+                .emails(Collections.singletonList(Email.builder().email("john.appleseed@example.com").build()))
+                .groups(Arrays.asList("friends", "ünïcödé"))
+                .favorite(false)
+                .notes("Notes")
+                .createdDateTime(OffsetDateTime.of(2019, 5, 1, 10, 30, 0, 123_456_789, ZoneOffset.ofHours(2)))
+                .lastModifiedDateTime(OffsetDateTime.of(2019, 5, 2, 8, 0, 0, 0, ZoneOffset.UTC))
+                .version(7L)
+                .build();
+
+        assertThat(roundTrip(contact)).isEqualToComparingFieldByFieldRecursively(contact);
+    }
+
+    @Test
+    public void decode_shouldKeepNulls_whenPropertiesAreNotSet() {
+
+        Contact contact = Contact.builder().id(1L).build();
+
+        assertThat(roundTrip(contact)).isEqualToComparingFieldByFieldRecursively(contact);
+    }
+
+    @Test
+    public void version_shouldReadVersion_whenContactIsNotDecoded() {
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.position(10);
+        ContactCodec.encode(Contact.builder().id(1L).name("Jane").version(3L).build(), buffer);
+
+        assertThat(ContactCodec.version(buffer, 10)).isEqualTo(3L);
+    }
+
+    @Test
+    public void encode_shouldThrowBufferOverflowException_whenBufferIsTooSmall() {
+
+        Throwable thrown = catchThrowable(() -> ContactCodec.encode(
+                Contact.builder().id(1L).name("John Appleseed").build(), ByteBuffer.allocate(16)));
+
+        assertThat(thrown).isInstanceOf(BufferOverflowException.class);
+    }
+
+    private static Contact roundTrip(Contact contact) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        ContactCodec.encode(contact, buffer);
+        buffer.flip();
+        Contact decoded = ContactCodec.decode(buffer);
+        assertThat(buffer.hasRemaining()).isFalse();
+        return decoded;
+    }
+}
@@ -0,0 +1,90 @@
+package com.cassiomolin.patch.service.store;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of converting contacts to and from {@link ContactRecord}s, which the store does on every write and
+ * read.
+ * <p>
+ * Before running the benchmarks, {@link #main(String[])} prints the bytes per contact reported by JOL for contacts and
+ * for their records, counting the strings shared by several of them once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactRecordBenchmark {
+
+    private static final int FOOTPRINT_SAMPLE_SIZE = 100_000;
+
+    private Contact contact;
+
+    private ContactRecord record;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        contact = contact(42);
+        record = ContactRecord.of(contact);
+    }
+
+    @Benchmark
+    public ContactRecord toRecord() {
+        return ContactRecord.of(contact);
+    }
+
+    @Benchmark
+    public Contact toContact() {
+        return record.toContact();
+    }
+
+    private static Contact contact(int i) {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        return Contact.builder()
+                .id((long) i)
+                .name("Contact " + i)
+                .birthday(LocalDate.of(1950 + i % 50, 1 + i % 12, 1 + i % 28))
+                .work(Work.builder().title("Engineer").company("Company " + i % 100).build())
+                .phones(Arrays.asList(Phone.builder().phone("+1 555 " + i).type("mobile").build()))
+                .emails(Arrays.asList(Email.builder().email("contact" + i + "@example.com").type("work").build()))
+                .groups(Arrays.asList("friends", "group " + i % 10))
+                .favorite(i % 3 == 0)
+                .notes("Notes of contact " + i)
+                .createdDateTime(now)
+                .lastModifiedDateTime(now)
+                .version(1L)
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Contact[] contacts = new Contact[FOOTPRINT_SAMPLE_SIZE];
+        ContactRecord[] records = new ContactRecord[FOOTPRINT_SAMPLE_SIZE];
+        for (int i = 0; i < FOOTPRINT_SAMPLE_SIZE; i++) {
+            contacts[i] = contact(i);
+            records[i] = ContactRecord.of(contact(i));
+        }
+        System.out.printf("Contact: %d bytes per contact%n",
+                GraphLayout.parseInstance((Object[]) contacts).totalSize() / FOOTPRINT_SAMPLE_SIZE);
+        System.out.printf("ContactRecord: %d bytes per contact%n",
+                GraphLayout.parseInstance((Object[]) records).totalSize() / FOOTPRINT_SAMPLE_SIZE);
+
+        new Runner(new OptionsBuilder()
+                .include(ContactRecordBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
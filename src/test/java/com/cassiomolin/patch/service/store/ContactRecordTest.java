@@ -0,0 +1,74 @@
+package com.cassiomolin.patch.service.store;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Email;
+import com.cassiomolin.patch.domain.Phone;
+import com.cassiomolin.patch.domain.Work;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContactRecordTest {
+
+    @Test
+    public void toContact_shouldReturnContactOfRecord_whenEveryPropertyIsSet() {
+
+        Contact contact = Contact.builder()
+                .id(42L)
+                .name("John Appleseed")
+                .birthday(LocalDate.of(1985, 2, 28))
+                .work(Work.builder().title("Engineer").build())
+                .phones(Arrays.asList(Phone.builder().phone("+1 555 0100").type("mobile").build(), null))
+                .emails(Collections.singletonList(Email.builder().email("john.appleseed@example.com").build()))
+                .groups(Arrays.asList("friends", null))
+                .favorite(false)
+                .notes("Notes")
+                .createdDateTime(OffsetDateTime.of(2019, 5, 1, 10, 30, 0, 0, ZoneOffset.UTC))
+                .lastModifiedDateTime(OffsetDateTime.of(2019, 5, 2, 8, 0, 0, 0, ZoneOffset.UTC))
+                .version(7L)
+                .build();
+
+        assertThat(ContactRecord.of(contact).toContact()).isEqualToComparingFieldByFieldRecursively(contact);
+    }
+
+    @Test
+    public void toContact_shouldKeepNulls_whenPropertiesAreNotSet() {
+
+        Contact contact = Contact.builder().id(1L).build();
+
+        assertThat(ContactRecord.of(contact).toContact()).isEqualToComparingFieldByFieldRecursively(contact);
+    }
+
+    @Test
+    public void toContact_shouldTruncateDateTimesToMillisecondsInUtc() {
+
+        Contact contact = Contact.builder().id(1L)
+                .createdDateTime(OffsetDateTime.of(2019, 5, 1, 10, 30, 0, 123_456_789, ZoneOffset.ofHours(2)))
+                .build();
+
+        assertThat(ContactRecord.of(contact).toContact().getCreatedDateTime())
+                .isEqualTo(OffsetDateTime.of(2019, 5, 1, 8, 30, 0, 123_000_000, ZoneOffset.UTC))
+                .isEqualTo(ContactRecord.truncate(contact.getCreatedDateTime()));
+    }
+
+    @Test
+    public void of_shouldShareLowCardinalityStrings_whenContactsHaveEqualValues() {
+
+        Contact first = Contact.builder().id(1L).groups(Arrays.asList(new String("friends")))
+                .phones(Arrays.asList(Phone.builder().phone("1").type(new String("mobile")).build())).build();
+        Contact second = Contact.builder().id(2L).groups(Arrays.asList(new String("friends")))
+                .phones(Arrays.asList(Phone.builder().phone("2").type(new String("mobile")).build())).build();
+
+        Contact firstRestored = ContactRecord.of(first).toContact();
+        Contact secondRestored = ContactRecord.of(second).toContact();
+
+        assertThat(firstRestored.getGroups().get(0)).isSameAs(secondRestored.getGroups().get(0));
+        assertThat(firstRestored.getPhones().get(0).getType()).isSameAs(secondRestored.getPhones().get(0).getType());
+    }
+}
@@ -0,0 +1,128 @@
+package com.cassiomolin.patch.service.store;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongConcurrentHashMapTest {
+
+    @Test
+    public void put_shouldReturnPreviousValue_whenKeyIsMapped() {
+
+        LongConcurrentHashMap<String> map = new LongConcurrentHashMap<>();
+
+        assertThat(map.put(1L, "a")).isNull();
+        assertThat(map.put(1L, "b")).isEqualTo("a");
+        assertThat(map.get(1L)).isEqualTo("b");
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void putIfAbsent_shouldKeepCurrentValue_whenKeyIsMapped() {
+
+        LongConcurrentHashMap<String> map = new LongConcurrentHashMap<>();
+        map.put(0L, "a");
+
+        assertThat(map.putIfAbsent(0L, "b")).isEqualTo("a");
+        assertThat(map.get(0L)).isEqualTo("a");
+    }
+
+    @Test
+    public void replace_shouldDoNothing_whenKeyIsNotMapped() {
+
+        LongConcurrentHashMap<String> map = new LongConcurrentHashMap<>();
+
+        assertThat(map.replace(1L, "a")).isNull();
+        assertThat(map.containsKey(1L)).isFalse();
+        assertThat(map.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void replace_shouldReplaceValue_onlyWhenExpectedValueIsMapped() {
+
+        LongConcurrentHashMap<String> map = new LongConcurrentHashMap<>();
+        String a = "a";
+        map.put(1L, a);
+
+        assertThat(map.replace(1L, new String("a"), "b")).isFalse();
+        assertThat(map.replace(1L, a, "c")).isTrue();
+        assertThat(map.replace(2L, a, "d")).isFalse();
+        assertThat(map.get(1L)).isEqualTo("c");
+        assertThat(map.containsKey(2L)).isFalse();
+    }
+
+    @Test
+    public void operations_shouldBehaveLikeHashMap_whenKeysAreRandomlyAddedAndRemoved() {
+
+        LongConcurrentHashMap<Long> map = new LongConcurrentHashMap<>(4);
+        Map<Long, Long> reference = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 500_000; i++) {
+            long key = random.nextInt(20_000) - 100;
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertThat(map.put(key, key * 2)).isEqualTo(reference.put(key, key * 2));
+                    break;
+                case 1:
+                    assertThat(map.remove(key)).isEqualTo(reference.remove(key));
+                    break;
+                default:
+                    assertThat(map.get(key)).isEqualTo(reference.get(key));
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(reference.size());
+        assertThat(map.values()).containsExactlyInAnyOrderElementsOf(reference.values());
+
+        Map<Long, Long> iterated = new HashMap<>();
+        map.forEach(iterated::put);
+        assertThat(iterated).isEqualTo(reference);
+    }
+
+    @Test
+    public void operations_shouldBeThreadSafe_whenUsedConcurrently() throws Exception {
+
+        LongConcurrentHashMap<Long> map = new LongConcurrentHashMap<>();
+        int threads = 8;
+        int keysPerThread = 100_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long offset = t;
+                futures.add(executor.submit(() -> {
+                    for (long i = 0; i < keysPerThread; i++) {
+                        long key = i * threads + offset;
+                        map.put(key, key);
+                        assertThat(map.get(key)).isEqualTo(key);
+                        if (i % 2 == 0) {
+                            map.remove(key);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(map.size()).isEqualTo(threads * keysPerThread / 2);
+        for (long key = 0; key < threads * keysPerThread; key++) {
+            boolean removed = (key / threads) % 2 == 0;
+            assertThat(map.containsKey(key)).isEqualTo(!removed);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.cassiomolin.patch.service.store;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class LongLongHashMapTest {
+
+    @Test
+    public void put_shouldReturnPreviousValue_whenKeyIsMapped() {
+
+        LongLongHashMap map = new LongLongHashMap();
+
+        assertThat(map.put(1L, 10L, -1L)).isEqualTo(-1L);
+        assertThat(map.put(1L, 20L, -1L)).isEqualTo(10L);
+        assertThat(map.get(1L, -1L)).isEqualTo(20L);
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void put_shouldThrowIllegalArgumentException_whenKeyIsZero() {
+
+        Throwable thrown = catchThrowable(() -> new LongLongHashMap().put(0L, 1L, -1L));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void remove_shouldKeepOtherKeysReachable_whenMixedWithPuts() {
+
+        LongLongHashMap map = new LongLongHashMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long key = 1 + random.nextInt(2_000);
+            if (random.nextBoolean()) {
+                assertThat(map.put(key, i, -1L)).isEqualTo(expected.getOrDefault(key, -1L));
+                expected.put(key, (long) i);
+            } else {
+                assertThat(map.remove(key, -1L)).isEqualTo(expected.getOrDefault(key, -1L));
+                expected.remove(key);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = 1; key <= 2_000; key++) {
+            assertThat(map.get(key, -1L)).isEqualTo(expected.getOrDefault(key, -1L));
+            assertThat(map.containsKey(key)).isEqualTo(expected.containsKey(key));
+        }
+    }
+}
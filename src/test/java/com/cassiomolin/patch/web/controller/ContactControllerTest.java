@@ -1,14 +1,32 @@
 package com.cassiomolin.patch.web.controller;
 
 import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.config.JsonProcessingConfig;
 import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.service.ContactQuery;
+import com.cassiomolin.patch.service.ContactQueryService;
 import com.cassiomolin.patch.service.ContactService;
+import com.cassiomolin.patch.service.ContactSort;
+import com.cassiomolin.patch.service.Page;
+import com.cassiomolin.patch.service.SortKey;
+import com.cassiomolin.patch.service.SortProperty;
 import com.cassiomolin.patch.web.PatchMediaType;
+import com.cassiomolin.patch.web.StreamMediaType;
+import com.cassiomolin.patch.web.converter.PatchDocumentReader;
 import com.cassiomolin.patch.web.exception.WebApiExceptionHandler;
 import com.cassiomolin.patch.web.mapper.ContactMapper;
 import com.cassiomolin.patch.web.mapper.ContactMapperImpl;
+import com.cassiomolin.patch.web.patch.PatchPlanCache;
+import com.cassiomolin.patch.web.patch.PatchSchemas;
 import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.output.ContactResourceOutput;
+import com.cassiomolin.patch.web.resource.output.ContactVersionResourceOutput;
+import com.cassiomolin.patch.web.util.ContactDeltas;
+import com.cassiomolin.patch.web.util.ContactImporter;
+import com.cassiomolin.patch.web.util.ContactStreamWriter;
+import com.cassiomolin.patch.web.util.Cursors;
 import com.cassiomolin.patch.web.util.PatchHelper;
+import com.cassiomolin.patch.web.util.Preferences;
 import lombok.SneakyThrows;
 import org.assertj.core.util.Lists;
 import org.junit.Test;
@@ -19,16 +37,27 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 
+import javax.json.Json;
 import javax.json.JsonMergePatch;
 import javax.json.JsonPatch;
+import javax.json.JsonValue;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -40,7 +69,13 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
         ContactController.class,
         ContactMapperImpl.class,
         PatchHelper.class,
+        ContactStreamWriter.class,
+        ContactImporter.class,
+        PatchPlanCache.class,
+        PatchSchemas.class,
+        PatchDocumentReader.class,
         JacksonConfig.class,
+        JsonProcessingConfig.class,
         WebApiExceptionHandler.class
 })
 public class ContactControllerTest {
@@ -51,12 +86,18 @@ public class ContactControllerTest {
     @MockBean
     private ContactService service;
 
+    @MockBean
+    private ContactQueryService queryService;
+
     @SpyBean
     private ContactMapper mapper;
 
     @SpyBean
     private PatchHelper patchHelper;
 
+    @MockBean
+    private ContactDeltas contactDeltas;
+
     @Test
     @SneakyThrows
     public void createContact_shouldReturn201_whenInputIsValid() {
@@ -82,6 +123,71 @@ public class ContactControllerTest {
         assertThat(contactArgumentCaptor.getValue()).isEqualToComparingFieldByFieldRecursively(contactToPersist());
     }
 
+    @Test
+    @SneakyThrows
+    public void importContacts_shouldCreateValidContactsAndReportInvalidLines() {
+
+        when(service.createContacts(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(post("/contacts")
+                .contentType(StreamMediaType.APPLICATION_NDJSON)
+                .content("{\"name\":\"John Appleseed\"}\n" +
+                        "{\"name\":\"\"}\n" +
+                        "\n" +
+                        "{\"name\":\n" +
+                        "{\"name\":\"Jane Appleseed\",\"favorite\":true}\n"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(2))
+                .andExpect(jsonPath("$.errors[0].details[0].property").value("name"))
+                .andExpect(jsonPath("$.errors[1].line").value(4));
+
+        ArgumentCaptor<List<Contact>> contactsArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(service).createContacts(contactsArgumentCaptor.capture());
+        verifyNoMoreInteractions(service);
+
+        assertThat(contactsArgumentCaptor.getValue())
+                .extracting(Contact::getName)
+                .containsExactly("John Appleseed", "Jane Appleseed");
+    }
+
+    @Test
+    @SneakyThrows
+    public void importContacts_shouldReportTrailingContentAndTooLongLines() {
+
+        when(service.createContacts(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(post("/contacts")
+                .contentType(StreamMediaType.APPLICATION_NDJSON)
+                .content("{\"name\":\"John Appleseed\"} {\"name\":\"Jane Appleseed\"}\n" +
+                        "{\"name\":\"" + String.join("", Collections.nCopies(70_000, "x")) + "\"}\n" +
+                        "{\"name\":\"Jane Appleseed\"}\n"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(1))
+                .andExpect(jsonPath("$.errors[1].line").value(2))
+                .andExpect(jsonPath("$.errors[1].message").value("Line longer than 65536 characters"));
+    }
+
+    @Test
+    @SneakyThrows
+    public void importContacts_shouldCountErrorsBeyondTheReportedOnes() {
+
+        mockMvc.perform(post("/contacts")
+                .contentType(StreamMediaType.APPLICATION_NDJSON)
+                .content(String.join("", Collections.nCopies(150, "{\"name\":\"\"}\n"))))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(0))
+                .andExpect(jsonPath("$.failed").value(150))
+                .andExpect(jsonPath("$.errors", hasSize(100)))
+                .andExpect(jsonPath("$.errors[99].line").value(100));
+    }
+
     @Test
     @SneakyThrows
     public void findContact_shouldReturn200_whenContactExists() {
@@ -108,11 +214,41 @@ public class ContactControllerTest {
         verify(mapper).asOutput(any(Contact.class));
     }
 
+    @Test
+    @SneakyThrows
+    public void findContact_shouldReturnETag_whenContactExists() {
+
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
+
+        mockMvc.perform(get("/contacts/{id}", 1)
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContact_shouldReturn304_whenIfNoneMatchIsCurrent() {
+
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
+
+        mockMvc.perform(get("/contacts/{id}", 1)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"1\""))
+                .andDo(print())
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(content().string(""));
+
+        verifyZeroInteractions(mapper);
+    }
+
     @Test
     @SneakyThrows
     public void findContacts_shouldReturn200_whenThereIsNoContact() {
 
-        when(service.findContacts()).thenReturn(Lists.newArrayList());
+        when(service.findContacts(isNull(), eq(100))).thenReturn(new Page<>(Lists.newArrayList(), true));
 
         mockMvc.perform(get("/contacts")
                 .accept(MediaType.APPLICATION_JSON))
@@ -121,7 +257,7 @@ public class ContactControllerTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$", hasSize(0)));
 
-        verify(service).findContacts();
+        verify(service).findContacts(isNull(), eq(100));
         verifyNoMoreInteractions(service);
 
         verifyZeroInteractions(patchHelper);
@@ -133,7 +269,7 @@ public class ContactControllerTest {
     @SneakyThrows
     public void findContacts_shouldReturn200_whenThereAreContacts() {
 
-        when(service.findContacts()).thenReturn(Lists.list(contactPersisted()));
+        when(service.findContacts(isNull(), eq(100))).thenReturn(new Page<>(Lists.list(contactPersisted()), true));
 
         mockMvc.perform(get("/contacts")
                 .accept(MediaType.APPLICATION_JSON))
@@ -147,7 +283,7 @@ public class ContactControllerTest {
                 .andExpect(jsonPath("$.[0].createdDateTime").value("2019-01-01T00:00:00Z"))
                 .andExpect(jsonPath("$.[0].lastModifiedDateTime").value("2019-01-01T00:00:00Z"));
 
-        verify(service).findContacts();
+        verify(service).findContacts(isNull(), eq(100));
         verifyNoMoreInteractions(service);
 
         verifyZeroInteractions(patchHelper);
@@ -157,21 +293,504 @@ public class ContactControllerTest {
 
     @Test
     @SneakyThrows
-    public void updateContact_shouldReturn204_whenInputIsValidAndContactExists() {
+    public void findContacts_shouldReturnLinkToNextPage_whenThereAreMoreContacts() {
+
+        when(service.findContacts(isNull(), eq(1))).thenReturn(new Page<>(Lists.list(contactPersisted()), false));
+
+        mockMvc.perform(get("/contacts?limit=1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(header().string(HttpHeaders.LINK,
+                        "<http://localhost/contacts?limit=1&cursor=" + Cursors.encode(1L) + ">; rel=\"next\""));
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContacts_shouldReturnPageAfterCursor() {
+
+        when(service.findContacts(eq(1L), eq(100))).thenReturn(new Page<>(Lists.newArrayList(), true));
+
+        mockMvc.perform(get("/contacts")
+                .param("cursor", Cursors.encode(1L))
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+
+        verify(service).findContacts(eq(1L), eq(100));
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContacts_shouldQueryIndexes_whenCriteriaAreGiven() {
+
+        ContactQuery query = ContactQuery.builder().group("friends").favorite(true).build();
+        when(queryService.findContacts(eq(query), isNull(), eq(1))).thenReturn(new Page<>(Lists.list(contactPersisted()), false));
+
+        mockMvc.perform(get("/contacts?group=friends&favorite=true&limit=1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(header().string(HttpHeaders.LINK,
+                        "<http://localhost/contacts?group=friends&favorite=true&limit=1&cursor=" + Cursors.encode(1L) + ">; rel=\"next\""));
+
+        verify(queryService).findContacts(eq(query), isNull(), eq(1));
+        verifyZeroInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContacts_shouldQueryWithCompiledFilter_whenFilterIsGiven() {
+
+        when(queryService.findContacts(any(), isNull(), eq(100))).thenReturn(new Page<>(Lists.list(contactPersisted()), true));
+
+        mockMvc.perform(get("/contacts")
+                .param("filter", "birthday=lt=1990-01-01;work.company==*Acme*;phones.count>2")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        ArgumentCaptor<ContactQuery> query = ArgumentCaptor.forClass(ContactQuery.class);
+        verify(queryService).findContacts(query.capture(), isNull(), eq(100));
+        assertThat(query.getValue().getFilter())
+                .hasToString("birthday=lt=1990-01-01;work.company==*Acme*;phones.count=gt=2");
+        verifyZeroInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContacts_shouldReturn400_whenFilterIsInvalid() {
+
+        mockMvc.perform(get("/contacts")
+                .param("filter", "birthday=lt=yesterday")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        verifyZeroInteractions(queryService);
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContacts_shouldSortContacts_whenSortIsGiven() {
+
+        ContactSort sort = ContactSort.parse("lastModifiedDateTime,desc");
+        when(queryService.findContacts(any(), eq(sort), isNull(), eq(1)))
+                .thenReturn(new Page<>(Lists.list(contactPersisted()), false));
+        String cursor = Cursors.encode(SortProperty.LAST_MODIFIED_DATE_TIME,
+                new SortKey(Instant.parse("2019-01-01T00:00:00Z"), 1L));
+
+        mockMvc.perform(get("/contacts")
+                .param("sort", "lastModifiedDateTime,desc")
+                .param("limit", "1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("cursor=" + cursor + ">")));
+
+        ArgumentCaptor<ContactQuery> query = ArgumentCaptor.forClass(ContactQuery.class);
+        verify(queryService).findContacts(query.capture(), eq(sort), isNull(), eq(1));
+        assertThat(query.getValue().isEmpty()).isTrue();
+        verifyZeroInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContacts_shouldReturnPageAfterSortKey_whenSortedCursorIsGiven() {
+
+        SortKey after = new SortKey("john appleseed", 1L);
+        when(queryService.findContacts(any(), any(), eq(after), eq(100))).thenReturn(new Page<>(Lists.newArrayList(), true));
+
+        mockMvc.perform(get("/contacts")
+                .param("sort", "name")
+                .param("cursor", Cursors.encode(SortProperty.NAME, after))
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+
+        verify(queryService).findContacts(any(), eq(ContactSort.parse("name")), eq(after), eq(100));
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContacts_shouldReturn400_whenSortIsInvalid() {
+
+        mockMvc.perform(get("/contacts")
+                .param("sort", "nickname,desc")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/contacts")
+                .param("sort", "name")
+                .param("cursor", Cursors.encode(1L))
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        verifyZeroInteractions(queryService);
+    }
+
+    @Test
+    @SneakyThrows
+    public void findBirthdays_shouldReturnLinkToNextPage_whenThereAreMoreContacts() {
+
+        Contact contact = contactPersisted();
+        contact.setBirthday(LocalDate.of(1990, 1, 3));
+        when(queryService.findBirthdays(eq(LocalDate.of(2024, 1, 1)), eq(7), isNull(), eq(1)))
+                .thenReturn(new Page<>(Lists.list(contact), false));
+
+        mockMvc.perform(get("/contacts/birthdays")
+                .param("from", "2024-01-01")
+                .param("days", "7")
+                .param("limit", "1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].birthday").value("1990-01-03"))
+                .andExpect(header().string(HttpHeaders.LINK,
+                        containsString("from=2024-01-03&days=5&cursor=" + Cursors.encode(1L) + ">")));
+
+        verify(queryService).findBirthdays(eq(LocalDate.of(2024, 1, 1)), eq(7), isNull(), eq(1));
+        verifyZeroInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void findBirthdays_shouldReturn400_whenDaysAreOutOfRange() {
+
+        mockMvc.perform(get("/contacts/birthdays")
+                .param("days", "366")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        verifyZeroInteractions(queryService);
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContacts_shouldReturn400_whenCursorIsInvalid() {
+
+        mockMvc.perform(get("/contacts")
+                .param("cursor", "not-a-cursor")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        verifyZeroInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContacts_shouldReturnRequestedFields_whenFieldsAreGiven() {
+
+        Contact contact = contactPersisted();
+        contact.setFavorite(true);
+        contact.setNotes("Cool guy!");
+        when(service.findContacts(isNull(), eq(100))).thenReturn(new Page<>(Lists.list(contact), true));
+
+        mockMvc.perform(get("/contacts")
+                .param("fields", "name,favorite")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].*", hasSize(3)))
+                .andExpect(jsonPath("$.[0].id").value(1))
+                .andExpect(jsonPath("$.[0].name").value("John Appleseed"))
+                .andExpect(jsonPath("$.[0].favorite").value(true));
+    }
+
+    @Test
+    @SneakyThrows
+    public void searchContacts_shouldReturnContactsFoundByQueryService() {
+
+        when(queryService.searchContacts(eq("john"), eq(20))).thenReturn(Lists.list(contactPersisted()));
+
+        mockMvc.perform(get("/contacts/search")
+                .param("q", "john")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$.[0].name").value("John Appleseed"));
+
+        verify(queryService).searchContacts(eq("john"), eq(20));
+        verifyZeroInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void searchContacts_shouldReturn400_whenQueryHasNoWords() {
+
+        mockMvc.perform(get("/contacts/search")
+                .param("q", " ,. ")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        verifyZeroInteractions(queryService);
+    }
+
+    @Test
+    @SneakyThrows
+    public void suggestContacts_shouldReturnContactsSuggestedByQueryService() {
+
+        when(queryService.suggestContacts(eq("jo"), eq(10))).thenReturn(Lists.list(contactPersisted()));
+
+        mockMvc.perform(get("/contacts/suggest")
+                .param("prefix", "jo")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$.[0].name").value("John Appleseed"));
+
+        verify(queryService).suggestContacts(eq("jo"), eq(10));
+        verifyZeroInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void suggestContacts_shouldReturn400_whenPrefixIsBlank() {
+
+        mockMvc.perform(get("/contacts/suggest")
+                .param("prefix", "  ")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        verifyZeroInteractions(queryService);
+    }
+
+    @Test
+    @SneakyThrows
+    public void exportContacts_shouldWriteNdjson_whenNdjsonIsAccepted() {
+
+        Contact other = contactPersisted();
+        other.setId(2L);
+        when(service.streamContacts()).thenReturn(Stream.of(contactPersisted(), other));
+
+        mockMvc.perform(get("/contacts")
+                .param("export", "")
+                .accept(StreamMediaType.APPLICATION_NDJSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(StreamMediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":1,\"name\":\"John Appleseed\",\"createdDateTime\":\"2019-01-01T00:00:00Z\",\"lastModifiedDateTime\":\"2019-01-01T00:00:00Z\"}\n" +
+                        "{\"id\":2,\"name\":\"John Appleseed\",\"createdDateTime\":\"2019-01-01T00:00:00Z\",\"lastModifiedDateTime\":\"2019-01-01T00:00:00Z\"}\n"));
+
+        verify(service).streamContacts();
+        verifyNoMoreInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void exportContacts_shouldWriteJsonArray_whenJsonIsAccepted() {
+
+        when(service.streamContacts()).thenReturn(Stream.of(contactPersisted()));
+
+        mockMvc.perform(get("/contacts")
+                .param("export", "")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$.[0].id").value(1));
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContact_shouldReturnVersionCurrentAtDateTime_whenAsOfIsGiven() {
+
+        Contact contact = contactPersisted();
+        contact.setLastModifiedDateTime(OffsetDateTime.parse("2019-02-01T00:00:00Z"));
+        contact.setVersion(2L);
+        ContactResourceOutput version = mapper.asOutput(contactPersisted());
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contact));
+        when(contactDeltas.asOf(any(Contact.class), any(OffsetDateTime.class))).thenReturn(Optional.of(version));
+
+        mockMvc.perform(get("/contacts/{id}", 1)
+                .param("asOf", "2019-01-15T00:00:00Z")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.lastModifiedDateTime").value("2019-01-01T00:00:00Z"));
+
+        verify(contactDeltas).asOf(contact, OffsetDateTime.parse("2019-01-15T00:00:00Z"));
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContact_shouldReturn404_whenAsOfIsBeforeCreation() {
+
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
+
+        mockMvc.perform(get("/contacts/{id}", 1)
+                .param("asOf", "2018-12-31T00:00:00Z")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+
+        verifyZeroInteractions(contactDeltas);
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContact_shouldReturn410_whenVersionAsOfIsNoLongerRetained() {
+
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
+        when(contactDeltas.asOf(any(Contact.class), any(OffsetDateTime.class))).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/contacts/{id}", 1)
+                .param("asOf", "2019-01-15T00:00:00Z")
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    @SneakyThrows
+    public void findContactHistory_shouldReturnVersionsNewestFirst() {
+
+        Contact contact = contactPersisted();
+        contact.setVersion(2L);
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contact));
+        when(contactDeltas.history(any(Contact.class))).thenReturn(Lists.list(
+                ContactVersionResourceOutput.builder()
+                        .version(2L)
+                        .lastModifiedDateTime(OffsetDateTime.parse("2019-02-01T00:00:00Z"))
+                        .changes(Json.createPatchBuilder().replace("/favorite", true).build().toJsonArray())
+                        .build(),
+                ContactVersionResourceOutput.builder()
+                        .version(1L)
+                        .lastModifiedDateTime(OffsetDateTime.parse("2019-01-01T00:00:00Z"))
+                        .build()));
+
+        mockMvc.perform(get("/contacts/{id}/history", 1)
+                .accept(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$.[0].version").value(2))
+                .andExpect(jsonPath("$.[0].changes[0].path").value("/favorite"))
+                .andExpect(jsonPath("$.[1].version").value(1))
+                .andExpect(jsonPath("$.[1].changes").doesNotExist());
+    }
+
+    @Test
+    @SneakyThrows
+    public void findChanges_shouldReturnJsonPatch_whenJsonPatchIsAccepted() {
+
+        Contact contact = contactPersisted();
+        contact.setVersion(3L);
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contact));
+        when(contactDeltas.diff(any(Contact.class), eq(2L)))
+                .thenReturn(Optional.of(Json.createPatchBuilder().replace("/favorite", true).build()));
+
+        mockMvc.perform(get("/contacts/{id}/changes", 1)
+                .param("since", "2")
+                .accept(PatchMediaType.APPLICATION_JSON_PATCH))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(PatchMediaType.APPLICATION_JSON_PATCH))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$.[0].op").value("replace"))
+                .andExpect(jsonPath("$.[0].path").value("/favorite"))
+                .andExpect(jsonPath("$.[0].value").value(true));
+
+        verify(contactDeltas).diff(contact, 2L);
+        verifyNoMoreInteractions(contactDeltas);
+    }
+
+    @Test
+    @SneakyThrows
+    public void findChanges_shouldReturnJsonMergePatch_whenJsonMergePatchIsAccepted() {
+
+        Contact contact = contactPersisted();
+        contact.setVersion(3L);
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contact));
+        when(contactDeltas.mergeDiff(any(Contact.class), eq(1L)))
+                .thenReturn(Optional.of(Json.createMergePatch(Json.createObjectBuilder()
+                        .add("favorite", true)
+                        .add("notes", JsonValue.NULL)
+                        .build())));
+
+        mockMvc.perform(get("/contacts/{id}/changes", 1)
+                .param("since", "1")
+                .accept(PatchMediaType.APPLICATION_MERGE_PATCH))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(PatchMediaType.APPLICATION_MERGE_PATCH))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("$.*", hasSize(2)))
+                .andExpect(jsonPath("$.favorite").value(true));
+
+        verify(contactDeltas).mergeDiff(contact, 1L);
+        verifyNoMoreInteractions(contactDeltas);
+    }
+
+    @Test
+    @SneakyThrows
+    public void findChanges_shouldReturn410_whenChangesAreNoLongerRetained() {
+
+        Contact contact = contactPersisted();
+        contact.setVersion(3L);
+        when(service.findContact(anyLong())).thenReturn(Optional.of(contact));
+        when(contactDeltas.diff(any(Contact.class), anyLong())).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/contacts/{id}/changes", 1)
+                .param("since", "1")
+                .accept(PatchMediaType.APPLICATION_JSON_PATCH))
+                .andDo(print())
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    @SneakyThrows
+    public void findChanges_shouldReturn400_whenVersionIsAheadOfContact() {
 
         when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
 
+        mockMvc.perform(get("/contacts/{id}/changes", 1)
+                .param("since", "2")
+                .accept(PatchMediaType.APPLICATION_JSON_PATCH))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        verifyZeroInteractions(contactDeltas);
+    }
+
+    @Test
+    @SneakyThrows
+    public void updateContact_shouldReturn204_whenInputIsValidAndContactExists() {
+
+        when(service.updateContact(anyLong(), any())).thenAnswer(invocation ->
+                Optional.of(invocation.<UnaryOperator<Contact>>getArgument(1).apply(contactPersisted())));
+
         mockMvc.perform(put("/contacts/{id}", 1L)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(fromFile("json/contact/put-with-valid-payload.json")))
                 .andDo(print())
                 .andExpect(status().isNoContent());
 
-        verify(mapper).update(any(Contact.class), any(ContactResourceInput.class));
-
         ArgumentCaptor<Contact> contactArgumentCaptor = ArgumentCaptor.forClass(Contact.class);
-        verify(service).findContact(anyLong());
-        verify(service).updateContact(contactArgumentCaptor.capture());
+        verify(mapper).update(contactArgumentCaptor.capture(), any(ContactResourceInput.class));
+
+        verify(service).updateContact(eq(1L), any());
         verifyNoMoreInteractions(service);
 
         verifyZeroInteractions(patchHelper);
@@ -179,11 +798,56 @@ public class ContactControllerTest {
         assertThat(contactArgumentCaptor.getValue()).isEqualToComparingFieldByFieldRecursively(contactToUpdate());
     }
 
+    @Test
+    @SneakyThrows
+    public void updateContact_shouldReturn200WithUpdatedContact_whenRepresentationIsPreferred() {
+
+        when(service.updateContact(anyLong(), any())).thenAnswer(invocation ->
+                Optional.of(invocation.<UnaryOperator<Contact>>getArgument(1).apply(contactPersisted())));
+
+        mockMvc.perform(put("/contacts/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(Preferences.PREFER, "return=representation")
+                .content(fromFile("json/contact/put-with-valid-payload.json")))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(header().string(Preferences.PREFERENCE_APPLIED, "return=representation"))
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.name").value("Johnny Appleseed"));
+
+        verify(service).updateContact(eq(1L), any());
+        verifyNoMoreInteractions(service);
+
+        verify(mapper).asOutput(any(Contact.class));
+    }
+
+    @Test
+    @SneakyThrows
+    public void updateContact_shouldReturn204_whenMinimalResponseIsPreferred() {
+
+        when(service.updateContact(anyLong(), any())).thenAnswer(invocation ->
+                Optional.of(invocation.<UnaryOperator<Contact>>getArgument(1).apply(contactPersisted())));
+
+        mockMvc.perform(put("/contacts/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(Preferences.PREFER, "return=minimal")
+                .content(fromFile("json/contact/put-with-valid-payload.json")))
+                .andDo(print())
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(header().doesNotExist(Preferences.PREFERENCE_APPLIED));
+
+        verify(mapper, never()).asOutput(any(Contact.class));
+    }
+
     @Test
     @SneakyThrows
     public void updateContactUsingJsonPatch_shouldReturn204_whenInputIsValidAndContactExists() {
 
-        when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
+        when(service.updateContact(anyLong(), any())).thenAnswer(invocation ->
+                Optional.of(invocation.<UnaryOperator<Contact>>getArgument(1).apply(contactPersisted())));
 
         mockMvc.perform(patch("/contacts/{id}", 1L)
                 .contentType(PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
@@ -192,24 +856,86 @@ public class ContactControllerTest {
                 .andExpect(status().isNoContent());
 
         verify(mapper).asInput(any(Contact.class));
-        verify(mapper).update(any(Contact.class), any(ContactResourceInput.class));
+        ArgumentCaptor<Contact> contactArgumentCaptor = ArgumentCaptor.forClass(Contact.class);
+        verify(mapper).update(contactArgumentCaptor.capture(), any(ContactResourceInput.class));
 
         verify(patchHelper).patch(any(JsonPatch.class), isA(ContactResourceInput.class), eq(ContactResourceInput.class));
         verifyNoMoreInteractions(patchHelper);
 
-        ArgumentCaptor<Contact> contactArgumentCaptor = ArgumentCaptor.forClass(Contact.class);
-        verify(service).findContact(anyLong());
-        verify(service).updateContact(contactArgumentCaptor.capture());
+        verify(service).updateContact(eq(1L), any());
         verifyNoMoreInteractions(service);
 
         assertThat(contactArgumentCaptor.getValue()).isEqualToComparingFieldByFieldRecursively(contactToUpdate());
     }
 
+    @Test
+    @SneakyThrows
+    public void updateContactUsingJsonPatch_shouldReturnRequestedFields_whenRepresentationIsPreferred() {
+
+        when(service.updateContact(anyLong(), any())).thenAnswer(invocation ->
+                Optional.of(invocation.<UnaryOperator<Contact>>getArgument(1).apply(contactPersisted())));
+
+        mockMvc.perform(patch("/contacts/{id}", 1L)
+                .param("fields", "name")
+                .contentType(PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
+                .accept(MediaType.APPLICATION_JSON)
+                .header(Preferences.PREFER, "handling=strict, return=representation")
+                .content(fromFile("json/contact/patch-with-valid-json-patch-payload.json")))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.*", hasSize(2)))
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.name").value("Johnny Appleseed"));
+
+        verify(service).updateContact(eq(1L), any());
+        verifyNoMoreInteractions(service);
+    }
+
+    @Test
+    @SneakyThrows
+    public void updateContactUsingJsonPatch_shouldReturn412_whenIfMatchIsStale() {
+
+        when(service.updateContact(anyLong(), any())).thenAnswer(invocation ->
+                Optional.of(invocation.<UnaryOperator<Contact>>getArgument(1).apply(contactPersisted())));
+
+        mockMvc.perform(patch("/contacts/{id}", 1L)
+                .contentType(PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .content(fromFile("json/contact/patch-with-valid-json-patch-payload.json")))
+                .andDo(print())
+                .andExpect(status().isPreconditionFailed());
+
+        verifyZeroInteractions(patchHelper);
+    }
+
+    @Test
+    @SneakyThrows
+    public void updateContactUsingJsonPatch_shouldReturn422WithoutLoadingContact_whenPatchDoesNotFitResource() {
+
+        mockMvc.perform(patch("/contacts/{id}", 1L)
+                .contentType(PatchMediaType.APPLICATION_JSON_PATCH_VALUE)
+                .content("[{\"op\": \"replace\", \"path\": \"/name\", \"value\": \"Johnny Appleseed\"}, "
+                        + "{\"op\": \"replace\", \"path\": \"/id\", \"value\": 2}, "
+                        + "{\"op\": \"add\", \"path\": \"/birthday\", \"value\": \"yesterday\"}]"))
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.details", hasSize(2)))
+                .andExpect(jsonPath("$.details[0].operation").value(1))
+                .andExpect(jsonPath("$.details[0].path").value("/id"))
+                .andExpect(jsonPath("$.details[1].operation").value(2))
+                .andExpect(jsonPath("$.details[1].path").value("/birthday"));
+
+        verifyZeroInteractions(service);
+        verifyZeroInteractions(patchHelper);
+    }
+
     @Test
     @SneakyThrows
     public void updateContactUsingJsonMergePatch_shouldReturn204_whenInputIsValidAndContactExists() {
 
-        when(service.findContact(anyLong())).thenReturn(Optional.of(contactPersisted()));
+        when(service.updateContact(anyLong(), any())).thenAnswer(invocation ->
+                Optional.of(invocation.<UnaryOperator<Contact>>getArgument(1).apply(contactPersisted())));
 
         mockMvc.perform(patch("/contacts/{id}", 1L)
                 .contentType(PatchMediaType.APPLICATION_MERGE_PATCH_VALUE)
@@ -218,25 +944,44 @@ public class ContactControllerTest {
                 .andExpect(status().isNoContent());
 
         verify(mapper).asInput(any(Contact.class));
-        verify(mapper).update(any(Contact.class), any(ContactResourceInput.class));
+        ArgumentCaptor<Contact> contactArgumentCaptor = ArgumentCaptor.forClass(Contact.class);
+        verify(mapper).update(contactArgumentCaptor.capture(), any(ContactResourceInput.class));
 
         verify(patchHelper).mergePatch(any(JsonMergePatch.class), isA(ContactResourceInput.class), eq(ContactResourceInput.class));
         verifyNoMoreInteractions(patchHelper);
 
-        ArgumentCaptor<Contact> contactArgumentCaptor = ArgumentCaptor.forClass(Contact.class);
-        verify(service).findContact(anyLong());
-        verify(service).updateContact(contactArgumentCaptor.capture());
+        verify(service).updateContact(eq(1L), any());
         verifyNoMoreInteractions(service);
 
         assertThat(contactArgumentCaptor.getValue()).isEqualToComparingFieldByFieldRecursively(contactToUpdate());
     }
 
+    @Test
+    @SneakyThrows
+    public void updateContactUsingJsonMergePatch_shouldReturn422WithoutLoadingContact_whenPatchDoesNotFitResource() {
+
+        mockMvc.perform(patch("/contacts/{id}", 1L)
+                .contentType(PatchMediaType.APPLICATION_MERGE_PATCH_VALUE)
+                .content("{\"name\": null, \"work\": {\"salary\": 1000}}"))
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.details", hasSize(2)))
+                .andExpect(jsonPath("$.details[0].path").value("/name"))
+                .andExpect(jsonPath("$.details[1].path").value("/work/salary"));
+
+        verifyZeroInteractions(service);
+        verifyZeroInteractions(patchHelper);
+    }
+
     @Test
     @SneakyThrows
     public void deleteContact_shouldReturn204_whenContactExists() {
 
-        Contact contact = mock(Contact.class);
-        when(service.findContact(anyLong())).thenReturn(Optional.of(contact));
+        when(service.deleteContact(anyLong(), any())).thenAnswer(invocation -> {
+            Contact contact = contactPersisted();
+            invocation.<Consumer<Contact>>getArgument(1).accept(contact);
+            return Optional.of(contact);
+        });
 
         mockMvc.perform(delete("/contacts/{id}", 1)
                 .contentType(MediaType.APPLICATION_JSON))
@@ -247,11 +992,26 @@ public class ContactControllerTest {
 
         verifyZeroInteractions(patchHelper);
 
-        verify(service).findContact(anyLong());
-        verify(service).deleteContact(any(Contact.class));
+        verify(service).deleteContact(eq(1L), any());
         verifyNoMoreInteractions(service);
     }
 
+    @Test
+    @SneakyThrows
+    public void deleteContact_shouldReturn412_whenIfMatchIsStale() {
+
+        when(service.deleteContact(anyLong(), any())).thenAnswer(invocation -> {
+            Contact contact = contactPersisted();
+            invocation.<Consumer<Contact>>getArgument(1).accept(contact);
+            return Optional.of(contact);
+        });
+
+        mockMvc.perform(delete("/contacts/{id}", 1)
+                .header(HttpHeaders.IF_MATCH, "\"2\""))
+                .andDo(print())
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @SneakyThrows
     private byte[] fromFile(String path) {
         return new ClassPathResource(path).getInputStream().readAllBytes();
@@ -271,6 +1031,7 @@ public class ContactControllerTest {
                 .name("John Appleseed")
                 .createdDateTime(OffsetDateTime.parse("2019-01-01T00:00:00Z"))
                 .lastModifiedDateTime(OffsetDateTime.parse("2019-01-01T00:00:00Z"))
+                .version(1L)
                 .build();
     }
 
@@ -281,6 +1042,7 @@ public class ContactControllerTest {
                 .name("Johnny Appleseed")
                 .createdDateTime(OffsetDateTime.parse("2019-01-01T00:00:00Z"))
                 .lastModifiedDateTime(OffsetDateTime.parse("2019-01-01T00:00:00Z"))
+                .version(1L)
                 .build();
     }
 }
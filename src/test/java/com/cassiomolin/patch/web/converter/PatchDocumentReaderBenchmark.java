@@ -0,0 +1,66 @@
+package com.cassiomolin.patch.web.converter;
+
+import com.cassiomolin.patch.config.JsonProcessingConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonReader;
+import javax.json.spi.JsonProvider;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a JSON Patch document with the {@link PatchDocumentReader} against the former converter, which
+ * called {@link Json#createReader(java.io.InputStream)} and thus looked the JSON provider up on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatchDocumentReaderBenchmark {
+
+    private static final byte[] PATCH = ("["
+            + "{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"John W. Appleseed\"},"
+            + "{\"op\":\"replace\",\"path\":\"/work/title\",\"value\":\"Senior Engineer\"},"
+            + "{\"op\":\"add\",\"path\":\"/groups/-\",\"value\":\"Friends\"},"
+            + "{\"op\":\"replace\",\"path\":\"/favorite\",\"value\":true},"
+            + "{\"op\":\"remove\",\"path\":\"/notes\"}"
+            + "]").getBytes(StandardCharsets.UTF_8);
+
+    private PatchDocumentReader reader;
+
+    @Setup
+    public void setup() {
+        JsonProcessingConfig config = new JsonProcessingConfig();
+        JsonProvider provider = config.jsonProvider();
+        reader = new PatchDocumentReader(config.jsonParserFactory(provider), config.jsonBuilderFactory(provider),
+                1048576, 1000, 32);
+    }
+
+    @Benchmark
+    public JsonArray streaming() throws IOException {
+        return reader.readPatch(new MockHttpInputMessage(PATCH));
+    }
+
+    @Benchmark
+    public JsonArray staticReader() {
+        try (JsonReader jsonReader = Json.createReader(new ByteArrayInputStream(PATCH))) {
+            return jsonReader.readArray();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PatchDocumentReaderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
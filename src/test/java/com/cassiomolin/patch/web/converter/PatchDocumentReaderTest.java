@@ -0,0 +1,98 @@
+package com.cassiomolin.patch.web.converter;
+
+import com.cassiomolin.patch.config.JsonProcessingConfig;
+import com.cassiomolin.patch.web.exception.PayloadTooLargeException;
+import org.junit.Test;
+import org.springframework.mock.http.MockHttpInputMessage;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.spi.JsonProvider;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PatchDocumentReaderTest {
+
+    private final PatchDocumentReader reader = reader(100, 2, 4);
+
+    @Test
+    public void readPatch_shouldReadOperations() throws Exception {
+        assertThat(reader.readPatch(message("[{\"op\":\"add\",\"path\":\"/groups/-\",\"value\":[\"Friends\"]}]")))
+                .isEqualTo(Json.createArrayBuilder()
+                        .add(Json.createObjectBuilder()
+                                .add("op", "add")
+                                .add("path", "/groups/-")
+                                .add("value", Json.createArrayBuilder().add("Friends")))
+                        .build());
+    }
+
+    @Test
+    public void readPatch_shouldFail_whenDocumentIsNotArray() {
+        assertThatThrownBy(() -> reader.readPatch(message("{}")))
+                .isInstanceOf(JsonException.class);
+    }
+
+    @Test
+    public void readPatch_shouldFail_whenDocumentHasTooManyOperations() {
+        assertThatThrownBy(() -> reader.readPatch(message("[{},{},{}]")))
+                .isInstanceOf(PayloadTooLargeException.class);
+    }
+
+    @Test
+    public void readPatch_shouldFail_whenDocumentIsTooDeep() {
+        assertThatThrownBy(() -> reader.readPatch(message("[{\"value\":[[[1]]]}]")))
+                .isInstanceOf(JsonException.class)
+                .hasMessageContaining("depth");
+    }
+
+    @Test
+    public void readPatch_shouldFail_whenBodyIsTooLarge() {
+        String body = "[{\"op\":\"replace\",\"path\":\"/notes\",\"value\":\"" + new String(new char[100]).replace('\0', 'x')
+                + "\"}]";
+        assertThatThrownBy(() -> reader.readPatch(message(body)))
+                .isInstanceOf(PayloadTooLargeException.class);
+    }
+
+    @Test
+    public void readPatch_shouldFail_whenContentLengthIsTooLarge() {
+        MockHttpInputMessage message = message("[]");
+        message.getHeaders().setContentLength(101);
+        assertThatThrownBy(() -> reader.readPatch(message))
+                .isInstanceOf(PayloadTooLargeException.class);
+    }
+
+    @Test
+    public void readPatch_shouldFail_whenDocumentIsFollowedByContent() {
+        assertThatThrownBy(() -> reader.readPatch(message("[] []")))
+                .isInstanceOf(JsonException.class);
+    }
+
+    @Test
+    public void readMergePatch_shouldReadDocument() throws Exception {
+        assertThat(reader.readMergePatch(message("{\"notes\":null,\"work\":{\"title\":\"Engineer\"}}")))
+                .isEqualTo(Json.createObjectBuilder()
+                        .addNull("notes")
+                        .add("work", Json.createObjectBuilder().add("title", "Engineer"))
+                        .build());
+    }
+
+    @Test
+    public void readMergePatch_shouldFail_whenDocumentIsTooDeep() {
+        assertThatThrownBy(() -> reader.readMergePatch(message("{\"a\":{\"b\":{\"c\":{\"d\":{}}}}}")))
+                .isInstanceOf(JsonException.class)
+                .hasMessageContaining("depth");
+    }
+
+    private static PatchDocumentReader reader(long maxBodySize, int maxOperations, int maxDepth) {
+        JsonProcessingConfig config = new JsonProcessingConfig();
+        JsonProvider provider = config.jsonProvider();
+        return new PatchDocumentReader(config.jsonParserFactory(provider), config.jsonBuilderFactory(provider),
+                maxBodySize, maxOperations, maxDepth);
+    }
+
+    private static MockHttpInputMessage message(String body) {
+        return new MockHttpInputMessage(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,108 @@
+package com.cassiomolin.patch.web.patch;
+
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.input.PhoneResourceInput;
+import com.cassiomolin.patch.web.resource.input.WorkResourceInput;
+import org.assertj.core.util.Lists;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PatchAppliersTest {
+
+    private final PatchApplier<ContactResourceInput> applier = PatchAppliers.find(ContactResourceInput.class).get();
+
+    @Test
+    public void find_shouldReturnEmpty_whenClassIsNotPatchable() {
+        assertThat(PatchAppliers.find(Contact.class)).isEmpty();
+    }
+
+    @Test
+    public void patch_shouldPatchCopyOfBean() {
+
+        ContactResourceInput source = source();
+
+        ContactResourceInput result = applier.patch(Json.createPatchBuilder()
+                .replace("/name", "John W. Appleseed")
+                .replace("/work/title", "Senior Engineer")
+                .replace("/phones/0/phone", "1111111111")
+                .add("/phones/0/type", "work")
+                .add("/phones/1", JsonObject.EMPTY_JSON_OBJECT)
+                .add("/phones/1/phone", "2222222222")
+                .add("/groups/-", "Friends")
+                .remove("/notes")
+                .replace("/favorite", JsonValue.TRUE)
+                .test("/birthday", "1990-01-01")
+                .build().toJsonArray(), source);
+
+        assertThat(result).isEqualTo(ContactResourceInput.builder()
+                .name("John W. Appleseed")
+                .birthday(LocalDate.parse("1990-01-01"))
+                .work(WorkResourceInput.builder().company("Acme").title("Senior Engineer").build())
+                .phones(Lists.newArrayList(
+                        PhoneResourceInput.builder().phone("1111111111").type("work").build(),
+                        PhoneResourceInput.builder().phone("2222222222").build()))
+                .groups(Lists.newArrayList("Friends"))
+                .favorite(true)
+                .build());
+
+        assertThat(source).isEqualTo(source());
+    }
+
+    @Test
+    public void patch_shouldReturnNull_whenOperationIsNotSupported() {
+
+        assertThat(applier.patch(Json.createPatchBuilder()
+                .move("/notes", "/name")
+                .build().toJsonArray(), source())).isNull();
+
+        assertThat(applier.patch(Json.createPatchBuilder()
+                .add("/favorite", "yes")
+                .build().toJsonArray(), source())).isNull();
+
+        assertThat(applier.patch(Json.createPatchBuilder()
+                .replace("/emails/0/email", "john@example.com")
+                .build().toJsonArray(), source())).isNull();
+    }
+
+    @Test
+    public void mergePatch_shouldMergeIntoCopyOfBean() {
+
+        ContactResourceInput source = source();
+
+        ContactResourceInput result = applier.mergePatch(Json.createObjectBuilder()
+                .add("work", Json.createObjectBuilder().add("title", JsonValue.NULL))
+                .add("phones", Json.createArrayBuilder().add(Json.createObjectBuilder().add("phone", "1111111111")))
+                .add("notes", JsonValue.NULL)
+                .build(), source);
+
+        assertThat(result).isEqualTo(ContactResourceInput.builder()
+                .name("John Appleseed")
+                .birthday(LocalDate.parse("1990-01-01"))
+                .work(WorkResourceInput.builder().company("Acme").build())
+                .phones(Lists.newArrayList(PhoneResourceInput.builder().phone("1111111111").build()))
+                .groups(Lists.newArrayList())
+                .favorite(false)
+                .build());
+
+        assertThat(source).isEqualTo(source());
+    }
+
+    private ContactResourceInput source() {
+        return ContactResourceInput.builder()
+                .name("John Appleseed")
+                .birthday(LocalDate.parse("1990-01-01"))
+                .work(WorkResourceInput.builder().company("Acme").title("Engineer").build())
+                .phones(Lists.newArrayList(PhoneResourceInput.builder().phone("0000000000").build()))
+                .groups(Lists.newArrayList())
+                .notes("Cool guy!")
+                .favorite(false)
+                .build();
+    }
+}
@@ -0,0 +1,87 @@
+package com.cassiomolin.patch.web.patch;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.input.WorkResourceInput;
+import com.cassiomolin.patch.web.util.PatchHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonReader;
+import javax.validation.Validation;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading and applying a typical JSON Patch document, as the message converter and the controller do, with
+ * and without the {@link PatchPlanCache}.
+ * <p>
+ * The {@code uncached} benchmark reproduces the former converter, which built a new JSR-353 patch for every request,
+ * leaving the pointers to be parsed again when the patch is applied.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatchPlanCacheBenchmark {
+
+    private static final String PATCH = "["
+            + "{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"John W. Appleseed\"},"
+            + "{\"op\":\"replace\",\"path\":\"/work/title\",\"value\":\"Senior Engineer\"},"
+            + "{\"op\":\"add\",\"path\":\"/groups/-\",\"value\":\"Friends\"},"
+            + "{\"op\":\"replace\",\"path\":\"/favorite\",\"value\":true},"
+            + "{\"op\":\"remove\",\"path\":\"/notes\"}"
+            + "]";
+
+    private PatchPlanCache cache;
+
+    private PatchHelper patchHelper;
+
+    private ContactResourceInput contact;
+
+    @Setup
+    public void setup() {
+        cache = new PatchPlanCache(262144);
+        cache.admit(cache.compile(read()));
+        patchHelper = new PatchHelper(new JacksonConfig().objectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator());
+        contact = ContactResourceInput.builder()
+                .name("John Appleseed")
+                .birthday(LocalDate.parse("1990-01-01"))
+                .work(WorkResourceInput.builder().company("Acme").title("Engineer").build())
+                .notes("Cool guy!")
+                .favorite(false)
+                .build();
+    }
+
+    @Benchmark
+    public ContactResourceInput cached() {
+        return patchHelper.patch(cache.compile(read()), contact, ContactResourceInput.class);
+    }
+
+    @Benchmark
+    public ContactResourceInput uncached() {
+        return patchHelper.patch(Json.createPatch(read()), contact, ContactResourceInput.class);
+    }
+
+    private static JsonArray read() {
+        try (JsonReader reader = Json.createReader(new StringReader(PATCH))) {
+            return reader.readArray();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PatchPlanCacheBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
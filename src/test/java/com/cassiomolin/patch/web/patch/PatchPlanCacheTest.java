@@ -0,0 +1,162 @@
+package com.cassiomolin.patch.web.patch;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.web.exception.InvalidPatchException;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.validation.Validation;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PatchPlanCacheTest {
+
+    private final PatchPlanCache cache = new PatchPlanCache(100);
+
+    @Test
+    public void compile_shouldReusePlan_whenOnlyValuesDiffer() {
+
+        PlannedJsonPatch first = cache.compile(Json.createPatchBuilder()
+                .replace("/name", "John")
+                .build().toJsonArray());
+        cache.admit(first);
+        PlannedJsonPatch second = cache.compile(Json.createPatchBuilder()
+                .replace("/name", "Jane")
+                .build().toJsonArray());
+
+        assertThat(second.getPlan()).isSameAs(first.getPlan());
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+
+        PatchApplier<ContactResourceInput> applier = PatchAppliers.find(ContactResourceInput.class).get();
+        assertThat(second.apply(applier, ContactResourceInput.builder().name("John").build()))
+                .isEqualTo(ContactResourceInput.builder().name("Jane").build());
+    }
+
+    @Test
+    public void compile_shouldCompileNewPlan_whenPathsDiffer() {
+
+        PlannedJsonPatch first = cache.compile(Json.createPatchBuilder()
+                .replace("/name", "John")
+                .build().toJsonArray());
+        cache.admit(first);
+        PlannedJsonPatch second = cache.compile(Json.createPatchBuilder()
+                .replace("/notes", "John")
+                .build().toJsonArray());
+
+        assertThat(second.getPlan()).isNotSameAs(first.getPlan());
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void compile_shouldCompileNewPlan_whenMembersWouldRunIntoEachOther() {
+
+        PlannedJsonPatch first = cache.compile(Json.createArrayBuilder()
+                .add(Json.createObjectBuilder().add("op", "add").add("path", "/a\u0000").add("value", 1))
+                .build());
+        cache.admit(first);
+        PlannedJsonPatch second = cache.compile(Json.createArrayBuilder()
+                .add(Json.createObjectBuilder().add("op", "add").add("path", "/a").add("from", "").add("value", 1))
+                .build());
+        cache.admit(second);
+        PlannedJsonPatch third = cache.compile(Json.createArrayBuilder()
+                .add(Json.createObjectBuilder().add("op", "add").add("path", "/a").add("value", 1))
+                .build());
+
+        assertThat(second.getPlan()).isNotSameAs(first.getPlan());
+        assertThat(third.getPlan()).isNotSameAs(first.getPlan()).isNotSameAs(second.getPlan());
+        assertThat(cache.getMissCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void admit_shouldEvictPlans_whenMaximumWeightIsReached() {
+
+        cache.admit(cache.compile(Json.createPatchBuilder().remove("/name").build().toJsonArray()));
+        cache.admit(cache.compile(Json.createPatchBuilder()
+                .remove("/" + String.join("", Collections.nCopies(100, "a")))
+                .build().toJsonArray()));
+
+        assertThat(cache.getSize()).isEqualTo(1);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void compile_shouldNotCachePlan_untilDocumentIsAdmitted() {
+
+        JsonArray operations = Json.createPatchBuilder().remove("/name").build().toJsonArray();
+
+        PlannedJsonPatch first = cache.compile(operations);
+        PlannedJsonPatch second = cache.compile(operations);
+
+        assertThat(second.getPlan()).isNotSameAs(first.getPlan());
+        assertThat(cache.getSize()).isZero();
+
+        cache.admit(second);
+        cache.admit(first);
+
+        assertThat(cache.compile(operations).getPlan()).isSameAs(second.getPlan());
+        assertThat(cache.getSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void check_shouldOnlyAdmitDocument_whenDocumentFitsSchema() {
+
+        PatchSchemas schemas = new PatchSchemas(new JacksonConfig().objectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), cache);
+
+        PlannedJsonPatch unknown = cache.compile(Json.createPatchBuilder().remove("/unknown").build().toJsonArray());
+        assertThatThrownBy(() -> schemas.check(unknown, ContactResourceInput.class))
+                .isInstanceOf(InvalidPatchException.class);
+
+        assertThat(cache.getSize()).isZero();
+
+        schemas.check(cache.compile(Json.createPatchBuilder().remove("/notes").build().toJsonArray()),
+                ContactResourceInput.class);
+
+        assertThat(cache.getSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void compile_shouldNotCachePlan_whenDocumentHasTooManyOperations() {
+
+        JsonArray operations = Json.createArrayBuilder()
+                .add(Json.createObjectBuilder().add("op", "remove").add("path", "/phones/0"))
+                .build();
+        for (int i = 0; i < PatchPlanCache.MAXIMUM_CACHEABLE_OPERATIONS; i++) {
+            operations = Json.createArrayBuilder(operations).add(operations.get(0)).build();
+        }
+
+        cache.admit(cache.compile(operations));
+
+        assertThat(cache.getSize()).isZero();
+    }
+
+    @Test
+    public void compile_shouldNotCachePlan_whenDocumentIsInvalid() {
+
+        JsonArray operations = Json.createArrayBuilder()
+                .add(Json.createObjectBuilder().add("op", "replace").add("path", "/name"))
+                .build();
+
+        assertThatThrownBy(() -> cache.compile(operations)).isInstanceOf(JsonException.class);
+        assertThat(cache.getSize()).isZero();
+    }
+
+    @Test
+    public void compile_shouldDistinguishOperationsWithAndWithoutValue() {
+
+        JsonObject remove = Json.createObjectBuilder().add("op", "remove").add("path", "/name").build();
+        JsonObject removeWithValue = Json.createObjectBuilder(remove).add("value", "John").build();
+
+        cache.admit(cache.compile(Json.createArrayBuilder().add(remove).build()));
+        cache.admit(cache.compile(Json.createArrayBuilder().add(removeWithValue).build()));
+
+        assertThat(cache.getSize()).isEqualTo(2);
+    }
+}
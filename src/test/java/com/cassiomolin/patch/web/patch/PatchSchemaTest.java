@@ -0,0 +1,155 @@
+package com.cassiomolin.patch.web.patch;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonValue;
+import javax.validation.Valid;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.constraints.NotBlank;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PatchSchemaTest {
+
+    private final ObjectMapper mapper = new JacksonConfig().objectMapper();
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final PatchSchema schema = PatchSchema.compile(ContactResourceInput.class, mapper, validator);
+
+    @Test
+    public void checkPatch_shouldAcceptPatch_whenPatchFitsResource() {
+
+        JsonArray patch = Json.createPatchBuilder()
+                .replace("/name", "John W. Appleseed")
+                .replace("/birthday", "1990-01-01")
+                .replace("/work/title", "Senior Engineer")
+                .replace("/phones/0/phone", "1111111111")
+                .add("/phones/-", Json.createObjectBuilder().add("phone", "2222222222").build())
+                .add("/groups/0", "Family")
+                .copy("/emails/1", "/emails/0")
+                .remove("/notes")
+                .replace("/favorite", JsonValue.TRUE)
+                .test("/favorite", JsonValue.TRUE)
+                .build()
+                .toJsonArray();
+
+        assertThat(schema.checkPatch(PlannedJsonPatch.of(patch))).isEmpty();
+    }
+
+    @Test
+    public void checkPatch_shouldReportOperationAndPath_whenPathDoesNotExist() {
+
+        JsonArray patch = Json.createPatchBuilder()
+                .replace("/id", 2)
+                .add("/work/salary", 1000)
+                .remove("/phones/first/phone")
+                .move("/notes", "/name/first")
+                .build()
+                .toJsonArray();
+
+        assertThat(schema.checkPatch(PlannedJsonPatch.of(patch))).containsExactly(
+                new PatchViolation(0, "/id", "does not exist"),
+                new PatchViolation(1, "/work/salary", "does not exist"),
+                new PatchViolation(2, "/phones/first", "is not a valid array index"),
+                new PatchViolation(3, "/name/first", "does not exist"));
+    }
+
+    @Test
+    public void checkPatch_shouldReportOperationAndPath_whenValueDoesNotFit() {
+
+        JsonArray patch = Json.createPatchBuilder()
+                .replace("/birthday", "yesterday")
+                .add("/phones/-", "2222222222")
+                .replace("/work", Json.createObjectBuilder().add("title", Json.createArrayBuilder()).build())
+                .replace("/favorite", "maybe")
+                .copy("/work", "/phones")
+                .build()
+                .toJsonArray();
+
+        assertThat(schema.checkPatch(PlannedJsonPatch.of(patch))).containsExactly(
+                new PatchViolation(0, "/birthday", "is not a valid LocalDate"),
+                new PatchViolation(1, "/phones/-", "must be an object"),
+                new PatchViolation(2, "/work/title", "is not a valid String"),
+                new PatchViolation(3, "/favorite", "is not a valid Boolean"),
+                new PatchViolation(4, "/work", "cannot hold the value of /phones"));
+    }
+
+    @Test
+    public void checkPatch_shouldReportConstraintViolations_whenLastWriteBreaksThem() {
+
+        JsonArray removed = Json.createPatchBuilder().remove("/name").build().toJsonArray();
+        JsonArray blank = Json.createPatchBuilder().add("/name", " ").build().toJsonArray();
+        JsonArray replaced = Json.createPatchBuilder().remove("/name").add("/name", "John").build().toJsonArray();
+
+        assertThat(schema.checkPatch(PlannedJsonPatch.of(removed)))
+                .containsExactly(new PatchViolation(0, "/name", "must not be blank"));
+        assertThat(schema.checkPatch(PlannedJsonPatch.of(blank)))
+                .containsExactly(new PatchViolation(0, "/name", "must not be blank"));
+        assertThat(schema.checkPatch(PlannedJsonPatch.of(replaced))).isEmpty();
+    }
+
+    @Test
+    public void checkPatch_shouldReportConstraintViolationsOfCascadedBeans() {
+
+        PatchSchema personSchema = PatchSchema.compile(Person.class, mapper, validator);
+
+        JsonArray patch = Json.createPatchBuilder()
+                .add("/labels/-", Json.createObjectBuilder().build())
+                .replace("/labels/0/text", "")
+                .replace("/main/text", "")
+                .build()
+                .toJsonArray();
+
+        assertThat(personSchema.checkPatch(PlannedJsonPatch.of(patch))).containsExactly(
+                new PatchViolation(0, "/labels/-/text", "must not be blank"),
+                new PatchViolation(1, "/labels/0/text", "must not be blank"));
+    }
+
+    @Test
+    public void checkMergePatch_shouldReportPaths_whenDocumentDoesNotFit() {
+
+        JsonValue mergePatch = Json.createObjectBuilder()
+                .add("id", 2)
+                .add("name", JsonValue.NULL)
+                .add("work", Json.createObjectBuilder().add("salary", 1000).add("title", "Engineer"))
+                .add("phones", Json.createArrayBuilder().add(Json.createObjectBuilder().add("phone", "1111111111")))
+                .add("birthday", "yesterday")
+                .build();
+
+        assertThat(schema.checkMergePatch(mergePatch)).containsExactly(
+                new PatchViolation(null, "/id", "does not exist"),
+                new PatchViolation(null, "/name", "must not be blank"),
+                new PatchViolation(null, "/work/salary", "does not exist"),
+                new PatchViolation(null, "/birthday", "is not a valid LocalDate"));
+        assertThat(schema.checkMergePatch(Json.createArrayBuilder().build()))
+                .containsExactly(new PatchViolation(null, "", "must be an object"));
+    }
+
+    @Data
+    public static class Person {
+
+        @NotBlank
+        private String name;
+
+        @Valid
+        private List<Label> labels;
+
+        private Label main;
+    }
+
+    @Data
+    public static class Label {
+
+        @NotBlank
+        private String text;
+    }
+}
@@ -0,0 +1,178 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.domain.Contact;
+import com.cassiomolin.patch.domain.Work;
+import com.cassiomolin.patch.service.impl.DefaultContactService;
+import com.cassiomolin.patch.web.mapper.ContactMapper;
+import com.cassiomolin.patch.web.mapper.ContactMapperImpl;
+import com.cassiomolin.patch.web.resource.output.ContactVersionResourceOutput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import javax.json.spi.JsonProvider;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContactDeltasTest {
+
+    private final DefaultContactService service = new DefaultContactService();
+
+    private final ContactMapper contactMapper = new ContactMapperImpl();
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+
+    private final JsonProvider provider = JsonProvider.provider();
+
+    private final ContactDeltas deltas = new ContactDeltas(service, contactMapper, objectMapper, provider, 8, 3,
+            Long.MAX_VALUE);
+
+    @Before
+    public void setUp() {
+        deltas.start();
+    }
+
+    @Test
+    public void diff_shouldReturnOnlyChangedProperties_whenVersionIsRetained() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").favorite(false).build());
+        Contact updated = update(contact.getId(), current -> current.setFavorite(true));
+
+        JsonObject operation = deltas.diff(updated, 1).get().toJsonArray().stream()
+                .map(JsonValue::asJsonObject)
+                .filter(op -> op.getString("path").equals("/favorite"))
+                .findFirst().get();
+
+        assertThat(operation.getString("op")).isEqualTo("replace");
+        assertThat(operation.get("value")).isEqualTo(JsonValue.TRUE);
+        assertThat(deltas.diff(updated, 1).get().toJsonArray().stream()
+                .map(op -> op.asJsonObject().getString("path")))
+                .isSubsetOf("/favorite", "/lastModifiedDateTime");
+    }
+
+    @Test
+    public void diff_shouldCombineUpdates_whenSeveralVersionsHavePassed() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed")
+                .work(Work.builder().company("Acme").title("Engineer").build()).build());
+        update(contact.getId(), current -> current.setNotes("Cool guy!"));
+        update(contact.getId(), current -> current.getWork().setTitle("Senior Engineer"));
+        Contact updated = update(contact.getId(), current -> current.setNotes(null));
+
+        assertThat(deltas.diff(updated, 1).get().apply(json(contact))).isEqualTo(json(updated));
+        assertThat(deltas.mergeDiff(updated, 1).get().apply(json(contact))).isEqualTo(json(updated));
+
+        JsonObject mergePatch = deltas.mergeDiff(updated, 1).get().toJsonValue().asJsonObject();
+        assertThat(mergePatch.keySet()).contains("work").isSubsetOf("work", "lastModifiedDateTime");
+        assertThat(mergePatch.getJsonObject("work").keySet()).containsExactly("title");
+    }
+
+    @Test
+    public void diff_shouldReturnEmptyDocument_whenVersionIsCurrent() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").build());
+
+        assertThat(deltas.diff(contact, 1).get().toJsonArray()).isEmpty();
+        assertThat(deltas.mergeDiff(contact, 1).get().toJsonValue().asJsonObject()).isEmpty();
+    }
+
+    @Test
+    public void diff_shouldReturnEmpty_whenVersionIsNoLongerRetained() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").build());
+        Contact updated = contact;
+        for (int i = 0; i < 9; i++) {
+            String notes = "Note " + i;
+            updated = update(contact.getId(), current -> current.setNotes(notes));
+        }
+
+        assertThat(deltas.diff(updated, 1)).isEmpty();
+        assertThat(deltas.diff(updated, 2)).isPresent();
+
+        service.restoreContacts(Collections.singletonList(updated), updated.getId());
+
+        assertThat(deltas.diff(updated, 2)).isEmpty();
+    }
+
+    @Test
+    public void diff_shouldReturnEmpty_whenDeltasAreEvictedByNewerUpdates() {
+
+        ContactDeltas evicting = new ContactDeltas(service, contactMapper, objectMapper, provider, 8, 3, 4096);
+        evicting.start();
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").favorite(false).build());
+        Contact updated = update(contact.getId(), current -> current.setFavorite(true));
+        Contact other = service.createContact(Contact.builder().name("Jane Appleseed").favorite(false).build());
+        for (int i = 0; i < 100; i++) {
+            boolean favorite = i % 2 == 0;
+            other = update(other.getId(), current -> current.setFavorite(favorite));
+        }
+
+        assertThat(evicting.diff(updated, 1)).isEmpty();
+        assertThat(evicting.diff(other, other.getVersion() - 1)).isPresent();
+    }
+
+    @Test
+    public void asOf_shouldRebuildVersionCurrentAtDateTime() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").build());
+        List<Contact> versions = new ArrayList<>(Collections.singletonList(contact));
+        for (int i = 0; i < 7; i++) {
+            int version = i;
+            versions.add(update(contact.getId(), current -> {
+                current.setNotes(version % 3 == 0 ? null : "Note " + version);
+                current.setFavorite(version % 2 == 0);
+                current.setWork(Work.builder().company("Acme").title("Engineer " + version / 2).build());
+            }));
+        }
+        Contact current = versions.get(versions.size() - 1);
+
+        for (Contact version : versions) {
+            Contact expected = versions.stream()
+                    .filter(other -> other.getLastModifiedDateTime().equals(version.getLastModifiedDateTime()))
+                    .reduce((first, second) -> second).get();
+            assertThat(deltas.asOf(current, version.getLastModifiedDateTime()))
+                    .contains(contactMapper.asOutput(expected));
+        }
+    }
+
+    @Test
+    public void history_shouldListVersionsNewestFirstWithTheirChanges() {
+
+        Contact contact = service.createContact(Contact.builder().name("John Appleseed").favorite(false).build());
+        update(contact.getId(), current -> current.setNotes("Cool guy!"));
+        Contact updated = update(contact.getId(), current -> current.setFavorite(true));
+
+        List<ContactVersionResourceOutput> history = deltas.history(updated);
+
+        assertThat(history.stream().map(ContactVersionResourceOutput::getVersion)).containsExactly(3L, 2L, 1L);
+        assertThat(history.get(0).getChanges().stream()
+                .map(op -> op.asJsonObject().getString("path")))
+                .contains("/favorite")
+                .isSubsetOf("/favorite", "/lastModifiedDateTime");
+        assertThat(history.get(1).getChanges().stream()
+                .map(op -> op.asJsonObject().getString("op") + " " + op.asJsonObject().getString("path")))
+                .contains("add /notes");
+        assertThat(history.get(2).getChanges()).isNull();
+        assertThat(history.get(2).getLastModifiedDateTime()).isEqualTo(contact.getLastModifiedDateTime());
+    }
+
+    private Contact update(Long id, Consumer<Contact> change) {
+        return service.updateContact(id, current -> {
+            change.accept(current);
+            return current;
+        }).get();
+    }
+
+    private JsonObject json(Contact contact) {
+        String json = objectMapper.valueToTree(contactMapper.asOutput(contact)).toString();
+        return provider.createReader(new StringReader(json)).readObject();
+    }
+}
@@ -0,0 +1,76 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.service.impl.DefaultContactService;
+import com.cassiomolin.patch.web.mapper.ContactMapperImpl;
+import com.cassiomolin.patch.web.resource.output.ContactImportResourceOutput;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to import {@code size} contacts from newline delimited JSON into an empty store.
+ * <p>
+ * The import rate in contacts per second is {@code size} divided by the reported time per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class ContactImporterBenchmark {
+
+    @Param({"100000"})
+    private int size;
+
+    private byte[] body;
+
+    private ContactImporter importer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            builder.append("{\"name\":\"Contact ").append(i).append("\",")
+                    .append("\"birthday\":\"1990-01-01\",")
+                    .append("\"work\":{\"company\":\"Acme\",\"title\":\"Engineer\"},")
+                    .append("\"phones\":[{\"phone\":\"").append(String.format("%010d", i)).append("\",\"type\":\"mobile\"}],")
+                    .append("\"emails\":[{\"email\":\"contact").append(i).append("@example.com\",\"type\":\"home\"}],")
+                    .append("\"groups\":[\"Friends\"],")
+                    .append("\"favorite\":false,")
+                    .append("\"notes\":\"Imported\"}\n");
+        }
+        body = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Setup(Level.Invocation)
+    public void createImporter() {
+        importer = new ContactImporter(new DefaultContactService(), new ContactMapperImpl(),
+                Validation.buildDefaultValidatorFactory().getValidator(), new JacksonConfig().objectMapper(), 1000, 0,
+                65536, 100);
+    }
+
+    @TearDown(Level.Invocation)
+    public void shutdownImporter() {
+        importer.shutdown();
+    }
+
+    @Benchmark
+    public ContactImportResourceOutput importContacts() throws IOException {
+        return importer.importContacts(new ByteArrayInputStream(body));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ContactImporterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
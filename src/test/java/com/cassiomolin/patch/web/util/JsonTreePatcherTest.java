@@ -0,0 +1,98 @@
+package com.cassiomolin.patch.web.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.SneakyThrows;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonValue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JsonTreePatcherTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void applyPatch_shouldModifyDocumentInPlace() {
+
+        JsonNode target = json("{\"name\":\"John\",\"phones\":[{\"phone\":\"0\"}],\"notes\":\"Cool guy!\"}");
+
+        JsonNode result = JsonTreePatcher.applyPatch(Json.createPatchBuilder()
+                .replace("/name", "Johnny")
+                .add("/phones/-", Json.createObjectBuilder().add("phone", "1").build())
+                .add("/phones/0/type", "work")
+                .copy("/phones/2", "/phones/0")
+                .move("/comments", "/notes")
+                .test("/phones/1/phone", "1")
+                .build().toJsonArray(), target);
+
+        assertThat(result).isSameAs(target);
+        assertThat(result).isEqualTo(json("{\"name\":\"Johnny\"," +
+                "\"phones\":[{\"phone\":\"0\",\"type\":\"work\"},{\"phone\":\"1\"},{\"phone\":\"0\",\"type\":\"work\"}]," +
+                "\"comments\":\"Cool guy!\"}"));
+    }
+
+    @Test
+    public void applyPatch_shouldReplaceWholeDocument_whenPathIsEmpty() {
+
+        JsonNode result = JsonTreePatcher.applyPatch(Json.createPatchBuilder()
+                .replace("", Json.createObjectBuilder().add("a~b/c", 1).build())
+                .remove("/a~0b~1c")
+                .build().toJsonArray(), json("{\"name\":\"John\"}"));
+
+        assertThat(result).isEqualTo(json("{}"));
+    }
+
+    @Test
+    public void applyPatch_shouldFail_whenPathDoesNotExist() {
+
+        assertThatThrownBy(() -> JsonTreePatcher.applyPatch(Json.createPatchBuilder()
+                .replace("/favorite", JsonValue.TRUE)
+                .build().toJsonArray(), json("{\"name\":\"John\"}")))
+                .isInstanceOf(JsonException.class);
+    }
+
+    @Test
+    public void applyPatch_shouldFail_whenArrayIndexIsOutOfBounds() {
+
+        assertThatThrownBy(() -> JsonTreePatcher.applyPatch(Json.createPatchBuilder()
+                .add("/phones/2", "0")
+                .build().toJsonArray(), json("{\"phones\":[]}")))
+                .isInstanceOf(JsonException.class);
+    }
+
+    @Test
+    public void applyPatch_shouldFail_whenTestDoesNotMatch() {
+
+        assertThatThrownBy(() -> JsonTreePatcher.applyPatch(Json.createPatchBuilder()
+                .test("/name", "Johnny")
+                .build().toJsonArray(), json("{\"name\":\"John\"}")))
+                .isInstanceOf(JsonException.class);
+    }
+
+    @Test
+    public void applyMergePatch_shouldMergeDocumentInPlace() {
+
+        JsonNode target = json("{\"name\":\"John\",\"work\":{\"title\":\"Engineer\",\"company\":\"Acme\"},\"notes\":\"Cool guy!\"}");
+
+        JsonNode result = JsonTreePatcher.applyMergePatch(Json.createObjectBuilder()
+                .add("work", Json.createObjectBuilder().add("title", "Senior Engineer"))
+                .add("notes", JsonValue.NULL)
+                .add("groups", Json.createArrayBuilder().add("Friends"))
+                .build(), target);
+
+        assertThat(result).isSameAs(target);
+        assertThat(result).isEqualTo(json("{\"name\":\"John\"," +
+                "\"work\":{\"title\":\"Senior Engineer\",\"company\":\"Acme\"}," +
+                "\"groups\":[\"Friends\"]}"));
+    }
+
+    @SneakyThrows
+    private JsonNode json(String json) {
+        return mapper.readTree(json);
+    }
+}
@@ -0,0 +1,110 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.config.JacksonConfig;
+import com.cassiomolin.patch.web.resource.input.ContactResourceInput;
+import com.cassiomolin.patch.web.resource.input.EmailResourceInput;
+import com.cassiomolin.patch.web.resource.input.PhoneResourceInput;
+import com.cassiomolin.patch.web.resource.input.WorkResourceInput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.json.Json;
+import javax.json.JsonPatch;
+import javax.json.JsonPatchBuilder;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares patching a contact through the mutable Jackson tree against the former JSR-353 based approach, which
+ * rebuilt the immutable structure for every operation.
+ * <p>
+ * The GC profiler reports the allocation rate per operation ({@code gc.alloc.rate.norm}) next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatchHelperBenchmark {
+
+    @Param({"5", "50"})
+    private int listSize;
+
+    private ObjectMapper mapper;
+
+    private Validator validator;
+
+    private PatchHelper patchHelper;
+
+    private ContactResourceInput contact;
+
+    private JsonPatch patch;
+
+    @Setup
+    public void setup() {
+
+        mapper = new JacksonConfig().objectMapper();
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        patchHelper = new PatchHelper(mapper, validator);
+
+        List<PhoneResourceInput> phones = new ArrayList<>();
+        List<EmailResourceInput> emails = new ArrayList<>();
+        for (int i = 0; i < listSize; i++) {
+            phones.add(PhoneResourceInput.builder().phone(String.format("%010d", i)).type("mobile").build());
+            emails.add(EmailResourceInput.builder().email("john" + i + "@example.com").type("home").build());
+        }
+
+        contact = ContactResourceInput.builder()
+                .name("John Appleseed")
+                .birthday(LocalDate.parse("1990-01-01"))
+                .work(WorkResourceInput.builder().company("Acme").title("Engineer").build())
+                .phones(phones)
+                .emails(emails)
+                .notes("Cool guy!")
+                .favorite(false)
+                .build();
+
+        JsonPatchBuilder builder = Json.createPatchBuilder()
+                .replace("/name", "John W. Appleseed")
+                .replace("/work/title", "Senior Engineer")
+                .replace("/favorite", JsonValue.TRUE)
+                .remove("/notes");
+        for (int i = 0; i < 8; i++) {
+            builder.replace("/phones/" + i % listSize + "/type", "work")
+                    .add("/emails/-", Json.createObjectBuilder().add("email", "new" + i + "@example.com").build());
+        }
+        patch = builder.build();
+    }
+
+    @Benchmark
+    public ContactResourceInput jacksonTree() {
+        return patchHelper.patch(patch, contact, ContactResourceInput.class);
+    }
+
+    @Benchmark
+    public ContactResourceInput jsonProcessingStructure() {
+        JsonStructure target = mapper.convertValue(contact, JsonStructure.class);
+        JsonValue patched = patch.apply(target);
+        ContactResourceInput result = mapper.convertValue(patched, ContactResourceInput.class);
+        validator.validate(result);
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PatchHelperBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,156 @@
+package com.cassiomolin.patch.web.util;
+
+import com.cassiomolin.patch.web.patch.PatchPlan;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.Test;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonValue;
+import javax.validation.ConstraintViolation;
+import javax.validation.Valid;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PatchValidatorTest {
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final PatchValidator patchValidator = new PatchValidator(validator);
+
+    @Test
+    public void validate_shouldReportSameViolationsAsFullValidation_whenPatchTouchesInvalidProperties() {
+
+        Person person = person("John Appleseed", "Work", "Home", "Mobile");
+        person.setName(" ");
+        person.getLabels().get(1).setText("");
+        person.getLabels().add(new Label(""));
+        person.setMain(new Label(""));
+
+        JsonArray patch = Json.createArrayBuilder()
+                .add(operation("replace", "/name", Json.createValue(" ")))
+                .add(operation("replace", "/labels/1/text", Json.createValue("")))
+                .add(operation("add", "/labels/-", Json.createObjectBuilder().add("text", "").build()))
+                .add(operation("add", "/main", Json.createObjectBuilder().add("text", "").build()))
+                .build();
+
+        assertThat(details(patchValidator.validate(person, PatchPlan.compile(patch))))
+                .hasSize(4)
+                .isEqualTo(details(validator.validate(person)));
+    }
+
+    @Test
+    public void validate_shouldReportSameViolationsAsFullValidation_whenPatchMovesElements() {
+
+        Person person = person("John Appleseed", "Work", "Home");
+        person.getLabels().add(0, new Label(""));
+
+        JsonArray patch = Json.createArrayBuilder()
+                .add(operation("add", "/labels/0", Json.createObjectBuilder().add("text", "").build()))
+                .build();
+
+        assertThat(details(patchValidator.validate(person, PatchPlan.compile(patch))))
+                .hasSize(1)
+                .isEqualTo(details(validator.validate(person)));
+    }
+
+    @Test
+    public void validate_shouldReportSameViolationsAsFullValidation_whenPatchBreaksListConstraint() {
+
+        Person person = person("John Appleseed", "Work", "Home", "Mobile", "Fax");
+        person.getLabels().add(new Label(""));
+
+        JsonArray patch = Json.createArrayBuilder()
+                .add(operation("add", "/labels/-", Json.createObjectBuilder().add("text", "").build()))
+                .build();
+
+        assertThat(details(patchValidator.validate(person, PatchPlan.compile(patch))))
+                .hasSize(2)
+                .isEqualTo(details(validator.validate(person)));
+    }
+
+    @Test
+    public void validate_shouldReportSameViolationsAsFullValidation_whenMergePatchTouchesInvalidProperties() {
+
+        Person person = person("John Appleseed", "Work", "");
+        person.setMain(new Label(""));
+
+        JsonValue mergePatch = Json.createObjectBuilder()
+                .add("labels", Json.createArrayBuilder()
+                        .add(Json.createObjectBuilder().add("text", "Work"))
+                        .add(Json.createObjectBuilder().add("text", "")))
+                .add("main", Json.createObjectBuilder().add("text", ""))
+                .build();
+
+        assertThat(details(patchValidator.validate(person, mergePatch)))
+                .hasSize(2)
+                .isEqualTo(details(validator.validate(person)));
+    }
+
+    @Test
+    public void validate_shouldSkipProperties_whenPatchDoesNotTouchThem() {
+
+        Person person = person("John Appleseed", "Work", "", "Mobile");
+        person.setMain(new Label(""));
+
+        JsonArray patch = Json.createArrayBuilder()
+                .add(operation("replace", "/name", Json.createValue("John W. Appleseed")))
+                .add(operation("replace", "/labels/2/text", Json.createValue("Mobile")))
+                .build();
+
+        assertThat(patchValidator.validate(person, PatchPlan.compile(patch))).isEmpty();
+        assertThat(validator.validate(person)).hasSize(2);
+    }
+
+    private static Person person(String name, String... labels) {
+        return new Person(name, Arrays.stream(labels).map(Label::new).collect(Collectors.toCollection(ArrayList::new)),
+                null);
+    }
+
+    private static JsonValue operation(String op, String path, JsonValue value) {
+        return Json.createObjectBuilder().add("op", op).add("path", path).add("value", value).build();
+    }
+
+    private static <T> Set<String> details(Set<ConstraintViolation<T>> violations) {
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage() + " "
+                        + violation.getInvalidValue())
+                .collect(Collectors.toSet());
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Person {
+
+        @NotBlank
+        private String name;
+
+        @Valid
+        @Size(max = 4)
+        private List<Label> labels;
+
+        @Valid
+        private Label main;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Label {
+
+        @NotBlank
+        private String text;
+    }
+}
@@ -0,0 +1,34 @@
+package com.cassiomolin.patch.web.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PreferencesTest {
+
+    @Test
+    public void returnRepresentation_shouldReturnTrue_whenRepresentationIsPreferred() {
+        assertThat(Preferences.returnRepresentation(Collections.singletonList("return=representation"))).isTrue();
+        assertThat(Preferences.returnRepresentation(Collections.singletonList("Return=\"representation\""))).isTrue();
+        assertThat(Preferences.returnRepresentation(Collections.singletonList("respond-async, return=representation; foo=bar"))).isTrue();
+        assertThat(Preferences.returnRepresentation(Arrays.asList("handling=strict", "return=representation"))).isTrue();
+    }
+
+    @Test
+    public void returnRepresentation_shouldReturnFalse_whenRepresentationIsNotPreferred() {
+        assertThat(Preferences.returnRepresentation(null)).isFalse();
+        assertThat(Preferences.returnRepresentation(Collections.emptyList())).isFalse();
+        assertThat(Preferences.returnRepresentation(Collections.singletonList("return=minimal"))).isFalse();
+        assertThat(Preferences.returnRepresentation(Collections.singletonList("return"))).isFalse();
+        assertThat(Preferences.returnRepresentation(Collections.singletonList("handling=strict"))).isFalse();
+    }
+
+    @Test
+    public void returnRepresentation_shouldHonorFirstReturnPreference() {
+        assertThat(Preferences.returnRepresentation(Collections.singletonList("return=minimal, return=representation"))).isFalse();
+        assertThat(Preferences.returnRepresentation(Arrays.asList("return=representation", "return=minimal"))).isTrue();
+    }
+}